@@ -0,0 +1,996 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+/**
+ * An annotation processor for Endpoints service classes, which are classes annotated with
+ * {@code @Api}. For every such class, it
+ *
+ * <ul>
+ *   <li>reports configuration errors which would otherwise only be detected when the API is loaded
+ *   at runtime, such as overloaded methods, invalid names, or parameter and return types which
+ *   are not supported, as compiler errors,
+ *   <li>generates a {@code GeneratedInvokers} subclass with a direct, non-reflective invoker for
+ *   every endpoint method, which the framework uses instead of {@link java.lang.reflect.Method}
+ *   when it is on the classpath, and
+ *   <li>generates a {@code GeneratedApiConfig} subclass with the configuration annotations of the
+ *   class, of the classes it inherits its configuration from and of its endpoint methods, which
+ *   the framework applies instead of reading the annotations. Unless transformers are involved,
+ *   which are only applied at runtime, the framework also skips the per-method validation that
+ *   this processor has done.
+ * </ul>
+ *
+ * <p>Methods which cannot be invoked directly from generated code, such as generic methods, are
+ * skipped and invoked through reflection instead. Likewise, the configuration of classes which
+ * refers to types that generated code cannot access is read through reflection.
+ */
+public class EndpointsProcessor extends AbstractProcessor {
+  static final String API = "com.google.api.server.spi.config.Api";
+  private static final String API_CLASS = "com.google.api.server.spi.config.ApiClass";
+  private static final String API_METHOD = "com.google.api.server.spi.config.ApiMethod";
+  private static final String API_REFERENCE = "com.google.api.server.spi.config.ApiReference";
+  private static final String API_TRANSFORMER = "com.google.api.server.spi.config.ApiTransformer";
+  private static final String AUTHENTICATOR = "com.google.api.server.spi.config.Authenticator";
+  private static final String PEER_AUTHENTICATOR =
+      "com.google.api.server.spi.config.PeerAuthenticator";
+  private static final String DEFAULT_VALUE = "com.google.api.server.spi.config.DefaultValue";
+  private static final String DESCRIPTION = "com.google.api.server.spi.config.Description";
+  private static final Set<String> NAMED = new HashSet<>(
+      Arrays.asList("com.google.api.server.spi.config.Named", "javax.inject.Named"));
+  private static final Set<String> NULLABLE = new HashSet<>(
+      Arrays.asList("com.google.api.server.spi.config.Nullable", "javax.annotation.Nullable"));
+  private static final String GENERATED_INVOKERS = "com.google.api.server.spi.GeneratedInvokers";
+  private static final String GENERATED_API_CONFIG =
+      "com.google.api.server.spi.config.annotationreader.GeneratedApiConfig";
+  private static final String METHOD_INVOKER = "com.google.api.server.spi.MethodInvoker";
+  private static final String INVOKERS_SUFFIX = "_EndpointsInvokers";
+  private static final String CONFIG_SUFFIX = "_EndpointsConfig";
+  private static final Pattern PATH_PARAMETER = Pattern.compile("\\{([^}]+)\\}");
+
+  // The following mirror Api.UNSPECIFIED_STRING_FOR_LIST, ApiConfigValidator, TypeLoader and
+  // StandardParameters, which this processor cannot depend on.
+  private static final String UNSPECIFIED_LIST = "_UNSPECIFIED_LIST_STRING_VALUE";
+  private static final Pattern API_NAME = Pattern.compile("^[a-z]+[A-Za-z0-9_]*$");
+  private static final Pattern API_METHOD_NAME = Pattern.compile("^\\w+(\\.\\w+)*$");
+  private static final Set<String> INJECTED_TYPES = new HashSet<>(Arrays.asList(
+      "com.google.appengine.api.users.User",
+      "javax.servlet.http.HttpServletRequest",
+      "javax.servlet.ServletContext",
+      "com.google.api.server.spi.auth.common.User",
+      "com.google.api.server.spi.request.Deadline",
+      "org.apache.commons.fileupload.FileItemStream"));
+  private static final Set<String> PARAMETER_TYPES = new HashSet<>(Arrays.asList(
+      "java.lang.String", "java.lang.Boolean", "boolean", "java.lang.Integer", "int",
+      "java.lang.Long", "long", "java.lang.Float", "float", "java.lang.Double", "double", "byte[]",
+      "java.util.Date", "com.google.api.server.spi.types.DateAndTime",
+      "com.google.api.server.spi.types.SimpleDate", "com.google.appengine.api.datastore.Blob"));
+  private static final Set<String> SCHEMA_TYPES = new HashSet<>(PARAMETER_TYPES);
+  static {
+    SCHEMA_TYPES.addAll(Arrays.asList(
+        "java.lang.Short", "short", "java.lang.Byte", "byte", "java.lang.Character", "char"));
+  }
+  private static final Set<String> STANDARD_PARAMETERS = new HashSet<>(Arrays.asList(
+      "alt", "fields", "key", "oauth_token", "prettyPrint", "quotaUser", "userIp"));
+
+  private Elements elements;
+  private Types types;
+  private Messager messager;
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    this.elements = processingEnv.getElementUtils();
+    this.types = processingEnv.getTypeUtils();
+    this.messager = processingEnv.getMessager();
+  }
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(API);
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    TypeElement api = elements.getTypeElement(API);
+    if (api == null) {
+      return false;
+    }
+    for (Element element : roundEnv.getElementsAnnotatedWith(api)) {
+      if (element.getKind() != ElementKind.CLASS
+          || element.getModifiers().contains(Modifier.ABSTRACT)) {
+        continue;
+      }
+      TypeElement serviceClass = (TypeElement) element;
+      List<TypeElement> chain = getInheritanceChain(serviceClass);
+      if (chain == null) {
+        continue;
+      }
+      List<ExecutableElement> methods = getEndpointMethods(serviceClass);
+      Validation validation = new Validation();
+      validate(serviceClass, chain, methods, validation);
+      if (validation.valid && isAccessible(serviceClass, getPackageName(serviceClass))) {
+        generateInvokers(serviceClass, methods);
+        generateConfig(serviceClass, chain, methods, validation.complete);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The outcome of validating a service class.
+   */
+  private static class Validation {
+    /**
+     * Whether no errors were found.
+     */
+    boolean valid = true;
+
+    /**
+     * Whether everything that {@code ApiConfigValidator} checks per method was checked, which is
+     * not the case when transformers are involved.
+     */
+    boolean complete = true;
+  }
+
+  /**
+   * Returns the classes from which a service class inherits its configuration, root first, by
+   * following {@code @ApiReference} or else the superclass in the same way as the framework, or
+   * {@code null} after reporting an error if they form a cycle.
+   */
+  private List<TypeElement> getInheritanceChain(TypeElement serviceClass) {
+    List<TypeElement> chain = new ArrayList<>();
+    for (TypeElement type = serviceClass; type != null; type = getInheritanceSource(type)) {
+      if (chain.contains(type)) {
+        error(serviceClass, serviceClass, "%s: Cycle detected in API inheritance.",
+            serviceClass.getQualifiedName());
+        return null;
+      }
+      chain.add(type);
+    }
+    Collections.reverse(chain);
+    return chain;
+  }
+
+  private TypeElement getInheritanceSource(TypeElement type) {
+    AnnotationMirror reference = getAnnotation(type, Collections.singleton(API_REFERENCE));
+    Object value = reference == null ? null : getValue(reference, "value");
+    TypeMirror source = value instanceof TypeMirror ? (TypeMirror) value : type.getSuperclass();
+    return source.getKind() == TypeKind.DECLARED
+        ? (TypeElement) ((DeclaredType) source).asElement() : null;
+  }
+
+  /**
+   * Returns the public instance methods of a service class and its superclasses, except those
+   * declared by {@link Object}, in the same way that the framework discovers endpoint methods.
+   */
+  private List<ExecutableElement> getEndpointMethods(TypeElement serviceClass) {
+    List<ExecutableElement> methods = new ArrayList<>();
+    for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(serviceClass))) {
+      TypeElement declaringClass = (TypeElement) method.getEnclosingElement();
+      if (isEndpointMethod(method) && declaringClass.getKind() == ElementKind.CLASS
+          && !isObject(declaringClass)) {
+        methods.add(method);
+      }
+    }
+    return methods;
+  }
+
+  private static boolean isEndpointMethod(ExecutableElement method) {
+    Set<Modifier> modifiers = method.getModifiers();
+    return modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.STATIC);
+  }
+
+  /**
+   * Returns the {@code @ApiMethod} annotations of an endpoint method and of the methods it
+   * overrides, overridden methods first, which is the order in which the framework applies them.
+   */
+  private List<AnnotationMirror> getApiMethods(TypeElement serviceClass,
+      ExecutableElement method) {
+    DeclaredType serviceType = (DeclaredType) types.erasure(serviceClass.asType());
+    List<? extends TypeMirror> parameterTypes =
+        ((ExecutableType) types.asMemberOf(serviceType, method)).getParameterTypes();
+    List<AnnotationMirror> apiMethods = new ArrayList<>();
+    for (TypeElement type = serviceClass; type != null && !isObject(type);
+        type = getSuperclass(type)) {
+      for (ExecutableElement candidate : ElementFilter.methodsIn(type.getEnclosedElements())) {
+        if (isEndpointMethod(candidate)
+            && candidate.getSimpleName().equals(method.getSimpleName())
+            && isSameTypes(parameterTypes, ((ExecutableType) types.asMemberOf(
+                serviceType, candidate)).getParameterTypes())) {
+          AnnotationMirror apiMethod = getAnnotation(candidate, Collections.singleton(API_METHOD));
+          if (apiMethod != null) {
+            apiMethods.add(apiMethod);
+          }
+        }
+      }
+    }
+    Collections.reverse(apiMethods);
+    return apiMethods;
+  }
+
+  private boolean isSameTypes(List<? extends TypeMirror> a, List<? extends TypeMirror> b) {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      if (!types.isSameType(a.get(i), b.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static TypeElement getSuperclass(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    return superclass.getKind() == TypeKind.DECLARED
+        ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+  }
+
+  private static boolean isObject(TypeElement type) {
+    return type.getQualifiedName().contentEquals(Object.class.getName());
+  }
+
+  /**
+   * Validates a service class as {@code ApiConfigValidator} would validate the configuration read
+   * from its annotations.
+   */
+  private void validate(TypeElement serviceClass, List<TypeElement> chain,
+      List<ExecutableElement> methods, Validation validation) {
+    List<AnnotationMirror> apis = getAnnotations(chain, API);
+    List<AnnotationMirror> apiClasses = getAnnotations(chain, API_CLASS);
+    validateApi(serviceClass, apis, validation);
+    for (AnnotationMirror api : apis) {
+      Object transformers = getValue(api, "transformers");
+      if (transformers != null && !((List<?>) transformers).isEmpty()) {
+        validation.complete = false;
+      }
+    }
+
+    String resource = getLastNonEmpty(apiClasses, "resource");
+    if (resource == null) {
+      resource = getLastNonEmpty(apis, "resource");
+    }
+    List<? extends AnnotationValue> classAuthenticators =
+        getLastSpecified(apiClasses, apis, "authenticators", AUTHENTICATOR);
+    List<? extends AnnotationValue> classPeerAuthenticators =
+        getLastSpecified(apiClasses, apis, "peerAuthenticators", PEER_AUTHENTICATOR);
+
+    DeclaredType serviceType = (DeclaredType) types.erasure(serviceClass.asType());
+    Map<String, ExecutableElement> methodsByName = new HashMap<>();
+    for (ExecutableElement method : methods) {
+      List<AnnotationMirror> apiMethods = getApiMethods(serviceClass, method);
+      if ("TRUE".equals(getLastSpecified(apiMethods, "ignored"))) {
+        continue;
+      }
+      ExecutableElement seen = methodsByName.put(method.getSimpleName().toString(), method);
+      if (seen != null) {
+        error(method, serviceClass, "Overloaded methods are not supported. %s.%s has at least one "
+            + "overload: %s and %s", serviceClass.getQualifiedName(), method.getSimpleName(),
+            method, seen);
+        validation.valid = false;
+      }
+
+      String name = getLastNonEmpty(apiMethods, "name");
+      if (name == null) {
+        name = (resource != null ? resource : serviceClass.getSimpleName()) + "."
+            + method.getSimpleName();
+      }
+      if (!API_METHOD_NAME.matcher(name).matches()) {
+        error(method, serviceClass,
+            "Invalid method name '%s'. The method name must match '\\w+(\\.\\w+)*'", name);
+        validation.valid = false;
+      }
+
+      List<? extends AnnotationValue> authenticators =
+          getLastSpecified(apiMethods, "authenticators", AUTHENTICATOR);
+      validateNullaryConstructors(serviceClass, method,
+          authenticators != null ? authenticators : classAuthenticators, "custom authenticator",
+          validation);
+      List<? extends AnnotationValue> peerAuthenticators =
+          getLastSpecified(apiMethods, "peerAuthenticators", PEER_AUTHENTICATOR);
+      validateNullaryConstructors(serviceClass, method,
+          peerAuthenticators != null ? peerAuthenticators : classPeerAuthenticators,
+          "custom peer authenticator", validation);
+
+      ExecutableType methodType = (ExecutableType) types.asMemberOf(serviceType, method);
+      validateParameters(serviceClass, method, methodType, getLastNonEmpty(apiMethods, "path"),
+          validation);
+
+      TypeMirror returnType = methodType.getReturnType();
+      if (returnType.getKind() != TypeKind.VOID
+          && (SCHEMA_TYPES.contains(getRawName(returnType)) || isEnum(returnType))) {
+        error(method, serviceClass,
+            "Invalid return type: %s. Primitives and enums are not allowed.", returnType);
+        validation.valid = false;
+      }
+    }
+  }
+
+  private void validateApi(TypeElement serviceClass, List<AnnotationMirror> apis,
+      Validation validation) {
+    String name = getLastNonEmpty(apis, "name");
+    if (name != null && !API_NAME.matcher(name).matches()) {
+      error(serviceClass, serviceClass,
+          "Invalid api name '%s'. The api name must match '[a-z]+[A-Za-z0-9]*'", name);
+      validation.valid = false;
+    }
+
+    List<AnnotationMirror> namespaces = new ArrayList<>();
+    for (AnnotationMirror api : apis) {
+      Object namespace = getValue(api, "namespace");
+      if (namespace != null) {
+        namespaces.add((AnnotationMirror) namespace);
+      }
+    }
+    boolean hasOwnerDomain = getLastNonEmpty(namespaces, "ownerDomain") != null;
+    boolean hasOwnerName = getLastNonEmpty(namespaces, "ownerName") != null;
+    boolean hasPackagePath = getLastNonEmpty(namespaces, "packagePath") != null;
+    if ((hasOwnerDomain || hasOwnerName || hasPackagePath) && !(hasOwnerDomain && hasOwnerName)) {
+      error(serviceClass, serviceClass, "Invalid namespace configuration. If a namespace is set, "
+          + "make sure to set an Owner Domain and Name. Package Path is optional.");
+      validation.valid = false;
+    }
+
+    List<? extends AnnotationValue> issuers =
+        getLastSpecified(apis, "issuers", UNSPECIFIED_LIST);
+    if (issuers != null) {
+      for (AnnotationValue value : issuers) {
+        AnnotationMirror issuer = (AnnotationMirror) value.getValue();
+        Object issuerName = getValue(issuer, "name");
+        if (issuerName == null || issuerName.toString().isEmpty()) {
+          error(serviceClass, serviceClass, "issuer name cannot be blank");
+          validation.valid = false;
+        } else if (getValue(issuer, "issuer") == null
+            || getValue(issuer, "issuer").toString().isEmpty()) {
+          error(serviceClass, serviceClass, "issuer '%s' cannot have a blank issuer value",
+              issuerName);
+          validation.valid = false;
+        }
+      }
+    }
+  }
+
+  private void validateNullaryConstructors(TypeElement serviceClass, ExecutableElement method,
+      List<? extends AnnotationValue> classes, String description, Validation validation) {
+    if (classes == null) {
+      return;
+    }
+    for (AnnotationValue value : classes) {
+      TypeMirror type = (TypeMirror) value.getValue();
+      if (!hasPublicNullaryConstructor(type)) {
+        error(method, serviceClass, "Invalid %s %s. It must have a public nullary constructor.",
+            description, type);
+        validation.valid = false;
+      }
+    }
+  }
+
+  private static boolean hasPublicNullaryConstructor(TypeMirror type) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      return false;
+    }
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(
+        ((DeclaredType) type).asElement().getEnclosedElements())) {
+      if (constructor.getModifiers().contains(Modifier.PUBLIC)
+          && constructor.getParameters().isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Validates the parameters of a method as {@code ApiConfigValidator} would, after classifying
+   * them in the same way as {@code ApiParameterConfig}.
+   */
+  private void validateParameters(TypeElement serviceClass, ExecutableElement method,
+      ExecutableType methodType, String path, Validation validation) {
+    Set<String> pathParameters = new HashSet<>();
+    if (path != null) {
+      Matcher matcher = PATH_PARAMETER.matcher(path);
+      while (matcher.find()) {
+        pathParameters.add(matcher.group(1));
+      }
+    }
+    Set<String> parameterNames = new HashSet<>();
+    for (int i = 0; i < method.getParameters().size(); i++) {
+      VariableElement parameter = method.getParameters().get(i);
+      TypeMirror type = methodType.getParameterTypes().get(i);
+      AnnotationMirror named = getAnnotation(parameter, NAMED);
+      String name = named == null ? null : String.valueOf(getValue(named, "value"));
+
+      boolean injectedType = INJECTED_TYPES.contains(getRawName(type));
+      TypeMirror baseType = type;
+      boolean repeated = !injectedType && isArrayType(type);
+      if (repeated) {
+        baseType = getItemType(type);
+      }
+      if (hasTransformer(type) || repeated && (baseType.getKind() == TypeKind.WILDCARD
+          || hasTransformer(baseType) || isTypeVariableOfArrayType(baseType))
+          || isTypeVariableOfArrayType(type)) {
+        // Transformers change the type which is validated, and are only known at runtime.
+        validation.complete = false;
+        continue;
+      }
+      if (repeated && isArrayType(baseType)) {
+        error(parameter, serviceClass, "Illegal nested collection type '%s' in method %s.",
+            baseType, method.getSimpleName());
+        validation.valid = false;
+        continue;
+      }
+
+      if (injectedType || STANDARD_PARAMETERS.contains(name)) {
+        continue;
+      } else if (PARAMETER_TYPES.contains(getRawName(baseType)) || isEnum(baseType)) {
+        if (name == null) {
+          error(parameter, serviceClass, "Missing parameter name. Parameter type (%s) is not an "
+              + "entity type and thus should be annotated with @Named.", type);
+          validation.valid = false;
+        } else if (!parameterNames.add(name)) {
+          error(parameter, serviceClass, "Duplicate parameter name '%s' in method %s", name,
+              method.getSimpleName());
+          validation.valid = false;
+        } else if (pathParameters.contains(name) && (getAnnotation(parameter, NULLABLE) != null
+            || getAnnotation(parameter, Collections.singleton(DEFAULT_VALUE)) != null)) {
+          error(parameter, serviceClass, "Path parameter '%s' in method %s cannot be @Nullable or "
+              + "have a @DefaultValue", name, method.getSimpleName());
+          validation.valid = false;
+        }
+      } else if (baseType.getKind() == TypeKind.TYPEVAR) {
+        error(parameter, serviceClass, "Parameter type of method %s is generic. The actual type "
+            + "must be known.", method.getSimpleName());
+        validation.valid = false;
+      } else if (repeated) {
+        error(parameter, serviceClass, "Illegal parameter type ('%s' in collection type '%s').  "
+            + "Arrays or collections of entity types are not allowed.", baseType, type);
+        validation.valid = false;
+      } else if (name != null) {
+        error(parameter, serviceClass, "Bad parameter name. Parameter is entity type (%s) and "
+            + "should not be named.", type);
+        validation.valid = false;
+      }
+    }
+  }
+
+  /**
+   * Returns the erased name of a type, as in {@code "java.lang.String"}, {@code "int"} or
+   * {@code "byte[]"}. The erasure of a type variable is that of its bound.
+   */
+  private String getRawName(TypeMirror type) {
+    return type.getKind() == TypeKind.WILDCARD ? "" : types.erasure(type).toString();
+  }
+
+  private boolean isEnum(TypeMirror type) {
+    return isSubtype(type, Enum.class.getName());
+  }
+
+  private boolean isSubtype(TypeMirror type, String className) {
+    TypeElement typeElement = elements.getTypeElement(className);
+    return type.getKind() != TypeKind.WILDCARD && typeElement != null
+        && types.isSubtype(types.erasure(type), types.erasure(typeElement.asType()));
+  }
+
+  /**
+   * Returns whether a type is serialized as a list, which, as in the framework, is the case for
+   * collections and arrays other than {@code byte[]}.
+   */
+  private boolean isArrayType(TypeMirror type) {
+    if (type.getKind() == TypeKind.ARRAY) {
+      return ((ArrayType) type).getComponentType().getKind() != TypeKind.BYTE;
+    }
+    return isSubtype(type, "java.util.Collection");
+  }
+
+  private boolean isTypeVariableOfArrayType(TypeMirror type) {
+    return type.getKind() == TypeKind.TYPEVAR && isArrayType(type);
+  }
+
+  /**
+   * Returns the item type of an array or collection type, which, for a raw collection type, is
+   * the type variable of {@link java.util.Collection}.
+   */
+  private TypeMirror getItemType(TypeMirror type) {
+    if (type.getKind() == TypeKind.ARRAY) {
+      return ((ArrayType) type).getComponentType();
+    }
+    DeclaredType declaredType = (DeclaredType) type;
+    TypeElement element = (TypeElement) declaredType.asElement();
+    if (element.getQualifiedName().contentEquals("java.util.Collection")) {
+      return declaredType.getTypeArguments().isEmpty()
+          ? element.getTypeParameters().get(0).asType()
+          : declaredType.getTypeArguments().get(0);
+    }
+    for (TypeMirror supertype : types.directSupertypes(type)) {
+      if (isSubtype(supertype, "java.util.Collection")) {
+        return getItemType(supertype);
+      }
+    }
+    throw new AssertionError(type + " is not a collection");
+  }
+
+  /**
+   * Returns whether a type or any of its supertypes is annotated with {@code @ApiTransformer}.
+   */
+  private boolean hasTransformer(TypeMirror type) {
+    if (type.getKind() != TypeKind.DECLARED && type.getKind() != TypeKind.TYPEVAR) {
+      return false;
+    }
+    if (type.getKind() == TypeKind.TYPEVAR) {
+      return hasTransformer(((TypeVariable) type).getUpperBound());
+    }
+    if (getAnnotation(((DeclaredType) type).asElement(), Collections.singleton(API_TRANSFORMER))
+        != null) {
+      return true;
+    }
+    for (TypeMirror supertype : types.directSupertypes(type)) {
+      if (hasTransformer(supertype)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<AnnotationMirror> getAnnotations(List<TypeElement> chain, String annotationName) {
+    List<AnnotationMirror> annotations = new ArrayList<>();
+    for (TypeElement type : chain) {
+      AnnotationMirror annotation = getAnnotation(type, Collections.singleton(annotationName));
+      if (annotation != null) {
+        annotations.add(annotation);
+      }
+    }
+    return annotations;
+  }
+
+  /**
+   * Returns the last non-empty value of a string element of the given annotations, which is the
+   * one the framework uses, or {@code null} if there is none.
+   */
+  private static String getLastNonEmpty(List<AnnotationMirror> annotations, String name) {
+    String result = null;
+    for (AnnotationMirror annotation : annotations) {
+      Object value = getValue(annotation, name);
+      if (value != null && !value.toString().isEmpty()) {
+        result = value.toString();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the last specified value of an {@code AnnotationBoolean} element of the given
+   * annotations, or {@code null} if there is none.
+   */
+  private static String getLastSpecified(List<AnnotationMirror> annotations, String name) {
+    String result = null;
+    for (AnnotationMirror annotation : annotations) {
+      Object value = getValue(annotation, name);
+      if (value != null && !"UNSPECIFIED".equals(value)) {
+        result = value.toString();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the last specified value of an array element of the given annotations, or
+   * {@code null} if there is none. A value is unspecified if its only item, or the name of its
+   * only annotation, is {@code unspecified}.
+   */
+  private static List<? extends AnnotationValue> getLastSpecified(
+      List<AnnotationMirror> annotations, String name, String unspecified) {
+    List<? extends AnnotationValue> result = null;
+    for (AnnotationMirror annotation : annotations) {
+      @SuppressWarnings("unchecked")
+      List<? extends AnnotationValue> value =
+          (List<? extends AnnotationValue>) getValue(annotation, name);
+      if (value != null && !isUnspecified(value, unspecified)) {
+        result = value;
+      }
+    }
+    return result;
+  }
+
+  private static List<? extends AnnotationValue> getLastSpecified(List<AnnotationMirror> first,
+      List<AnnotationMirror> fallback, String name, String unspecified) {
+    List<? extends AnnotationValue> result = getLastSpecified(first, name, unspecified);
+    return result != null ? result : getLastSpecified(fallback, name, unspecified);
+  }
+
+  private static boolean isUnspecified(List<? extends AnnotationValue> values,
+      String unspecified) {
+    if (values.size() != 1) {
+      return false;
+    }
+    Object value = values.get(0).getValue();
+    if (value instanceof AnnotationMirror) {
+      value = getValue((AnnotationMirror) value, "name");
+    }
+    return value != null && unspecified.equals(value.toString());
+  }
+
+  private void generateInvokers(TypeElement serviceClass, List<ExecutableElement> methods) {
+    String packageName = getPackageName(serviceClass);
+    String className = getGeneratedClassName(serviceClass, packageName, INVOKERS_SUFFIX);
+    String serviceName = serviceClass.getQualifiedName().toString();
+    DeclaredType serviceType = (DeclaredType) types.erasure(serviceClass.asType());
+    try {
+      JavaFileObject file = processingEnv.getFiler().createSourceFile(
+          packageName.isEmpty() ? className : packageName + "." + className, serviceClass);
+      try (PrintWriter out = new PrintWriter(file.openWriter())) {
+        out.println("// Generated by " + EndpointsProcessor.class.getName() + ". Do not edit.");
+        if (!packageName.isEmpty()) {
+          out.println("package " + packageName + ";");
+        }
+        out.println();
+        out.println("@SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+        out.println("public final class " + className + " extends " + GENERATED_INVOKERS + " {");
+        out.println("  public " + className + "() {");
+        out.println("    super(" + serviceName + ".class);");
+        for (ExecutableElement method : methods) {
+          ExecutableType methodType = (ExecutableType) types.asMemberOf(serviceType, method);
+          if (canInvokeDirectly(method, methodType, packageName)) {
+            writeInvoker(out, serviceName, method, methodType);
+          }
+        }
+        out.println("  }");
+        out.println("}");
+      }
+    } catch (IOException e) {
+      messager.printMessage(Kind.ERROR,
+          "Unable to generate invokers for " + serviceName + ": " + e.getMessage(), serviceClass);
+    }
+  }
+
+  private void writeInvoker(PrintWriter out, String serviceName, ExecutableElement method,
+      ExecutableType methodType) {
+    List<? extends TypeMirror> parameterTypes = methodType.getParameterTypes();
+    List<String> typeNames = new ArrayList<>();
+    for (TypeMirror parameterType : parameterTypes) {
+      typeNames.add(types.erasure(parameterType).toString());
+    }
+    out.println("    add(\"" + method.getSimpleName() + "(" + join(typeNames, ",") + ")\", new "
+        + METHOD_INVOKER + "() {");
+    out.println("      @Override");
+    out.println("      public Object invoke(Object service, Object[] params)");
+    out.println("          throws java.lang.reflect.InvocationTargetException {");
+    out.println("        checkParameterCount(params, " + parameterTypes.size() + ");");
+    List<String> arguments = new ArrayList<>();
+    for (int i = 0; i < typeNames.size(); i++) {
+      out.println("        " + typeNames.get(i) + " p" + i + ";");
+      arguments.add("p" + i);
+    }
+    if (!parameterTypes.isEmpty()) {
+      // Mirrors Method.invoke, which rejects arguments of the wrong type, or null primitives.
+      out.println("        try {");
+      for (int i = 0; i < parameterTypes.size(); i++) {
+        TypeMirror parameterType = parameterTypes.get(i);
+        String castType = parameterType.getKind().isPrimitive()
+            ? types.boxedClass(types.getPrimitiveType(parameterType.getKind()))
+                .getQualifiedName().toString()
+            : typeNames.get(i);
+        out.println("          p" + i + " = (" + castType + ") params[" + i + "];");
+      }
+      out.println("        } catch (RuntimeException e) {");
+      out.println("          throw new IllegalArgumentException(e);");
+      out.println("        }");
+    }
+    out.println("        try {");
+    String call = "((" + serviceName + ") service)." + method.getSimpleName() + "("
+        + join(arguments, ", ") + ")";
+    if (methodType.getReturnType().getKind() == TypeKind.VOID) {
+      out.println("          " + call + ";");
+      out.println("          return null;");
+    } else {
+      out.println("          return " + call + ";");
+    }
+    out.println("        } catch (Throwable e) {");
+    out.println("          throw new java.lang.reflect.InvocationTargetException(e);");
+    out.println("        }");
+    out.println("      }");
+    out.println("    });");
+  }
+
+  /**
+   * Generates a {@code GeneratedApiConfig} subclass which records the configuration annotations,
+   * including default values, in the order in which the framework applies them. Nothing is
+   * generated if any referenced type is not accessible from the generated class.
+   */
+  private void generateConfig(TypeElement serviceClass, List<TypeElement> chain,
+      List<ExecutableElement> methods, boolean validated) {
+    String packageName = getPackageName(serviceClass);
+    String className = getGeneratedClassName(serviceClass, packageName, CONFIG_SUFFIX);
+    String serviceName = serviceClass.getQualifiedName().toString();
+    List<String> statements = new ArrayList<>();
+    for (TypeElement type : chain) {
+      AnnotationMirror api = getAnnotation(type, Collections.singleton(API));
+      AnnotationMirror apiClass = getAnnotation(type, Collections.singleton(API_CLASS));
+      if (api == null && apiClass == null) {
+        continue;
+      }
+      String apiValues = toSource(api, packageName);
+      String apiClassValues = toSource(apiClass, packageName);
+      if (apiValues == null || apiClassValues == null) {
+        return;
+      }
+      statements.add("addClass(" + apiValues + ",\n        " + apiClassValues + ");");
+    }
+    for (ExecutableElement method : methods) {
+      StringBuilder statement = new StringBuilder("addMethod(")
+          .append(elements.getConstantExpression(method.getSimpleName().toString()));
+      for (VariableElement parameter : method.getParameters()) {
+        TypeMirror parameterType = types.erasure(parameter.asType());
+        if (!isAccessible(parameterType, packageName)) {
+          return;
+        }
+        statement.append(", ").append(parameterType).append(".class");
+      }
+      statement.append(")");
+      for (VariableElement parameter : method.getParameters()) {
+        AnnotationMirror named = getAnnotation(parameter, NAMED);
+        AnnotationMirror description =
+            getAnnotation(parameter, Collections.singleton(DESCRIPTION));
+        AnnotationMirror defaultValue =
+            getAnnotation(parameter, Collections.singleton(DEFAULT_VALUE));
+        statement.append("\n        .parameter(")
+            .append(toStringSource(named == null ? null : getValue(named, "value"))).append(", ")
+            .append(toStringSource(description == null ? null : getValue(description, "value")))
+            .append(", ").append(getAnnotation(parameter, NULLABLE) != null).append(", ")
+            .append(toStringSource(defaultValue == null ? null : getValue(defaultValue, "value")))
+            .append(")");
+      }
+      for (AnnotationMirror apiMethod : getApiMethods(serviceClass, method)) {
+        String apiMethodValues = toSource(apiMethod, packageName);
+        if (apiMethodValues == null) {
+          return;
+        }
+        statement.append("\n        .apiMethod(").append(apiMethodValues).append(")");
+      }
+      statements.add(statement.append(";").toString());
+    }
+
+    try {
+      JavaFileObject file = processingEnv.getFiler().createSourceFile(
+          packageName.isEmpty() ? className : packageName + "." + className, serviceClass);
+      try (PrintWriter out = new PrintWriter(file.openWriter())) {
+        out.println("// Generated by " + EndpointsProcessor.class.getName() + ". Do not edit.");
+        if (!packageName.isEmpty()) {
+          out.println("package " + packageName + ";");
+        }
+        out.println();
+        out.println("public final class " + className + " extends " + GENERATED_API_CONFIG + " {");
+        out.println("  public " + className + "() {");
+        out.println("    super(" + serviceName + ".class, " + validated + ");");
+        for (String statement : statements) {
+          out.println("    " + statement);
+        }
+        out.println("  }");
+        out.println("}");
+      }
+    } catch (IOException e) {
+      messager.printMessage(Kind.ERROR, "Unable to generate API configuration for " + serviceName
+          + ": " + e.getMessage(), serviceClass);
+    }
+  }
+
+  /**
+   * Returns an expression which creates the {@code Values} of an annotation, or of none, or
+   * {@code null} if it refers to a type which is not accessible from the given package.
+   */
+  private String toSource(AnnotationMirror annotation, String packageName) {
+    if (annotation == null) {
+      return "null";
+    }
+    StringBuilder source = new StringBuilder("values()");
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+        : elements.getElementValuesWithDefaults(annotation).entrySet()) {
+      String value = toSource(entry.getValue().getValue(),
+          entry.getKey().getReturnType(), packageName);
+      if (value == null) {
+        return null;
+      }
+      source.append(".put(\"").append(entry.getKey().getSimpleName()).append("\", ")
+          .append(value).append(")");
+    }
+    return source.toString();
+  }
+
+  private String toSource(Object value, TypeMirror type, String packageName) {
+    if (value instanceof AnnotationMirror) {
+      return toSource((AnnotationMirror) value, packageName);
+    } else if (value instanceof List) {
+      TypeMirror componentType = ((ArrayType) type).getComponentType();
+      String componentName;
+      if (componentType.getKind() == TypeKind.DECLARED
+          && ((DeclaredType) componentType).asElement().getKind() == ElementKind.ANNOTATION_TYPE) {
+        componentName = GENERATED_API_CONFIG + ".Values";
+      } else {
+        componentName = types.erasure(componentType).toString();
+        if (componentName.equals(Class.class.getName())) {
+          componentName += "<?>";
+        }
+      }
+      @SuppressWarnings("unchecked")
+      List<? extends AnnotationValue> values = (List<? extends AnnotationValue>) value;
+      List<String> items = new ArrayList<>();
+      for (AnnotationValue item : values) {
+        String itemSource = toSource(item.getValue(), componentType, packageName);
+        if (itemSource == null) {
+          return null;
+        }
+        items.add(itemSource);
+      }
+      return "new " + componentName + "[] {" + join(items, ", ") + "}";
+    } else if (value instanceof TypeMirror) {
+      TypeMirror classType = types.erasure((TypeMirror) value);
+      return isAccessible(classType, packageName) ? classType + ".class" : null;
+    } else if (value instanceof VariableElement) {
+      VariableElement constant = (VariableElement) value;
+      return ((TypeElement) constant.getEnclosingElement()).getQualifiedName() + "."
+          + constant.getSimpleName();
+    }
+    return elements.getConstantExpression(value);
+  }
+
+  private String toStringSource(Object value) {
+    return value == null ? "null" : elements.getConstantExpression(value.toString());
+  }
+
+  private boolean canInvokeDirectly(ExecutableElement method, ExecutableType methodType,
+      String packageName) {
+    if (!method.getTypeParameters().isEmpty()) {
+      return false;
+    }
+    for (TypeMirror parameterType : methodType.getParameterTypes()) {
+      if (!isAccessible(types.erasure(parameterType), packageName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isAccessible(TypeMirror type, String packageName) {
+    if (type.getKind() == TypeKind.ARRAY) {
+      return isAccessible(((ArrayType) type).getComponentType(), packageName);
+    } else if (type.getKind() == TypeKind.DECLARED) {
+      return isAccessible(((DeclaredType) type).asElement(), packageName);
+    }
+    return type.getKind().isPrimitive();
+  }
+
+  /**
+   * Returns whether a type can be referenced from generated code in the given package.
+   */
+  private boolean isAccessible(Element type, String packageName) {
+    for (Element e = type; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+      Set<Modifier> modifiers = e.getModifiers();
+      if (modifiers.contains(Modifier.PRIVATE)
+          || !e.getKind().isClass() && !e.getKind().isInterface()
+          || !modifiers.contains(Modifier.PUBLIC) && !packageName.equals(getPackageName(e))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String getPackageName(Element element) {
+    PackageElement packageElement = elements.getPackageOf(element);
+    return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+  }
+
+  /**
+   * Returns the simple name of a class generated for {@code type}, which matches
+   * {@code GeneratedClasses.getGeneratedClassName}.
+   */
+  static String getGeneratedClassName(TypeElement type, String packageName, String suffix) {
+    String qualifiedName = type.getQualifiedName().toString();
+    String nestedName =
+        packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+    return nestedName.replace('.', '_') + suffix;
+  }
+
+  private static AnnotationMirror getAnnotation(Element element, Set<String> annotationNames) {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+      if (annotationNames.contains(annotationType.getQualifiedName().toString())) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  private static Object getValue(AnnotationMirror annotation, String name) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+        : annotation.getElementValues().entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(name)) {
+        Object value = entry.getValue().getValue();
+        // Enum constants are returned as elements
+        return value instanceof VariableElement
+            ? ((VariableElement) value).getSimpleName().toString() : value;
+      }
+    }
+    return null;
+  }
+
+  private void error(Element element, TypeElement serviceClass, String format, Object... args) {
+    // Inherited methods are reported against the service class, which is being compiled.
+    Element target = isDeclaredIn(element, serviceClass) ? element : serviceClass;
+    messager.printMessage(Kind.ERROR, String.format(format, args), target);
+  }
+
+  private static boolean isDeclaredIn(Element element, TypeElement type) {
+    for (Element e = element; e != null; e = e.getEnclosingElement()) {
+      if (e.equals(type)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String join(List<String> parts, String separator) {
+    StringBuilder builder = new StringBuilder();
+    for (String part : parts) {
+      if (builder.length() > 0) {
+        builder.append(separator);
+      }
+      builder.append(part);
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.api.server.spi.EndpointMethod;
+import com.google.api.server.spi.GeneratedInvokers;
+import com.google.api.server.spi.MethodHierarchyReader;
+import com.google.api.server.spi.MethodInvoker;
+import com.google.api.server.spi.ServiceContext;
+import com.google.api.server.spi.config.ApiConfigLoader;
+import com.google.api.server.spi.config.annotationreader.GeneratedApiConfig;
+import com.google.api.server.spi.config.jsonwriter.JsonConfigWriter;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.common.collect.Iterables;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * Tests for {@link EndpointsProcessor}.
+ */
+@RunWith(JUnit4.class)
+public class EndpointsProcessorTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File outputDir;
+  private DiagnosticCollector<JavaFileObject> diagnostics;
+
+  @Before
+  public void setUp() throws Exception {
+    outputDir = tempFolder.newFolder();
+    diagnostics = new DiagnosticCollector<>();
+  }
+
+  @Test
+  public void generatesInvokers() throws Exception {
+    assertThat(compile("test.Greetings",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.Named;",
+        "import java.util.List;",
+        "@Api(name = \"greetings\")",
+        "public class Greetings extends Base<List<String>> {",
+        "  public CharSequence greet(@Named(\"name\") String name, @Named(\"times\") int times) {",
+        "    StringBuilder builder = new StringBuilder();",
+        "    for (int i = 0; i < times; i++) { builder.append(name); }",
+        "    return builder.toString();",
+        "  }",
+        "  public void fail() throws Exception { throw new Exception(\"failed\"); }",
+        "  public Number count(@Named(\"values\") List<String> values) { return values.size(); }",
+        "}",
+        "abstract class Base<T> {",
+        "  public T echo(@Named(\"value\") T value) { return value; }",
+        "}")).isTrue();
+    Class<?> serviceClass = load("test.Greetings");
+    Object service = serviceClass.newInstance();
+
+    GeneratedInvokers invokers = GeneratedInvokers.forServiceClass(serviceClass);
+
+    assertThat(invokers).isNotNull();
+    assertThat(invokers.size()).isEqualTo(4);
+    assertThat(invoke(invokers, serviceClass, service, "greet", "a", 3)).isEqualTo("aaa");
+    assertThat(invoke(invokers, serviceClass, service, "count", Arrays.asList("a", "b")))
+        .isEqualTo(2);
+    assertThat(invoke(invokers, serviceClass, service, "echo", Arrays.asList("echo")))
+        .isEqualTo(Arrays.asList("echo"));
+    try {
+      invoke(invokers, serviceClass, service, "fail");
+      fail("expected InvocationTargetException");
+    } catch (InvocationTargetException e) {
+      assertThat(e.getCause()).hasMessage("failed");
+    }
+  }
+
+  @Test
+  public void invalidArguments() throws Exception {
+    assertThat(compile("test.Numbers",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.Named;",
+        "@Api(name = \"numbers\")",
+        "public class Numbers {",
+        "  public Number square(@Named(\"value\") int value) { return value * value; }",
+        "}")).isTrue();
+    Class<?> serviceClass = load("test.Numbers");
+    Object service = serviceClass.newInstance();
+    GeneratedInvokers invokers = GeneratedInvokers.forServiceClass(serviceClass);
+
+    assertThat(invoke(invokers, serviceClass, service, "square", 3)).isEqualTo(9);
+    for (Object[] params : new Object[][] {{null}, {"3"}, {}}) {
+      try {
+        invokers.getInvoker(getMethod(serviceClass, "square")).invoke(service, params);
+        fail("expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void nestedServiceClass() throws Exception {
+    assertThat(compile("test.Outer",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "public class Outer {",
+        "  @Api(name = \"inner\")",
+        "  public static class Inner {",
+        "    public CharSequence get() { return \"inner\"; }",
+        "  }",
+        "}")).isTrue();
+    Class<?> serviceClass = load("test.Outer$Inner");
+
+    GeneratedInvokers invokers = GeneratedInvokers.forServiceClass(serviceClass);
+
+    assertThat(invokers.getClass().getName()).isEqualTo("test.Outer_Inner_EndpointsInvokers");
+    assertThat(invoke(invokers, serviceClass, serviceClass.newInstance(), "get"))
+        .isEqualTo("inner");
+  }
+
+  @Test
+  public void skipsGenericMethods() throws Exception {
+    assertThat(compile("test.Generic",
+        "package test;",
+        "import com.google.api.server.spi.config.AnnotationBoolean;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.ApiMethod;",
+        "import com.google.api.server.spi.config.Named;",
+        "@Api(name = \"generic\")",
+        "public class Generic {",
+        "  @ApiMethod(ignored = AnnotationBoolean.TRUE)",
+        "  public <T> T identity(@Named(\"value\") T value) { return value; }",
+        "  public CharSequence get() { return \"get\"; }",
+        "}")).isTrue();
+    Class<?> serviceClass = load("test.Generic");
+
+    GeneratedInvokers invokers = GeneratedInvokers.forServiceClass(serviceClass);
+
+    assertThat(invokers.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void overloadedMethods() throws Exception {
+    assertThat(compile("test.Overloaded",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.Named;",
+        "@Api(name = \"overloaded\")",
+        "public class Overloaded {",
+        "  public void get() {}",
+        "  public void get(@Named(\"id\") String id) {}",
+        "}")).isFalse();
+    assertThat(getErrors()).contains("Overloaded methods are not supported");
+    assertThat(new File(outputDir, "test/Overloaded_EndpointsInvokers.class").exists()).isFalse();
+  }
+
+  @Test
+  public void overloadedMethods_ignored() throws Exception {
+    assertThat(compile("test.Overloaded",
+        "package test;",
+        "import com.google.api.server.spi.config.AnnotationBoolean;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.ApiMethod;",
+        "import com.google.api.server.spi.config.Named;",
+        "@Api(name = \"overloaded\")",
+        "public class Overloaded {",
+        "  public void get() {}",
+        "  @ApiMethod(ignored = AnnotationBoolean.TRUE)",
+        "  public void get(@Named(\"id\") String id) {}",
+        "}")).isTrue();
+  }
+
+  @Test
+  public void overriddenMethods() throws Exception {
+    assertThat(compile("test.Overriding",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "@Api(name = \"overriding\")",
+        "public class Overriding extends Base {",
+        "  @Override public CharSequence get() { return \"overriding\"; }",
+        "}",
+        "class Base {",
+        "  public CharSequence get() { return \"base\"; }",
+        "}")).isTrue();
+    Class<?> serviceClass = load("test.Overriding");
+
+    GeneratedInvokers invokers = GeneratedInvokers.forServiceClass(serviceClass);
+
+    assertThat(invoke(invokers, serviceClass, serviceClass.newInstance(), "get"))
+        .isEqualTo("overriding");
+  }
+
+  @Test
+  public void duplicateParameterNames() throws Exception {
+    assertThat(compile("test.Duplicate",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.Named;",
+        "@Api(name = \"duplicate\")",
+        "public class Duplicate {",
+        "  public void get(@Named(\"id\") String a, @Named(\"id\") String b) {}",
+        "}")).isFalse();
+    assertThat(getErrors()).contains("Duplicate parameter name 'id' in method get");
+  }
+
+  @Test
+  public void nullablePathParameter() throws Exception {
+    assertThat(compile("test.NullablePath",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.ApiMethod;",
+        "import com.google.api.server.spi.config.Named;",
+        "import com.google.api.server.spi.config.Nullable;",
+        "@Api(name = \"nullablePath\")",
+        "public class NullablePath {",
+        "  @ApiMethod(path = \"items/{id}\")",
+        "  public void get(@Named(\"id\") @Nullable String id) {}",
+        "}")).isFalse();
+    assertThat(getErrors())
+        .contains("Path parameter 'id' in method get cannot be @Nullable or have a @DefaultValue");
+  }
+
+  @Test
+  public void nullableQueryParameter() throws Exception {
+    assertThat(compile("test.NullableQuery",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.ApiMethod;",
+        "import com.google.api.server.spi.config.Named;",
+        "import com.google.api.server.spi.config.Nullable;",
+        "@Api(name = \"nullableQuery\")",
+        "public class NullableQuery {",
+        "  @ApiMethod(path = \"items/{id}\")",
+        "  public void get(@Named(\"id\") String id, @Named(\"q\") @Nullable String q) {}",
+        "}")).isTrue();
+  }
+
+  @Test
+  public void generatesConfig() throws Exception {
+    String[] source = {
+        "package test;",
+        "import com.google.api.server.spi.config.*;",
+        "import java.util.List;",
+        "@Api(name = \"configured\", version = \"v2\",",
+        "    auth = @ApiAuth(allowCookieAuth = AnnotationBoolean.TRUE),",
+        "    frontendLimits = @ApiFrontendLimits(unregisteredQps = 5,",
+        "        rules = {@ApiFrontendLimitRule(match = \"/items\", qps = 3)}),",
+        "    namespace = @ApiNamespace(ownerDomain = \"example.com\", ownerName = \"Example\"),",
+        "    issuers = {@ApiIssuer(name = \"auth0\", issuer = \"https://auth0.example.com\")},",
+        "    limitDefinitions = {@ApiLimitMetric(name = \"read\", limit = 10)})",
+        "@ApiClass(resource = \"items\", scopes = {\"email\"})",
+        "public class Configured extends Base {",
+        "  @ApiMethod(path = \"items/{id}\", httpMethod = \"GET\", timeoutMillis = 100L,",
+        "      metricCosts = {@ApiMetricCost(name = \"read\", cost = 1)})",
+        "  public Item get(@Named(\"id\") @Description(\"the id\") String id,",
+        "      @Named(\"q\") @Nullable String q, @Named(\"n\") @DefaultValue(\"5\") int n) {",
+        "    return null;",
+        "  }",
+        "  @Override public Item update(Item item) { return item; }",
+        "  @ApiMethod(path = \"items\")",
+        "  public List<Item> list(@Named(\"ids\") List<String> ids) { return null; }",
+        "  public static class Item {",
+        "    private String id;",
+        "    public String getId() { return id; }",
+        "    public void setId(String id) { this.id = id; }",
+        "  }",
+        "}",
+        "@Api(title = \"Base\", description = \"base\")",
+        "abstract class Base {",
+        "  @ApiMethod(name = \"items.change\", httpMethod = \"PUT\")",
+        "  public Configured.Item update(Configured.Item item) { return item; }",
+        "}"};
+    assertThat(compile("test.Configured", source)).isTrue();
+    File reflectiveOutputDir = tempFolder.newFolder();
+    assertThat(compile(reflectiveOutputDir, Collections.<Processor>emptyList(), "test.Configured",
+        source)).isTrue();
+    Class<?> serviceClass = load("test.Configured");
+    Class<?> reflectiveServiceClass = load(reflectiveOutputDir, "test.Configured");
+
+    GeneratedApiConfig generated = GeneratedApiConfig.forServiceClass(serviceClass);
+
+    assertThat(generated).isNotNull();
+    assertThat(generated.getClass().getName()).isEqualTo("test.Configured_EndpointsConfig");
+    assertThat(generated.isValidated()).isTrue();
+    assertThat(GeneratedApiConfig.forServiceClass(reflectiveServiceClass)).isNull();
+    ApiConfigLoader configLoader = new ApiConfigLoader();
+    assertThat(configLoader.isValidatedAtCompileTime(serviceClass)).isTrue();
+    assertThat(configLoader.isValidatedAtCompileTime(reflectiveServiceClass)).isFalse();
+    String config = writeConfig(configLoader, serviceClass);
+    assertThat(config).contains("items.change");
+    assertThat(config).isEqualTo(writeConfig(configLoader, reflectiveServiceClass));
+  }
+
+  @Test
+  public void configInvolvingTransformers() throws Exception {
+    assertThat(compile("test.Transformed",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.ApiTransformer;",
+        "import com.google.api.server.spi.config.Named;",
+        "import com.google.api.server.spi.config.Transformer;",
+        "@Api(name = \"transformed\")",
+        "public class Transformed {",
+        "  public void get(@Named(\"id\") Id id) {}",
+        "  @ApiTransformer(IdTransformer.class)",
+        "  public static class Id {}",
+        "  public static class IdTransformer implements Transformer<Id, String> {",
+        "    public String transformTo(Id in) { return \"\"; }",
+        "    public Id transformFrom(String in) { return new Id(); }",
+        "  }",
+        "}")).isTrue();
+    Class<?> serviceClass = load("test.Transformed");
+
+    GeneratedApiConfig generated = GeneratedApiConfig.forServiceClass(serviceClass);
+
+    assertThat(generated.isValidated()).isFalse();
+    assertThat(new ApiConfigLoader().isValidatedAtCompileTime(serviceClass)).isFalse();
+  }
+
+  @Test
+  public void overriddenIgnoredMethod() throws Exception {
+    assertThat(compile("test.Overriding",
+        "package test;",
+        "import com.google.api.server.spi.config.AnnotationBoolean;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.ApiMethod;",
+        "import com.google.api.server.spi.config.Named;",
+        "@Api(name = \"overriding\")",
+        "public class Overriding extends Base {",
+        "  public void get() {}",
+        "  @Override public void get(@Named(\"id\") String id) {}",
+        "}",
+        "class Base {",
+        "  @ApiMethod(ignored = AnnotationBoolean.TRUE)",
+        "  public void get(@Named(\"id\") String id) {}",
+        "}")).isTrue();
+  }
+
+  @Test
+  public void invalidNames() throws Exception {
+    assertThat(compile("test.Names",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.ApiMethod;",
+        "import com.google.api.server.spi.config.ApiNamespace;",
+        "@Api(name = \"Names\", namespace = @ApiNamespace(ownerDomain = \"example.com\",",
+        "    ownerName = \"\"))",
+        "public class Names {",
+        "  @ApiMethod(name = \"bad name\")",
+        "  public void get() {}",
+        "}")).isFalse();
+    String errors = getErrors();
+    assertThat(errors).contains("Invalid api name 'Names'");
+    assertThat(errors).contains("Invalid namespace configuration");
+    assertThat(errors).contains("Invalid method name 'bad name'");
+  }
+
+  @Test
+  public void invalidParameterAndReturnTypes() throws Exception {
+    assertThat(compile("test.Types",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.Named;",
+        "import java.util.List;",
+        "@Api(name = \"types\")",
+        "public class Types {",
+        "  public void unnamed(String id) {}",
+        "  public void nested(@Named(\"ids\") List<List<String>> ids) {}",
+        "  public void resources(List<Item> items) {}",
+        "  public void namedResource(@Named(\"item\") Item item) {}",
+        "  public <T> void generic(@Named(\"value\") T value) {}",
+        "  public int count() { return 0; }",
+        "  public static class Item {}",
+        "}")).isFalse();
+    String errors = getErrors();
+    assertThat(errors).contains("Missing parameter name. Parameter type (java.lang.String)");
+    assertThat(errors)
+        .contains("Illegal nested collection type 'java.util.List<java.lang.String>'");
+    assertThat(errors).contains("Arrays or collections of entity types are not allowed");
+    assertThat(errors)
+        .contains("Parameter is entity type (test.Types.Item) and should not be named");
+    assertThat(errors).contains("Parameter type of method generic is generic");
+    assertThat(errors).contains("Invalid return type: int");
+  }
+
+  @Test
+  public void invalidAuthenticator() throws Exception {
+    assertThat(compile("test.Authenticated",
+        "package test;",
+        "import com.google.api.server.spi.auth.common.User;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.Authenticator;",
+        "import javax.servlet.http.HttpServletRequest;",
+        "@Api(name = \"authenticated\", authenticators = {Authenticated.Auth.class})",
+        "public class Authenticated {",
+        "  public void get() {}",
+        "  public static class Auth implements Authenticator {",
+        "    public Auth(String secret) {}",
+        "    public User authenticate(HttpServletRequest request) { return null; }",
+        "  }",
+        "}")).isFalse();
+    assertThat(getErrors()).contains("Invalid custom authenticator test.Authenticated.Auth. It "
+        + "must have a public nullary constructor.");
+  }
+
+  @Test
+  public void cyclicApiReference() throws Exception {
+    assertThat(compile("test.Cyclic",
+        "package test;",
+        "import com.google.api.server.spi.config.Api;",
+        "import com.google.api.server.spi.config.ApiReference;",
+        "@Api(name = \"cyclic\")",
+        "@ApiReference(Other.class)",
+        "public class Cyclic {}",
+        "@ApiReference(Cyclic.class)",
+        "class Other {}")).isFalse();
+    assertThat(getErrors()).contains("test.Cyclic: Cycle detected in API inheritance.");
+  }
+
+  private boolean compile(String className, String... lines) {
+    return compile(outputDir, Arrays.asList(new EndpointsProcessor()), className, lines);
+  }
+
+  private boolean compile(File outputDir, List<? extends Processor> processors, String className,
+      String... lines) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    JavaFileObject source = new StringSource(className, lines);
+    List<String> options = new ArrayList<>(Arrays.asList(
+        "-d", outputDir.getPath(),
+        "-classpath", System.getProperty("java.class.path")));
+    JavaCompiler.CompilationTask task = compiler.getTask(
+        null, null, diagnostics, options, null, Arrays.asList(source));
+    task.setProcessors(processors);
+    return task.call();
+  }
+
+  private String getErrors() {
+    StringBuilder builder = new StringBuilder();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        builder.append(diagnostic.getMessage(null)).append('\n');
+      }
+    }
+    return builder.toString();
+  }
+
+  private Class<?> load(String className) throws Exception {
+    return load(outputDir, className);
+  }
+
+  private Class<?> load(File outputDir, String className) throws Exception {
+    URLClassLoader classLoader = new URLClassLoader(
+        new URL[] {outputDir.toURI().toURL()}, getClass().getClassLoader());
+    return Class.forName(className, true, classLoader);
+  }
+
+  private static String writeConfig(ApiConfigLoader configLoader, Class<?> serviceClass)
+      throws Exception {
+    ApiConfig config = configLoader.loadConfiguration(ServiceContext.create(), serviceClass);
+    return Iterables.getOnlyElement(
+        new JsonConfigWriter().writeConfig(Collections.singletonList(config)).values());
+  }
+
+  private static Object invoke(GeneratedInvokers invokers, Class<?> serviceClass, Object service,
+      String methodName, Object... params) throws Exception {
+    MethodInvoker invoker = invokers.getInvoker(getMethod(serviceClass, methodName));
+    assertThat(invoker).isNotNull();
+    return invoker.invoke(service, params);
+  }
+
+  private static EndpointMethod getMethod(Class<?> serviceClass, String methodName) {
+    for (EndpointMethod method : new MethodHierarchyReader(serviceClass).getLeafEndpointMethods()) {
+      if (method.getMethod().getName().equals(methodName)) {
+        return method;
+      }
+    }
+    throw new AssertionError("no method " + methodName);
+  }
+
+  private static class StringSource extends SimpleJavaFileObject {
+    private final String content;
+
+    StringSource(String className, String... lines) {
+      super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension),
+          Kind.SOURCE);
+      StringBuilder builder = new StringBuilder();
+      for (String line : lines) {
+        builder.append(line).append('\n');
+      }
+      this.content = builder.toString();
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return content;
+    }
+  }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import com.google.api.server.spi.ObjectMapperUtil;
+import com.google.api.server.spi.TypeLoader;
+import com.google.api.server.spi.config.ApiConfigException;
+import com.google.appengine.tools.util.Option;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.io.Files;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command to generate the discovery and OpenAPI documents of many service groups in one run.
+ * Groups are generated concurrently, and groups sharing a class path share its class loader.
+ * A manifest records a hash of each group's class path contents and options; a group whose hash
+ * is unchanged and whose documents still exist is not generated again.
+ *
+ * <p>The batch file is a JSON object with a {@code groups} array. Each group has a unique
+ * {@code name}, a {@code type} of {@code discovery} or {@code openapi}, a {@code services} array,
+ * and an {@code output} directory (discovery) or file (OpenAPI). The optional {@code classpath},
+ * {@code war}, {@code hostname} and {@code basePath} fields default as in the
+ * {@code get-discovery-doc} and {@code get-openapi-doc} commands.
+ */
+public class BatchGetDocsAction extends EndpointsToolAction {
+  public static final String NAME = "batch-get-docs";
+
+  @VisibleForTesting
+  static final String TYPE_DISCOVERY = "discovery";
+  @VisibleForTesting
+  static final String TYPE_OPENAPI = "openapi";
+
+  private static final String OPTION_THREADS_SHORT = "t";
+  private static final String OPTION_THREADS_LONG = "threads";
+  private static final String OPTION_MANIFEST_SHORT = "m";
+  private static final String OPTION_MANIFEST_LONG = "manifest";
+  private static final String MANIFEST_SUFFIX = ".manifest";
+
+  /**
+   * The outcome of generating a group.
+   */
+  public enum Status {
+    GENERATED, UP_TO_DATE, FAILED
+  }
+
+  private Option threadsOption = EndpointsOption.makeVisibleNonFlagOption(
+      OPTION_THREADS_SHORT,
+      OPTION_THREADS_LONG,
+      "THREADS",
+      "Sets the number of groups generated concurrently. Default: the number of processors.");
+  private Option manifestOption = EndpointsOption.makeVisibleNonFlagOption(
+      OPTION_MANIFEST_SHORT,
+      OPTION_MANIFEST_LONG,
+      "MANIFEST_FILE",
+      "Sets the file recording what was generated, used to skip unchanged groups. Default: the "
+          + "batch file with a " + MANIFEST_SUFFIX + " suffix.");
+
+  private final ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper();
+
+  public BatchGetDocsAction() {
+    super(NAME);
+    setOptions(Arrays.asList(threadsOption, manifestOption));
+    setShortDescription("Generates discovery and OpenAPI documents for many service groups");
+    setExampleString("<Endpoints tool> " + NAME + " -t 4 endpoints-docs.json");
+  }
+
+  @Override
+  public String getUsageString() {
+    return NAME + " <options> <batch file>";
+  }
+
+  @Override
+  public boolean execute() throws ClassNotFoundException, IOException, ApiConfigException {
+    if (getArgs().size() != 1) {
+      return false;
+    }
+    String batchPath = getArgs().get(0);
+    String manifestPath = getOptionOrDefault(manifestOption, batchPath + MANIFEST_SUFFIX);
+    int threads = Runtime.getRuntime().availableProcessors();
+    if (threadsOption.getValue() != null) {
+      threads = Integer.parseInt(threadsOption.getValue());
+      if (threads <= 0) {
+        throw new IllegalArgumentException("--" + OPTION_THREADS_LONG + " must be positive");
+      }
+    }
+    Map<String, Status> results =
+        getDocs(new File(batchPath), new File(manifestPath), threads);
+    int failed = 0;
+    for (Map.Entry<String, Status> result : results.entrySet()) {
+      if (result.getValue() == Status.FAILED) {
+        failed++;
+      }
+    }
+    if (failed > 0) {
+      throw new IOException(failed + " of " + results.size() + " groups failed");
+    }
+    return true;
+  }
+
+  /**
+   * Generates the documents of each group of a batch file.
+   *
+   * @param batchFile The batch file listing the groups
+   * @param manifestFile The manifest of the previous run, updated with this run
+   * @param threads The number of groups generated concurrently
+   * @return the status of each group, in batch file order
+   */
+  public Map<String, Status> getDocs(File batchFile, File manifestFile, int threads)
+      throws IOException {
+    List<Group> groups = readBatch(batchFile);
+    Map<String, ManifestEntry> manifest = readManifest(manifestFile);
+    final ClassPathHasher hasher = new ClassPathHasher();
+    final Map<List<URL>, Loaders> loaders = new HashMap<>();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    Map<Group, Future<ManifestEntry>> futures = new LinkedHashMap<>();
+    try {
+      for (final Group group : groups) {
+        final ManifestEntry previous = manifest.get(group.name);
+        futures.put(group, executor.submit(new Callable<ManifestEntry>() {
+          @Override
+          public ManifestEntry call() throws Exception {
+            return getDocs(group, previous, hasher, loaders);
+          }
+        }));
+      }
+      ImmutableMap.Builder<String, Status> results = ImmutableMap.builder();
+      for (Map.Entry<Group, Future<ManifestEntry>> entry : futures.entrySet()) {
+        String name = entry.getKey().name;
+        try {
+          ManifestEntry result = entry.getValue().get();
+          manifest.put(name, result);
+          results.put(name, result.generated ? Status.GENERATED : Status.UP_TO_DATE);
+        } catch (ExecutionException e) {
+          manifest.remove(name);
+          results.put(name, Status.FAILED);
+          System.out.println(name + ": FAILED: " + e.getCause());
+        }
+      }
+      writeManifest(manifestFile, manifest);
+      return results.build();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private ManifestEntry getDocs(Group group, ManifestEntry previous,
+      ClassPathHasher classPathHasher, Map<List<URL>, Loaders> loaders) throws Exception {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    URL[] classPath = computeClassPath(group.war, group.classPath);
+    Hasher hasher = classPathHasher.newHasher(classPath);
+    for (String value : Arrays.asList(group.type, group.output, group.hostname, group.basePath,
+        String.valueOf(getClass().getPackage().getImplementationVersion()))) {
+      hasher.putString(value, StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+    for (String service : group.services) {
+      hasher.putString(service, StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+    String hash = hasher.hash().toString();
+    if (previous != null && previous.hash.equals(hash) && previous.outputsExist()) {
+      System.out.println(group.name + ": up to date");
+      return new ManifestEntry(hash, previous.outputs, false);
+    }
+    Loaders groupLoaders = getLoaders(loaders, classPath);
+    List<String> outputs;
+    if (TYPE_DISCOVERY.equals(group.type)) {
+      outputs = ImmutableList.copyOf(new GetDiscoveryDocAction().getDiscoveryDoc(
+          groupLoaders.classLoader, groupLoaders.typeLoader, group.output, group.services,
+          group.hostname, group.basePath, true).keySet());
+    } else {
+      new GetOpenApiDocAction().genOpenApiDoc(groupLoaders.classLoader, groupLoaders.typeLoader,
+          group.output, group.hostname, group.basePath, group.services, true);
+      outputs = ImmutableList.of(group.output);
+    }
+    System.out.println(group.name + ": generated in "
+        + stopwatch.elapsed(TimeUnit.MILLISECONDS) + " ms");
+    return new ManifestEntry(hash, outputs, true);
+  }
+
+  private Loaders getLoaders(Map<List<URL>, Loaders> loaders, URL[] classPath)
+      throws ClassNotFoundException {
+    List<URL> key = Arrays.asList(classPath);
+    synchronized (loaders) {
+      Loaders result = loaders.get(key);
+      if (result == null) {
+        result = new Loaders(new URLClassLoader(classPath, getClass().getClassLoader()));
+        loaders.put(key, result);
+      }
+      return result;
+    }
+  }
+
+  private List<Group> readBatch(File batchFile) throws IOException {
+    JsonNode groups = mapper.readTree(batchFile).path("groups");
+    if (!groups.isArray()) {
+      throw new IllegalArgumentException(batchFile + " has no 'groups' array");
+    }
+    List<Group> result = new ArrayList<>();
+    Set<String> names = new HashSet<>();
+    for (JsonNode node : groups) {
+      Group group = new Group(node);
+      if (!names.add(group.name)) {
+        throw new IllegalArgumentException("duplicate group name '" + group.name + "'");
+      }
+      result.add(group);
+    }
+    return result;
+  }
+
+  private Map<String, ManifestEntry> readManifest(File manifestFile) {
+    Map<String, ManifestEntry> manifest = new HashMap<>();
+    if (!manifestFile.isFile()) {
+      return manifest;
+    }
+    try {
+      Iterator<Map.Entry<String, JsonNode>> entries = mapper.readTree(manifestFile).fields();
+      while (entries.hasNext()) {
+        Map.Entry<String, JsonNode> entry = entries.next();
+        List<String> outputs = new ArrayList<>();
+        for (JsonNode output : entry.getValue().path("outputs")) {
+          outputs.add(output.asText());
+        }
+        manifest.put(entry.getKey(),
+            new ManifestEntry(entry.getValue().path("hash").asText(), outputs, false));
+      }
+    } catch (IOException e) {
+      // An unreadable manifest only means that every group is generated again.
+      System.out.println("ignoring unreadable manifest " + manifestFile + ": " + e.getMessage());
+      manifest.clear();
+    }
+    return manifest;
+  }
+
+  private void writeManifest(File manifestFile, Map<String, ManifestEntry> manifest)
+      throws IOException {
+    ObjectNode root = mapper.createObjectNode();
+    for (Map.Entry<String, ManifestEntry> entry : new TreeMap<>(manifest).entrySet()) {
+      ObjectNode node = root.putObject(entry.getKey());
+      node.put("hash", entry.getValue().hash);
+      ArrayNode outputs = node.putArray("outputs");
+      for (String output : entry.getValue().outputs) {
+        outputs.add(output);
+      }
+    }
+    File parent = manifestFile.getAbsoluteFile().getParentFile();
+    File temp = File.createTempFile(manifestFile.getName(), ".tmp", parent);
+    Files.write(mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(root), temp);
+    if (!temp.renameTo(manifestFile)) {
+      Files.move(temp, manifestFile);
+    }
+  }
+
+  private static class Loaders {
+    private final ClassLoader classLoader;
+    private final TypeLoader typeLoader;
+
+    Loaders(ClassLoader classLoader) throws ClassNotFoundException {
+      this.classLoader = classLoader;
+      this.typeLoader = new TypeLoader(classLoader);
+    }
+  }
+
+  private static class ManifestEntry {
+    private final String hash;
+    private final List<String> outputs;
+    private final boolean generated;
+
+    ManifestEntry(String hash, List<String> outputs, boolean generated) {
+      this.hash = hash;
+      this.outputs = outputs;
+      this.generated = generated;
+    }
+
+    boolean outputsExist() {
+      for (String output : outputs) {
+        if (!new File(output).isFile()) {
+          return false;
+        }
+      }
+      return !outputs.isEmpty();
+    }
+  }
+
+  private static class Group {
+    private final String name;
+    private final String type;
+    private final List<String> services;
+    private final String output;
+    private final String classPath;
+    private final String war;
+    private final String hostname;
+    private final String basePath;
+
+    Group(JsonNode node) {
+      name = requiredText(node, "name", "group");
+      type = requiredText(node, "type", name);
+      if (!TYPE_DISCOVERY.equals(type) && !TYPE_OPENAPI.equals(type)) {
+        throw new IllegalArgumentException(String.format(
+            "group '%s' has type '%s', expected '%s' or '%s'", name, type, TYPE_DISCOVERY,
+            TYPE_OPENAPI));
+      }
+      ImmutableList.Builder<String> services = ImmutableList.builder();
+      for (JsonNode service : node.path("services")) {
+        services.add(service.asText());
+      }
+      this.services = services.build();
+      if (this.services.isEmpty()) {
+        throw new IllegalArgumentException("group '" + name + "' has no services");
+      }
+      output = requiredText(node, "output", name);
+      classPath = node.path("classpath").asText(DEFAULT_CLASS_PATH);
+      war = node.path("war").asText(DEFAULT_WAR_PATH);
+      if (node.hasNonNull("hostname")) {
+        hostname = node.get("hostname").asText();
+      } else {
+        String defaultHostname = AppEngineUtil.getApplicationDefaultHostname(war);
+        hostname = defaultHostname != null ? defaultHostname : DEFAULT_HOSTNAME;
+      }
+      basePath = node.path("basePath").asText(DEFAULT_BASE_PATH);
+    }
+
+    private static String requiredText(JsonNode node, String field, String group) {
+      JsonNode value = node.get(field);
+      if (value == null || !value.isTextual() || value.asText().isEmpty()) {
+        throw new IllegalArgumentException(
+            String.format("'%s' is required in group '%s'", field, group));
+      }
+      return value.asText();
+    }
+  }
+}
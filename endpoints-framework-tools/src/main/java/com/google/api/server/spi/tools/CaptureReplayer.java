@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import com.google.api.server.spi.EndpointsServlet;
+import com.google.api.server.spi.capture.CaptureLogReader;
+import com.google.api.server.spi.capture.CaptureRecord;
+import com.google.api.server.spi.config.model.ApiMethodConfig;
+import com.google.api.server.spi.request.Attribute;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+
+/**
+ * Replays the requests of a capture log against an in-process servlet, and reports their latency
+ * per API method.
+ *
+ * <p>Requests are sent at the times they were recorded, with the intervals between them divided
+ * by {@code rate}. Their latency is measured from the time they were due, so that a servlet that
+ * falls behind is charged for the time requests waited. With a rate of 0, requests are sent as
+ * fast as the threads allow, and latency is measured from when each request starts.
+ */
+class CaptureReplayer {
+  private final HttpServlet servlet;
+  private final String servletPath;
+  private final double rate;
+  private final int threads;
+
+  CaptureReplayer(HttpServlet servlet, String servletPath, double rate, int threads) {
+    Preconditions.checkArgument(rate >= 0, "rate must not be negative");
+    Preconditions.checkArgument(threads > 0, "threads must be positive");
+    this.servlet = servlet;
+    this.servletPath = servletPath;
+    this.rate = rate;
+    this.threads = threads;
+  }
+
+  /**
+   * Creates an {@link EndpointsServlet} serving {@code serviceClassNames}, loaded with
+   * {@code classLoader}.
+   */
+  static HttpServlet createServlet(final ClassLoader classLoader, List<String> serviceClassNames)
+      throws ServletException {
+    final String services = Joiner.on(',').join(serviceClassNames);
+    EndpointsServlet servlet = new EndpointsServlet() {
+      @Override
+      protected ClassLoader getServiceClassLoader() {
+        return classLoader;
+      }
+    };
+    servlet.init(new ServletConfig() {
+      @Override
+      public String getServletName() {
+        return "replay";
+      }
+
+      @Override
+      public ServletContext getServletContext() {
+        return null;
+      }
+
+      @Override
+      public String getInitParameter(String name) {
+        return "services".equals(name) ? services : null;
+      }
+
+      @Override
+      public Enumeration<?> getInitParameterNames() {
+        return Iterators.asEnumeration(Collections.singleton("services").iterator());
+      }
+    });
+    return servlet;
+  }
+
+  ReplayReport replay(CaptureLogReader reader) throws IOException, InterruptedException {
+    final ReplayReport.Builder report = new ReplayReport.Builder();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    // Bounds the records read ahead of the servlet.
+    final Semaphore inFlight = new Semaphore(threads * 4);
+    try {
+      long firstTimestampMillis = -1;
+      long startNanos = System.nanoTime();
+      CaptureRecord record;
+      while ((record = reader.read()) != null) {
+        if (!record.getRequestUri().startsWith(servletPath)) {
+          report.addSkipped();
+          continue;
+        }
+        if (firstTimestampMillis < 0) {
+          firstTimestampMillis = record.getTimestampMillis();
+        }
+        long dueNanos = -1;
+        if (rate > 0) {
+          dueNanos = startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(
+              record.getTimestampMillis() - firstTimestampMillis) / rate);
+          long waitNanos = dueNanos - System.nanoTime();
+          if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+          }
+        }
+        inFlight.acquire();
+        final CaptureRecord toSend = record;
+        final long scheduledNanos = dueNanos;
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              send(toSend, scheduledNanos, report);
+            } finally {
+              inFlight.release();
+            }
+          }
+        });
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+    return report.build();
+  }
+
+  private void send(CaptureRecord record, long scheduledNanos, ReplayReport.Builder report) {
+    ReplayServletRequest request = new ReplayServletRequest(record, servletPath);
+    ReplayServletResponse response = new ReplayServletResponse();
+    long startNanos = scheduledNanos >= 0 ? scheduledNanos : System.nanoTime();
+    int status;
+    try {
+      servlet.service(request, response);
+      status = response.getStatus();
+    } catch (IOException | ServletException | RuntimeException e) {
+      status = 500;
+    }
+    long latencyNanos = System.nanoTime() - startNanos;
+    ApiMethodConfig methodConfig =
+        (ApiMethodConfig) request.getAttribute(Attribute.API_METHOD_CONFIG);
+    report.add(methodConfig != null ? methodConfig.getFullMethodName() : ReplayReport.UNMATCHED,
+        latencyNanos, status);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hashes the contents of class path entries: the bytes of jar files, and the relative paths and
+ * bytes of all files under directories. The hash of each entry is computed once, so that entries
+ * shared by several class paths are read once. This class is thread-safe.
+ */
+class ClassPathHasher {
+  private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+  private final ConcurrentMap<File, HashCode> entryHashes = new ConcurrentHashMap<>();
+
+  /**
+   * Returns a hasher for a class path, to which callers can add other inputs.
+   */
+  Hasher newHasher(URL[] classPath) throws IOException {
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    for (URL url : classPath) {
+      File entry = toFile(url);
+      hasher.putString(entry.getPath(), StandardCharsets.UTF_8);
+      hasher.putBytes(hashEntry(entry).asBytes());
+    }
+    return hasher;
+  }
+
+  private HashCode hashEntry(File entry) throws IOException {
+    HashCode hash = entryHashes.get(entry);
+    if (hash == null) {
+      Hasher hasher = HASH_FUNCTION.newHasher();
+      if (entry.isDirectory()) {
+        hashDirectory(hasher, entry, "");
+      } else if (entry.isFile()) {
+        hasher.putBytes(Files.asByteSource(entry).hash(HASH_FUNCTION).asBytes());
+      } else {
+        hasher.putString("<missing>", StandardCharsets.UTF_8);
+      }
+      hash = hasher.hash();
+      entryHashes.putIfAbsent(entry, hash);
+    }
+    return hash;
+  }
+
+  private static void hashDirectory(Hasher hasher, File directory, String relativePath)
+      throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      String path = relativePath + "/" + file.getName();
+      if (file.isDirectory()) {
+        hashDirectory(hasher, file, path);
+      } else {
+        hasher.putString(path, StandardCharsets.UTF_8);
+        hasher.putBytes(Files.asByteSource(file).hash(HASH_FUNCTION).asBytes());
+      }
+    }
+  }
+
+  private static File toFile(URL url) throws IOException {
+    try {
+      return new File(url.toURI()).getAbsoluteFile();
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      throw new IOException("unsupported class path entry " + url, e);
+    }
+  }
+}
@@ -56,6 +56,9 @@ public class EndpointsTool {
     actions.put(GetOpenApiDocAction.NAME, new GetOpenApiDocAction());
     actions.put(GetOpenApiDocAction.LEGACY_NAME,
         new GetOpenApiDocAction(GetOpenApiDocAction.LEGACY_NAME, false));
+    actions.put(GenNativeImageConfigAction.NAME, new GenNativeImageConfigAction());
+    actions.put(BatchGetDocsAction.NAME, new BatchGetDocsAction());
+    actions.put(ReplayCaptureAction.NAME, new ReplayCaptureAction());
     actions.put(HelpAction.NAME, new HelpAction());
   }
 
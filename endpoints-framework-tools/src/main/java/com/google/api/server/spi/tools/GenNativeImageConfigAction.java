@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.api.server.spi.ServiceContext;
+import com.google.api.server.spi.TypeLoader;
+import com.google.api.server.spi.config.ApiConfigException;
+import com.google.api.server.spi.config.ApiConfigLoader;
+import com.google.api.server.spi.config.annotationreader.ApiConfigAnnotationReader;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.SchemaRepository;
+import com.google.api.server.spi.discovery.ProxyingDiscoveryService;
+import com.google.appengine.tools.util.Option;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command to generate GraalVM native-image reflection and resource configuration files for the
+ * service classes of an API.
+ */
+public class GenNativeImageConfigAction extends EndpointsToolAction {
+  public static final String NAME = "gen-native-image-config";
+  public static final String REFLECTION_CONFIG_FILE = "reflect-config.json";
+  public static final String RESOURCE_CONFIG_FILE = "resource-config.json";
+
+  private Option classPathOption = makeClassPathOption();
+  private Option outputOption = makeOutputOption();
+  private Option warOption = makeWarOption();
+
+  public GenNativeImageConfigAction() {
+    super(NAME);
+    setOptions(Arrays.asList(classPathOption, outputOption, warOption));
+    setShortDescription("Generates GraalVM native-image reflection and resource configuration");
+    setExampleString("<Endpoints tool> " + NAME
+        + " -o src/main/resources/META-INF/native-image/com.example/api"
+        + " com.google.devrel.samples.ttt.spi.BoardV1 com.google.devrel.samples.ttt.spi.ScoresV1");
+  }
+
+  @Override
+  public String getUsageString() {
+    return NAME + " <options> <service class>...";
+  }
+
+  @Override
+  public boolean execute() throws ClassNotFoundException, IOException, ApiConfigException {
+    String warPath = getWarPath(warOption);
+    List<String> serviceClassNames = getServiceClassNames(warPath);
+    if (serviceClassNames.isEmpty()) {
+      return false;
+    }
+    genNativeImageConfig(computeClassPath(warPath, getClassPath(classPathOption)),
+        getOutputPath(outputOption), serviceClassNames, true);
+    return true;
+  }
+
+  /**
+   * Generates the native-image configuration for an array of service classes. The discovery
+   * service, which {@code EndpointsServlet} always serves, is included.
+   *
+   * @param classPath Class path to load service classes and their dependencies
+   * @param outputDirPath Directory to write the configuration files into
+   * @param serviceClassNames Service class names of the API
+   * @param outputToDisk Iff {@code true}, writes the configuration files to disk
+   * @return the contents of the configuration files, by path
+   */
+  public Map<String, String> genNativeImageConfig(URL[] classPath, String outputDirPath,
+      List<String> serviceClassNames, boolean outputToDisk)
+      throws ClassNotFoundException, IOException, ApiConfigException {
+    File outputDir = new File(outputDirPath);
+    if (!outputDir.isDirectory()) {
+      throw new IllegalArgumentException(outputDirPath + " is not a directory");
+    }
+
+    ClassLoader classLoader = new URLClassLoader(classPath, getClass().getClassLoader());
+    TypeLoader typeLoader = new TypeLoader(classLoader);
+    ApiConfigLoader configLoader = new ApiConfigLoader(new ApiConfig.Factory(), typeLoader,
+        new ApiConfigAnnotationReader(typeLoader.getAnnotationTypes()));
+    ServiceContext serviceContext = ServiceContext.create();
+    List<Class<?>> serviceClasses = Lists.newArrayList();
+    for (String serviceClassName : serviceClassNames) {
+      serviceClasses.add(classLoader.loadClass(serviceClassName));
+    }
+    serviceClasses.add(ProxyingDiscoveryService.class);
+    NativeImageConfigGenerator generator =
+        new NativeImageConfigGenerator(typeLoader, new SchemaRepository(typeLoader));
+    for (Class<?> serviceClass : serviceClasses) {
+      generator.addApi(configLoader.loadConfiguration(serviceContext, serviceClass));
+    }
+
+    File reflectionFile = new File(outputDir, REFLECTION_CONFIG_FILE);
+    File resourceFile = new File(outputDir, RESOURCE_CONFIG_FILE);
+    Map<String, String> files = ImmutableMap.of(
+        reflectionFile.getPath(), generator.getReflectionConfig(),
+        resourceFile.getPath(), generator.getResourceConfig());
+    if (outputToDisk) {
+      for (Map.Entry<String, String> file : files.entrySet()) {
+        Files.write(file.getValue(), new File(file.getKey()), UTF_8);
+        System.out.println("Native image configuration written to " + file.getKey());
+      }
+    }
+    return files;
+  }
+}
@@ -100,14 +100,24 @@ public class GetDiscoveryDocAction extends EndpointsToolAction {
   public Map<String, String> getDiscoveryDoc(URL[] classPath, String outputDirPath,
       List<String> serviceClassNames, String hostname, String basePath, boolean outputToDisk)
       throws ClassNotFoundException, IOException, ApiConfigException {
+    ClassLoader classLoader = new URLClassLoader(classPath, getClass().getClassLoader());
+    return getDiscoveryDoc(classLoader, new TypeLoader(classLoader), outputDirPath,
+        serviceClassNames, hostname, basePath, outputToDisk);
+  }
+
+  /**
+   * Generates discovery docs with service classes loaded by {@code classLoader}. The class loader
+   * and type loader may be shared by concurrent calls.
+   */
+  Map<String, String> getDiscoveryDoc(ClassLoader classLoader, TypeLoader typeLoader,
+      String outputDirPath, List<String> serviceClassNames, String hostname, String basePath,
+      boolean outputToDisk) throws ClassNotFoundException, IOException, ApiConfigException {
     File outputDir = new File(outputDirPath);
     if (!outputDir.isDirectory()) {
       throw new IllegalArgumentException(outputDirPath + " is not a directory");
     }
 
-    ClassLoader classLoader = new URLClassLoader(classPath, getClass().getClassLoader());
     ApiConfig.Factory configFactory = new ApiConfig.Factory();
-    TypeLoader typeLoader = new TypeLoader(classLoader);
     SchemaRepository schemaRepository = new SchemaRepository(typeLoader);
     ApiConfigValidator validator = new ApiConfigValidator(typeLoader, schemaRepository);
     DiscoveryGenerator discoveryGenerator = new DiscoveryGenerator(typeLoader);
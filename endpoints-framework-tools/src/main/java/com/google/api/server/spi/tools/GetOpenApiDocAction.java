@@ -100,17 +100,27 @@ public class GetOpenApiDocAction extends EndpointsToolAction {
       URL[] classPath, String outputFilePath, String hostname, String basePath,
       List<String> serviceClassNames, boolean outputToDisk)
       throws ClassNotFoundException, IOException, ApiConfigException {
+    ClassLoader classLoader = new URLClassLoader(classPath, getClass().getClassLoader());
+    return genOpenApiDoc(classLoader, new TypeLoader(classLoader), outputFilePath, hostname,
+        basePath, serviceClassNames, outputToDisk);
+  }
+
+  /**
+   * Generates an OpenAPI document with service classes loaded by {@code classLoader}. The class
+   * loader and type loader may be shared by concurrent calls.
+   */
+  String genOpenApiDoc(ClassLoader classLoader, TypeLoader typeLoader, String outputFilePath,
+      String hostname, String basePath, List<String> serviceClassNames, boolean outputToDisk)
+      throws ClassNotFoundException, IOException, ApiConfigException {
     File outputFile = new File(outputFilePath);
-    File outputDir = outputFile.getParentFile();
+    File outputDir = outputFile.getAbsoluteFile().getParentFile();
     if (!outputDir.isDirectory() || outputFile.isDirectory()) {
       throw new IllegalArgumentException(outputFilePath + " is not a file");
     }
 
-    ClassLoader classLoader = new URLClassLoader(classPath, getClass().getClassLoader());
     ApiConfig.Factory configFactory = new ApiConfig.Factory();
     Class<?>[] serviceClasses = loadClasses(classLoader, serviceClassNames);
     List<ApiConfig> apiConfigs = Lists.newArrayListWithCapacity(serviceClasses.length);
-    TypeLoader typeLoader = new TypeLoader(classLoader);
     ApiConfigLoader configLoader = new ApiConfigLoader(configFactory, typeLoader,
         new ApiConfigAnnotationReader(typeLoader.getAnnotationTypes()));
     ServiceContext serviceContext = ServiceContext.create();
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import com.google.api.server.spi.EndpointMethod;
+import com.google.api.server.spi.GeneratedInvokers;
+import com.google.api.server.spi.ObjectMapperUtil;
+import com.google.api.server.spi.TypeLoader;
+import com.google.api.server.spi.config.Transformer;
+import com.google.api.server.spi.config.annotationreader.ApiAnnotationIntrospector;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.ApiMethodConfig;
+import com.google.api.server.spi.config.model.ApiParameterConfig;
+import com.google.api.server.spi.config.model.ApiSerializationConfig.SerializerConfig;
+import com.google.api.server.spi.config.model.Schema;
+import com.google.api.server.spi.config.model.Schema.Field;
+import com.google.api.server.spi.config.model.SchemaRepository;
+import com.google.api.server.spi.config.model.Serializers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.reflect.TypeToken;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Computes the GraalVM native-image reflection and resource configuration needed to serve a set
+ * of APIs. The framework instantiates service classes, transformers and authenticators
+ * reflectively, invokes endpoint methods reflectively unless invokers were generated, and
+ * serializes resource types with Jackson bean introspection.
+ */
+public class NativeImageConfigGenerator {
+  /**
+   * Resources read by the framework at runtime.
+   */
+  private static final ImmutableList<String> FRAMEWORK_RESOURCES = ImmutableList.of(
+      "com/google/api/server/spi/handlers/proxy.html",
+      "com/google/api/server/spi/discovery/googleScopeDescriptions.properties");
+
+  /**
+   * The reflective access registered for a class.
+   */
+  public enum Access {
+    DECLARED_CONSTRUCTORS("allDeclaredConstructors"),
+    DECLARED_METHODS("allDeclaredMethods"),
+    DECLARED_FIELDS("allDeclaredFields"),
+    PUBLIC_METHODS("allPublicMethods");
+
+    private final String key;
+
+    Access(String key) {
+      this.key = key;
+    }
+  }
+
+  private static final EnumSet<Access> BEAN_ACCESS = EnumSet.of(Access.DECLARED_CONSTRUCTORS,
+      Access.DECLARED_METHODS, Access.DECLARED_FIELDS, Access.PUBLIC_METHODS);
+
+  private final TypeLoader typeLoader;
+  private final SchemaRepository schemaRepository;
+  private final Map<String, EnumSet<Access>> classes = new TreeMap<>();
+  private final Set<TypeToken<?>> visitedTypes = new HashSet<>();
+
+  public NativeImageConfigGenerator(TypeLoader typeLoader, SchemaRepository schemaRepository) {
+    this.typeLoader = typeLoader;
+    this.schemaRepository = schemaRepository;
+  }
+
+  /**
+   * Adds the classes used to serve the methods of an API.
+   */
+  public NativeImageConfigGenerator addApi(ApiConfig config) {
+    addClasses(config.getAuthenticators(), Access.DECLARED_CONSTRUCTORS);
+    addClasses(config.getPeerAuthenticators(), Access.DECLARED_CONSTRUCTORS);
+    for (SerializerConfig serializerConfig
+        : config.getSerializationConfig().getSerializerConfigs()) {
+      addTransformer(serializerConfig.getSerializer(), config);
+    }
+    for (Map.Entry<EndpointMethod, ApiMethodConfig> entry
+        : config.getApiClassConfig().getMethods().entrySet()) {
+      if (!entry.getValue().isIgnored()) {
+        addMethod(entry.getKey(), entry.getValue(), config);
+      }
+    }
+    return this;
+  }
+
+  private void addMethod(EndpointMethod method, ApiMethodConfig methodConfig, ApiConfig config) {
+    Class<?> serviceClass = method.getEndpointClass();
+    addClass(serviceClass, EnumSet.of(Access.DECLARED_CONSTRUCTORS, Access.PUBLIC_METHODS));
+    addGeneratedInvokers(serviceClass);
+    addClasses(methodConfig.getAuthenticators(), Access.DECLARED_CONSTRUCTORS);
+    addClasses(methodConfig.getPeerAuthenticators(), Access.DECLARED_CONSTRUCTORS);
+    for (ApiParameterConfig parameterConfig : methodConfig.getParameterConfigs()) {
+      switch (parameterConfig.getClassification()) {
+        case RESOURCE:
+          addResourceType(parameterConfig.getType(), config);
+          addResourceType(parameterConfig.getSchemaBaseType(), config);
+          break;
+        case API_PARAMETER:
+          addParameterType(parameterConfig.getType(), config);
+          for (Class<? extends Transformer<?, ?>> serializer : parameterConfig.getSerializers()) {
+            addTransformer(serializer, config);
+          }
+          if (parameterConfig.isRepeated()) {
+            addParameterType(parameterConfig.getRepeatedItemType(), config);
+            for (Class<? extends Transformer<?, ?>> serializer
+                : parameterConfig.getRepeatedItemSerializers()) {
+              addTransformer(serializer, config);
+            }
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    if (methodConfig.hasResourceInResponse()) {
+      TypeToken<?> returnType = methodConfig.getReturnType();
+      addResourceType(returnType, config);
+      addResourceType(ApiAnnotationIntrospector.getSchemaType(returnType, config), config);
+    }
+  }
+
+  private void addGeneratedInvokers(Class<?> serviceClass) {
+    try {
+      addClass(Class.forName(serviceClass.getName() + GeneratedInvokers.CLASS_NAME_SUFFIX, false,
+          serviceClass.getClassLoader()), EnumSet.of(Access.DECLARED_CONSTRUCTORS));
+    } catch (ClassNotFoundException e) {
+      // The service has no generated invokers, so its methods are invoked reflectively.
+    }
+  }
+
+  private void addParameterType(TypeToken<?> type, ApiConfig config) {
+    Class<?> rawType = type.getRawType();
+    if (rawType.isEnum()) {
+      // Enum.valueOf looks up the values() method reflectively.
+      addClass(rawType, EnumSet.of(Access.DECLARED_FIELDS, Access.PUBLIC_METHODS));
+    }
+    for (Class<? extends Transformer<?, ?>> serializer
+        : Serializers.getSerializerClasses(type, config.getSerializationConfig())) {
+      addTransformer(serializer, config);
+    }
+  }
+
+  private void addTransformer(Class<? extends Transformer<?, ?>> transformer, ApiConfig config) {
+    addClass(transformer, EnumSet.of(Access.DECLARED_CONSTRUCTORS, Access.PUBLIC_METHODS));
+    TypeToken<?> targetType = Serializers.getTargetType(transformer);
+    if (targetType != null) {
+      addResourceType(targetType, config);
+    }
+  }
+
+  /**
+   * Adds a type serialized by Jackson, its type arguments, its transformers, and the types its
+   * schema refers to.
+   */
+  private void addResourceType(TypeToken<?> type, ApiConfig config) {
+    if (type == null || !visitedTypes.add(type)) {
+      return;
+    }
+    if (type.isArray()) {
+      addResourceType(type.getComponentType(), config);
+      return;
+    }
+    if (type.getType() instanceof ParameterizedType) {
+      for (Type argument : ((ParameterizedType) type.getType()).getActualTypeArguments()) {
+        addResourceType(type.resolveType(argument), config);
+      }
+    }
+    if (typeLoader.isInjectedType(type) || typeLoader.isSchemaType(type)) {
+      return;
+    }
+    for (Class<? extends Transformer<?, ?>> serializer
+        : Serializers.getSerializerClasses(type, config.getSerializationConfig())) {
+      addTransformer(serializer, config);
+    }
+    for (Class<?> c = type.getRawType(); c != null && c != Object.class; c = c.getSuperclass()) {
+      addClass(c, BEAN_ACCESS);
+    }
+    if (typeLoader.isSchemaType(ApiAnnotationIntrospector.getSchemaType(type, config))) {
+      // Transformed to a scalar, so there is no schema to walk.
+      return;
+    }
+    Schema schema = schemaRepository.getOrAdd(type, config);
+    for (Field field : schema.fields().values()) {
+      addFieldTypes(field, config);
+    }
+    if (schema.mapValueSchema() != null) {
+      addFieldTypes(schema.mapValueSchema(), config);
+    }
+  }
+
+  private void addFieldTypes(Field field, ApiConfig config) {
+    if (field.schemaReference() != null) {
+      addResourceType(field.schemaReference().type(), config);
+    }
+    if (field.arrayItemSchema() != null) {
+      addFieldTypes(field.arrayItemSchema(), config);
+    }
+  }
+
+  private void addClasses(Iterable<? extends Class<?>> classes, Access access) {
+    if (classes != null) {
+      for (Class<?> c : classes) {
+        addClass(c, EnumSet.of(access));
+      }
+    }
+  }
+
+  private void addClass(Class<?> c, EnumSet<Access> access) {
+    if (c.isPrimitive() || c.isArray() || isPlatformClass(c)) {
+      return;
+    }
+    EnumSet<Access> existing = classes.get(c.getName());
+    if (existing == null) {
+      classes.put(c.getName(), EnumSet.copyOf(access));
+    } else {
+      existing.addAll(access);
+    }
+  }
+
+  private static boolean isPlatformClass(Class<?> c) {
+    String name = c.getName();
+    return name.startsWith("java.") || name.startsWith("javax.");
+  }
+
+  /**
+   * Returns the classes registered for reflection, by name, with their access.
+   */
+  public ImmutableSortedMap<String, Set<Access>> getClasses() {
+    ImmutableSortedMap.Builder<String, Set<Access>> builder = ImmutableSortedMap.naturalOrder();
+    for (Map.Entry<String, EnumSet<Access>> entry : classes.entrySet()) {
+      builder.put(entry.getKey(), EnumSet.copyOf(entry.getValue()));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the contents of {@code reflect-config.json}.
+   */
+  public String getReflectionConfig() {
+    ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper();
+    ArrayNode root = mapper.createArrayNode();
+    for (Map.Entry<String, EnumSet<Access>> entry : classes.entrySet()) {
+      ObjectNode node = root.addObject().put("name", entry.getKey());
+      for (Access access : entry.getValue()) {
+        node.put(access.key, true);
+      }
+    }
+    return write(mapper, root);
+  }
+
+  /**
+   * Returns the contents of {@code resource-config.json}.
+   */
+  public String getResourceConfig() {
+    ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper();
+    ObjectNode root = mapper.createObjectNode();
+    ArrayNode includes = root.putObject("resources").putArray("includes");
+    for (String resource : FRAMEWORK_RESOURCES) {
+      includes.addObject().put("pattern", "\\Q" + resource + "\\E");
+    }
+    return write(mapper, root);
+  }
+
+  private static String write(ObjectMapper mapper, Object root) {
+    try {
+      return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
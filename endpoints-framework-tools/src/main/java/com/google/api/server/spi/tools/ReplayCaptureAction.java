@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import com.google.api.server.spi.capture.CaptureLogReader;
+import com.google.api.server.spi.config.ApiConfigException;
+import com.google.appengine.tools.util.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+
+/**
+ * Command to replay a capture log, recorded by
+ * {@link com.google.api.server.spi.capture.RequestCaptureFilter}, against a locally started
+ * servlet and report the latency of each API method.
+ */
+public class ReplayCaptureAction extends EndpointsToolAction {
+  public static final String NAME = "replay-capture";
+
+  private static final String OPTION_INPUT_SHORT = "i";
+  private static final String OPTION_INPUT_LONG = "input";
+  private static final String OPTION_RATE_SHORT = "r";
+  private static final String OPTION_RATE_LONG = "rate";
+  private static final String OPTION_THREADS_SHORT = "t";
+  private static final String OPTION_THREADS_LONG = "threads";
+  private static final String DEFAULT_RATE = "1";
+  private static final String DEFAULT_THREADS = "8";
+
+  private Option classPathOption = makeClassPathOption();
+  private Option warOption = makeWarOption();
+  private Option basePathOption = makeBasePathOption();
+  private Option inputOption = EndpointsOption.makeVisibleNonFlagOption(
+      OPTION_INPUT_SHORT,
+      OPTION_INPUT_LONG,
+      "CAPTURE_PATH",
+      "Sets the capture directory, or a single segment file, to replay. Required.");
+  private Option rateOption = EndpointsOption.makeVisibleNonFlagOption(
+      OPTION_RATE_SHORT,
+      OPTION_RATE_LONG,
+      "RATE",
+      "Sets how much faster than recorded requests are replayed, e.g. 2 for twice as fast, or 0 "
+          + "to replay them as fast as possible. Default: " + DEFAULT_RATE + ".");
+  private Option threadsOption = EndpointsOption.makeVisibleNonFlagOption(
+      OPTION_THREADS_SHORT,
+      OPTION_THREADS_LONG,
+      "THREADS",
+      "Sets the number of requests served concurrently. Default: " + DEFAULT_THREADS + ".");
+
+  public ReplayCaptureAction() {
+    super(NAME);
+    setOptions(Arrays.asList(classPathOption, warOption, basePathOption, inputOption, rateOption,
+        threadsOption));
+    setShortDescription("Replays captured requests and reports their latency per API method");
+    setExampleString("<Endpoints tool> " + NAME + " -i /tmp/endpoints-capture -r 2"
+        + " com.google.devrel.samples.ttt.spi.BoardV1 com.google.devrel.samples.ttt.spi.ScoresV1");
+  }
+
+  @Override
+  public String getUsageString() {
+    return NAME + " <options> <service class>...";
+  }
+
+  @Override
+  public boolean execute() throws ClassNotFoundException, IOException, ApiConfigException {
+    String input = inputOption.getValue();
+    String warPath = getWarPath(warOption);
+    List<String> serviceClassNames = getServiceClassNames(warPath);
+    if (input == null || serviceClassNames.isEmpty()) {
+      return false;
+    }
+    ReplayReport report = replayCapture(
+        computeClassPath(warPath, getClassPath(classPathOption)), input,
+        getBasePath(basePathOption), serviceClassNames,
+        parseNumber(getOptionOrDefault(rateOption, DEFAULT_RATE), OPTION_RATE_LONG),
+        (int) parseNumber(getOptionOrDefault(threadsOption, DEFAULT_THREADS),
+            OPTION_THREADS_LONG));
+    report.print(System.out);
+    return true;
+  }
+
+  /**
+   * Replays a capture log against an {@code EndpointsServlet} serving the given service classes.
+   *
+   * @param classPath Class path to load service classes and their dependencies
+   * @param inputPath The capture directory or segment file to replay
+   * @param basePath The servlet path of the recorded requests, e.g. /_ah/api
+   * @param serviceClassNames Service class names of the API
+   * @param rate How much faster than recorded requests are replayed, or 0 for as fast as possible
+   * @param threads The number of requests served concurrently
+   * @return the latency of the replayed requests per API method
+   */
+  public ReplayReport replayCapture(URL[] classPath, String inputPath, String basePath,
+      List<String> serviceClassNames, double rate, int threads) throws IOException {
+    ClassLoader classLoader = new URLClassLoader(classPath, getClass().getClassLoader());
+    HttpServlet servlet;
+    try {
+      servlet = CaptureReplayer.createServlet(classLoader, serviceClassNames);
+    } catch (ServletException e) {
+      throw new IOException("could not start the servlet", e);
+    }
+    try (CaptureLogReader reader = CaptureLogReader.open(new File(inputPath))) {
+      return new CaptureReplayer(servlet, basePath, rate, threads).replay(reader);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("replay interrupted", e);
+    } finally {
+      servlet.destroy();
+    }
+  }
+
+  private static double parseNumber(String value, String optionName) {
+    try {
+      double number = Double.parseDouble(value);
+      if (number >= 0) {
+        return number;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the exception below.
+    }
+    throw new IllegalArgumentException(
+        String.format("Expected a non-negative number for --%s but got '%s'", optionName, value));
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency distribution, per API method, of the requests replayed by the
+ * {@code replay-capture} command.
+ */
+public class ReplayReport {
+  /**
+   * The method name under which requests that matched no API method are reported.
+   */
+  public static final String UNMATCHED = "(unmatched)";
+
+  private final Map<String, MethodStats> methods;
+  private final int skipped;
+
+  private ReplayReport(Map<String, MethodStats> methods, int skipped) {
+    this.methods = ImmutableSortedMap.copyOf(methods);
+    this.skipped = skipped;
+  }
+
+  /**
+   * Returns the statistics of each API method, by full method name.
+   */
+  public Map<String, MethodStats> getMethods() {
+    return methods;
+  }
+
+  /**
+   * Returns the number of recorded requests that were not replayed because they were outside of
+   * the servlet path.
+   */
+  public int getSkipped() {
+    return skipped;
+  }
+
+  /**
+   * Prints a table of the statistics of each method.
+   */
+  public void print(PrintStream out) {
+    out.println(String.format(Locale.ENGLISH, "%-40s %8s %8s %9s %9s %9s %9s",
+        "method", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+    for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+      MethodStats stats = entry.getValue();
+      out.println(String.format(Locale.ENGLISH, "%-40s %8d %8d %9.2f %9.2f %9.2f %9.2f",
+          entry.getKey(), stats.getCount(), stats.getErrorCount(), millis(stats.getPercentile(50)),
+          millis(stats.getPercentile(90)), millis(stats.getPercentile(99)),
+          millis(stats.getPercentile(100))));
+    }
+    if (skipped > 0) {
+      out.println(skipped + " requests outside of the servlet path were skipped");
+    }
+  }
+
+  private static double millis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * The latencies of the requests replayed to one method.
+   */
+  public static class MethodStats {
+    private final long[] latencyNanos;
+    private final int errorCount;
+
+    private MethodStats(long[] latencyNanos, int errorCount) {
+      this.latencyNanos = latencyNanos;
+      this.errorCount = errorCount;
+      Arrays.sort(latencyNanos);
+    }
+
+    public int getCount() {
+      return latencyNanos.length;
+    }
+
+    /**
+     * Returns the number of requests answered with a status of 400 or more.
+     */
+    public int getErrorCount() {
+      return errorCount;
+    }
+
+    /**
+     * Returns the latency, in nanoseconds, below or at which {@code percent} of the requests
+     * were answered.
+     */
+    public long getPercentile(double percent) {
+      if (latencyNanos.length == 0) {
+        return 0;
+      }
+      int rank = (int) Math.ceil(percent / 100 * latencyNanos.length);
+      return latencyNanos[Math.max(0, Math.min(latencyNanos.length, rank) - 1)];
+    }
+  }
+
+  /**
+   * Collects the results of replayed requests. This class is thread-safe.
+   */
+  static class Builder {
+    private final Map<String, long[]> latencies = new TreeMap<>();
+    private final Map<String, Integer> counts = new TreeMap<>();
+    private final Map<String, Integer> errors = new TreeMap<>();
+    private int skipped;
+
+    synchronized void add(String method, long latencyNanos, int status) {
+      long[] methodLatencies = latencies.get(method);
+      int count = counts.containsKey(method) ? counts.get(method) : 0;
+      if (methodLatencies == null) {
+        methodLatencies = new long[16];
+      } else if (count == methodLatencies.length) {
+        methodLatencies = Arrays.copyOf(methodLatencies, count * 2);
+      }
+      methodLatencies[count] = latencyNanos;
+      latencies.put(method, methodLatencies);
+      counts.put(method, count + 1);
+      if (status >= 400) {
+        errors.put(method, (errors.containsKey(method) ? errors.get(method) : 0) + 1);
+      }
+    }
+
+    synchronized void addSkipped() {
+      skipped++;
+    }
+
+    synchronized ReplayReport build() {
+      Map<String, MethodStats> methods = new TreeMap<>();
+      for (Map.Entry<String, long[]> entry : latencies.entrySet()) {
+        String method = entry.getKey();
+        methods.put(method, new MethodStats(Arrays.copyOf(entry.getValue(), counts.get(method)),
+            errors.containsKey(method) ? errors.get(method) : 0));
+      }
+      return new ReplayReport(methods, skipped);
+    }
+  }
+}
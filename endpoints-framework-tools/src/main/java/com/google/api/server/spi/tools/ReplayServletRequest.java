@@ -0,0 +1,396 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import com.google.api.server.spi.capture.CaptureRecord;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Iterators;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * An in-memory {@link HttpServletRequest} replaying a {@link CaptureRecord}. Redacted headers are
+ * left out.
+ */
+class ReplayServletRequest implements HttpServletRequest {
+  private static final Splitter QUERY_SPLITTER = Splitter.on('&').omitEmptyStrings();
+  private static final String SERVER_NAME = "localhost";
+  private static final int SERVER_PORT = 8080;
+
+  private final CaptureRecord record;
+  private final String servletPath;
+  private final ImmutableListMultimap<String, String> headers;
+  private final Map<String, String[]> parameters;
+  private final Map<String, Object> attributes = new HashMap<>();
+  private final ServletInputStream inputStream;
+  private String characterEncoding;
+
+  ReplayServletRequest(CaptureRecord record, String servletPath) {
+    this.record = record;
+    this.servletPath = servletPath;
+    ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+    for (Map.Entry<String, String> header : record.getHeaders().entries()) {
+      if (!CaptureRecord.REDACTED.equals(header.getValue())) {
+        headers.put(header.getKey().toLowerCase(Locale.ENGLISH), header.getValue());
+      }
+    }
+    this.headers = headers.build();
+    this.parameters = parseQuery(record.getQueryString());
+    final ByteArrayInputStream body = new ByteArrayInputStream(record.getBody());
+    this.inputStream = new ServletInputStream() {
+      @Override
+      public int read() {
+        return body.read();
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        return body.read(b, off, len);
+      }
+    };
+  }
+
+  private static Map<String, String[]> parseQuery(String queryString) {
+    Map<String, List<String>> values = new LinkedHashMap<>();
+    if (queryString != null) {
+      for (String pair : QUERY_SPLITTER.split(queryString)) {
+        int equals = pair.indexOf('=');
+        String name = decode(equals < 0 ? pair : pair.substring(0, equals));
+        String value = equals < 0 ? "" : decode(pair.substring(equals + 1));
+        if (CaptureRecord.REDACTED.equals(value)) {
+          continue;
+        }
+        if (!values.containsKey(name)) {
+          values.put(name, new ArrayList<String>());
+        }
+        values.get(name).add(value);
+      }
+    }
+    Map<String, String[]> parameters = new LinkedHashMap<>();
+    for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+      parameters.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+    }
+    return Collections.unmodifiableMap(parameters);
+  }
+
+  private static String decode(String s) {
+    try {
+      return URLDecoder.decode(s, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    } catch (IllegalArgumentException e) {
+      return s;
+    }
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    return attributes.get(name);
+  }
+
+  @Override
+  public Enumeration<?> getAttributeNames() {
+    return Collections.enumeration(attributes.keySet());
+  }
+
+  @Override
+  public String getCharacterEncoding() {
+    return characterEncoding;
+  }
+
+  @Override
+  public void setCharacterEncoding(String env) {
+    this.characterEncoding = env;
+  }
+
+  @Override
+  public int getContentLength() {
+    return record.getBody().length;
+  }
+
+  @Override
+  public String getContentType() {
+    return getHeader("Content-Type");
+  }
+
+  @Override
+  public ServletInputStream getInputStream() {
+    return inputStream;
+  }
+
+  @Override
+  public String getParameter(String name) {
+    String[] values = parameters.get(name);
+    return values != null ? values[0] : null;
+  }
+
+  @Override
+  public Enumeration<?> getParameterNames() {
+    return Collections.enumeration(parameters.keySet());
+  }
+
+  @Override
+  public String[] getParameterValues(String name) {
+    return parameters.get(name);
+  }
+
+  @Override
+  public Map<?, ?> getParameterMap() {
+    return parameters;
+  }
+
+  @Override
+  public String getProtocol() {
+    return "HTTP/1.1";
+  }
+
+  @Override
+  public String getScheme() {
+    return "http";
+  }
+
+  @Override
+  public String getServerName() {
+    return SERVER_NAME;
+  }
+
+  @Override
+  public int getServerPort() {
+    return SERVER_PORT;
+  }
+
+  @Override
+  public BufferedReader getReader() throws IOException {
+    return new BufferedReader(new InputStreamReader(
+        inputStream, characterEncoding != null ? characterEncoding : "UTF-8"));
+  }
+
+  @Override
+  public String getRemoteAddr() {
+    return "127.0.0.1";
+  }
+
+  @Override
+  public String getRemoteHost() {
+    return SERVER_NAME;
+  }
+
+  @Override
+  public void setAttribute(String name, Object o) {
+    attributes.put(name, o);
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    attributes.remove(name);
+  }
+
+  @Override
+  public Locale getLocale() {
+    return Locale.getDefault();
+  }
+
+  @Override
+  public Enumeration<?> getLocales() {
+    return Collections.enumeration(Collections.singletonList(Locale.getDefault()));
+  }
+
+  @Override
+  public boolean isSecure() {
+    return false;
+  }
+
+  @Override
+  public RequestDispatcher getRequestDispatcher(String path) {
+    return null;
+  }
+
+  @Override
+  @Deprecated
+  public String getRealPath(String path) {
+    return null;
+  }
+
+  @Override
+  public int getRemotePort() {
+    return 0;
+  }
+
+  @Override
+  public String getLocalName() {
+    return SERVER_NAME;
+  }
+
+  @Override
+  public String getLocalAddr() {
+    return "127.0.0.1";
+  }
+
+  @Override
+  public int getLocalPort() {
+    return SERVER_PORT;
+  }
+
+  @Override
+  public String getAuthType() {
+    return null;
+  }
+
+  @Override
+  public Cookie[] getCookies() {
+    return null;
+  }
+
+  @Override
+  public long getDateHeader(String name) {
+    return -1;
+  }
+
+  @Override
+  public String getHeader(String name) {
+    List<String> values = headers.get(name.toLowerCase(Locale.ENGLISH));
+    return values.isEmpty() ? null : values.get(0);
+  }
+
+  @Override
+  public Enumeration<?> getHeaders(String name) {
+    return Collections.enumeration(headers.get(name.toLowerCase(Locale.ENGLISH)));
+  }
+
+  @Override
+  public Enumeration<?> getHeaderNames() {
+    return Iterators.asEnumeration(headers.keySet().iterator());
+  }
+
+  @Override
+  public int getIntHeader(String name) {
+    String value = getHeader(name);
+    return value != null ? Integer.parseInt(value) : -1;
+  }
+
+  @Override
+  public String getMethod() {
+    return record.getMethod();
+  }
+
+  @Override
+  public String getPathInfo() {
+    return record.getRequestUri().substring(servletPath.length());
+  }
+
+  @Override
+  public String getPathTranslated() {
+    return null;
+  }
+
+  @Override
+  public String getContextPath() {
+    return "";
+  }
+
+  @Override
+  public String getQueryString() {
+    return record.getQueryString();
+  }
+
+  @Override
+  public String getRemoteUser() {
+    return null;
+  }
+
+  @Override
+  public boolean isUserInRole(String role) {
+    return false;
+  }
+
+  @Override
+  public Principal getUserPrincipal() {
+    return null;
+  }
+
+  @Override
+  public String getRequestedSessionId() {
+    return null;
+  }
+
+  @Override
+  public String getRequestURI() {
+    return record.getRequestUri();
+  }
+
+  @Override
+  public StringBuffer getRequestURL() {
+    return new StringBuffer("http://").append(SERVER_NAME).append(':').append(SERVER_PORT)
+        .append(record.getRequestUri());
+  }
+
+  @Override
+  public String getServletPath() {
+    return servletPath;
+  }
+
+  @Override
+  public HttpSession getSession(boolean create) {
+    return null;
+  }
+
+  @Override
+  public HttpSession getSession() {
+    return null;
+  }
+
+  @Override
+  public boolean isRequestedSessionIdValid() {
+    return false;
+  }
+
+  @Override
+  public boolean isRequestedSessionIdFromCookie() {
+    return false;
+  }
+
+  @Override
+  public boolean isRequestedSessionIdFromURL() {
+    return false;
+  }
+
+  @Override
+  @Deprecated
+  public boolean isRequestedSessionIdFromUrl() {
+    return false;
+  }
+}
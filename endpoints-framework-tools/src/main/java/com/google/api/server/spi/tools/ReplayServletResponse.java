@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * An {@link HttpServletResponse} that discards its body, keeping only the status and body size.
+ */
+class ReplayServletResponse implements HttpServletResponse {
+  private final CountingOutputStream body =
+      new CountingOutputStream(ByteStreams.nullOutputStream());
+  private final Set<String> headerNames = new HashSet<>();
+  private final ServletOutputStream outputStream = new ServletOutputStream() {
+    @Override
+    public void write(int b) throws IOException {
+      body.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      body.write(b, off, len);
+    }
+  };
+  private PrintWriter writer;
+  private int status = SC_OK;
+  private String contentType;
+  private String characterEncoding = "UTF-8";
+  private boolean committed;
+
+  int getStatus() {
+    return status;
+  }
+
+  long getBodyBytes() {
+    if (writer != null) {
+      writer.flush();
+    }
+    return body.getCount();
+  }
+
+  @Override
+  public String getCharacterEncoding() {
+    return characterEncoding;
+  }
+
+  @Override
+  public String getContentType() {
+    return contentType;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  @Override
+  public PrintWriter getWriter() {
+    if (writer == null) {
+      writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+    return writer;
+  }
+
+  @Override
+  public void setCharacterEncoding(String charset) {
+    this.characterEncoding = charset;
+  }
+
+  @Override
+  public void setContentLength(int len) {
+    headerNames.add("content-length");
+  }
+
+  @Override
+  public void setContentType(String type) {
+    this.contentType = type;
+  }
+
+  @Override
+  public void setBufferSize(int size) { }
+
+  @Override
+  public int getBufferSize() {
+    return 0;
+  }
+
+  @Override
+  public void flushBuffer() {
+    committed = true;
+  }
+
+  @Override
+  public void resetBuffer() { }
+
+  @Override
+  public boolean isCommitted() {
+    return committed;
+  }
+
+  @Override
+  public void reset() {
+    status = SC_OK;
+    headerNames.clear();
+  }
+
+  @Override
+  public void setLocale(Locale loc) { }
+
+  @Override
+  public Locale getLocale() {
+    return Locale.getDefault();
+  }
+
+  @Override
+  public void addCookie(Cookie cookie) { }
+
+  @Override
+  public boolean containsHeader(String name) {
+    return headerNames.contains(name.toLowerCase(Locale.ENGLISH));
+  }
+
+  @Override
+  public String encodeURL(String url) {
+    return url;
+  }
+
+  @Override
+  public String encodeRedirectURL(String url) {
+    return url;
+  }
+
+  @Override
+  @Deprecated
+  public String encodeUrl(String url) {
+    return url;
+  }
+
+  @Override
+  @Deprecated
+  public String encodeRedirectUrl(String url) {
+    return url;
+  }
+
+  @Override
+  public void sendError(int sc, String msg) {
+    sendError(sc);
+  }
+
+  @Override
+  public void sendError(int sc) {
+    status = sc;
+    committed = true;
+  }
+
+  @Override
+  public void sendRedirect(String location) {
+    status = SC_FOUND;
+    committed = true;
+  }
+
+  @Override
+  public void setDateHeader(String name, long date) {
+    addHeader(name, null);
+  }
+
+  @Override
+  public void addDateHeader(String name, long date) {
+    addHeader(name, null);
+  }
+
+  @Override
+  public void setHeader(String name, String value) {
+    addHeader(name, value);
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    headerNames.add(name.toLowerCase(Locale.ENGLISH));
+  }
+
+  @Override
+  public void setIntHeader(String name, int value) {
+    addHeader(name, null);
+  }
+
+  @Override
+  public void addIntHeader(String name, int value) {
+    addHeader(name, null);
+  }
+
+  @Override
+  public void setStatus(int sc) {
+    status = sc;
+  }
+
+  @Override
+  @Deprecated
+  public void setStatus(int sc, String sm) {
+    status = sc;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.google.api.server.spi.testing.FooEndpoint;
+import com.google.api.server.spi.tools.BatchGetDocsAction.Status;
+import com.google.common.base.Joiner;
+import com.google.common.io.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Tests for {@link BatchGetDocsAction}.
+ */
+@RunWith(JUnit4.class)
+public class BatchGetDocsActionTest extends EndpointsToolTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private File war;
+  private File classes;
+  private File discoveryDir;
+  private File openApiFile;
+  private File batchFile;
+  private File manifestFile;
+
+  @Override
+  protected void addTestAction(Map<String, EndpointsToolAction> actions) {
+    actions.put(BatchGetDocsAction.NAME, new BatchGetDocsAction());
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    war = tmpFolder.newFolder("war");
+    classes = new File(war, "WEB-INF/classes");
+    assertThat(classes.mkdirs()).isTrue();
+    discoveryDir = tmpFolder.newFolder("discovery");
+    openApiFile = new File(tmpFolder.getRoot(), "openapi.json");
+    batchFile = new File(tmpFolder.getRoot(), "batch.json");
+    manifestFile = new File(tmpFolder.getRoot(), "batch.json.manifest");
+    writeBatch("myapi.appspot.com", FooEndpoint.class.getName());
+  }
+
+  @Test
+  public void generatesThenSkipsUnchanged() throws Exception {
+    Map<String, Status> first = getDocs();
+    assertThat(first).containsEntry("foo-discovery", Status.GENERATED);
+    assertThat(first).containsEntry("foo-openapi", Status.GENERATED);
+    assertThat(new File(discoveryDir, "foo-v1-rest.discovery").isFile()).isTrue();
+    assertThat(openApiFile.isFile()).isTrue();
+    assertThat(manifestFile.isFile()).isTrue();
+
+    Map<String, Status> second = getDocs();
+    assertThat(second).containsEntry("foo-discovery", Status.UP_TO_DATE);
+    assertThat(second).containsEntry("foo-openapi", Status.UP_TO_DATE);
+  }
+
+  @Test
+  public void regeneratesMissingOutput() throws Exception {
+    getDocs();
+    assertThat(openApiFile.delete()).isTrue();
+
+    Map<String, Status> results = getDocs();
+    assertThat(results).containsEntry("foo-discovery", Status.UP_TO_DATE);
+    assertThat(results).containsEntry("foo-openapi", Status.GENERATED);
+    assertThat(openApiFile.isFile()).isTrue();
+  }
+
+  @Test
+  public void regeneratesChangedClassPath() throws Exception {
+    getDocs();
+    Files.write(new byte[] {1, 2, 3}, new File(classes, "Changed.class"));
+
+    Map<String, Status> results = getDocs();
+    assertThat(results).containsEntry("foo-discovery", Status.GENERATED);
+    assertThat(results).containsEntry("foo-openapi", Status.GENERATED);
+  }
+
+  @Test
+  public void regeneratesChangedOptions() throws Exception {
+    getDocs();
+    writeBatch("otherapi.appspot.com", FooEndpoint.class.getName());
+
+    Map<String, Status> results = getDocs();
+    assertThat(results).containsEntry("foo-discovery", Status.GENERATED);
+    assertThat(Files.toString(openApiFile, StandardCharsets.UTF_8))
+        .contains("otherapi.appspot.com");
+  }
+
+  @Test
+  public void failedGroup_doesNotStopOthers() throws Exception {
+    writeBatch("myapi.appspot.com", "com.example.DoesNotExist");
+
+    Map<String, Status> results = getDocs();
+    assertThat(results).containsEntry("foo-discovery", Status.FAILED);
+    assertThat(results).containsEntry("foo-openapi", Status.FAILED);
+    assertThat(Files.toString(manifestFile, StandardCharsets.UTF_8)).doesNotContain("foo");
+  }
+
+  @Test
+  public void execute_failedGroupThrows() throws Exception {
+    writeBatch("myapi.appspot.com", "com.example.DoesNotExist");
+    try {
+      tool.execute(new String[] {BatchGetDocsAction.NAME, batchFile.getPath()});
+      fail("expected IOException");
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("2 of 2 groups failed");
+    }
+  }
+
+  @Test
+  public void execute() throws Exception {
+    tool.execute(new String[] {BatchGetDocsAction.NAME, option("t"), "2", batchFile.getPath()});
+    assertFalse(usagePrinted);
+    assertThat(manifestFile.isFile()).isTrue();
+  }
+
+  @Test
+  public void execute_missingBatchFile() throws Exception {
+    tool.execute(new String[] {BatchGetDocsAction.NAME});
+    assertThat(usagePrinted).isTrue();
+  }
+
+  @Test
+  public void invalidGroup() throws Exception {
+    Files.write("{\"groups\": [{\"name\": \"x\", \"type\": \"yaml\"}]}", batchFile,
+        StandardCharsets.UTF_8);
+    try {
+      getDocs();
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("yaml");
+    }
+  }
+
+  private Map<String, Status> getDocs() throws IOException {
+    return new BatchGetDocsAction().getDocs(batchFile, manifestFile, 2);
+  }
+
+  private void writeBatch(String hostname, String service) throws IOException {
+    String group = "{\"name\": \"%s\", \"type\": \"%s\", \"war\": \"%s\", \"hostname\": \"%s\", "
+        + "\"services\": [\"%s\"], \"output\": \"%s\"}";
+    Files.write("{\"groups\": [" + Joiner.on(", ").join(
+        String.format(group, "foo-discovery", BatchGetDocsAction.TYPE_DISCOVERY, war.getPath(),
+            hostname, service, discoveryDir.getPath()),
+        String.format(group, "foo-openapi", BatchGetDocsAction.TYPE_OPENAPI, war.getPath(),
+            hostname, service, openApiFile.getPath())) + "]}",
+        batchFile, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.server.spi.testing.Endpoint1;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link GenNativeImageConfigAction}.
+ */
+@RunWith(JUnit4.class)
+public class GenNativeImageConfigActionTest extends EndpointsToolTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private URL[] classPath;
+  private String outputDirPath;
+  private List<String> serviceClassNames;
+  private boolean outputToDisk;
+
+  @Override
+  protected void addTestAction(Map<String, EndpointsToolAction> actions) {
+    actions.put(GenNativeImageConfigAction.NAME, new GenNativeImageConfigAction() {
+      @Override
+      public Map<String, String> genNativeImageConfig(URL[] classPath, String outputDirPath,
+          List<String> serviceClassNames, boolean outputToDisk) {
+        GenNativeImageConfigActionTest.this.classPath = classPath;
+        GenNativeImageConfigActionTest.this.outputDirPath = outputDirPath;
+        GenNativeImageConfigActionTest.this.serviceClassNames = serviceClassNames;
+        GenNativeImageConfigActionTest.this.outputToDisk = outputToDisk;
+        return null;
+      }
+    });
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+
+    usagePrinted = false;
+    classPath = null;
+    outputDirPath = null;
+    serviceClassNames = null;
+  }
+
+  @Test
+  public void testGenNativeImageConfig() throws Exception {
+    tool.execute(new String[] {GenNativeImageConfigAction.NAME,
+        option(EndpointsToolAction.OPTION_CLASS_PATH_SHORT), "classPath",
+        option(EndpointsToolAction.OPTION_OUTPUT_DIR_SHORT), "outputDir", "MyService",
+        "MyService2"});
+    assertFalse(usagePrinted);
+    assertThat(Lists.newArrayList(classPath))
+        .containsExactly(new File("classPath").toURI().toURL(),
+            new File(new File(EndpointsToolAction.DEFAULT_WAR_PATH).getAbsoluteFile(),
+                "/WEB-INF/classes")
+                .toURI()
+                .toURL());
+    assertEquals("outputDir", outputDirPath);
+    assertStringsEqual(Arrays.asList("MyService", "MyService2"), serviceClassNames);
+    assertTrue(outputToDisk);
+  }
+
+  @Test
+  public void testMissingServiceClasses() throws Exception {
+    tool.execute(new String[] {GenNativeImageConfigAction.NAME,
+        option(EndpointsToolAction.OPTION_OUTPUT_DIR_SHORT), "outputDir"});
+    assertTrue(usagePrinted);
+    assertThat(serviceClassNames).isNull();
+  }
+
+  @Test
+  public void testWritesConfigFiles() throws Exception {
+    File outputDir = tmpFolder.newFolder();
+    Map<String, String> files = new GenNativeImageConfigAction().genNativeImageConfig(
+        new URL[0], outputDir.getPath(), ImmutableList.of(Endpoint1.class.getName()), true);
+
+    File reflectionFile =
+        new File(outputDir, GenNativeImageConfigAction.REFLECTION_CONFIG_FILE);
+    File resourceFile = new File(outputDir, GenNativeImageConfigAction.RESOURCE_CONFIG_FILE);
+    assertThat(files.keySet())
+        .containsExactly(reflectionFile.getPath(), resourceFile.getPath());
+    String reflectionConfig = Files.toString(reflectionFile, StandardCharsets.UTF_8);
+    assertEquals(files.get(reflectionFile.getPath()), reflectionConfig);
+    assertThat(reflectionConfig).contains(Endpoint1.class.getName());
+    assertThat(reflectionConfig).contains(
+        "com.google.api.server.spi.discovery.ProxyingDiscoveryService");
+    assertTrue(resourceFile.isFile());
+  }
+}
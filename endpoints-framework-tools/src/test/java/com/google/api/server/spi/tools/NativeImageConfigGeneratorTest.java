@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.server.spi.EndpointMethod;
+import com.google.api.server.spi.ServiceContext;
+import com.google.api.server.spi.TypeLoader;
+import com.google.api.server.spi.config.ApiConfigLoader;
+import com.google.api.server.spi.config.annotationreader.ApiConfigAnnotationReader;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.ApiMethodConfig;
+import com.google.api.server.spi.config.model.ApiParameterConfig;
+import com.google.api.server.spi.config.model.SchemaRepository;
+import com.google.api.server.spi.testing.ArrayEndpoint;
+import com.google.api.server.spi.testing.DumbSerializer1;
+import com.google.api.server.spi.testing.Endpoint1;
+import com.google.api.server.spi.testing.Endpoint2;
+import com.google.api.server.spi.testing.EnumEndpoint;
+import com.google.api.server.spi.testing.Foo;
+import com.google.api.server.spi.testing.FooEndpoint;
+import com.google.api.server.spi.testing.MapEndpoint;
+import com.google.api.server.spi.testing.PassAuthenticator;
+import com.google.api.server.spi.testing.PassPeerAuthenticator;
+import com.google.api.server.spi.testing.TestEnum;
+import com.google.api.server.spi.tools.NativeImageConfigGenerator.Access;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.reflect.TypeToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for {@link NativeImageConfigGenerator}.
+ */
+@RunWith(JUnit4.class)
+public class NativeImageConfigGeneratorTest {
+  private static final List<Class<?>> SERVICES = ImmutableList.<Class<?>>of(
+      ArrayEndpoint.class, Endpoint1.class, Endpoint2.class, EnumEndpoint.class,
+      FooEndpoint.class, MapEndpoint.class);
+
+  private TypeLoader typeLoader;
+  private ApiConfigLoader configLoader;
+  private NativeImageConfigGenerator generator;
+
+  @Before
+  public void setUp() throws Exception {
+    typeLoader = new TypeLoader(getClass().getClassLoader());
+    configLoader = new ApiConfigLoader(new ApiConfig.Factory(), typeLoader,
+        new ApiConfigAnnotationReader(typeLoader.getAnnotationTypes()));
+    generator = new NativeImageConfigGenerator(typeLoader, new SchemaRepository(typeLoader));
+  }
+
+  @Test
+  public void testCoversTestEndpoints() throws Exception {
+    List<ApiConfig> configs = Lists.newArrayList();
+    for (Class<?> service : SERVICES) {
+      ApiConfig config = configLoader.loadConfiguration(ServiceContext.create(), service);
+      generator.addApi(config);
+      configs.add(config);
+    }
+    Map<String, Set<Access>> classes = generator.getClasses();
+
+    for (ApiConfig config : configs) {
+      for (Map.Entry<EndpointMethod, ApiMethodConfig> entry
+          : config.getApiClassConfig().getMethods().entrySet()) {
+        ApiMethodConfig methodConfig = entry.getValue();
+        if (methodConfig.isIgnored()) {
+          continue;
+        }
+        assertThat(classes.get(entry.getKey().getEndpointClass().getName()))
+            .containsAllOf(Access.DECLARED_CONSTRUCTORS, Access.PUBLIC_METHODS);
+        for (ApiParameterConfig parameterConfig : methodConfig.getParameterConfigs()) {
+          if (parameterConfig.getClassification() == ApiParameterConfig.Classification.RESOURCE) {
+            assertCovered(classes, parameterConfig.getType());
+          }
+        }
+        if (methodConfig.hasResourceInResponse()) {
+          assertCovered(classes, methodConfig.getReturnType());
+        }
+      }
+    }
+    assertThat(classes.get(PassAuthenticator.class.getName()))
+        .contains(Access.DECLARED_CONSTRUCTORS);
+    assertThat(classes.get(PassPeerAuthenticator.class.getName()))
+        .contains(Access.DECLARED_CONSTRUCTORS);
+    assertThat(classes.get(DumbSerializer1.class.getName()))
+        .containsAllOf(Access.DECLARED_CONSTRUCTORS, Access.PUBLIC_METHODS);
+    assertThat(classes.get(Foo.class.getName()))
+        .containsAllOf(
+            Access.DECLARED_CONSTRUCTORS, Access.DECLARED_METHODS, Access.DECLARED_FIELDS);
+    assertThat(classes.get(TestEnum.class.getName())).contains(Access.DECLARED_FIELDS);
+  }
+
+  @Test
+  public void testSkipsPlatformClasses() throws Exception {
+    generator.addApi(configLoader.loadConfiguration(ServiceContext.create(), MapEndpoint.class));
+    for (String name : generator.getClasses().keySet()) {
+      assertThat(name).doesNotMatch("javax?\\..*");
+    }
+  }
+
+  @Test
+  public void testReflectionConfig() throws Exception {
+    generator.addApi(configLoader.loadConfiguration(ServiceContext.create(), FooEndpoint.class));
+    JsonNode config = new ObjectMapper().readTree(generator.getReflectionConfig());
+
+    assertThat(config.isArray()).isTrue();
+    JsonNode service = null;
+    for (JsonNode entry : config) {
+      if (FooEndpoint.class.getName().equals(entry.get("name").asText())) {
+        service = entry;
+      }
+    }
+    assertThat(service).isNotNull();
+    assertThat(service.get("allDeclaredConstructors").asBoolean()).isTrue();
+    assertThat(service.get("allPublicMethods").asBoolean()).isTrue();
+    assertThat(service.has("allDeclaredFields")).isFalse();
+  }
+
+  @Test
+  public void testResourceConfig() throws Exception {
+    JsonNode config = new ObjectMapper().readTree(generator.getResourceConfig());
+
+    List<String> patterns = Lists.newArrayList();
+    for (JsonNode include : config.get("resources").get("includes")) {
+      patterns.add(include.get("pattern").asText());
+    }
+    assertThat(patterns).contains("\\Qcom/google/api/server/spi/handlers/proxy.html\\E");
+  }
+
+  private void assertCovered(Map<String, Set<Access>> classes, TypeToken<?> type) {
+    if (type.isArray()) {
+      assertCovered(classes, type.getComponentType());
+      return;
+    }
+    if (type.getType() instanceof ParameterizedType) {
+      for (Type argument : ((ParameterizedType) type.getType()).getActualTypeArguments()) {
+        assertCovered(classes, type.resolveType(argument));
+      }
+    }
+    Class<?> rawType = type.getRawType();
+    if (typeLoader.isSchemaType(type) || typeLoader.isInjectedType(type)
+        || rawType.getName().startsWith("java")) {
+      return;
+    }
+    assertThat(classes).containsKey(rawType.getName());
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.server.spi.capture.CaptureLogWriter;
+import com.google.api.server.spi.capture.CaptureRecord;
+import com.google.api.server.spi.testing.FooEndpoint;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link ReplayCaptureAction}.
+ */
+@RunWith(JUnit4.class)
+public class ReplayCaptureActionTest extends EndpointsToolTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private String inputPath;
+  private String basePath;
+  private List<String> serviceClassNames;
+  private double rate;
+  private int threads;
+
+  @Override
+  protected void addTestAction(Map<String, EndpointsToolAction> actions) {
+    actions.put(ReplayCaptureAction.NAME, new ReplayCaptureAction() {
+      @Override
+      public ReplayReport replayCapture(URL[] classPath, String inputPath, String basePath,
+          List<String> serviceClassNames, double rate, int threads) {
+        ReplayCaptureActionTest.this.inputPath = inputPath;
+        ReplayCaptureActionTest.this.basePath = basePath;
+        ReplayCaptureActionTest.this.serviceClassNames = serviceClassNames;
+        ReplayCaptureActionTest.this.rate = rate;
+        ReplayCaptureActionTest.this.threads = threads;
+        return new ReplayReport.Builder().build();
+      }
+    });
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    inputPath = null;
+    serviceClassNames = null;
+  }
+
+  @Test
+  public void testOptions() throws Exception {
+    tool.execute(new String[] {ReplayCaptureAction.NAME, option("i"), "capture", option("r"), "2.5",
+        option("t"), "3", option(EndpointsToolAction.OPTION_BASE_PATH_SHORT), "/api",
+        "MyService"});
+    assertFalse(usagePrinted);
+    assertThat(inputPath).isEqualTo("capture");
+    assertThat(basePath).isEqualTo("/api");
+    assertThat(serviceClassNames).containsExactly("MyService");
+    assertThat(rate).isWithin(0).of(2.5);
+    assertThat(threads).isEqualTo(3);
+  }
+
+  @Test
+  public void testDefaults() throws Exception {
+    tool.execute(new String[] {ReplayCaptureAction.NAME, option("i"), "capture", "MyService"});
+    assertFalse(usagePrinted);
+    assertThat(basePath).isEqualTo(EndpointsToolAction.DEFAULT_BASE_PATH);
+    assertThat(rate).isWithin(0).of(1.0);
+    assertThat(threads).isEqualTo(8);
+  }
+
+  @Test
+  public void testMissingInput() throws Exception {
+    tool.execute(new String[] {ReplayCaptureAction.NAME, "MyService"});
+    assertTrue(usagePrinted);
+    assertThat(serviceClassNames).isNull();
+  }
+
+  @Test
+  public void replayCapture() throws Exception {
+    File captureDirectory = tmpFolder.newFolder();
+    try (CaptureLogWriter writer = new CaptureLogWriter(captureDirectory, 1 << 20, 2)) {
+      writer.append(record(0, "GET", "/_ah/api/foo/v1/foos/1", null));
+      writer.append(record(1, "GET", "/_ah/api/foo/v1/foos/2", null));
+      writer.append(record(2, "PUT", "/_ah/api/foo/v1/foos/3", "{\"name\": \"x\"}"));
+      writer.append(record(3, "GET", "/_ah/api/foo/v1/nothing", null));
+      writer.append(record(4, "GET", "/other/path", null));
+    }
+
+    ReplayReport report = new ReplayCaptureAction().replayCapture(new URL[0],
+        captureDirectory.getPath(), EndpointsToolAction.DEFAULT_BASE_PATH,
+        ImmutableList.of(FooEndpoint.class.getName()), 0, 2);
+
+    Map<String, ReplayReport.MethodStats> methods = report.getMethods();
+    assertThat(methods.keySet())
+        .containsExactly("foo.foo.get", "foo.foo.create", ReplayReport.UNMATCHED);
+    assertThat(methods.get("foo.foo.get").getCount()).isEqualTo(2);
+    assertThat(methods.get("foo.foo.get").getErrorCount()).isEqualTo(0);
+    assertThat(methods.get("foo.foo.create").getCount()).isEqualTo(1);
+    assertThat(methods.get(ReplayReport.UNMATCHED).getErrorCount()).isEqualTo(1);
+    assertThat(methods.get("foo.foo.get").getPercentile(50)).isGreaterThan(0L);
+    assertThat(report.getSkipped()).isEqualTo(1);
+  }
+
+  private static CaptureRecord record(long timestampMillis, String method, String requestUri,
+      String body) {
+    ImmutableListMultimap<String, String> headers = body != null
+        ? ImmutableListMultimap.of("Content-Type", "application/json",
+            "Authorization", CaptureRecord.REDACTED)
+        : ImmutableListMultimap.of("Authorization", CaptureRecord.REDACTED);
+    return new CaptureRecord(timestampMillis, method, requestUri, null, headers,
+        body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+  }
+}
@@ -20,17 +20,25 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Primitives;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 
 import com.google.common.flogger.FluentLogger;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -71,6 +79,53 @@ public class ConfiguredObjectMapper {
     return delegate.writer();
   }
 
+  /**
+   * Builds and caches the serializer of {@code type} and of the types reachable through its bean
+   * properties and container contents, so that the first value written of each type does not pay
+   * for bean introspection. Serializers are looked up by the runtime class of a value, so abstract
+   * types are walked but not prepared.
+   *
+   * @param type the declared type of the values that will be written
+   * @return the classes whose serializer is now cached
+   */
+  public Set<Class<?>> prepareSerializers(Type type) {
+    Set<Class<?>> prepared = new LinkedHashSet<>();
+    prepareSerializers(delegate.constructType(type), new HashSet<Class<?>>(), prepared);
+    return prepared;
+  }
+
+  private void prepareSerializers(JavaType type, Set<Class<?>> visited, Set<Class<?>> prepared) {
+    Class<?> rawClass = Primitives.wrap(type.getRawClass());
+    if (rawClass == Object.class || !visited.add(rawClass)) {
+      return;
+    }
+    if ((rawClass.isArray() || !Modifier.isAbstract(rawClass.getModifiers()))
+        && delegate.canSerialize(rawClass)) {
+      prepared.add(rawClass);
+    }
+    if (type.isContainerType()) {
+      prepareSerializers(type.getContentType(), visited, prepared);
+    } else if (!rawClass.isEnum() && !rawClass.getName().startsWith("java.")) {
+      for (BeanPropertyDefinition property :
+          delegate.getSerializationConfig().introspect(type).findProperties()) {
+        prepareSerializers(property.getPrimaryType(), visited, prepared);
+      }
+    }
+  }
+
+  /**
+   * Builds and caches the deserializer of {@code type}, along with those of its properties, so
+   * that the first value read as that type does not pay for bean introspection.
+   *
+   * @param type the class values will be read as
+   * @return whether values can be read as {@code type}
+   */
+  public boolean prepareDeserializer(Class<?> type) {
+    // Prefetches the root deserializer into the cache that all readers of this mapper share.
+    delegate.readerFor(type);
+    return delegate.canDeserialize(delegate.constructType(type));
+  }
+
   /**
    * Constructs a new {@link Builder} for creating {@link ConfiguredObjectMapper} instances.
    *
@@ -88,6 +143,7 @@ public class ConfiguredObjectMapper {
 
     private int maxCacheSize;
     private ApiSerializationConfig config;
+    private WireFormat wireFormat = WireFormat.JSON;
     private ImmutableSet.Builder<Module> modules = ImmutableSet.builder();
 
 
@@ -124,6 +180,18 @@ public class ConfiguredObjectMapper {
       return this;
     }
 
+    /**
+     * Sets the {@link WireFormat} that the backing {@link ObjectMapper} reads and writes. Defaults
+     * to {@link WireFormat#JSON}.
+     *
+     * @param wireFormat a wire format
+     * @return the builder
+     */
+    public Builder wireFormat(WireFormat wireFormat) {
+      this.wireFormat = Preconditions.checkNotNull(wireFormat, "wireFormat");
+      return this;
+    }
+
     /**
      * Adds {@code modules} that will be registered in the backing {@link ObjectMapper}.
      *
@@ -141,11 +209,11 @@ public class ConfiguredObjectMapper {
      * @return the constructed object
      */
     public ConfiguredObjectMapper build() {
-      CacheKey key = new CacheKey(config, modules.build());
+      CacheKey key = new CacheKey(config, wireFormat, modules.build());
       ConfiguredObjectMapper instance = cache.get(key);
       if (instance == null) {
-        ObjectMapper mapper =
-            ObjectMapperUtil.createStandardObjectMapper(key.apiSerializationConfig);
+        ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper(
+            key.apiSerializationConfig, key.wireFormat);
         mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         mapper.disable(SerializationFeature.WRITE_EMPTY_JSON_ARRAYS);
         for (Module module : key.modulesSet) {
@@ -171,16 +239,19 @@ public class ConfiguredObjectMapper {
   @VisibleForTesting
   static class CacheKey {
     private final ApiSerializationConfig apiSerializationConfig;
+    private final WireFormat wireFormat;
     private final ImmutableSet<Module> modulesSet;
 
-    private CacheKey(@Nullable ApiSerializationConfig config, ImmutableSet<Module> modules) {
+    private CacheKey(@Nullable ApiSerializationConfig config, WireFormat wireFormat,
+        ImmutableSet<Module> modules) {
       this.apiSerializationConfig = config;
+      this.wireFormat = wireFormat;
       this.modulesSet = modules;
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(this.apiSerializationConfig, this.modulesSet);
+      return Objects.hash(this.apiSerializationConfig, this.wireFormat, this.modulesSet);
     }
 
     @Override
@@ -191,6 +262,7 @@ public class ConfiguredObjectMapper {
       if (object instanceof CacheKey) {
         CacheKey that = (CacheKey) object;
         return Objects.equals(this.apiSerializationConfig, that.apiSerializationConfig)
+            && this.wireFormat == that.wireFormat
             && this.modulesSet.equals(that.modulesSet);
       }
       return false;
@@ -102,6 +102,8 @@ public class EndpointMethod {
 
   private List<String> parameterNames;
 
+  private MethodInvoker invoker;
+
   private EndpointMethod(Class<?> endpointClass, Method method, TypeToken<?> declaringClass) {
     this.endpointClass = endpointClass;
     this.endpointToken = TypeToken.of(endpointClass);
@@ -277,4 +279,16 @@ public class EndpointMethod {
   public void setParameterNames(List<String> parameterNames) {
     this.parameterNames = parameterNames;
   }
+
+  /**
+   * Returns the generated invoker of this method, or {@code null} if the method should be invoked
+   * through reflection.
+   */
+  public MethodInvoker getInvoker() {
+    return invoker;
+  }
+
+  public void setInvoker(MethodInvoker invoker) {
+    this.invoker = invoker;
+  }
 }
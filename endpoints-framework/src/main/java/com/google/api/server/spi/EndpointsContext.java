@@ -28,6 +28,7 @@ public class EndpointsContext extends DispatcherContext {
   private final HttpServletRequest request;
   private final HttpServletResponse response;
   private final boolean prettyPrint;
+  private long startNanos = System.nanoTime();
 
   public EndpointsContext(String httpMethod, String path, HttpServletRequest request,
       HttpServletResponse response, boolean prettyPrint) {
@@ -48,4 +49,36 @@ public class EndpointsContext extends DispatcherContext {
   public boolean isPrettyPrintEnabled() {
     return prettyPrint;
   }
+
+  /**
+   * Returns the {@link System#nanoTime()} at which this context was created, which is when the
+   * request started being dispatched.
+   */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  /**
+   * Returns a copy of this context, including its path parameters, which reads from
+   * {@code request} instead.
+   */
+  public EndpointsContext withRequest(HttpServletRequest request) {
+    EndpointsContext context =
+        new EndpointsContext(getHttpMethod(), getPath(), request, response, prettyPrint);
+    context.setRawPathParameters(getRawPathParameters());
+    context.startNanos = startNanos;
+    return context;
+  }
+
+  /**
+   * Returns a copy of this context, including its path parameters, which writes to
+   * {@code response} instead.
+   */
+  public EndpointsContext withResponse(HttpServletResponse response) {
+    EndpointsContext context =
+        new EndpointsContext(getHttpMethod(), getPath(), request, response, prettyPrint);
+    context.setRawPathParameters(getRawPathParameters());
+    context.startNanos = startNanos;
+    return context;
+  }
 }
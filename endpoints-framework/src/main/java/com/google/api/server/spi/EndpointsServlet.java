@@ -15,8 +15,10 @@
  */
 package com.google.api.server.spi;
 
+import com.google.api.server.spi.SystemService.ConfigReload;
 import com.google.api.server.spi.SystemService.EndpointNode;
 import com.google.api.server.spi.config.ApiConfigException;
+import com.google.api.server.spi.config.ApiConfigSource;
 import com.google.api.server.spi.config.model.ApiClassConfig.MethodConfigMap;
 import com.google.api.server.spi.config.model.ApiConfig;
 import com.google.api.server.spi.config.model.ApiMethodConfig;
@@ -25,12 +27,26 @@ import com.google.api.server.spi.handlers.ApiProxyHandler;
 import com.google.api.server.spi.handlers.CorsHandler;
 import com.google.api.server.spi.handlers.EndpointsMethodHandler;
 import com.google.api.server.spi.handlers.ExplorerHandler;
+import com.google.api.server.spi.handlers.OpenApiHandler;
+import com.google.api.server.spi.handlers.RequestSamplesHandler;
+import com.google.api.server.spi.request.RequestSampler;
+import com.google.api.server.spi.response.EventStreams;
+import com.google.api.server.spi.response.IdempotencyStore;
+import com.google.api.server.spi.response.InMemoryIdempotencyStore;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -42,21 +58,136 @@ import javax.servlet.http.HttpServletResponse;
  * A handler for proxy-less API serving. This servlet understands and replies in JSON-REST.
  */
 public class EndpointsServlet extends HttpServlet {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
   private static final String EXPLORER_PATH = "explorer";
 
   private ServletInitializationParameters initParameters;
   private SystemService systemService;
-  private PathDispatcher<EndpointsContext> dispatcher;
+  // Replaced as a whole when the configuration is reloaded, so that each request is routed to
+  // handlers built from a single configuration.
+  private volatile PathDispatcher<EndpointsContext> dispatcher;
   private CorsHandler corsHandler;
+  private EventStreams eventStreams;
+  private IdempotencyStore idempotencyStore;
+  private RequestSampler requestSampler;
+  private ScheduledExecutorService configReloader;
 
   @Override
   public void init(ServletConfig config) throws ServletException {
     super.init(config);
-    ClassLoader classLoader = getClass().getClassLoader();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    ClassLoader classLoader = getServiceClassLoader();
     this.initParameters = ServletInitializationParameters.fromServletConfig(config, classLoader);
     this.systemService = createSystemService(classLoader, initParameters);
-    this.dispatcher = createDispatcher();
+    long systemServiceMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+    this.eventStreams = new EventStreams(
+        initParameters.getMaxOpenStreams(), initParameters.getStreamHeartbeatMillis());
+    this.idempotencyStore = createIdempotencyStore();
+    if (initParameters.getRequestSamplesPath() != null) {
+      this.requestSampler = new RequestSampler(initParameters.getSlowRequestThresholdMillis(),
+          initParameters.getRequestSamplesPerMethod());
+    }
+    this.dispatcher = createDispatcher(systemService.getEndpoints());
     this.corsHandler = new CorsHandler();
+    logger.atInfo().log("initialized in %d ms (system service %d ms, dispatcher %d ms)",
+        stopwatch.elapsed(TimeUnit.MILLISECONDS), systemServiceMillis,
+        stopwatch.elapsed(TimeUnit.MILLISECONDS) - systemServiceMillis);
+    if (initParameters.isWarmSerializersEnabled()) {
+      warmSerializers();
+    }
+    if (initParameters.isLazyServicesEnabled() && initParameters.isWarmLazyServicesEnabled()) {
+      warmLazyServices();
+    }
+    if (initParameters.getConfigReloadIntervalMillis() > 0) {
+      scheduleConfigReload(initParameters.getConfigReloadIntervalMillis());
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (configReloader != null) {
+      configReloader.shutdownNow();
+    }
+    if (eventStreams != null) {
+      eventStreams.shutdown();
+    }
+    super.destroy();
+  }
+
+  private void scheduleConfigReload(long intervalMillis) {
+    configReloader = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("endpoints-config-reload").setDaemon(true).build());
+    configReloader.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          reloadConfiguration();
+        } catch (ApiConfigException | RuntimeException e) {
+          // The previous configuration keeps being served; the reload is tried again later.
+          logger.atWarning().withCause(e).log("could not reload API configuration");
+        }
+      }
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Reloads the API configuration from the config sources which are not static and, if it changed,
+   * rebuilds the method handlers and routes and swaps them in at once. Requests which were
+   * already dispatched finish on the previous handlers.
+   *
+   * @return whether the configuration changed
+   * @throws ApiConfigException if the configuration could not be loaded or is invalid, in which
+   *     case the previous configuration is kept
+   */
+  public synchronized boolean reloadConfiguration() throws ApiConfigException {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    ConfigReload reload = systemService.prepareConfigReload();
+    if (reload.isEmpty()) {
+      return false;
+    }
+    // Everything which can fail happens before the reload is applied, so that a failure keeps the
+    // previous configuration and handlers, and the next reload tries again.
+    PathDispatcher<EndpointsContext> reloadedDispatcher = createDispatcher(reload.getEndpoints());
+    List<EndpointNode> updatedEndpoints = systemService.commitConfigReload(reload);
+    this.dispatcher = reloadedDispatcher;
+    logger.atInfo().log("reloaded configuration of %d endpoints in %d ms",
+        updatedEndpoints.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    return true;
+  }
+
+  private void warmSerializers() {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    SerializerWarmer warmer =
+        new SerializerWarmer(initParameters.isWarmSerializersSyntheticEnabled());
+    warmer.warm(systemService);
+    logger.atInfo().log("warmed serializers of %d methods (%d types) in %d ms",
+        warmer.getMethodCount(), warmer.getTypeCount(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+  }
+
+  private void warmLazyServices() {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+          int count = systemService.instantiateLazyServices();
+          logger.atInfo().log("instantiated %d lazy services in %d ms", count,
+              stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        } catch (RuntimeException e) {
+          // The failing service is instantiated again, and the error surfaced, on its first call.
+          logger.atWarning().withCause(e).log("could not instantiate lazy services");
+        }
+      }
+    }, "endpoints-service-warmup");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Returns the class loader of the service classes. Defaults to the loader of this servlet.
+   */
+  protected ClassLoader getServiceClassLoader() {
+    return getClass().getClassLoader();
   }
 
   protected ServletInitializationParameters getInitParameters() {
@@ -67,6 +198,22 @@ public class EndpointsServlet extends HttpServlet {
     return systemService;
   }
 
+  /**
+   * Returns the streams of {@link com.google.api.server.spi.response.StreamingResponse} results
+   * shared by all methods of this servlet.
+   */
+  protected EventStreams getEventStreams() {
+    return eventStreams;
+  }
+
+  /**
+   * Returns the sampler of slow and recent requests to this servlet's methods, or {@code null} if
+   * requests are not sampled.
+   */
+  protected RequestSampler getRequestSampler() {
+    return requestSampler;
+  }
+
   @Override
   public void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
     String method = getRequestMethod(request);
@@ -77,6 +224,7 @@ public class EndpointsServlet extends HttpServlet {
           request.getRequestURI().substring(request.getServletPath().length()));
       EndpointsContext context = new EndpointsContext(method, path, request, response,
           initParameters.isPrettyPrintEnabled());
+      PathDispatcher<EndpointsContext> dispatcher = this.dispatcher;
       if (!dispatcher.dispatch(method, path, context)) {
         response.setStatus(HttpServletResponse.SC_NOT_FOUND);
         response.getWriter().append("Not Found");
@@ -97,9 +245,8 @@ public class EndpointsServlet extends HttpServlet {
     return methodOverride != null ? methodOverride.toUpperCase() : request.getMethod();
   }
 
-  private PathDispatcher<EndpointsContext> createDispatcher() {
+  private PathDispatcher<EndpointsContext> createDispatcher(List<EndpointNode> endpoints) {
     PathDispatcher.Builder<EndpointsContext> builder = PathDispatcher.builder();
-    List<EndpointNode> endpoints = systemService.getEndpoints();
     // We're building an ImmutableList here, because it will eventually be used for JSON-RPC.
     ImmutableList.Builder<EndpointsMethodHandler> handlersBuilder = ImmutableList.builder();
     for (EndpointNode endpoint : endpoints) {
@@ -120,7 +267,26 @@ public class EndpointsServlet extends HttpServlet {
     ExplorerHandler explorerHandler = new ExplorerHandler();
     builder.add("GET", EXPLORER_PATH, explorerHandler);
     builder.add("GET", EXPLORER_PATH + "/", explorerHandler);
+    if (requestSampler != null) {
+      builder.add("GET", Strings.stripSlash(initParameters.getRequestSamplesPath()),
+          new RequestSamplesHandler(requestSampler));
+    }
     builder.add("GET", "static/proxy.html", new ApiProxyHandler());
+    if (initParameters.getOpenApiPath() != null) {
+      OpenApiHandler openApiHandler = new OpenApiHandler(
+          getExternalApiConfigs(endpoints), systemService.getSchemaRepository());
+      builder.add("GET", Strings.stripSlash(initParameters.getOpenApiPath()), openApiHandler);
+    }
+    return builder.build();
+  }
+
+  private static ImmutableList<ApiConfig> getExternalApiConfigs(List<EndpointNode> endpoints) {
+    ImmutableList.Builder<ApiConfig> builder = ImmutableList.builder();
+    for (EndpointNode endpoint : endpoints) {
+      if (endpoint.isExternalEndpoint()) {
+        builder.add(endpoint.getConfig());
+      }
+    }
     return builder.build();
   }
 
@@ -129,11 +295,19 @@ public class EndpointsServlet extends HttpServlet {
     try {
       SystemService.Builder builder = SystemService.builder()
           .withDefaults(classLoader)
-          .setStandardConfigLoader(classLoader)
+          .setStandardConfigLoader(classLoader, createApiConfigSources())
           .setIllegalArgumentIsBackendError(initParameters.isIllegalArgumentBackendError())
-          .setDiscoveryServiceEnabled(true);
+          .setDiscoveryServiceEnabled(true)
+          .setStartupThreads(initParameters.getStartupThreads());
+      if (initParameters.getDiscoveryCacheDirectory() != null) {
+        builder.setDiscoveryCacheDirectory(new File(initParameters.getDiscoveryCacheDirectory()));
+      }
       for (Class<?> serviceClass : initParameters.getServiceClasses()) {
-        builder.addService(serviceClass, createService(serviceClass));
+        if (initParameters.isLazyServicesEnabled()) {
+          addLazyService(builder, serviceClass);
+        } else {
+          builder.addService(serviceClass, createService(serviceClass));
+        }
       }
       return builder.build();
     } catch (ApiConfigException | ClassNotFoundException e) {
@@ -141,10 +315,38 @@ public class EndpointsServlet extends HttpServlet {
     }
   }
 
+  private <T> void addLazyService(SystemService.Builder builder, final Class<T> serviceClass) {
+    builder.addLazyService(serviceClass, new Supplier<T>() {
+      @Override
+      public T get() {
+        return createService(serviceClass);
+      }
+    });
+  }
+
   protected EndpointsMethodHandler createEndpointsMethodHandler(EndpointMethod method,
       ApiMethodConfig methodConfig) {
     return new EndpointsMethodHandler(initParameters, getServletContext(), method,
-        methodConfig, systemService);
+        methodConfig, systemService, eventStreams, idempotencyStore, requestSampler);
+  }
+
+  /**
+   * Creates the config sources applied on top of the annotations of the service classes. Sources
+   * which are not static are read again when the configuration is reloaded (see
+   * {@link ServletInitializationParameters#getConfigReloadIntervalMillis()}). None by default.
+   */
+  protected ApiConfigSource[] createApiConfigSources() {
+    return new ApiConfigSource[0];
+  }
+
+  /**
+   * Creates the store of responses replayed to requests retried with the same idempotency key,
+   * shared by all methods of this servlet. Override to share responses between instances, e.g.
+   * through a distributed cache.
+   */
+  protected IdempotencyStore createIdempotencyStore() {
+    return new InMemoryIdempotencyStore(initParameters.getIdempotencyKeyTtlMillis(),
+        initParameters.getIdempotencyKeyMaxEntries());
   }
 
   /**
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.api.server.spi.config.annotationreader.GeneratedApiConfig;
+import com.google.common.base.Function;
+import com.google.common.flogger.FluentLogger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Utilities for locating the classes generated for a service class by the Endpoints annotation
+ * processor, such as {@link GeneratedInvokers} and {@link GeneratedApiConfig}.
+ */
+public final class GeneratedClasses {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private GeneratedClasses() {}
+
+  /**
+   * Returns the name of the class generated for {@code serviceClass} with the given suffix. For a
+   * service class {@code com.example.Outer.Greetings}, this is
+   * {@code com.example.Outer_Greetings<suffix>}.
+   */
+  public static String getGeneratedClassName(Class<?> serviceClass, String suffix) {
+    String name = serviceClass.getName();
+    int packageEnd = name.lastIndexOf('.');
+    return name.substring(0, packageEnd + 1)
+        + name.substring(packageEnd + 1).replace('$', '_') + suffix;
+  }
+
+  /**
+   * Loads and instantiates the class generated for {@code serviceClass} with the given suffix, or
+   * returns {@code null} if the class was not compiled with the Endpoints annotation processor,
+   * or if the generated class is not a {@code type} generated for {@code serviceClass}.
+   *
+   * @param serviceClassOf returns the service class an instance was generated for
+   */
+  @Nullable
+  public static <T> T load(Class<?> serviceClass, String suffix, Class<T> type,
+      Function<? super T, Class<?>> serviceClassOf) {
+    String className = getGeneratedClassName(serviceClass, suffix);
+    try {
+      Class<?> generatedClass = Class.forName(className, true, serviceClass.getClassLoader());
+      T generated = type.cast(generatedClass.newInstance());
+      Class<?> generatedFor = serviceClassOf.apply(generated);
+      if (generatedFor != serviceClass) {
+        logger.atWarning().log("ignoring %s, which was generated for %s", className,
+            generatedFor.getName());
+        return null;
+      }
+      return generated;
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (InstantiationException | IllegalAccessException | ClassCastException e) {
+      logger.atWarning().withCause(e).log("unable to load generated class %s", className);
+      return null;
+    }
+  }
+}
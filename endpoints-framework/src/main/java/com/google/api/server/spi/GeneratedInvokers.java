@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * The {@link MethodInvoker}s of a service class, generated at compile time by the Endpoints
+ * annotation processor. For a service class {@code com.example.Outer.Greetings}, the generated
+ * subclass is {@code com.example.Outer_Greetings_EndpointsInvokers}.
+ *
+ * <p>When no generated class is found, methods are invoked through reflection.
+ */
+public abstract class GeneratedInvokers {
+  /**
+   * The suffix of generated class names.
+   */
+  public static final String CLASS_NAME_SUFFIX = "_EndpointsInvokers";
+
+  private final Class<?> serviceClass;
+  private final Map<String, MethodInvoker> invokers = new HashMap<>();
+
+  protected GeneratedInvokers(Class<?> serviceClass) {
+    this.serviceClass = serviceClass;
+  }
+
+  /**
+   * Registers the invoker of a method, identified by its name and the canonical names of its
+   * resolved parameter types, as in {@code "get(java.lang.String,int)"}.
+   */
+  protected final void add(String signature, MethodInvoker invoker) {
+    invokers.put(signature, invoker);
+  }
+
+  /**
+   * Throws {@link IllegalArgumentException} if {@code params} does not have {@code count}
+   * elements.
+   */
+  protected static void checkParameterCount(Object[] params, int count) {
+    int actual = params == null ? 0 : params.length;
+    if (actual != count) {
+      throw new IllegalArgumentException(
+          "wrong number of arguments: expected " + count + ", got " + actual);
+    }
+  }
+
+  public Class<?> getServiceClass() {
+    return serviceClass;
+  }
+
+  /**
+   * Returns the number of generated invokers.
+   */
+  public int size() {
+    return invokers.size();
+  }
+
+  /**
+   * Returns the generated invoker for {@code method}, or {@code null} if there is none.
+   */
+  @Nullable
+  public MethodInvoker getInvoker(EndpointMethod method) {
+    return invokers.get(signature(method.getMethod().getName(), method.getParameterClasses()));
+  }
+
+  static String signature(String methodName, Class<?>[] parameterClasses) {
+    String[] names = new String[parameterClasses.length];
+    for (int i = 0; i < parameterClasses.length; i++) {
+      names[i] = parameterClasses[i].getCanonicalName();
+    }
+    return methodName + "(" + Joiner.on(',').join(names) + ")";
+  }
+
+  /**
+   * Returns the name of the class generated for {@code serviceClass}.
+   */
+  public static String getGeneratedClassName(Class<?> serviceClass) {
+    return GeneratedClasses.getGeneratedClassName(serviceClass, CLASS_NAME_SUFFIX);
+  }
+
+  /**
+   * Loads the invokers generated for {@code serviceClass}, or returns {@code null} if the class
+   * was not compiled with the Endpoints annotation processor.
+   */
+  @Nullable
+  public static GeneratedInvokers forServiceClass(Class<?> serviceClass) {
+    return GeneratedClasses.load(serviceClass, CLASS_NAME_SUFFIX, GeneratedInvokers.class,
+        new Function<GeneratedInvokers, Class<?>>() {
+          @Override
+          public Class<?> apply(GeneratedInvokers generated) {
+            return generated.getServiceClass();
+          }
+        });
+  }
+}
@@ -64,4 +64,15 @@ public class Headers {
    * OPTIONS request.
    */
   public static final String ACCESS_CONTROL_ALLOW_HEADERS = "Access-Control-Allow-Headers";
+
+  /**
+   * An opaque identifier for a specific version of a resource, specified in a response.
+   */
+  public static final String ETAG = "ETag";
+
+  /**
+   * A comma-separated list of {@link #ETAG} values. If one matches the current version of the
+   * resource, the server responds with 304 Not Modified instead of the resource.
+   */
+  public static final String IF_NONE_MATCH = "If-None-Match";
 }
@@ -15,7 +15,9 @@
  */
 package com.google.api.server.spi;
 
+import com.google.api.server.spi.request.Attribute;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
@@ -23,6 +25,7 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -137,9 +140,12 @@ public final class IoUtil {
    * encoding, tries to wrap the request input stream in a {@link GZIPInputStream}. If the input
    * stream does not start with a gzip header, then a stream representing a plaintext request is
    * returned.
+   *
+   * <p>If the {@link Attribute#MAX_REQUEST_BYTES} attribute is set, both the raw and the
+   * decompressed stream throw a {@link RequestBodyTooLargeException} once more bytes are read.
    */
   public static InputStream getRequestInputStream(HttpServletRequest request) throws IOException {
-    InputStream bodyStream = request.getInputStream();
+    InputStream bodyStream = getLimitedInputStream(request);
     if (bodyStream != null && GZIP_ENCODING.equals(request.getHeader(HEADER_CONTENT_ENCODING))) {
       PushbackInputStream pushbackStream = new PushbackInputStream(bodyStream, 2);
       byte[] header = new byte[2];
@@ -147,11 +153,44 @@ public final class IoUtil {
       if (len > 0) {
         pushbackStream.unread(header, 0, len);
       }
-      return isGzipHeader(header) ? new GZIPInputStream(pushbackStream) : pushbackStream;
+      return isGzipHeader(header)
+          ? limit(new GZIPInputStream(pushbackStream), getMaxRequestBytes(request))
+          : pushbackStream;
     }
     return bodyStream;
   }
 
+  /**
+   * Gets the raw {@link InputStream} for the request, limited to the size in the
+   * {@link Attribute#MAX_REQUEST_BYTES} attribute, if set.
+   */
+  public static InputStream getLimitedInputStream(HttpServletRequest request) throws IOException {
+    InputStream bodyStream = request.getInputStream();
+    return bodyStream != null ? limit(bodyStream, getMaxRequestBytes(request)) : null;
+  }
+
+  /**
+   * Returns if {@code e}, or any of its causes, is a {@link RequestBodyTooLargeException}. Stream
+   * errors are often wrapped by parsers before they reach the caller.
+   */
+  public static boolean isRequestBodyTooLarge(Throwable e) {
+    for (Throwable cause : Throwables.getCausalChain(e)) {
+      if (cause instanceof RequestBodyTooLargeException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long getMaxRequestBytes(HttpServletRequest request) {
+    Long maxBytes = (Long) request.getAttribute(Attribute.MAX_REQUEST_BYTES);
+    return maxBytes != null ? maxBytes : 0;
+  }
+
+  private static InputStream limit(InputStream in, long maxBytes) {
+    return maxBytes > 0 ? new LimitedInputStream(in, maxBytes) : in;
+  }
+
   /**
    * Reads a possibly compressed request body.
    */
@@ -160,6 +199,66 @@ public final class IoUtil {
     return inputStream != null ? IoUtil.readStream(inputStream) : null;
   }
 
+  /**
+   * Thrown while reading a request body which is larger than its limit.
+   */
+  public static class RequestBodyTooLargeException extends IOException {
+    RequestBodyTooLargeException(long maxBytes) {
+      super(String.format("request body is larger than %d bytes", maxBytes));
+    }
+  }
+
+  /**
+   * Fails as soon as more than the allowed number of bytes are read, rather than silently
+   * truncating like {@link com.google.common.io.ByteStreams#limit}.
+   */
+  private static class LimitedInputStream extends FilterInputStream {
+    private final long maxBytes;
+    private long count;
+
+    LimitedInputStream(InputStream in, long maxBytes) {
+      super(in);
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b != -1) {
+        count(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = in.read(b, off, len);
+      if (n > 0) {
+        count(n);
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(n);
+      count(skipped);
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    private void count(long n) throws RequestBodyTooLargeException {
+      count += n;
+      if (count > maxBytes) {
+        throw new RequestBodyTooLargeException(maxBytes);
+      }
+    }
+  }
+
   private static boolean isGzipHeader(byte[] header) {
     // GZIP_MAGIC represents the 16-bit header that identify all gzipped content, as defined in
     // section 2.3.1 of https://tools.ietf.org/html/rfc1952.
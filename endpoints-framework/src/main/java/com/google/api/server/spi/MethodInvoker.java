@@ -0,0 +1,32 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Invokes an endpoint method directly rather than through reflection. Implementations are
+ * generated at compile time by the Endpoints annotation processor, see {@link GeneratedInvokers}.
+ */
+public interface MethodInvoker {
+  /**
+   * Invokes the method, with the same contract as {@link java.lang.reflect.Method#invoke}.
+   *
+   * @throws IllegalArgumentException if {@code params} do not match the method's parameters
+   * @throws InvocationTargetException wrapping any exception thrown by the method
+   */
+  Object invoke(Object service, Object[] params) throws InvocationTargetException;
+}
@@ -73,7 +73,17 @@ public class ObjectMapperUtil {
    * a property name with a typo in it, for example, will just be ignored by the BE.
    */
   public static ObjectMapper createStandardObjectMapper(ApiSerializationConfig config) {
-    ObjectMapper objectMapper = new ObjectMapper()
+    return createStandardObjectMapper(config, WireFormat.JSON);
+  }
+
+  /**
+   * Creates an Endpoints standard object mapper, as
+   * {@link #createStandardObjectMapper(ApiSerializationConfig)}, which reads and writes the given
+   * {@link WireFormat}.
+   */
+  public static ObjectMapper createStandardObjectMapper(ApiSerializationConfig config,
+      WireFormat wireFormat) {
+    ObjectMapper objectMapper = new ObjectMapper(wireFormat.createFactory())
         .configure(JsonParser.Feature.ALLOW_COMMENTS, true)
         .configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true)
         .configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true)
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link BufferRecycler} which is safe to share between threads. Jackson's default recycler is
+ * held in a {@code ThreadLocal}, so buffers are only reused by later requests on the same thread;
+ * when requests run on short-lived threads, or move between executor threads, every parser and
+ * generator allocates fresh buffers. This recycler keeps a small, bounded number of released
+ * buffers of each kind in lock-free slots, where any thread can claim them.
+ *
+ * <p>Buffers which don't fit in the pool when released are left to the garbage collector, as are
+ * pooled buffers too small for a request, so the pool never grows past
+ * {@code slotsPerBuffer} buffers of each kind.
+ */
+public class PooledBufferRecycler extends BufferRecycler {
+  private static final int BYTE_BUFFER_COUNT = 4;
+  private static final int CHAR_BUFFER_COUNT = 4;
+  private static final int DEFAULT_SLOTS_PER_BUFFER =
+      Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+  private static final PooledBufferRecycler SHARED =
+      new PooledBufferRecycler(DEFAULT_SLOTS_PER_BUFFER);
+
+  private final int slotsPerBuffer;
+  private final AtomicReferenceArray<byte[]> bytePool;
+  private final AtomicReferenceArray<char[]> charPool;
+
+  /**
+   * Creates a recycler which keeps at most {@code slotsPerBuffer} released buffers of each kind.
+   */
+  public PooledBufferRecycler(int slotsPerBuffer) {
+    super(0, 0);
+    if (slotsPerBuffer <= 0) {
+      throw new IllegalArgumentException("slotsPerBuffer must be positive");
+    }
+    this.slotsPerBuffer = slotsPerBuffer;
+    this.bytePool = new AtomicReferenceArray<>(BYTE_BUFFER_COUNT * slotsPerBuffer);
+    this.charPool = new AtomicReferenceArray<>(CHAR_BUFFER_COUNT * slotsPerBuffer);
+  }
+
+  /**
+   * Returns the recycler shared by every factory created through {@link WireFormat}, so request
+   * readers and response writers draw from the same pool.
+   */
+  public static PooledBufferRecycler shared() {
+    return SHARED;
+  }
+
+  @Override
+  public byte[] allocByteBuffer(int ix, int minSize) {
+    int defaultSize = byteBufferLength(ix);
+    if (minSize < defaultSize) {
+      minSize = defaultSize;
+    }
+    int start = ix * slotsPerBuffer;
+    for (int i = start; i < start + slotsPerBuffer; i++) {
+      byte[] buffer = bytePool.getAndSet(i, null);
+      if (buffer != null && buffer.length >= minSize) {
+        return buffer;
+      }
+    }
+    return balloc(minSize);
+  }
+
+  @Override
+  public void releaseByteBuffer(int ix, byte[] buffer) {
+    int start = ix * slotsPerBuffer;
+    for (int i = start; i < start + slotsPerBuffer; i++) {
+      if (bytePool.compareAndSet(i, null, buffer)) {
+        return;
+      }
+    }
+  }
+
+  @Override
+  public char[] allocCharBuffer(int ix, int minSize) {
+    int defaultSize = charBufferLength(ix);
+    if (minSize < defaultSize) {
+      minSize = defaultSize;
+    }
+    int start = ix * slotsPerBuffer;
+    for (int i = start; i < start + slotsPerBuffer; i++) {
+      char[] buffer = charPool.getAndSet(i, null);
+      if (buffer != null && buffer.length >= minSize) {
+        return buffer;
+      }
+    }
+    return calloc(minSize);
+  }
+
+  @Override
+  public void releaseCharBuffer(int ix, char[] buffer) {
+    int start = ix * slotsPerBuffer;
+    for (int i = start; i < start + slotsPerBuffer; i++) {
+      if (charPool.compareAndSet(i, null, buffer)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of buffers currently held by the pool.
+   */
+  @VisibleForTesting
+  int getPooledBufferCount() {
+    int count = 0;
+    for (int i = 0; i < bytePool.length(); i++) {
+      if (bytePool.get(i) != null) {
+        count++;
+      }
+    }
+    for (int i = 0; i < charPool.length(); i++) {
+      if (charPool.get(i) != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns whether {@code factory} draws its buffers from a {@link PooledBufferRecycler}.
+   */
+  public static boolean isPooled(JsonFactory factory) {
+    return factory._getBufferRecycler() instanceof PooledBufferRecycler;
+  }
+}
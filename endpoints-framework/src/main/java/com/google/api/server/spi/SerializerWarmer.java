@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.api.server.spi.SystemService.EndpointNode;
+import com.google.api.server.spi.config.model.ApiMethodConfig;
+import com.google.api.server.spi.config.model.ApiSerializationConfig;
+import com.google.api.server.spi.request.ServletRequestParamReader;
+import com.google.api.server.spi.response.MediaResponse;
+import com.google.api.server.spi.response.ServletResponseResultWriter;
+import com.google.api.server.spi.response.StreamingResponse;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.io.ByteStreams;
+import com.google.common.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Builds the serializers and deserializers of endpoint methods ahead of their first request.
+ * Otherwise the first request to each method pays for bean introspection, annotation processing
+ * and transformer lookup of its types.
+ *
+ * <p>Optionally, an empty instance of each bean type is also written and read, so that the
+ * serialization code paths themselves are loaded before the first request. Only the JSON wire
+ * format is warmed; the mappers of binary formats are still built on first use.
+ */
+public class SerializerWarmer {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final boolean synthetic;
+  // Types already warmed, per mapper. Mappers are shared, so identity is the right equality.
+  private final Map<ConfiguredObjectMapper, Set<Type>> warmedTypes = new IdentityHashMap<>();
+  private int methodCount;
+  private int typeCount;
+
+  /**
+   * @param synthetic whether to also write and read an empty instance of each bean type
+   */
+  public SerializerWarmer(boolean synthetic) {
+    this.synthetic = synthetic;
+  }
+
+  /**
+   * Warms the serializers and deserializers of every method of the endpoints registered in
+   * {@code systemService}.
+   */
+  public void warm(SystemService systemService) {
+    for (EndpointNode endpoint : systemService.getEndpoints()) {
+      for (Entry<EndpointMethod, ApiMethodConfig> entry :
+          endpoint.getConfig().getApiClassConfig().getMethods().entrySet()) {
+        if (!entry.getValue().isIgnored()) {
+          EndpointMethod method = entry.getKey();
+          warm(method,
+              systemService.getSerializationConfig(method.getEndpointClass().getName()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Warms the deserializers of {@code method}'s parameters and the serializers of its return type.
+   */
+  public void warm(EndpointMethod method, @Nullable ApiSerializationConfig serializationConfig) {
+    warmDeserializers(method,
+        ServletRequestParamReader.getObjectMapper(serializationConfig, WireFormat.JSON));
+    warmSerializers(method.getReturnType(),
+        ServletResponseResultWriter.getObjectMapper(serializationConfig, WireFormat.JSON));
+    methodCount++;
+  }
+
+  /**
+   * Returns the number of methods warmed.
+   */
+  public int getMethodCount() {
+    return methodCount;
+  }
+
+  /**
+   * Returns the number of distinct types whose serializer or deserializer was built, counted once
+   * per mapper.
+   */
+  public int getTypeCount() {
+    return typeCount;
+  }
+
+  private void warmDeserializers(EndpointMethod method, ConfiguredObjectMapper mapper) {
+    Class<?>[] classes = method.getParameterClasses();
+    TypeToken<?>[] types = method.getParameterTypes();
+    for (int i = 0; i < classes.length; i++) {
+      Class<?> clazz = classes[i];
+      if (ServletRequestParamReader.isInjectedType(clazz)) {
+        continue;
+      }
+      // Mirrors ServletRequestParamReader, which reads named collections through an array of their
+      // element type.
+      if (Collection.class.isAssignableFrom(clazz)
+          && types[i].getType() instanceof ParameterizedType) {
+        Class<?> elementClass = EndpointMethod.getClassFromType(
+            ((ParameterizedType) types[i].getType()).getActualTypeArguments()[0]);
+        warmDeserializer(Array.newInstance(elementClass, 0).getClass(), mapper);
+        warmDeserializer(elementClass, mapper);
+      }
+      warmDeserializer(clazz, mapper);
+    }
+  }
+
+  private void warmDeserializer(Class<?> clazz, ConfiguredObjectMapper mapper) {
+    if (!markWarmed(mapper, clazz) || !mapper.prepareDeserializer(clazz)) {
+      return;
+    }
+    typeCount++;
+    if (synthetic && isBean(clazz)) {
+      try {
+        mapper.reader().forType(clazz).readValue("{}");
+      } catch (IOException | RuntimeException e) {
+        logger.atFine().withCause(e).log("could not read an empty %s", clazz.getName());
+      }
+    }
+  }
+
+  private void warmSerializers(TypeToken<?> returnType, ConfiguredObjectMapper mapper) {
+    Class<?> rawType = returnType.getRawType();
+    if (rawType == void.class || rawType == Void.class
+        || MediaResponse.class.isAssignableFrom(rawType)) {
+      return;
+    }
+    if (StreamingResponse.class.isAssignableFrom(rawType)) {
+      // Each element is written on its own, unwrapped.
+      warmSerializers(returnType.resolveType(StreamingResponse.class.getTypeParameters()[0]),
+          mapper);
+      return;
+    }
+    if (Collection.class.isAssignableFrom(rawType) || rawType.isArray()) {
+      // Collections are written wrapped in an "items" map.
+      warmSerializers(HashMap.class, mapper);
+    }
+    warmSerializers(returnType.getType(), mapper);
+  }
+
+  private void warmSerializers(Type rootType, ConfiguredObjectMapper mapper) {
+    if (!markWarmed(mapper, rootType)) {
+      return;
+    }
+    for (Class<?> clazz : mapper.prepareSerializers(rootType)) {
+      if (clazz != rootType && !markWarmed(mapper, clazz)) {
+        continue;
+      }
+      typeCount++;
+      if (synthetic && isBean(clazz)) {
+        Object instance = newInstance(clazz);
+        if (instance != null) {
+          try {
+            mapper.writer().writeValue(ByteStreams.nullOutputStream(), instance);
+          } catch (IOException | RuntimeException e) {
+            logger.atFine().withCause(e).log("could not write an empty %s", clazz.getName());
+          }
+        }
+      }
+    }
+  }
+
+  private boolean markWarmed(ConfiguredObjectMapper mapper, Type type) {
+    Set<Type> types = warmedTypes.get(mapper);
+    if (types == null) {
+      types = new HashSet<>();
+      warmedTypes.put(mapper, types);
+    }
+    return types.add(type);
+  }
+
+  private static boolean isBean(Class<?> clazz) {
+    return !clazz.isPrimitive() && !clazz.isArray() && !clazz.isEnum() && !clazz.isInterface()
+        && !Modifier.isAbstract(clazz.getModifiers()) && !clazz.getName().startsWith("java.");
+  }
+
+  @Nullable
+  private static Object newInstance(Class<?> clazz) {
+    try {
+      Constructor<?> constructor = clazz.getConstructor();
+      return constructor.newInstance();
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+}
@@ -23,6 +23,9 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 
@@ -39,6 +42,25 @@ public abstract class ServletInitializationParameters {
   private static final String EXCEPTION_COMPATIBILITY = "enableExceptionCompatibility";
   private static final String PRETTY_PRINT = "prettyPrint";
   private static final String ADD_CONTENT_LENGTH = "addContentLength";
+  private static final String DEADLINE_HEADER = "deadlineHeader";
+  private static final String DEFAULT_TIMEOUT_MILLIS = "defaultTimeoutMillis";
+  private static final String STARTUP_THREADS = "startupThreads";
+  private static final String LAZY_SERVICES = "lazyServices";
+  private static final String WARM_LAZY_SERVICES = "warmLazyServices";
+  private static final String WARM_SERIALIZERS = "warmSerializers";
+  private static final String WARM_SERIALIZERS_SYNTHETIC = "warmSerializersSynthetic";
+  private static final String OPEN_API_PATH = "openApiPath";
+  private static final String DISCOVERY_CACHE_DIRECTORY = "discoveryCacheDirectory";
+  private static final String MAX_OPEN_STREAMS = "maxOpenStreams";
+  private static final String STREAM_HEARTBEAT_MILLIS = "streamHeartbeatMillis";
+  private static final String MAX_REQUEST_BYTES = "maxRequestBytes";
+  private static final String IDEMPOTENCY_KEY_HEADER = "idempotencyKeyHeader";
+  private static final String IDEMPOTENCY_KEY_TTL_MILLIS = "idempotencyKeyTtlMillis";
+  private static final String IDEMPOTENCY_KEY_MAX_ENTRIES = "idempotencyKeyMaxEntries";
+  private static final String REQUEST_SAMPLES_PATH = "requestSamplesPath";
+  private static final String SLOW_REQUEST_THRESHOLD_MILLIS = "slowRequestThresholdMillis";
+  private static final String REQUEST_SAMPLES_PER_METHOD = "requestSamplesPerMethod";
+  private static final String CONFIG_RELOAD_INTERVAL_MILLIS = "configReloadIntervalMillis";
 
   private static final Splitter CSV_SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
   private static final Joiner CSV_JOINER = Joiner.on(',').skipNulls();
@@ -92,6 +114,133 @@ public abstract class ServletInitializationParameters {
    */
   public abstract boolean isAddContentLength();
 
+  /**
+   * Returns the name of the request header from which a client-supplied timeout, in milliseconds,
+   * is read to derive the request {@link com.google.api.server.spi.request.Deadline}, or
+   * {@code null} if client-supplied timeouts are ignored.
+   */
+  @Nullable
+  public abstract String getDeadlineHeader();
+
+  /**
+   * Returns the timeout in milliseconds applied to methods which do not specify
+   * {@link com.google.api.server.spi.config.ApiMethod#timeoutMillis()}. Zero means no timeout.
+   */
+  public abstract long getDefaultTimeoutMillis();
+
+  /**
+   * Returns the number of threads used to load service configurations during servlet
+   * initialization. Defaults to 1, which loads them serially.
+   */
+  public abstract int getStartupThreads();
+
+  /**
+   * Returns if service classes should be instantiated on their first request instead of during
+   * servlet initialization. Defaults to false.
+   */
+  public abstract boolean isLazyServicesEnabled();
+
+  /**
+   * Returns if lazily instantiated services should be created on a background thread once the
+   * servlet is initialized, rather than waiting for their first request. Only applies when
+   * {@link #isLazyServicesEnabled()} is true. Defaults to false.
+   */
+  public abstract boolean isWarmLazyServicesEnabled();
+
+  /**
+   * Returns if the serializers and deserializers of every method's return and parameter types
+   * should be built during servlet initialization instead of on the method's first request.
+   * Defaults to false.
+   */
+  public abstract boolean isWarmSerializersEnabled();
+
+  /**
+   * Returns if serializer warm-up should also write and read an empty instance of each type, so
+   * that the serialization code paths themselves are exercised before the first request. Only
+   * applies when {@link #isWarmSerializersEnabled()} is true. Defaults to false.
+   */
+  public abstract boolean isWarmSerializersSyntheticEnabled();
+
+  /**
+   * Returns the path, relative to the servlet, at which the OpenAPI document of the served APIs
+   * is available, or {@code null} if it is not served.
+   */
+  @Nullable
+  public abstract String getOpenApiPath();
+
+  /**
+   * Returns the directory in which rendered discovery documents are kept across restarts, or
+   * {@code null} if they are only kept in memory.
+   */
+  @Nullable
+  public abstract String getDiscoveryCacheDirectory();
+
+  /**
+   * Returns the maximum number of streaming responses
+   * ({@link com.google.api.server.spi.response.StreamingResponse}) which may be open at the same
+   * time. Further streaming requests are rejected with a 503 until one completes. Zero means no
+   * limit. Defaults to 100.
+   */
+  public abstract int getMaxOpenStreams();
+
+  /**
+   * Returns the interval in milliseconds at which an idle streaming response is sent a heartbeat,
+   * so that proxies do not close the connection. Zero disables heartbeats. Defaults to 15000.
+   */
+  public abstract long getStreamHeartbeatMillis();
+
+  /**
+   * Returns the maximum size in bytes of a request body, after decompression, for methods which do
+   * not specify {@link com.google.api.server.spi.config.ApiMethod#maxRequestBytes()}. Larger
+   * requests are rejected with a 413. Zero means no limit, which is the default.
+   */
+  public abstract long getMaxRequestBytes();
+
+  /**
+   * Returns the name of the request header carrying the idempotency key of methods with
+   * {@link com.google.api.server.spi.config.ApiMethod#idempotencyKey()} enabled. Defaults to
+   * {@code Idempotency-Key}.
+   */
+  public abstract String getIdempotencyKeyHeader();
+
+  /**
+   * Returns how long, in milliseconds, the response of a request with an idempotency key is
+   * replayed to retries. Defaults to one hour.
+   */
+  public abstract long getIdempotencyKeyTtlMillis();
+
+  /**
+   * Returns the maximum number of responses kept for replay by the default in-memory store.
+   * Defaults to 1000.
+   */
+  public abstract int getIdempotencyKeyMaxEntries();
+
+  /**
+   * Returns the path, relative to the servlet, at which the slowest and a sample of recent
+   * requests to each method are available, or {@code null} if requests are not sampled.
+   */
+  @Nullable
+  public abstract String getRequestSamplesPath();
+
+  /**
+   * Returns how long, in milliseconds, a request must take to be kept among the slowest requests
+   * to its method. Defaults to 1000.
+   */
+  public abstract long getSlowRequestThresholdMillis();
+
+  /**
+   * Returns how many of the slowest, and of the recent, requests are kept per method. Defaults to
+   * 10.
+   */
+  public abstract int getRequestSamplesPerMethod();
+
+  /**
+   * Returns the interval in milliseconds at which the API configuration is reloaded from config
+   * sources which are not static, and the method handlers rebuilt if it changed. Zero disables
+   * reloading, which is the default.
+   */
+  public abstract long getConfigReloadIntervalMillis();
+
   public static Builder builder() {
     return new AutoValue_ServletInitializationParameters.Builder()
         .setServletRestricted(true)
@@ -99,7 +248,22 @@ public abstract class ServletInitializationParameters {
         .setIllegalArgumentBackendError(false)
         .setExceptionCompatibilityEnabled(true)
         .setPrettyPrintEnabled(true)
-        .setAddContentLength(false);
+        .setAddContentLength(false)
+        .setDefaultTimeoutMillis(0)
+        .setStartupThreads(1)
+        .setLazyServicesEnabled(false)
+        .setWarmLazyServicesEnabled(false)
+        .setWarmSerializersEnabled(false)
+        .setWarmSerializersSyntheticEnabled(false)
+        .setMaxOpenStreams(100)
+        .setStreamHeartbeatMillis(15000)
+        .setMaxRequestBytes(0)
+        .setIdempotencyKeyHeader("Idempotency-Key")
+        .setIdempotencyKeyTtlMillis(TimeUnit.HOURS.toMillis(1))
+        .setIdempotencyKeyMaxEntries(1000)
+        .setSlowRequestThresholdMillis(1000)
+        .setRequestSamplesPerMethod(10)
+        .setConfigReloadIntervalMillis(0);
   }
 
   /**
@@ -175,6 +339,117 @@ public abstract class ServletInitializationParameters {
      */
     public abstract Builder setAddContentLength(boolean addContentLength);
 
+    /**
+     * Sets the name of the request header carrying a client-supplied timeout in milliseconds.
+     * Defaults to {@code null}, which ignores client-supplied timeouts.
+     */
+    public abstract Builder setDeadlineHeader(@Nullable String deadlineHeader);
+
+    /**
+     * Sets the timeout in milliseconds for methods which do not specify their own. Defaults to
+     * {@code 0}, which means no timeout.
+     */
+    public abstract Builder setDefaultTimeoutMillis(long defaultTimeoutMillis);
+
+    /**
+     * Sets the number of threads used to load service configurations. Defaults to {@code 1}.
+     */
+    public abstract Builder setStartupThreads(int startupThreads);
+
+    /**
+     * Sets if service classes should be instantiated on their first request. Defaults to
+     * {@code false}.
+     */
+    public abstract Builder setLazyServicesEnabled(boolean lazyServices);
+
+    /**
+     * Sets if lazily instantiated services should be created in the background after
+     * initialization. Defaults to {@code false}.
+     */
+    public abstract Builder setWarmLazyServicesEnabled(boolean warmLazyServices);
+
+    /**
+     * Sets if serializers and deserializers should be built during initialization. Defaults to
+     * {@code false}.
+     */
+    public abstract Builder setWarmSerializersEnabled(boolean warmSerializers);
+
+    /**
+     * Sets if serializer warm-up should also write and read empty instances. Defaults to
+     * {@code false}.
+     */
+    public abstract Builder setWarmSerializersSyntheticEnabled(boolean warmSerializersSynthetic);
+
+    /**
+     * Sets the path, relative to the servlet, at which to serve the OpenAPI document. Defaults to
+     * {@code null}, which does not serve it.
+     */
+    public abstract Builder setOpenApiPath(@Nullable String openApiPath);
+
+    /**
+     * Sets the directory in which rendered discovery documents are kept across restarts.
+     * Defaults to {@code null}, which keeps them in memory only.
+     */
+    public abstract Builder setDiscoveryCacheDirectory(@Nullable String discoveryCacheDirectory);
+
+    /**
+     * Sets the maximum number of streaming responses open at the same time. Defaults to
+     * {@code 100}; {@code 0} means no limit.
+     */
+    public abstract Builder setMaxOpenStreams(int maxOpenStreams);
+
+    /**
+     * Sets the heartbeat interval of idle streaming responses in milliseconds. Defaults to
+     * {@code 15000}; {@code 0} disables heartbeats.
+     */
+    public abstract Builder setStreamHeartbeatMillis(long streamHeartbeatMillis);
+
+    /**
+     * Sets the maximum request body size in bytes for methods which do not specify their own.
+     * Defaults to {@code 0}, which means no limit.
+     */
+    public abstract Builder setMaxRequestBytes(long maxRequestBytes);
+
+    /**
+     * Sets the name of the request header carrying idempotency keys. Defaults to
+     * {@code Idempotency-Key}.
+     */
+    public abstract Builder setIdempotencyKeyHeader(String idempotencyKeyHeader);
+
+    /**
+     * Sets how long responses are replayed, in milliseconds. Defaults to one hour.
+     */
+    public abstract Builder setIdempotencyKeyTtlMillis(long idempotencyKeyTtlMillis);
+
+    /**
+     * Sets the maximum number of responses kept for replay. Defaults to {@code 1000}.
+     */
+    public abstract Builder setIdempotencyKeyMaxEntries(int idempotencyKeyMaxEntries);
+
+    /**
+     * Sets the path at which request samples are served. Defaults to {@code null}, which disables
+     * sampling.
+     */
+    public abstract Builder setRequestSamplesPath(@Nullable String requestSamplesPath);
+
+    /**
+     * Sets how long a request must take to be kept among the slowest, in milliseconds. Defaults
+     * to {@code 1000}.
+     */
+    public abstract Builder setSlowRequestThresholdMillis(long slowRequestThresholdMillis);
+
+    /**
+     * Sets how many of the slowest, and of the recent, requests are kept per method. Defaults to
+     * {@code 10}.
+     */
+    public abstract Builder setRequestSamplesPerMethod(int requestSamplesPerMethod);
+
+    /**
+     * Sets the interval at which the API configuration is reloaded, in milliseconds. Defaults to
+     * {@code 0}, which disables reloading.
+     */
+    public abstract Builder setConfigReloadIntervalMillis(long configReloadIntervalMillis);
+
     abstract ServletInitializationParameters autoBuild();
 
     public ServletInitializationParameters build() {
@@ -222,6 +497,90 @@ public abstract class ServletInitializationParameters {
       if (addContentLength != null) {
         builder.setAddContentLength(parseBoolean(addContentLength, ADD_CONTENT_LENGTH));
       }
+      String deadlineHeader = config.getInitParameter(DEADLINE_HEADER);
+      if (deadlineHeader != null && !deadlineHeader.trim().isEmpty()) {
+        builder.setDeadlineHeader(deadlineHeader.trim());
+      }
+      String defaultTimeoutMillis = config.getInitParameter(DEFAULT_TIMEOUT_MILLIS);
+      if (defaultTimeoutMillis != null) {
+        builder.setDefaultTimeoutMillis(
+            parseNonNegativeLong(defaultTimeoutMillis, DEFAULT_TIMEOUT_MILLIS));
+      }
+      String startupThreads = config.getInitParameter(STARTUP_THREADS);
+      if (startupThreads != null) {
+        builder.setStartupThreads(parsePositiveInt(startupThreads, STARTUP_THREADS));
+      }
+      String lazyServices = config.getInitParameter(LAZY_SERVICES);
+      if (lazyServices != null) {
+        builder.setLazyServicesEnabled(parseBoolean(lazyServices, LAZY_SERVICES));
+      }
+      String warmLazyServices = config.getInitParameter(WARM_LAZY_SERVICES);
+      if (warmLazyServices != null) {
+        builder.setWarmLazyServicesEnabled(parseBoolean(warmLazyServices, WARM_LAZY_SERVICES));
+      }
+      String warmSerializers = config.getInitParameter(WARM_SERIALIZERS);
+      if (warmSerializers != null) {
+        builder.setWarmSerializersEnabled(parseBoolean(warmSerializers, WARM_SERIALIZERS));
+      }
+      String warmSerializersSynthetic = config.getInitParameter(WARM_SERIALIZERS_SYNTHETIC);
+      if (warmSerializersSynthetic != null) {
+        builder.setWarmSerializersSyntheticEnabled(
+            parseBoolean(warmSerializersSynthetic, WARM_SERIALIZERS_SYNTHETIC));
+      }
+      String openApiPath = config.getInitParameter(OPEN_API_PATH);
+      if (openApiPath != null && !openApiPath.trim().isEmpty()) {
+        builder.setOpenApiPath(openApiPath.trim());
+      }
+      String discoveryCacheDirectory = config.getInitParameter(DISCOVERY_CACHE_DIRECTORY);
+      if (discoveryCacheDirectory != null && !discoveryCacheDirectory.trim().isEmpty()) {
+        builder.setDiscoveryCacheDirectory(discoveryCacheDirectory.trim());
+      }
+      String maxOpenStreams = config.getInitParameter(MAX_OPEN_STREAMS);
+      if (maxOpenStreams != null) {
+        builder.setMaxOpenStreams(parseNonNegativeInt(maxOpenStreams, MAX_OPEN_STREAMS));
+      }
+      String streamHeartbeatMillis = config.getInitParameter(STREAM_HEARTBEAT_MILLIS);
+      if (streamHeartbeatMillis != null) {
+        builder.setStreamHeartbeatMillis(
+            parseNonNegativeLong(streamHeartbeatMillis, STREAM_HEARTBEAT_MILLIS));
+      }
+      String maxRequestBytes = config.getInitParameter(MAX_REQUEST_BYTES);
+      if (maxRequestBytes != null) {
+        builder.setMaxRequestBytes(parseNonNegativeLong(maxRequestBytes, MAX_REQUEST_BYTES));
+      }
+      String idempotencyKeyHeader = config.getInitParameter(IDEMPOTENCY_KEY_HEADER);
+      if (idempotencyKeyHeader != null && !idempotencyKeyHeader.trim().isEmpty()) {
+        builder.setIdempotencyKeyHeader(idempotencyKeyHeader.trim());
+      }
+      String idempotencyKeyTtlMillis = config.getInitParameter(IDEMPOTENCY_KEY_TTL_MILLIS);
+      if (idempotencyKeyTtlMillis != null) {
+        builder.setIdempotencyKeyTtlMillis(
+            parseNonNegativeLong(idempotencyKeyTtlMillis, IDEMPOTENCY_KEY_TTL_MILLIS));
+      }
+      String idempotencyKeyMaxEntries = config.getInitParameter(IDEMPOTENCY_KEY_MAX_ENTRIES);
+      if (idempotencyKeyMaxEntries != null) {
+        builder.setIdempotencyKeyMaxEntries(
+            parsePositiveInt(idempotencyKeyMaxEntries, IDEMPOTENCY_KEY_MAX_ENTRIES));
+      }
+      String requestSamplesPath = config.getInitParameter(REQUEST_SAMPLES_PATH);
+      if (requestSamplesPath != null && !requestSamplesPath.trim().isEmpty()) {
+        builder.setRequestSamplesPath(requestSamplesPath.trim());
+      }
+      String slowRequestThresholdMillis = config.getInitParameter(SLOW_REQUEST_THRESHOLD_MILLIS);
+      if (slowRequestThresholdMillis != null) {
+        builder.setSlowRequestThresholdMillis(
+            parseNonNegativeLong(slowRequestThresholdMillis, SLOW_REQUEST_THRESHOLD_MILLIS));
+      }
+      String requestSamplesPerMethod = config.getInitParameter(REQUEST_SAMPLES_PER_METHOD);
+      if (requestSamplesPerMethod != null) {
+        builder.setRequestSamplesPerMethod(
+            parsePositiveInt(requestSamplesPerMethod, REQUEST_SAMPLES_PER_METHOD));
+      }
+      String configReloadIntervalMillis = config.getInitParameter(CONFIG_RELOAD_INTERVAL_MILLIS);
+      if (configReloadIntervalMillis != null) {
+        builder.setConfigReloadIntervalMillis(
+            parseNonNegativeLong(configReloadIntervalMillis, CONFIG_RELOAD_INTERVAL_MILLIS));
+      }
     }
     return builder.build();
   }
@@ -237,6 +596,48 @@ public abstract class ServletInitializationParameters {
         descriptionForErrors, booleanString));
   }
 
+  private static long parseNonNegativeLong(String longString, String descriptionForErrors) {
+    try {
+      long value = Long.parseLong(longString.trim());
+      if (value >= 0) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the exception below.
+    }
+    throw new IllegalArgumentException(String.format(
+        "Expected a non-negative integer for '%s' servlet initialization parameter but got '%s'",
+        descriptionForErrors, longString));
+  }
+
+  private static int parseNonNegativeInt(String intString, String descriptionForErrors) {
+    try {
+      int value = Integer.parseInt(intString.trim());
+      if (value >= 0) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the exception below.
+    }
+    throw new IllegalArgumentException(String.format(
+        "Expected a non-negative integer for '%s' servlet initialization parameter but got '%s'",
+        descriptionForErrors, intString));
+  }
+
+  private static int parsePositiveInt(String intString, String descriptionForErrors) {
+    try {
+      int value = Integer.parseInt(intString.trim());
+      if (value > 0) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the exception below.
+    }
+    throw new IllegalArgumentException(String.format(
+        "Expected a positive integer for '%s' servlet initialization parameter but got '%s'",
+        descriptionForErrors, intString));
+  }
+
   private static Class<?> getClassForName(String className, ClassLoader classLoader)
       throws ServletException {
     try {
@@ -250,7 +651,7 @@ public abstract class ServletInitializationParameters {
    * Returns the parameters as a {@link java.util.Map} of parameter name to {@link String} value.
    */
   public ImmutableMap<String, String> asMap() {
-    return ImmutableMap.<String, String>builder()
+    ImmutableMap.Builder<String, String> builder = ImmutableMap.<String, String>builder()
         .put(SERVICES, CSV_JOINER.join(Iterables.transform(getServiceClasses(), CLASS_TO_NAME)))
         .put(RESTRICTED, Boolean.toString(isServletRestricted()))
         .put(CLIENT_ID_WHITELIST_ENABLED, Boolean.toString(isClientIdWhitelistEnabled()))
@@ -258,6 +659,33 @@ public abstract class ServletInitializationParameters {
         .put(EXCEPTION_COMPATIBILITY, Boolean.toString(isExceptionCompatibilityEnabled()))
         .put(PRETTY_PRINT, Boolean.toString(isPrettyPrintEnabled()))
         .put(ADD_CONTENT_LENGTH, Boolean.toString(isAddContentLength()))
-        .build();
+        .put(DEFAULT_TIMEOUT_MILLIS, Long.toString(getDefaultTimeoutMillis()))
+        .put(STARTUP_THREADS, Integer.toString(getStartupThreads()))
+        .put(LAZY_SERVICES, Boolean.toString(isLazyServicesEnabled()))
+        .put(WARM_LAZY_SERVICES, Boolean.toString(isWarmLazyServicesEnabled()))
+        .put(WARM_SERIALIZERS, Boolean.toString(isWarmSerializersEnabled()))
+        .put(WARM_SERIALIZERS_SYNTHETIC, Boolean.toString(isWarmSerializersSyntheticEnabled()))
+        .put(MAX_OPEN_STREAMS, Integer.toString(getMaxOpenStreams()))
+        .put(STREAM_HEARTBEAT_MILLIS, Long.toString(getStreamHeartbeatMillis()))
+        .put(MAX_REQUEST_BYTES, Long.toString(getMaxRequestBytes()))
+        .put(IDEMPOTENCY_KEY_HEADER, getIdempotencyKeyHeader())
+        .put(IDEMPOTENCY_KEY_TTL_MILLIS, Long.toString(getIdempotencyKeyTtlMillis()))
+        .put(IDEMPOTENCY_KEY_MAX_ENTRIES, Integer.toString(getIdempotencyKeyMaxEntries()))
+        .put(SLOW_REQUEST_THRESHOLD_MILLIS, Long.toString(getSlowRequestThresholdMillis()))
+        .put(REQUEST_SAMPLES_PER_METHOD, Integer.toString(getRequestSamplesPerMethod()))
+        .put(CONFIG_RELOAD_INTERVAL_MILLIS, Long.toString(getConfigReloadIntervalMillis()));
+    if (getDeadlineHeader() != null) {
+      builder.put(DEADLINE_HEADER, getDeadlineHeader());
+    }
+    if (getOpenApiPath() != null) {
+      builder.put(OPEN_API_PATH, getOpenApiPath());
+    }
+    if (getDiscoveryCacheDirectory() != null) {
+      builder.put(DISCOVERY_CACHE_DIRECTORY, getDiscoveryCacheDirectory());
+    }
+    if (getRequestSamplesPath() != null) {
+      builder.put(REQUEST_SAMPLES_PATH, getRequestSamplesPath());
+    }
+    return builder.build();
   }
 }
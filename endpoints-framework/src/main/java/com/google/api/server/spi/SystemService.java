@@ -17,6 +17,7 @@ package com.google.api.server.spi;
 
 import com.google.api.server.spi.config.ApiConfigException;
 import com.google.api.server.spi.config.ApiConfigLoader;
+import com.google.api.server.spi.config.ApiConfigSource;
 import com.google.api.server.spi.config.ApiConfigWriter;
 import com.google.api.server.spi.config.annotationreader.ApiConfigAnnotationReader;
 import com.google.api.server.spi.config.jsonwriter.JsonConfigWriter;
@@ -27,8 +28,9 @@ import com.google.api.server.spi.config.model.ApiSerializationConfig;
 import com.google.api.server.spi.config.model.ApiSerializationConfig.SerializerConfig;
 import com.google.api.server.spi.config.model.SchemaRepository;
 import com.google.api.server.spi.config.validation.ApiConfigValidator;
-import com.google.api.server.spi.discovery.CachingDiscoveryProvider;
+import com.google.api.server.spi.discovery.DiscoveryDocumentCache;
 import com.google.api.server.spi.discovery.DiscoveryGenerator;
+import com.google.api.server.spi.discovery.DiscoveryProvider;
 import com.google.api.server.spi.discovery.LocalDiscoveryProvider;
 import com.google.api.server.spi.discovery.ProxyingDiscoveryService;
 import com.google.api.server.spi.request.ParamReader;
@@ -39,23 +41,40 @@ import com.google.api.server.spi.response.UnauthorizedException;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import javax.annotation.Nullable;
 
@@ -97,11 +116,25 @@ public class SystemService {
   private final Map<String, String> serviceApiVersions;
   private final Map<String, ApiSerializationConfig> serializationConfigs;
   private final Multimap<String, ApiConfig> initialConfigsByApi;
+  /**
+   * The initial configurations whose methods the Endpoints annotation processor validated at
+   * compile time.
+   */
+  private final Set<ApiConfig> compileTimeValidatedConfigs;
 
   private final ApiConfigLoader configLoader;
   private final ServiceContext serviceContext;
   private final ApiConfigWriter configWriter;
   private final boolean isIllegalArgumentBackendError;
+  @Nullable private SchemaRepository schemaRepository;
+  @Nullable private ApiConfigValidator configValidator;
+  @Nullable private volatile GeneratedApiConfigs generatedApiConfigs;
+  /**
+   * The discovery service and what its documents are generated with, if it is enabled.
+   */
+  @Nullable private ProxyingDiscoveryService discoveryService;
+  @Nullable private DiscoveryGenerator discoveryGenerator;
+  @Nullable private DiscoveryDocumentCache discoveryDocumentCache;
 
   public static class EndpointNode {
     private final Object endpoint;
@@ -114,8 +147,12 @@ public class SystemService {
       this.methods = new HashMap<String, EndpointMethod>();
     }
 
+    /**
+     * Returns the service instance of this endpoint, creating it first if it was registered
+     * lazily.
+     */
     public Object getEndpoint() {
-      return endpoint;
+      return resolve(endpoint);
     }
 
     public ApiConfig getConfig() {
@@ -161,6 +198,8 @@ public class SystemService {
     this.serviceApiVersions = new HashMap<String, String>();
     this.serializationConfigs = new HashMap<String, ApiSerializationConfig>();
     this.initialConfigsByApi = ArrayListMultimap.create();
+    this.compileTimeValidatedConfigs =
+        Collections.newSetFromMap(new IdentityHashMap<ApiConfig, Boolean>());
     this.configLoader = configLoader;
     this.serviceContext = ServiceContext.create(appName, ServiceContext.DEFAULT_API_NAME);
     this.configWriter = configWriter;
@@ -178,10 +217,30 @@ public class SystemService {
    * @throws ApiConfigException
    */
   public int registerService(Class<?> serviceClass, Object service) throws ApiConfigException {
-    Preconditions.checkArgument(serviceClass.isInstance(service),
+    return registerLoadedService(serviceClass, service, loadConfiguration(serviceClass, service));
+  }
+
+  /**
+   * Registers a service class whose instance is created by {@code serviceFactory} when the service
+   * is first used, rather than at registration time. The service configuration is still loaded
+   * and validated up front.
+   *
+   * @param serviceClass is the class to start parsing endpoints
+   * @param serviceFactory creates the service object; called at most once
+   * @return number of service methods added, -1 on duplicate insertion
+   * @throws ApiConfigException
+   */
+  public <T> int registerLazyService(Class<T> serviceClass, Supplier<? extends T> serviceFactory)
+      throws ApiConfigException {
+    return registerService(serviceClass, new LazyService(serviceClass, serviceFactory));
+  }
+
+  private ApiConfig loadConfiguration(Class<?> serviceClass, Object service)
+      throws ApiConfigException {
+    Preconditions.checkArgument(
+        service instanceof LazyService || serviceClass.isInstance(service),
         "service is not an instance of " + serviceClass.getName());
-    ApiConfig apiConfig = configLoader.loadConfiguration(serviceContext, serviceClass);
-    return registerLoadedService(serviceClass, service, apiConfig);
+    return configLoader.loadConfiguration(serviceContext, serviceClass);
   }
 
   public int registerService(Object service) throws ApiConfigException {
@@ -197,8 +256,11 @@ public class SystemService {
       // The first map maps service names to an api-version key, and the second map maps the key to
       // a serialization config. This is currently required because the API information is not kept
       // outside of this method, but it would be nice to find a better way to clean this up.
-      String api = apiConfig.getName() + "-" + apiConfig.getVersion();
+      String api = getApiVersion(apiConfig);
       initialConfigsByApi.put(api, apiConfig);
+      if (configLoader.isValidatedAtCompileTime(serviceClass)) {
+        compileTimeValidatedConfigs.add(apiConfig);
+      }
 
       ApiSerializationConfig serializationConfig = serializationConfigs.get(api);
       if (serializationConfig == null) {
@@ -220,20 +282,171 @@ public class SystemService {
 
   public <T> EndpointNode updateEndpointConfig(T endpoint, ApiConfig newConfig,
       @Nullable EndpointNode oldNode) {
-    EndpointNode newNode = new EndpointNode(endpoint, newConfig);
-    for (EndpointMethod method : newConfig.getApiClassConfig().getMethods().keySet()) {
-      newNode.methods.put(method.getMethod().getName(), method);
-    }
-
+    EndpointNode newNode = createEndpointNode(endpoint, newConfig);
     if (oldNode == null) {
       endpoints.putIfAbsent(endpoint, newNode);
     } else {
       endpoints.replace(endpoint, oldNode, newNode);
     }
+    generatedApiConfigs = null;
 
     return newNode;
   }
 
+  private EndpointNode createEndpointNode(Object endpoint, ApiConfig config) {
+    EndpointNode node = new EndpointNode(endpoint, config);
+    GeneratedInvokers generatedInvokers =
+        GeneratedInvokers.forServiceClass(getServiceClass(endpoint));
+    for (EndpointMethod method : config.getApiClassConfig().getMethods().keySet()) {
+      if (generatedInvokers != null && method.getInvoker() == null) {
+        method.setInvoker(generatedInvokers.getInvoker(method));
+      }
+      node.methods.put(method.getMethod().getName(), method);
+    }
+    return node;
+  }
+
+  /**
+   * Reloads the configuration of each endpoint from the config sources which are not static, and
+   * replaces the endpoints whose configuration changed. Nothing is replaced if any changed
+   * configuration is invalid.
+   *
+   * @return the replaced endpoints
+   */
+  public synchronized ImmutableList<EndpointNode> reloadEndpointConfigs()
+      throws ApiConfigException {
+    return commitConfigReload(prepareConfigReload());
+  }
+
+  /**
+   * Reloads the configuration of each endpoint from the config sources which are not static,
+   * without applying it. Each API with a changed configuration is validated as a whole, together
+   * with the unchanged classes of the API, as at startup.
+   *
+   * @return the reloaded configuration, to be applied with {@link #commitConfigReload}
+   * @throws ApiConfigException if a configuration could not be loaded or an API is invalid
+   */
+  public synchronized ConfigReload prepareConfigReload() throws ApiConfigException {
+    Map<EndpointNode, EndpointNode> replacements = new LinkedHashMap<>();
+    for (EndpointNode node : endpoints.values()) {
+      if (configLoader.isStaticConfig(node.config)) {
+        continue;
+      }
+      ApiConfig config = configLoader.reloadConfiguration(
+          serviceContext, getServiceClass(node.endpoint), node.config);
+      if (!config.equals(node.config)) {
+        replacements.put(node, createEndpointNode(node.endpoint, config));
+      }
+    }
+    ImmutableList.Builder<EndpointNode> builder = ImmutableList.builder();
+    for (EndpointNode node : endpoints.values()) {
+      EndpointNode replacement = replacements.get(node);
+      builder.add(replacement != null ? replacement : node);
+    }
+    ImmutableList<EndpointNode> reloadedEndpoints = builder.build();
+    DiscoveryProvider discoveryProvider = null;
+    if (!replacements.isEmpty()) {
+      if (configValidator != null) {
+        validateReloadedApis(replacements.values(), reloadedEndpoints);
+      }
+      if (discoveryService != null) {
+        discoveryProvider = createDiscoveryProvider(reloadedEndpoints);
+      }
+    }
+    return new ConfigReload(replacements, reloadedEndpoints, discoveryProvider);
+  }
+
+  private void validateReloadedApis(Collection<EndpointNode> replacements,
+      List<EndpointNode> reloadedEndpoints) throws ApiConfigException {
+    Multimap<String, ApiConfig> configsByApi = ArrayListMultimap.create();
+    for (EndpointNode node : reloadedEndpoints) {
+      configsByApi.put(getApiVersion(node.config), node.config);
+    }
+    Set<String> reloadedApis = new LinkedHashSet<>();
+    for (EndpointNode node : replacements) {
+      reloadedApis.add(getApiVersion(node.config));
+    }
+    for (String api : reloadedApis) {
+      configValidator.validate(configsByApi.get(api));
+    }
+  }
+
+  private static String getApiVersion(ApiConfig config) {
+    return config.getName() + "-" + config.getVersion();
+  }
+
+  /**
+   * Creates a discovery provider describing the external APIs among {@code endpoints}.
+   */
+  private LocalDiscoveryProvider createDiscoveryProvider(List<EndpointNode> endpoints) {
+    ApiConfig.Factory factory = new ApiConfig.Factory();
+    ImmutableList.Builder<ApiConfig> apiConfigs = ImmutableList.builder();
+    for (EndpointNode node : endpoints) {
+      if (node.isExternalEndpoint()) {
+        apiConfigs.add(factory.copy(node.getConfig()));
+      }
+    }
+    return new LocalDiscoveryProvider(
+        apiConfigs.build(), discoveryGenerator, schemaRepository, discoveryDocumentCache);
+  }
+
+  /**
+   * Applies a configuration returned by {@link #prepareConfigReload()}, replacing the endpoints
+   * whose configuration changed, and the discovery documents describing them, all at once.
+   *
+   * @return the replaced endpoints
+   * @throws IllegalStateException if an endpoint was replaced since the reload was prepared, in
+   *     which case nothing is replaced
+   */
+  public synchronized ImmutableList<EndpointNode> commitConfigReload(ConfigReload reload) {
+    for (EndpointNode oldNode : reload.replacements.keySet()) {
+      Preconditions.checkState(endpoints.get(oldNode.endpoint) == oldNode,
+          "endpoint %s was replaced since the reload was prepared",
+          getServiceClass(oldNode.endpoint).getName());
+    }
+    for (Entry<EndpointNode, EndpointNode> entry : reload.replacements.entrySet()) {
+      endpoints.replace(entry.getKey().endpoint, entry.getKey(), entry.getValue());
+    }
+    if (!reload.replacements.isEmpty()) {
+      generatedApiConfigs = null;
+    }
+    if (reload.discoveryProvider != null) {
+      discoveryService.replaceProvider(reload.discoveryProvider);
+    }
+    return ImmutableList.copyOf(reload.replacements.values());
+  }
+
+  /**
+   * A configuration reloaded by {@link #prepareConfigReload()}, which was loaded and validated
+   * but is not applied yet.
+   */
+  public static final class ConfigReload {
+    private final Map<EndpointNode, EndpointNode> replacements;
+    private final ImmutableList<EndpointNode> endpoints;
+    @Nullable private final DiscoveryProvider discoveryProvider;
+
+    private ConfigReload(Map<EndpointNode, EndpointNode> replacements,
+        ImmutableList<EndpointNode> endpoints, @Nullable DiscoveryProvider discoveryProvider) {
+      this.replacements = replacements;
+      this.endpoints = endpoints;
+      this.discoveryProvider = discoveryProvider;
+    }
+
+    /**
+     * Returns whether no configuration changed.
+     */
+    public boolean isEmpty() {
+      return replacements.isEmpty();
+    }
+
+    /**
+     * Returns all endpoints as they are once this reload is applied.
+     */
+    public ImmutableList<EndpointNode> getEndpoints() {
+      return endpoints;
+    }
+  }
+
   /**
    * Registers a service class.  Only public methods in this class and all its superclasses, except
    * Object, are registered.  Two methods are not allowed to have the same name.  Registering a
@@ -281,7 +494,7 @@ public class SystemService {
   }
 
   private EndpointNode getEndpointNode(String serviceName) throws ServiceException {
-    Object service = findService(serviceName);
+    Object service = findServiceKey(serviceName);
     EndpointNode node = endpoints.get(service);
     if (node == null) {
       throw new ServiceException(404, "service '" + serviceName + "' not found");
@@ -291,12 +504,32 @@ public class SystemService {
   }
 
   /**
-   * Finds a service object with the {@code name}
+   * Finds a service object with the {@code name}. A lazily registered service is instantiated by
+   * the first call which finds it.
    *
    * @throws ServiceException when more than one service is mapped to the same {@code name} or
    *         when the named service does not exist
    */
   public Object findService(String name) throws ServiceException {
+    return resolve(findServiceKey(name));
+  }
+
+  /**
+   * Instantiates every lazily registered service which has not been used yet.
+   *
+   * @return the number of services instantiated
+   */
+  public int instantiateLazyServices() {
+    int count = 0;
+    for (Object service : endpoints.keySet()) {
+      if (service instanceof LazyService && ((LazyService) service).instantiate()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private Object findServiceKey(String name) throws ServiceException {
     List<Object> services = this.servicesByName.get(name);
     if (services == null || services.isEmpty()) {
       throw new ServiceException(404, "service '" + name + "' not found");
@@ -326,6 +559,14 @@ public class SystemService {
    */
   public Method findServiceMethod(Object service, String methodName) throws ServiceException {
     EndpointNode endpointNode = service == null ? null : endpoints.get(service);
+    if (endpointNode == null && service != null) {
+      // The service may have been registered lazily, in which case it is keyed by its holder.
+      List<Object> services = servicesByName.get(getServiceClass(service).getName());
+      if (services != null && services.size() == 1 && services.get(0) instanceof LazyService
+          && ((LazyService) services.get(0)).get() == service) {
+        endpointNode = endpoints.get(services.get(0));
+      }
+    }
     if (endpointNode != null) {
       EndpointMethod method = endpointNode.methods.get(methodName);
       if (method != null) {
@@ -342,11 +583,27 @@ public class SystemService {
    */
   public void invokeServiceMethod(Object service, Method method, ParamReader paramReader,
       ResultWriter resultWriter) throws IOException {
+    invokeServiceMethod(service, method, null, paramReader, resultWriter);
+  }
 
+  /**
+   * Invokes an {@code endpointMethod} on a {@code service} given a {@code paramReader} to read
+   * parameters and a {@code resultWriter} to write result. The method's generated invoker is used
+   * if it has one, otherwise it is invoked through reflection.
+   */
+  public void invokeServiceMethod(Object service, EndpointMethod endpointMethod,
+      ParamReader paramReader, ResultWriter resultWriter) throws IOException {
+    invokeServiceMethod(service, endpointMethod.getMethod(), endpointMethod.getInvoker(),
+        paramReader, resultWriter);
+  }
+
+  private void invokeServiceMethod(Object service, Method method, @Nullable MethodInvoker invoker,
+      ParamReader paramReader, ResultWriter resultWriter) throws IOException {
     try {
       Object[] params = paramReader.read();
       logger.atFine().log("params=%s (String)", Arrays.toString(params));
-      Object response = method.invoke(service, params);
+      Object response =
+          invoker != null ? invoker.invoke(service, params) : method.invoke(service, params);
       resultWriter.write(response);
     } catch (IllegalArgumentException | IllegalAccessException e) {
       logger.atSevere().withCause(e).log("exception occurred while calling backend method");
@@ -383,22 +640,58 @@ public class SystemService {
    * @return A map from {@link ApiKey}s to wire-formatted configuration strings.
    */
   public Map<ApiKey, String> getApiConfigs() throws ApiConfigException {
-    return configWriter.writeConfig(
-        FluentIterable.from(endpoints.values())
-            .transform(ENDPOINT_NODE_TO_API_CONFIG)
-            .filter(NON_INTERNAL_PREDICATE));
+    ImmutableList<ApiConfig> configs = FluentIterable.from(endpoints.values())
+        .transform(ENDPOINT_NODE_TO_API_CONFIG)
+        .filter(NON_INTERNAL_PREDICATE)
+        .toList();
+    GeneratedApiConfigs generated = generatedApiConfigs;
+    if (generated == null || !generated.isGeneratedFrom(configs)) {
+      generated = new GeneratedApiConfigs(configs, configWriter.writeConfig(configs));
+      generatedApiConfigs = generated;
+    }
+    return generated.configStrings;
   }
 
-  public ImmutableList<EndpointNode> getEndpoints() {
-    return ImmutableList.copyOf(endpoints.values());
-  }
+  /**
+   * Wire-format configuration memoized with the configs it was generated from. The configs are
+   * compared by identity, so a config swapped in by {@link #updateEndpointConfig} is never served
+   * stale output, even when it races with generation.
+   */
+  private static class GeneratedApiConfigs {
+    private final ImmutableList<ApiConfig> configs;
+    private final Map<ApiKey, String> configStrings;
 
-  private void validateRegisteredServices(ApiConfigValidator validator) throws ApiConfigException {
-    for (String api : initialConfigsByApi.keySet()) {
-      validator.validate(initialConfigsByApi.get(api));
+    GeneratedApiConfigs(ImmutableList<ApiConfig> configs, Map<ApiKey, String> configStrings) {
+      this.configs = configs;
+      this.configStrings = Collections.unmodifiableMap(configStrings);
+    }
+
+    boolean isGeneratedFrom(List<ApiConfig> otherConfigs) {
+      if (configs.size() != otherConfigs.size()) {
+        return false;
+      }
+      for (int i = 0; i < configs.size(); i++) {
+        if (configs.get(i) != otherConfigs.get(i)) {
+          return false;
+        }
+      }
+      return true;
     }
   }
 
+  /**
+   * Returns the schema repository shared by config validation and discovery, or {@code null} if
+   * this service was not created by a {@link Builder} with defaults.
+   */
+  @Nullable
+  public SchemaRepository getSchemaRepository() {
+    return schemaRepository;
+  }
+
+  public ImmutableList<EndpointNode> getEndpoints() {
+    return ImmutableList.copyOf(endpoints.values());
+  }
+
   private static boolean isOAuthRequestException(Class<?> clazz) {
     while (Object.class != clazz) {
       if (OAUTH_EXCEPTION_CLASS.equals(clazz.getName())) {
@@ -409,8 +702,15 @@ public class SystemService {
     return false;
   }
 
+  private static Object resolve(Object service) {
+    return service instanceof LazyService ? ((LazyService) service).get() : service;
+  }
+
   @SuppressWarnings("unchecked")
   private static <T> Class<? super T> getServiceClass(T service) {
+    if (service instanceof LazyService) {
+      return (Class<? super T>) ((LazyService) service).serviceClass;
+    }
     Class<?> clazz = service.getClass();
     Enhancers[] enhancers = Enhancers.values();
     for (int i = 0; i < enhancers.length; ++i) {
@@ -437,6 +737,44 @@ public class SystemService {
     }
   }
 
+  /**
+   * Stands in for a service object which is created on first use.
+   */
+  private static final class LazyService {
+    private final Class<?> serviceClass;
+    private final Supplier<?> instance;
+    private volatile boolean instantiated;
+
+    LazyService(Class<?> serviceClass, Supplier<?> serviceFactory) {
+      this.serviceClass = Preconditions.checkNotNull(serviceClass, "serviceClass");
+      this.instance = Suppliers.memoize(Preconditions.checkNotNull(serviceFactory));
+    }
+
+    Object get() {
+      Object service = instance.get();
+      Preconditions.checkState(serviceClass.isInstance(service),
+          "service is not an instance of " + serviceClass.getName());
+      instantiated = true;
+      return service;
+    }
+
+    /**
+     * Instantiates the service if it has not been yet, returning whether this call created it.
+     */
+    boolean instantiate() {
+      if (instantiated) {
+        return false;
+      }
+      get();
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return serviceClass.getName();
+    }
+  }
+
   public static Builder builder() {
     return new Builder();
   }
@@ -454,6 +792,8 @@ public class SystemService {
     private boolean enableDiscoveryService;
     private Map<Class<?>, Object> services = Maps.newLinkedHashMap();
     private SchemaRepository schemaRepository;
+    private int startupThreads = 1;
+    @Nullable private File discoveryCacheDirectory;
 
     public Builder withDefaults(ClassLoader classLoader) throws ClassNotFoundException {
       setStandardConfigLoader(classLoader);
@@ -461,20 +801,25 @@ public class SystemService {
       typeLoader = new TypeLoader(classLoader);
       isIllegalArgumentBackendError = false;
       enableDiscoveryService = false;
-      setConfigWriter(new JsonConfigWriter(typeLoader, configValidator));
       schemaRepository = new SchemaRepository(typeLoader);
       setConfigValidator(new ApiConfigValidator(typeLoader, schemaRepository));
+      setConfigWriter(new JsonConfigWriter(typeLoader, configValidator));
       return this;
     }
 
-    public Builder setStandardConfigLoader(ClassLoader classLoader)
-        throws ClassNotFoundException {
+    /**
+     * Sets a config loader which reads the annotations of the service classes, and then applies
+     * {@code configSources}, if any. Sources which are not static are read again by
+     * {@link SystemService#reloadEndpointConfigs()}.
+     */
+    public Builder setStandardConfigLoader(ClassLoader classLoader,
+        ApiConfigSource... configSources) throws ClassNotFoundException {
       TypeLoader typeLoader = new TypeLoader(classLoader);
       ApiConfigAnnotationReader annotationReader =
           new ApiConfigAnnotationReader(typeLoader.getAnnotationTypes());
 
-      this.configLoader =
-          new ApiConfigLoader(new ApiConfig.Factory(), typeLoader, annotationReader);
+      this.configLoader = new ApiConfigLoader(
+          new ApiConfig.Factory(), typeLoader, annotationReader, configSources);
       return this;
     }
 
@@ -503,43 +848,190 @@ public class SystemService {
       return this;
     }
 
+    /**
+     * Sets a directory in which rendered discovery documents are kept across restarts, so that
+     * an instance serving unchanged APIs does not regenerate them. Defaults to {@code null}, which
+     * keeps them in memory only.
+     */
+    public Builder setDiscoveryCacheDirectory(@Nullable File discoveryCacheDirectory) {
+      this.discoveryCacheDirectory = discoveryCacheDirectory;
+      return this;
+    }
+
     public Builder addService(Class<?> serviceClass, Object service) {
       this.services.put(serviceClass, service);
       return this;
     }
 
+    /**
+     * Adds a service class whose instance is created by {@code serviceFactory} on first use.
+     */
+    public <T> Builder addLazyService(Class<T> serviceClass, Supplier<? extends T> serviceFactory) {
+      this.services.put(serviceClass, new LazyService(serviceClass, serviceFactory));
+      return this;
+    }
+
+    /**
+     * Sets the number of threads used to load service configurations in {@link #build()}.
+     * Defaults to {@code 1}, which loads them serially on the calling thread.
+     */
+    public Builder setStartupThreads(int startupThreads) {
+      Preconditions.checkArgument(startupThreads > 0, "startupThreads must be positive");
+      this.startupThreads = startupThreads;
+      return this;
+    }
+
     public SystemService build() throws ApiConfigException {
       Preconditions.checkNotNull(configLoader, "configLoader");
       Preconditions.checkNotNull(configValidator, "configValidator");
       Preconditions.checkNotNull(configWriter, "configWriter");
       SystemService systemService = new SystemService(configLoader, appName, configWriter,
           isIllegalArgumentBackendError);
+      systemService.schemaRepository = schemaRepository;
+      systemService.configValidator = configValidator;
+      int threads = Math.min(startupThreads, Math.max(services.size(), 1));
+      ExecutorService executor = threads <= 1 ? null : Executors.newFixedThreadPool(threads,
+          new ThreadFactoryBuilder().setNameFormat("endpoints-startup-%d").setDaemon(true).build());
+      try {
+        return build(systemService, executor, threads);
+      } finally {
+        if (executor != null) {
+          executor.shutdownNow();
+        }
+      }
+    }
+
+    private SystemService build(
+        SystemService systemService, @Nullable ExecutorService executor, int threads)
+        throws ApiConfigException {
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      List<ApiConfig> apiConfigs = loadConfigurations(systemService, executor);
+      long loadMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+      // Registration is kept serial and in insertion order so that name collisions resolve the
+      // same way regardless of the number of startup threads.
+      int i = 0;
       for (Entry<Class<?>, Object> entry : services.entrySet()) {
-        systemService.registerService(entry.getKey(), entry.getValue());
+        systemService.registerLoadedService(
+            entry.getKey(), entry.getValue(), apiConfigs.get(i++));
       }
+      long registerMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS) - loadMillis;
       // Discovery must come last so it can initialize correctly.
       if (enableDiscoveryService) {
         ProxyingDiscoveryService discoveryService = new ProxyingDiscoveryService();
         systemService.registerService(discoveryService);
+        systemService.discoveryService = discoveryService;
+        systemService.discoveryGenerator = new DiscoveryGenerator(typeLoader);
+        systemService.discoveryDocumentCache = discoveryCacheDirectory != null
+            ? new DiscoveryDocumentCache(discoveryCacheDirectory, configWriter) : null;
         discoveryService.initialize(
-            new CachingDiscoveryProvider(new LocalDiscoveryProvider(
-                getApiConfigs(systemService), new DiscoveryGenerator(typeLoader),
-                schemaRepository)));
+            systemService.createDiscoveryProvider(systemService.getEndpoints()));
+      }
+      long discoveryMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS) - loadMillis - registerMillis;
+      validateRegisteredServices(systemService, executor);
+      long validateMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS) - loadMillis - registerMillis
+          - discoveryMillis;
+      logger.atInfo().log(
+          "registered %d services in %d ms (load %d ms on %d threads, register %d ms, "
+              + "discovery %d ms, validate %d ms)",
+          services.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS), loadMillis, threads,
+          registerMillis, discoveryMillis, validateMillis);
+      if (schemaRepository != null) {
+        logger.atFine().log("computed %d schemas, reused %d",
+            schemaRepository.getComputedCount(), schemaRepository.getReusedCount());
       }
-      systemService.validateRegisteredServices(configValidator);
       return systemService;
     }
 
-    private ImmutableList<ApiConfig> getApiConfigs(SystemService systemService) {
-      ApiConfig.Factory factory = new ApiConfig.Factory();
-      ImmutableList.Builder<ApiConfig> builder =
-          ImmutableList.builder();
-      for (EndpointNode node : systemService.getEndpoints()) {
-        if (node.isExternalEndpoint()) {
-          builder.add(factory.copy(node.getConfig()));
+    /**
+     * Loads the configuration of every added service, in insertion order. Loading is independent
+     * per service class, so it is spread over the startup threads.
+     */
+    private List<ApiConfig> loadConfigurations(
+        final SystemService systemService, @Nullable ExecutorService executor)
+        throws ApiConfigException {
+      List<Callable<ApiConfig>> tasks = new ArrayList<>(services.size());
+      for (final Entry<Class<?>, Object> entry : services.entrySet()) {
+        tasks.add(new Callable<ApiConfig>() {
+          @Override
+          public ApiConfig call() throws ApiConfigException {
+            return systemService.loadConfiguration(entry.getKey(), entry.getValue());
+          }
+        });
+      }
+      return runAll(tasks, executor);
+    }
+
+    /**
+     * Validates each registered API. APIs are validated independently and share a thread-safe
+     * {@link SchemaRepository}, so they are spread over the startup threads. The methods of APIs
+     * whose classes were all validated by the annotation processor are not validated again.
+     */
+    private void validateRegisteredServices(
+        SystemService systemService, @Nullable ExecutorService executor)
+        throws ApiConfigException {
+      List<Callable<Void>> tasks = new ArrayList<>();
+      Map<String, Collection<ApiConfig>> configsByApi = systemService.initialConfigsByApi.asMap();
+      for (final Collection<ApiConfig> configs : configsByApi.values()) {
+        final boolean validatedAtCompileTime =
+            systemService.compileTimeValidatedConfigs.containsAll(configs);
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws ApiConfigException {
+            if (validatedAtCompileTime) {
+              configValidator.validateApiWide(configs);
+            } else {
+              configValidator.validate(configs);
+            }
+            return null;
+          }
+        });
+      }
+      runAll(tasks, executor);
+    }
+
+    /**
+     * Runs {@code tasks} on {@code executor}, or on the calling thread if it is {@code null}, and
+     * returns their results in order. Fails with the first failure, in task order.
+     */
+    private static <T> List<T> runAll(List<Callable<T>> tasks, @Nullable ExecutorService executor)
+        throws ApiConfigException {
+      List<T> results = new ArrayList<>(tasks.size());
+      try {
+        if (executor == null) {
+          for (Callable<T> task : tasks) {
+            results.add(task.call());
+          }
+        } else {
+          for (Future<T> future : executor.invokeAll(tasks)) {
+            results.add(getResult(future));
+          }
+        }
+        return results;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ApiConfigException(e);
+      } catch (ApiConfigException | RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new ApiConfigException(e);
+      }
+    }
+
+    private static <T> T getResult(Future<T> future)
+        throws ApiConfigException, InterruptedException {
+      try {
+        return future.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof ApiConfigException) {
+          throw (ApiConfigException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
         }
+        throw new ApiConfigException(cause);
       }
-      return builder.build();
     }
   }
 }
@@ -211,6 +211,9 @@ public final class TypeLoader {
     injectedClassTypes.add(classLoader.loadClass("javax.servlet.http.HttpServletRequest"));
     injectedClassTypes.add(classLoader.loadClass("javax.servlet.ServletContext"));
     injectedClassTypes.add(classLoader.loadClass("com.google.api.server.spi.auth.common.User"));
+    injectedClassTypes.add(classLoader.loadClass("com.google.api.server.spi.request.Deadline"));
+    injectedClassTypes.add(
+        classLoader.loadClass("org.apache.commons.fileupload.FileItemStream"));
     return Collections.unmodifiableSet(injectedClassTypes);
   }
 
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.server.spi.types.DateAndTime;
+import com.google.api.server.spi.types.SimpleDate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Writes and reads the string forms of {@code long}, {@link Date}, {@link SimpleDate} and
+ * {@link DateAndTime} values directly to and from the generator's and parser's character buffers.
+ * The output is identical to {@link Long#toString(long)},
+ * {@link DateTime#toStringRfc3339()} and {@code String.format("%04d-%02d-%02d", ...)}; input is
+ * accepted exactly as {@link DateTime#parseRfc3339(String)} and the former regular expression for
+ * simple dates accept it.
+ * <p>
+ * Date-times outside of years 1583 to 9999, where {@link java.util.GregorianCalendar} switches to
+ * the Julian calendar or more digits are needed, and uncommon fraction lengths are delegated to
+ * {@link DateTime}.
+ */
+public final class ValueCodecs {
+  private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+  private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+  // Bounds of the date-times formatted and parsed without delegating to DateTime.
+  private static final long MIN_FAST_MILLIS = daysFromCivil(1583, 1, 1) * MILLIS_PER_DAY;
+  private static final long MAX_FAST_MILLIS = daysFromCivil(10000, 1, 1) * MILLIS_PER_DAY;
+  // Returned by parseRfc3339 for input that must be parsed by DateTime.
+  private static final long NOT_PARSED = Long.MIN_VALUE;
+  // Large enough for Long.MIN_VALUE and for "yyyy-MM-ddTHH:mm:ss.SSS+HH:MM".
+  private static final int BUFFER_SIZE = 32;
+
+  private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+    @Override
+    protected char[] initialValue() {
+      return new char[BUFFER_SIZE];
+    }
+  };
+
+  private ValueCodecs() { }
+
+  /**
+   * Writes a {@code long} as a JSON string, as {@link Long#toString(long)} would format it.
+   */
+  public static void writeLongString(long value, JsonGenerator generator) throws IOException {
+    char[] buffer = BUFFER.get();
+    generator.writeString(buffer, 0, formatLong(value, buffer, 0));
+  }
+
+  /**
+   * Writes a {@link Date} as an RFC 3339 string in the default time zone, as
+   * {@link DateTime#toStringRfc3339()} would format it.
+   */
+  public static void writeDate(Date value, JsonGenerator generator) throws IOException {
+    long millis = value.getTime();
+    int tzShift = TimeZone.getDefault().getOffset(millis) / (int) MILLIS_PER_MINUTE;
+    char[] buffer = BUFFER.get();
+    int length = formatRfc3339(millis, tzShift, buffer, 0);
+    if (length < 0) {
+      generator.writeString(new DateTime(millis, tzShift).toStringRfc3339());
+    } else {
+      generator.writeString(buffer, 0, length);
+    }
+  }
+
+  /**
+   * Writes a {@link SimpleDate} as a {@code yyyy-mm-dd} string.
+   */
+  public static void writeSimpleDate(SimpleDate value, JsonGenerator generator)
+      throws IOException {
+    char[] buffer = BUFFER.get();
+    // SimpleDate only allows years between 1 and 9999, so all fields fit their width.
+    formatDigits(value.getYear(), 4, buffer, 0);
+    buffer[4] = '-';
+    formatDigits(value.getMonth(), 2, buffer, 5);
+    buffer[7] = '-';
+    formatDigits(value.getDay(), 2, buffer, 8);
+    generator.writeString(buffer, 0, 10);
+  }
+
+  /**
+   * Reads a {@link Date} from an RFC 3339 string.
+   *
+   * @throws NumberFormatException if the string is not a valid RFC 3339 date or date-time
+   */
+  public static Date readDate(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+      long millis = parseRfc3339(
+          parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+      if (millis != NOT_PARSED) {
+        return new Date(millis);
+      }
+    }
+    return new Date(new DateTime(parser.readValueAs(String.class)).getValue());
+  }
+
+  /**
+   * Reads a {@link DateAndTime} from an RFC 3339 string.
+   */
+  public static DateAndTime readDateAndTime(JsonParser parser) throws IOException {
+    return DateAndTime.parseRfc3339String(parser.getCurrentToken() == JsonToken.VALUE_STRING
+        ? parser.getText() : parser.readValueAs(String.class));
+  }
+
+  /**
+   * Reads a {@link SimpleDate} from a {@code yyyy-mm-dd} string, ignoring surrounding whitespace.
+   *
+   * @throws IllegalArgumentException if the string is not a valid date
+   */
+  public static SimpleDate readSimpleDate(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+      SimpleDate date = parseSimpleDate(
+          parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+      if (date != null) {
+        return date;
+      }
+    }
+    throw new IllegalArgumentException(
+        "String is not an RFC3339 formated date (yyyy-mm-dd): "
+            + parser.readValueAs(String.class).trim());
+  }
+
+  /**
+   * Formats {@code value} in decimal into {@code buffer} at {@code offset}, and returns the
+   * number of characters written.
+   */
+  static int formatLong(long value, char[] buffer, int offset) {
+    if (value == Long.MIN_VALUE) {
+      String min = Long.toString(Long.MIN_VALUE);
+      min.getChars(0, min.length(), buffer, offset);
+      return min.length();
+    }
+    int position = offset;
+    if (value < 0) {
+      buffer[position++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+      digits++;
+    }
+    int end = position + digits;
+    for (int i = end - 1; i >= position; i--) {
+      buffer[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    return end - offset;
+  }
+
+  /**
+   * Formats an instant as {@code yyyy-MM-ddTHH:mm:ss.SSS} followed by {@code Z} or the time zone
+   * shift, and returns the number of characters written, or -1 if the local date-time is outside
+   * of the years 1583 to 9999.
+   */
+  static int formatRfc3339(long millis, int tzShiftMinutes, char[] buffer, int offset) {
+    long local = millis + tzShiftMinutes * MILLIS_PER_MINUTE;
+    if (local < MIN_FAST_MILLIS || local >= MAX_FAST_MILLIS) {
+      return -1;
+    }
+    // Rounds towards negative infinity, as dates before 1970 are negative.
+    long days = local / MILLIS_PER_DAY - (local % MILLIS_PER_DAY < 0 ? 1 : 0);
+    int millisOfDay = (int) (local - days * MILLIS_PER_DAY);
+    // Civil date from days since the epoch, in the proleptic Gregorian calendar.
+    long z = days + 719468;
+    long era = z / 146097;
+    int dayOfEra = (int) (z - era * 146097);
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int shiftedMonth = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+    int position = offset;
+    position = formatDigits(year, 4, buffer, position);
+    buffer[position++] = '-';
+    position = formatDigits(month, 2, buffer, position);
+    buffer[position++] = '-';
+    position = formatDigits(day, 2, buffer, position);
+    buffer[position++] = 'T';
+    position = formatDigits(millisOfDay / 3600000, 2, buffer, position);
+    buffer[position++] = ':';
+    position = formatDigits(millisOfDay / 60000 % 60, 2, buffer, position);
+    buffer[position++] = ':';
+    position = formatDigits(millisOfDay / 1000 % 60, 2, buffer, position);
+    buffer[position++] = '.';
+    position = formatDigits(millisOfDay % 1000, 3, buffer, position);
+    if (tzShiftMinutes == 0) {
+      buffer[position++] = 'Z';
+    } else {
+      int absShift = tzShiftMinutes;
+      if (absShift > 0) {
+        buffer[position++] = '+';
+      } else {
+        buffer[position++] = '-';
+        absShift = -absShift;
+      }
+      position = formatDigits(absShift / 60, 2, buffer, position);
+      buffer[position++] = ':';
+      position = formatDigits(absShift % 60, 2, buffer, position);
+    }
+    return position - offset;
+  }
+
+  /**
+   * Parses an RFC 3339 date or date-time into milliseconds since the epoch, or returns
+   * {@link #NOT_PARSED} if it must be parsed by {@link DateTime}: because it is invalid, before
+   * the year 1583, has a month outside of 1 to 12, or has a fraction of other than three digits.
+   * Other fields roll over as in a lenient {@link java.util.GregorianCalendar}.
+   */
+  static long parseRfc3339(char[] chars, int offset, int length) {
+    int end = offset + length;
+    if (length < 10 || chars[offset + 4] != '-' || chars[offset + 7] != '-') {
+      return NOT_PARSED;
+    }
+    int year = parseDigits(chars, offset, 4);
+    int month = parseDigits(chars, offset + 5, 2);
+    int day = parseDigits(chars, offset + 8, 2);
+    if (year < 1583 || month < 1 || month > 12 || day < 0) {
+      return NOT_PARSED;
+    }
+    long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+    int position = offset + 10;
+    if (position == end) {
+      return millis;
+    }
+    // A time is required for a time zone shift.
+    if ((chars[position] != 'T' && chars[position] != 't') || end - position < 9
+        || chars[position + 3] != ':' || chars[position + 6] != ':') {
+      return NOT_PARSED;
+    }
+    int hours = parseDigits(chars, position + 1, 2);
+    int minutes = parseDigits(chars, position + 4, 2);
+    int seconds = parseDigits(chars, position + 7, 2);
+    if (hours < 0 || minutes < 0 || seconds < 0) {
+      return NOT_PARSED;
+    }
+    millis += hours * 3600000L + minutes * 60000L + seconds * 1000L;
+    position += 9;
+    if (position < end && chars[position] == '.') {
+      int fraction = end - position >= 4 ? parseDigits(chars, position + 1, 3) : -1;
+      if (fraction < 0 || (end > position + 4 && isDigit(chars[position + 4]))) {
+        return NOT_PARSED;
+      }
+      millis += fraction;
+      position += 4;
+    }
+    if (position == end) {
+      return millis;
+    }
+    char zone = chars[position];
+    if ((zone == 'Z' || zone == 'z') && position + 1 == end) {
+      return millis;
+    }
+    if ((zone != '+' && zone != '-') || end - position != 6 || chars[position + 3] != ':') {
+      return NOT_PARSED;
+    }
+    int shiftHours = parseDigits(chars, position + 1, 2);
+    int shiftMinutes = parseDigits(chars, position + 4, 2);
+    if (shiftHours < 0 || shiftMinutes < 0) {
+      return NOT_PARSED;
+    }
+    long shift = (shiftHours * 60 + shiftMinutes) * MILLIS_PER_MINUTE;
+    return zone == '-' ? millis + shift : millis - shift;
+  }
+
+  /**
+   * Parses a {@code yyyy-mm-dd} date, ignoring surrounding whitespace, or returns {@code null} if
+   * it doesn't have that form.
+   *
+   * @throws IllegalArgumentException if the date has that form but is invalid
+   */
+  static SimpleDate parseSimpleDate(char[] chars, int offset, int length) {
+    int start = offset;
+    int end = offset + length;
+    // Trims as String.trim() does.
+    while (start < end && chars[start] <= ' ') {
+      start++;
+    }
+    while (end > start && chars[end - 1] <= ' ') {
+      end--;
+    }
+    if (end - start != 10 || chars[start + 4] != '-' || chars[start + 7] != '-') {
+      return null;
+    }
+    int year = parseDigits(chars, start, 4);
+    int month = parseDigits(chars, start + 5, 2);
+    int day = parseDigits(chars, start + 8, 2);
+    if (year < 0 || month < 0 || day < 0) {
+      return null;
+    }
+    return new SimpleDate(year, month, day);
+  }
+
+  private static int formatDigits(int value, int width, char[] buffer, int offset) {
+    for (int i = offset + width - 1; i >= offset; i--) {
+      buffer[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    return offset + width;
+  }
+
+  // Returns the value of count ASCII digits, or -1 if any character is not one.
+  private static int parseDigits(char[] chars, int offset, int count) {
+    int value = 0;
+    for (int i = offset; i < offset + count; i++) {
+      char c = chars[i];
+      if (!isDigit(c)) {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  // Days since the epoch of a date in the proleptic Gregorian calendar. Days beyond the end of the
+  // month roll over into the next, as in a lenient GregorianCalendar.
+  private static long daysFromCivil(int year, int month, int day) {
+    int y = month <= 2 ? year - 1 : year;
+    int era = y / 400;
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468;
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.api.server.spi.config.model.EndpointsFlag;
+import com.google.api.server.spi.config.model.StandardParameters;
+import com.google.common.base.Splitter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The encodings that request and response bodies can be exchanged in. JSON is always the default;
+ * clients opt into a binary encoding through the {@code Content-Type} of the request, and through
+ * the {@code alt} standard parameter or the {@code Accept} header for the response. Every format
+ * is backed by the same object mapper configuration, so modules and transformers apply equally.
+ *
+ * <p>Unless {@link EndpointsFlag#JSON_POOLED_BUFFERS} is disabled, the factories of every format
+ * draw their buffers from {@link PooledBufferRecycler#shared()} rather than a per-thread recycler.
+ */
+public enum WireFormat {
+  JSON("json", "application/json", SystemService.MIME_JSON) {
+    @Override
+    JsonFactory createFactory() {
+      return POOLED_BUFFERS ? new PooledMappingJsonFactory() : new MappingJsonFactory();
+    }
+  },
+  SMILE("smile", "application/x-jackson-smile", "application/x-jackson-smile") {
+    @Override
+    JsonFactory createFactory() {
+      return POOLED_BUFFERS ? new PooledSmileFactory() : new SmileFactory();
+    }
+  },
+  CBOR("cbor", "application/cbor", "application/cbor") {
+    @Override
+    JsonFactory createFactory() {
+      return POOLED_BUFFERS ? new PooledCBORFactory() : new CBORFactory();
+    }
+  };
+
+  private static final boolean POOLED_BUFFERS = EndpointsFlag.JSON_POOLED_BUFFERS.isEnabled();
+  private static final Splitter MEDIA_RANGE_SPLITTER = Splitter.on(',').trimResults();
+
+  private final String alt;
+  private final String mediaType;
+  private final String contentType;
+
+  WireFormat(String alt, String mediaType, String contentType) {
+    this.alt = alt;
+    this.mediaType = mediaType;
+    this.contentType = contentType;
+  }
+
+  /**
+   * Returns the value of the {@code alt} parameter which selects this format.
+   */
+  public String getAlt() {
+    return alt;
+  }
+
+  /**
+   * Returns the media type, without parameters, which identifies this format.
+   */
+  public String getMediaType() {
+    return mediaType;
+  }
+
+  /**
+   * Returns the {@code Content-Type} header value of responses written in this format.
+   */
+  public String getContentType() {
+    return contentType;
+  }
+
+  abstract JsonFactory createFactory();
+
+  /**
+   * Returns the format of a request body, based on its {@code Content-Type}.
+   */
+  public static WireFormat forRequest(HttpServletRequest request) {
+    WireFormat format = fromMediaType(request.getContentType());
+    return format != null ? format : JSON;
+  }
+
+  /**
+   * Returns the format a response should be written in. An {@code alt} parameter naming a format
+   * takes precedence over the {@code Accept} header, in which the recognized media range with the
+   * highest quality wins, the first one listed breaking ties. Ranges with a quality of 0 are never
+   * chosen, and wildcard ranges stand for JSON unless JSON is listed itself.
+   */
+  public static WireFormat forResponse(HttpServletRequest request) {
+    String alt = request.getParameter(StandardParameters.ALT);
+    if (alt != null) {
+      for (WireFormat format : values()) {
+        if (format.alt.equalsIgnoreCase(alt)) {
+          return format;
+        }
+      }
+    }
+    String accept = request.getHeader("Accept");
+    if (accept == null) {
+      return JSON;
+    }
+    WireFormat best = null;
+    float bestQuality = 0;
+    float wildcardQuality = 0;
+    boolean jsonListed = false;
+    for (String mediaRange : MEDIA_RANGE_SPLITTER.split(accept)) {
+      WireFormat format = fromMediaType(mediaRange);
+      if (format != null) {
+        float quality = getQuality(mediaRange);
+        jsonListed |= format == JSON;
+        if (quality > bestQuality) {
+          best = format;
+          bestQuality = quality;
+        }
+      } else if (isWildcard(mediaRange)) {
+        wildcardQuality = Math.max(wildcardQuality, getQuality(mediaRange));
+      }
+    }
+    if (!jsonListed && wildcardQuality > bestQuality) {
+      return JSON;
+    }
+    return best != null ? best : JSON;
+  }
+
+  @Nullable
+  private static WireFormat fromMediaType(@Nullable String value) {
+    if (value == null) {
+      return null;
+    }
+    String mediaType = getMediaType(value);
+    for (WireFormat format : values()) {
+      if (format.mediaType.equals(mediaType)) {
+        return format;
+      }
+    }
+    return null;
+  }
+
+  private static String getMediaType(String value) {
+    int paramStart = value.indexOf(';');
+    return (paramStart < 0 ? value : value.substring(0, paramStart))
+        .trim().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static boolean isWildcard(String mediaRange) {
+    String mediaType = getMediaType(mediaRange);
+    return mediaType.equals("*/*") || mediaType.equals("application/*");
+  }
+
+  /**
+   * Returns the {@code q} parameter of a media range, which defaults to 1. A malformed quality is
+   * treated as 0, so that the range is ignored.
+   */
+  private static float getQuality(String mediaRange) {
+    int paramStart = mediaRange.indexOf(';');
+    while (paramStart >= 0) {
+      int paramEnd = mediaRange.indexOf(';', paramStart + 1);
+      String param = (paramEnd < 0
+          ? mediaRange.substring(paramStart + 1) : mediaRange.substring(paramStart + 1, paramEnd))
+          .trim();
+      if (param.length() > 1 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q')
+          && param.charAt(1) == '=') {
+        try {
+          float quality = Float.parseFloat(param.substring(2).trim());
+          return quality >= 0 && quality <= 1 ? quality : 0;
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+      paramStart = paramEnd;
+    }
+    return 1;
+  }
+
+  private static class PooledMappingJsonFactory extends MappingJsonFactory {
+    private static final long serialVersionUID = 1L;
+
+    PooledMappingJsonFactory() {
+    }
+
+    PooledMappingJsonFactory(JsonFactory src, ObjectMapper mapper) {
+      super(src, mapper);
+    }
+
+    @Override
+    public BufferRecycler _getBufferRecycler() {
+      return PooledBufferRecycler.shared();
+    }
+
+    @Override
+    public JsonFactory copy() {
+      return new PooledMappingJsonFactory(this, null);
+    }
+  }
+
+  private static class PooledSmileFactory extends SmileFactory {
+    private static final long serialVersionUID = 1L;
+
+    PooledSmileFactory() {
+    }
+
+    PooledSmileFactory(SmileFactory src, ObjectCodec codec) {
+      super(src, codec);
+    }
+
+    @Override
+    public BufferRecycler _getBufferRecycler() {
+      return PooledBufferRecycler.shared();
+    }
+
+    @Override
+    public SmileFactory copy() {
+      return new PooledSmileFactory(this, null);
+    }
+  }
+
+  private static class PooledCBORFactory extends CBORFactory {
+    private static final long serialVersionUID = 1L;
+
+    PooledCBORFactory() {
+    }
+
+    PooledCBORFactory(CBORFactory src, ObjectCodec codec) {
+      super(src, codec);
+    }
+
+    @Override
+    public BufferRecycler _getBufferRecycler() {
+      return PooledBufferRecycler.shared();
+    }
+
+    @Override
+    public CBORFactory copy() {
+      return new PooledCBORFactory(this, null);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.capture;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Ordering;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The binary format of capture logs.
+ *
+ * <p>A capture log is a directory of segment files, named {@code capture-NNNNNN.log} in the order
+ * they were written. Each segment starts with a 4 byte magic number, followed by records. Each
+ * record is a 4 byte length followed by that many bytes holding, in {@link DataOutputStream}
+ * encoding: the timestamp, method, request URI, an optional query string, a 2 byte header count
+ * with a name and value per header, and a 4 byte body length followed by the body.
+ */
+final class CaptureLog {
+  static final int MAGIC = 0x45504331;
+  private static final String SEGMENT_PREFIX = "capture-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private CaptureLog() { }
+
+  static String segmentName(int index) {
+    return String.format(Locale.ENGLISH, "%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+  }
+
+  /**
+   * Returns the index of a segment file, or -1 if the file is not a segment.
+   */
+  static int segmentIndex(File file) {
+    String name = file.getName();
+    if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(
+          name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the segments of the capture log in {@code directory}, oldest first.
+   */
+  static ImmutableList<File> listSegments(File directory) {
+    File[] files = directory.listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return segmentIndex(new File(dir, name)) >= 0;
+      }
+    });
+    if (files == null) {
+      return ImmutableList.of();
+    }
+    // Segment names are zero padded, so name order is write order.
+    return Ordering.natural().immutableSortedCopy(Arrays.asList(files));
+  }
+
+  static byte[] encode(CaptureRecord record) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + record.getBody().length);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeLong(record.getTimestampMillis());
+    out.writeUTF(record.getMethod());
+    out.writeUTF(record.getRequestUri());
+    out.writeBoolean(record.getQueryString() != null);
+    if (record.getQueryString() != null) {
+      out.writeUTF(record.getQueryString());
+    }
+    out.writeShort(record.getHeaders().size());
+    for (Map.Entry<String, String> header : record.getHeaders().entries()) {
+      out.writeUTF(header.getKey());
+      out.writeUTF(header.getValue());
+    }
+    out.writeInt(record.getBody().length);
+    out.write(record.getBody());
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  static CaptureRecord decode(byte[] encoded) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+    long timestampMillis = in.readLong();
+    String method = in.readUTF();
+    String requestUri = in.readUTF();
+    String queryString = in.readBoolean() ? in.readUTF() : null;
+    int headerCount = in.readUnsignedShort();
+    ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+    for (int i = 0; i < headerCount; i++) {
+      headers.put(in.readUTF(), in.readUTF());
+    }
+    byte[] body = new byte[in.readInt()];
+    in.readFully(body);
+    return new CaptureRecord(timestampMillis, method, requestUri, queryString, headers.build(),
+        body);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.capture;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads the {@link CaptureRecord}s of a capture log, oldest first. A record cut short, e.g. by a
+ * crash while it was written, ends its segment.
+ */
+public class CaptureLogReader implements Closeable {
+  private final Iterator<File> segments;
+  private DataInputStream in;
+
+  private CaptureLogReader(ImmutableList<File> segments) {
+    this.segments = segments.iterator();
+  }
+
+  /**
+   * Opens a capture log directory, as written by {@link CaptureLogWriter}, or a single segment
+   * file.
+   */
+  public static CaptureLogReader open(File path) throws IOException {
+    if (path.isDirectory()) {
+      return new CaptureLogReader(CaptureLog.listSegments(path));
+    } else if (path.isFile()) {
+      return new CaptureLogReader(ImmutableList.of(path));
+    }
+    throw new IOException(path + " does not exist");
+  }
+
+  /**
+   * Returns the next record, or {@code null} at the end of the log.
+   */
+  @Nullable
+  public CaptureRecord read() throws IOException {
+    while (true) {
+      if (in == null) {
+        if (!segments.hasNext()) {
+          return null;
+        }
+        openSegment(segments.next());
+      }
+      byte[] encoded = readRecord();
+      if (encoded != null) {
+        return CaptureLog.decode(encoded);
+      }
+      closeSegment();
+    }
+  }
+
+  private void openSegment(File segment) throws IOException {
+    in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+    int magic;
+    try {
+      magic = in.readInt();
+    } catch (EOFException e) {
+      magic = 0;
+    }
+    if (magic != CaptureLog.MAGIC) {
+      closeSegment();
+      throw new IOException(segment + " is not a capture log");
+    }
+  }
+
+  @Nullable
+  private byte[] readRecord() throws IOException {
+    try {
+      int length = in.readInt();
+      if (length < 0) {
+        throw new IOException("corrupt capture record");
+      }
+      byte[] encoded = new byte[length];
+      in.readFully(encoded);
+      return encoded;
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  private void closeSegment() throws IOException {
+    if (in != null) {
+      in.close();
+      in = null;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeSegment();
+  }
+}
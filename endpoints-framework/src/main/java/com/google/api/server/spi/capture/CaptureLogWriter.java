@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.capture;
+
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Appends {@link CaptureRecord}s to a capture log directory. The log is split into segments of
+ * about {@code maxSegmentBytes}; once there are more than {@code maxSegments}, the oldest segment
+ * is deleted, so the log never takes much more than {@code maxSegmentBytes * maxSegments} bytes.
+ * Existing segments are kept, and new records go to a new segment.
+ *
+ * <p>This class is thread-safe.
+ */
+public class CaptureLogWriter implements Closeable {
+  private final File directory;
+  private final long maxSegmentBytes;
+  private final int maxSegments;
+  private final Deque<File> segments = new ArrayDeque<>();
+  private int nextSegmentIndex;
+  private DataOutputStream out;
+  private long segmentBytes;
+
+  public CaptureLogWriter(File directory, long maxSegmentBytes, int maxSegments)
+      throws IOException {
+    Preconditions.checkArgument(maxSegmentBytes > 0, "maxSegmentBytes must be positive");
+    Preconditions.checkArgument(maxSegments > 0, "maxSegments must be positive");
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("cannot create capture directory " + directory);
+    }
+    this.directory = directory;
+    this.maxSegmentBytes = maxSegmentBytes;
+    this.maxSegments = maxSegments;
+    for (File segment : CaptureLog.listSegments(directory)) {
+      segments.addLast(segment);
+      nextSegmentIndex = CaptureLog.segmentIndex(segment) + 1;
+    }
+  }
+
+  /**
+   * Appends a record and flushes it to disk.
+   */
+  public synchronized void append(CaptureRecord record) throws IOException {
+    byte[] encoded = CaptureLog.encode(record);
+    if (out == null || (segmentBytes > 4 && segmentBytes + 4 + encoded.length > maxSegmentBytes)) {
+      startSegment();
+    }
+    out.writeInt(encoded.length);
+    out.write(encoded);
+    out.flush();
+    segmentBytes += 4 + encoded.length;
+  }
+
+  private void startSegment() throws IOException {
+    closeSegment();
+    File segment = new File(directory, CaptureLog.segmentName(nextSegmentIndex++));
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment)));
+    out.writeInt(CaptureLog.MAGIC);
+    segmentBytes = 4;
+    segments.addLast(segment);
+    while (segments.size() > maxSegments) {
+      File oldest = segments.removeFirst();
+      if (!oldest.delete() && oldest.exists()) {
+        throw new IOException("cannot delete capture segment " + oldest);
+      }
+    }
+  }
+
+  private void closeSegment() throws IOException {
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    closeSegment();
+  }
+}
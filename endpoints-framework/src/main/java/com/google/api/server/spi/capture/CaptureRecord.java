@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.capture;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableListMultimap;
+
+import javax.annotation.Nullable;
+
+/**
+ * A request recorded by {@link RequestCaptureFilter}, as stored in a capture log.
+ */
+public final class CaptureRecord {
+  /**
+   * The value recorded in place of a redacted header or query parameter.
+   */
+  public static final String REDACTED = "<redacted>";
+
+  private final long timestampMillis;
+  private final String method;
+  private final String requestUri;
+  private final String queryString;
+  private final ImmutableListMultimap<String, String> headers;
+  private final byte[] body;
+
+  /**
+   * @param timestampMillis the time the request was received, in milliseconds since the epoch
+   * @param method the HTTP method
+   * @param requestUri the request URI, including the servlet path but not the query string
+   * @param queryString the query string, or {@code null} if there is none
+   * @param headers the recorded headers
+   * @param body the request body, empty if there is none
+   */
+  public CaptureRecord(long timestampMillis, String method, String requestUri,
+      @Nullable String queryString, ImmutableListMultimap<String, String> headers, byte[] body) {
+    this.timestampMillis = timestampMillis;
+    this.method = Preconditions.checkNotNull(method, "method");
+    this.requestUri = Preconditions.checkNotNull(requestUri, "requestUri");
+    this.queryString = queryString;
+    this.headers = Preconditions.checkNotNull(headers, "headers");
+    this.body = Preconditions.checkNotNull(body, "body");
+  }
+
+  public long getTimestampMillis() {
+    return timestampMillis;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getRequestUri() {
+    return requestUri;
+  }
+
+  @Nullable
+  public String getQueryString() {
+    return queryString;
+  }
+
+  public ImmutableListMultimap<String, String> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Returns the request body. The array is shared and must not be modified.
+   */
+  public byte[] getBody() {
+    return body;
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + requestUri + (queryString != null ? "?" + queryString : "");
+  }
+}
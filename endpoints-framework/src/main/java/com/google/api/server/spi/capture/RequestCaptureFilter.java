@@ -0,0 +1,327 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.capture;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.io.ByteStreams;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * A filter that records a sample of the requests it sees to a capture log, which can be replayed
+ * with the {@code replay-capture} command of the Endpoints tool. Map it in front of
+ * {@link com.google.api.server.spi.EndpointsServlet}, e.g.:
+ *
+ * <pre>
+ * &lt;filter&gt;
+ *   &lt;filter-name&gt;capture&lt;/filter-name&gt;
+ *   &lt;filter-class&gt;com.google.api.server.spi.capture.RequestCaptureFilter&lt;/filter-class&gt;
+ *   &lt;init-param&gt;
+ *     &lt;param-name&gt;captureDirectory&lt;/param-name&gt;
+ *     &lt;param-value&gt;/tmp/endpoints-capture&lt;/param-value&gt;
+ *   &lt;/init-param&gt;
+ * &lt;/filter&gt;
+ * </pre>
+ *
+ * <p>Init parameters:
+ * <ul>
+ *   <li>{@code captureDirectory}: the directory of the capture log (required)</li>
+ *   <li>{@code sampleRate}: the fraction of requests recorded, 0.01 by default</li>
+ *   <li>{@code headers}: the comma-separated headers recorded</li>
+ *   <li>{@code redactedHeaders}: the comma-separated headers recorded with their value replaced
+ *       by {@link CaptureRecord#REDACTED}, {@code Authorization} by default</li>
+ *   <li>{@code redactedQueryParameters}: the comma-separated query parameters recorded with their
+ *       value replaced by {@link CaptureRecord#REDACTED}, {@code access_token},
+ *       {@code bearer_token} and {@code key} by default</li>
+ *   <li>{@code maxBodyBytes}: requests with a larger body are not recorded, 1 MiB by default</li>
+ *   <li>{@code maxSegmentBytes} and {@code maxSegments}: bound the disk used by the log, 8
+ *       segments of 16 MiB by default</li>
+ * </ul>
+ *
+ * <p>Form-encoded requests are never recorded, as reading their body would hide their parameters
+ * from the servlet.
+ */
+public class RequestCaptureFilter implements Filter {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final Splitter CSV_SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
+  private static final Splitter QUERY_SPLITTER = Splitter.on('&').omitEmptyStrings();
+  private static final String ENCODED_REDACTED = encode(CaptureRecord.REDACTED);
+
+  @VisibleForTesting
+  static final String CAPTURE_DIRECTORY = "captureDirectory";
+  @VisibleForTesting
+  static final String SAMPLE_RATE = "sampleRate";
+  @VisibleForTesting
+  static final String HEADERS = "headers";
+  @VisibleForTesting
+  static final String REDACTED_HEADERS = "redactedHeaders";
+  @VisibleForTesting
+  static final String REDACTED_QUERY_PARAMETERS = "redactedQueryParameters";
+  @VisibleForTesting
+  static final String MAX_BODY_BYTES = "maxBodyBytes";
+  @VisibleForTesting
+  static final String MAX_SEGMENT_BYTES = "maxSegmentBytes";
+  @VisibleForTesting
+  static final String MAX_SEGMENTS = "maxSegments";
+
+  private static final String DEFAULT_HEADERS = "Content-Type,Content-Encoding,Accept,"
+      + "Accept-Encoding,Authorization,X-HTTP-Method-Override,Idempotency-Key";
+  private static final String DEFAULT_REDACTED_HEADERS = "Authorization";
+  private static final String DEFAULT_REDACTED_QUERY_PARAMETERS = "access_token,bearer_token,key";
+  private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+  private double sampleRate;
+  private ImmutableSet<String> headers;
+  private ImmutableSet<String> redactedHeaders;
+  private ImmutableSet<String> redactedQueryParameters;
+  private int maxBodyBytes;
+  private CaptureLogWriter writer;
+
+  @Override
+  public void init(FilterConfig config) throws ServletException {
+    String directory = config.getInitParameter(CAPTURE_DIRECTORY);
+    if (directory == null || directory.trim().isEmpty()) {
+      throw new ServletException("'" + CAPTURE_DIRECTORY + "' filter parameter is required");
+    }
+    sampleRate = parseDouble(config, SAMPLE_RATE, 0.01);
+    if (sampleRate < 0 || sampleRate > 1) {
+      throw new ServletException("'" + SAMPLE_RATE + "' must be between 0 and 1");
+    }
+    headers = parseNames(config, HEADERS, DEFAULT_HEADERS);
+    redactedHeaders = parseNames(config, REDACTED_HEADERS, DEFAULT_REDACTED_HEADERS);
+    redactedQueryParameters =
+        parseNames(config, REDACTED_QUERY_PARAMETERS, DEFAULT_REDACTED_QUERY_PARAMETERS);
+    maxBodyBytes = (int) parsePositiveLong(config, MAX_BODY_BYTES, 1 << 20);
+    try {
+      writer = new CaptureLogWriter(new File(directory.trim()),
+          parsePositiveLong(config, MAX_SEGMENT_BYTES, 16L << 20),
+          (int) parsePositiveLong(config, MAX_SEGMENTS, 8));
+    } catch (IOException e) {
+      throw new ServletException(e);
+    }
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    if (!(request instanceof HttpServletRequest) || !isSampled((HttpServletRequest) request)) {
+      chain.doFilter(request, response);
+      return;
+    }
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    long timestampMillis = System.currentTimeMillis();
+    InputStream in = httpRequest.getInputStream();
+    byte[] body = ByteStreams.toByteArray(ByteStreams.limit(in, maxBodyBytes + 1L));
+    BufferedBodyRequest wrapped = new BufferedBodyRequest(httpRequest,
+        new SequenceInputStream(new ByteArrayInputStream(body), in));
+    try {
+      chain.doFilter(wrapped, response);
+    } finally {
+      if (body.length <= maxBodyBytes) {
+        record(httpRequest, timestampMillis, body);
+      }
+    }
+  }
+
+  private boolean isSampled(HttpServletRequest request) {
+    String contentType = request.getContentType();
+    if (contentType != null
+        && contentType.toLowerCase(Locale.ENGLISH).startsWith(FORM_CONTENT_TYPE)) {
+      return false;
+    }
+    return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  private void record(HttpServletRequest request, long timestampMillis, byte[] body) {
+    ImmutableListMultimap.Builder<String, String> recorded = ImmutableListMultimap.builder();
+    Enumeration<?> names = request.getHeaderNames();
+    while (names.hasMoreElements()) {
+      String name = (String) names.nextElement();
+      String lowerCaseName = name.toLowerCase(Locale.ENGLISH);
+      if (!headers.contains(lowerCaseName)) {
+        continue;
+      }
+      Enumeration<?> values = request.getHeaders(name);
+      while (values.hasMoreElements()) {
+        String value = (String) values.nextElement();
+        recorded.put(name,
+            redactedHeaders.contains(lowerCaseName) ? CaptureRecord.REDACTED : value);
+      }
+    }
+    try {
+      writer.append(new CaptureRecord(timestampMillis, request.getMethod(),
+          request.getRequestURI(), redactQueryString(request.getQueryString()), recorded.build(),
+          body));
+    } catch (IOException | RuntimeException e) {
+      logger.atWarning().withCause(e).log("could not capture request %s", request.getRequestURI());
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("could not close capture log");
+      }
+    }
+  }
+
+  /**
+   * Replaces the value of each redacted query parameter. Parameter names are matched ignoring
+   * case, so that no spelling of a credential is recorded.
+   */
+  private String redactQueryString(String queryString) {
+    if (queryString == null || redactedQueryParameters.isEmpty()) {
+      return queryString;
+    }
+    StringBuilder redacted = new StringBuilder(queryString.length());
+    for (String pair : QUERY_SPLITTER.split(queryString)) {
+      if (redacted.length() > 0) {
+        redacted.append('&');
+      }
+      int equals = pair.indexOf('=');
+      String name = equals < 0 ? pair : pair.substring(0, equals);
+      if (redactedQueryParameters.contains(decode(name).toLowerCase(Locale.ENGLISH))) {
+        redacted.append(name).append('=').append(ENCODED_REDACTED);
+      } else {
+        redacted.append(pair);
+      }
+    }
+    return redacted.toString();
+  }
+
+  private static String decode(String s) {
+    try {
+      return URLDecoder.decode(s, "UTF-8");
+    } catch (IllegalArgumentException e) {
+      // A malformed escape; match the name as it was sent.
+      return s;
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static String encode(String s) {
+    try {
+      return URLEncoder.encode(s, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static ImmutableSet<String> parseNames(FilterConfig config, String name,
+      String defaultValue) {
+    String value = config.getInitParameter(name);
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    for (String element : CSV_SPLITTER.split(value != null ? value : defaultValue)) {
+      names.add(element.toLowerCase(Locale.ENGLISH));
+    }
+    return names.build();
+  }
+
+  private static double parseDouble(FilterConfig config, String name, double defaultValue)
+      throws ServletException {
+    String value = config.getInitParameter(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      throw new ServletException(String.format(
+          "Expected a number for '%s' filter parameter but got '%s'", name, value));
+    }
+  }
+
+  private static long parsePositiveLong(FilterConfig config, String name, long defaultValue)
+      throws ServletException {
+    String value = config.getInitParameter(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      long parsed = Long.parseLong(value.trim());
+      if (parsed > 0 && parsed <= Integer.MAX_VALUE) {
+        return parsed;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the exception below.
+    }
+    throw new ServletException(String.format(
+        "Expected a positive integer for '%s' filter parameter but got '%s'", name, value));
+  }
+
+  /**
+   * A request whose body is read from a stream that replays the bytes read by the filter.
+   */
+  private static class BufferedBodyRequest extends HttpServletRequestWrapper {
+    private final ServletInputStream body;
+
+    BufferedBodyRequest(HttpServletRequest request, final InputStream body) {
+      super(request);
+      this.body = new ServletInputStream() {
+        @Override
+        public int read() throws IOException {
+          return body.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          return body.read(b, off, len);
+        }
+      };
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      return body;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+      String encoding = getCharacterEncoding();
+      return new BufferedReader(new InputStreamReader(body, encoding != null ? encoding : "UTF-8"));
+    }
+  }
+}
@@ -123,6 +123,15 @@ public class ApiConfigLoader {
     return true;
   }
 
+  /**
+   * Returns whether the configuration of {@code endpointClass} was validated at compile time by
+   * the Endpoints annotation processor, which is never the case when additional config sources
+   * may change it.
+   */
+  public boolean isValidatedAtCompileTime(Class<?> endpointClass) {
+    return apiConfigSources.isEmpty() && annotationSource.isValidatedAtCompileTime(endpointClass);
+  }
+
   public ApiConfig reloadConfiguration(ServiceContext serviceContext, Class<?> endpointClass,
       ApiConfig oldConfig) throws ApiConfigException {
     ApiConfig config = configFactory.copy(oldConfig);
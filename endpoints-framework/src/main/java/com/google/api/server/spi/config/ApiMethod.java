@@ -133,4 +133,29 @@ public @interface ApiMethod {
    * A list of metric costs associated with this method.
    */
   ApiMetricCost[] metricCosts() default {};
+
+  /**
+   * The maximum time in milliseconds the method is allowed to take before its caller stops
+   * waiting for a response. If a request's deadline has passed by the time it would be invoked, the
+   * method is skipped and a 504 is returned. The deadline is available to the method through a
+   * {@link com.google.api.server.spi.request.Deadline} parameter. If not set (or zero), the
+   * servlet's default timeout applies.
+   */
+  long timeoutMillis() default 0;
+
+  /**
+   * The maximum size in bytes of the method's request body, after decompression. Larger requests
+   * are rejected with a 413, before the body is read if they declare their length. If not set (or
+   * zero), the servlet's default limit applies.
+   */
+  long maxRequestBytes() default 0;
+
+  /**
+   * Whether retried requests carrying the same idempotency key (in the header named by the
+   * servlet's {@code idempotencyKeyHeader} parameter) are answered with the stored response of the
+   * first execution, instead of invoking the method again. Meant for non-idempotent methods, such
+   * as POST, whose clients retry on network errors. Keys are scoped to the method and, if the
+   * method takes a {@link com.google.api.server.spi.auth.common.User}, to the user.
+   */
+  AnnotationBoolean idempotencyKey() default AnnotationBoolean.UNSPECIFIED;
 }
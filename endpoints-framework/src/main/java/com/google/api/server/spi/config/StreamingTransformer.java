@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * A {@link Transformer} that writes and reads the serialized form directly, instead of producing
+ * an intermediate {@code TTo} object for every value. Types with many instances per response,
+ * such as identifiers or amounts in large lists, can be serialized without extra allocation.
+ * <p>
+ * {@code TTo} still documents the serialized form, for discovery and OpenAPI generation, and
+ * {@link #transformTo} and {@link #transformFrom} must agree with {@link #write} and {@link #read}.
+ *
+ * @param <TFrom> The type being transformed
+ * @param <TTo> The type being transformed to
+ */
+public interface StreamingTransformer<TFrom, TTo> extends Transformer<TFrom, TTo> {
+  /**
+   * Writes the serialized form of a non-null value.
+   */
+  void write(TFrom value, JsonGenerator generator) throws IOException;
+
+  /**
+   * Reads a value from the serialized form, starting at the parser's current token. On return, the
+   * parser must be positioned at the last token of the value.
+   */
+  TFrom read(JsonParser parser) throws IOException;
+}
@@ -27,6 +27,10 @@ package com.google.api.server.spi.config;
  * </li>
  * <li>A no-arg constructor</li>
  * </ol>
+ * <p>
+ * One instance is constructed per transformer class and serialized type, and it is shared by all
+ * requests, so implementations must be thread-safe. To write and read the serialized form without
+ * an intermediate object, implement {@link StreamingTransformer}.
  *
  * @param <TFrom> The type being transformed
  * @param <TTo> The type being transformed to
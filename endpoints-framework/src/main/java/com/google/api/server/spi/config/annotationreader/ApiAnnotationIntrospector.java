@@ -19,6 +19,7 @@ import com.google.api.server.spi.config.AnnotationBoolean;
 import com.google.api.server.spi.config.ApiResourceProperty;
 import com.google.api.server.spi.config.ResourcePropertySchema;
 import com.google.api.server.spi.config.ResourceTransformer;
+import com.google.api.server.spi.config.StreamingTransformer;
 import com.google.api.server.spi.config.Transformer;
 import com.google.api.server.spi.config.model.ApiConfig;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
@@ -114,6 +115,18 @@ public class ApiAnnotationIntrospector extends NopAnnotationIntrospector {
     if (serializer == null) {
       return null;
     }
+    if (serializer instanceof StreamingTransformer) {
+      @SuppressWarnings("unchecked")
+      final StreamingTransformer<TFrom, TTo> streamingSerializer =
+          (StreamingTransformer<TFrom, TTo>) serializer;
+      return new JsonSerializer<TFrom>() {
+        @Override
+        public void serialize(TFrom value, JsonGenerator jgen, SerializerProvider provider)
+            throws IOException {
+          streamingSerializer.write(value, jgen);
+        }
+      };
+    }
     return new JsonSerializer<TFrom>() {
       @Override
       public void serialize(TFrom value, JsonGenerator jgen, SerializerProvider provider)
@@ -139,6 +152,18 @@ public class ApiAnnotationIntrospector extends NopAnnotationIntrospector {
     if (serializer == null) {
       return null;
     }
+    if (serializer instanceof StreamingTransformer) {
+      @SuppressWarnings("unchecked")
+      final StreamingTransformer<TFrom, TTo> streamingSerializer =
+          (StreamingTransformer<TFrom, TTo>) serializer;
+      return new JsonDeserializer<TFrom>() {
+        @Override
+        public TFrom deserialize(JsonParser jp, DeserializationContext ctxt)
+            throws IOException {
+          return streamingSerializer.read(jp);
+        }
+      };
+    }
     final TypeReference<TTo> serializedType = typeReferenceOf(serializer);
     if (serializer instanceof ResourceTransformer) {
       @SuppressWarnings("unchecked")
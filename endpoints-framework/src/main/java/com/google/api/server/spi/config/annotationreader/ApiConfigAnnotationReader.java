@@ -20,6 +20,7 @@ import com.google.api.server.spi.MethodHierarchyReader;
 import com.google.api.server.spi.ServiceContext;
 import com.google.api.server.spi.TypeLoader;
 import com.google.api.server.spi.config.AnnotationBoolean;
+import com.google.api.server.spi.config.Api;
 import com.google.api.server.spi.config.ApiConfigException;
 import com.google.api.server.spi.config.ApiConfigSource;
 import com.google.api.server.spi.config.ApiIssuer;
@@ -37,6 +38,7 @@ import com.google.api.server.spi.config.model.ApiIssuerConfigs;
 import com.google.api.server.spi.config.model.ApiMethodConfig;
 import com.google.api.server.spi.config.model.ApiParameterConfig;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
+import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeToken;
 
@@ -45,16 +47,21 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nullable;
 
 /**
- * Reads annotations on endpoint classes to produce an api configuration.
+ * Reads annotations on endpoint classes to produce an api configuration. Classes compiled with the
+ * Endpoints annotation processor are read from their {@link GeneratedApiConfig} instead.
  *
  * @author Eric Orth
  */
 public class ApiConfigAnnotationReader implements ApiConfigSource {
   private final Map<String, Class<? extends Annotation>> annotationTypes;
+  private final ConcurrentMap<Class<?>, Optional<GeneratedApiConfig>> generatedConfigs =
+      new ConcurrentHashMap<>();
 
   public ApiConfigAnnotationReader() throws ClassNotFoundException {
     this((new TypeLoader(ApiConfigAnnotationReader.class.getClassLoader())).getAnnotationTypes());
@@ -67,6 +74,11 @@ public class ApiConfigAnnotationReader implements ApiConfigSource {
   @Override
   public void loadEndpointClass(ServiceContext serviceContext, Class<?> endpointClass,
       ApiConfig config) throws ApiConfigException {
+    GeneratedApiConfig generated = getGeneratedConfig(endpointClass);
+    if (generated != null) {
+      generated.loadEndpointClass(config);
+      return;
+    }
     try {
       Annotation api = getDeclaredAnnotation(endpointClass, annotationTypes.get("Api"));
       Annotation apiClass = getDeclaredAnnotation(endpointClass, annotationTypes.get("ApiClass"));
@@ -81,6 +93,11 @@ public class ApiConfigAnnotationReader implements ApiConfigSource {
   @Override
   public void loadEndpointMethods(ServiceContext serviceContext, Class<?> endpointClass,
       ApiClassConfig.MethodConfigMap methodConfigMap) throws ApiConfigException {
+    GeneratedApiConfig generated = getGeneratedConfig(endpointClass);
+    if (generated != null) {
+      generated.loadEndpointMethods(methodConfigMap, annotationTypes.get("ApiTransformer"));
+      return;
+    }
     try {
       readEndpointMethods(endpointClass, methodConfigMap);
     } catch (InvocationTargetException | NoSuchMethodException | IllegalAccessException e) {
@@ -93,6 +110,34 @@ public class ApiConfigAnnotationReader implements ApiConfigSource {
     return true;
   }
 
+  /**
+   * Returns whether the configuration of {@code endpointClass} is read from a
+   * {@link GeneratedApiConfig} which the annotation processor validated at compile time.
+   */
+  public boolean isValidatedAtCompileTime(Class<?> endpointClass) {
+    GeneratedApiConfig generated = getGeneratedConfig(endpointClass);
+    return generated != null && generated.isValidated();
+  }
+
+  /**
+   * Returns the generated configuration of {@code endpointClass}, or {@code null} if there is
+   * none. Subclasses, which may override how annotations are read, and readers of annotation
+   * types from another class loader always read the annotations.
+   */
+  @Nullable
+  private GeneratedApiConfig getGeneratedConfig(Class<?> endpointClass) {
+    if (getClass() != ApiConfigAnnotationReader.class
+        || annotationTypes.get("Api") != Api.class) {
+      return null;
+    }
+    Optional<GeneratedApiConfig> generated = generatedConfigs.get(endpointClass);
+    if (generated == null) {
+      generated = Optional.fromNullable(GeneratedApiConfig.forServiceClass(endpointClass));
+      generatedConfigs.putIfAbsent(endpointClass, generated);
+    }
+    return generated.orNull();
+  }
+
   @Nullable private Class<?> determineInheritanceSource(Class<?> endpointClass)
       throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
     Class<?> inheritanceSource = null;
@@ -362,6 +407,11 @@ public class ApiConfigAnnotationReader implements ApiConfigSource {
         (AnnotationBoolean) this.getAnnotationProperty(apiMethod, "apiKeyRequired"));
     config.setMetricCosts(
         (ApiMetricCost[]) getAnnotationProperty(apiMethod, "metricCosts"));
+    config.setTimeoutMillisIfSpecified((Long) getAnnotationProperty(apiMethod, "timeoutMillis"));
+    config.setMaxRequestBytesIfSpecified(
+        (Long) getAnnotationProperty(apiMethod, "maxRequestBytes"));
+    config.setIdempotencyKeyEnabledIfSpecified(
+        (AnnotationBoolean) getAnnotationProperty(apiMethod, "idempotencyKey"));
   }
 
   private void readMethodRequestParameters(EndpointMethod endpointMethod,
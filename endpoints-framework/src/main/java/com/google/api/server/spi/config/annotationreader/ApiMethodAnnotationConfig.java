@@ -128,6 +128,26 @@ class ApiMethodAnnotationConfig {
     }
   }
 
+  public void setTimeoutMillisIfSpecified(long timeoutMillis) {
+    if (timeoutMillis > 0) {
+      config.setTimeoutMillis(timeoutMillis);
+    }
+  }
+
+  public void setIdempotencyKeyEnabledIfSpecified(AnnotationBoolean idempotencyKey) {
+    if (idempotencyKey == AnnotationBoolean.TRUE) {
+      config.setIdempotencyKeyEnabled(true);
+    } else if (idempotencyKey == AnnotationBoolean.FALSE) {
+      config.setIdempotencyKeyEnabled(false);
+    }
+  }
+
+  public void setMaxRequestBytesIfSpecified(long maxRequestBytes) {
+    if (maxRequestBytes > 0) {
+      config.setMaxRequestBytes(maxRequestBytes);
+    }
+  }
+
   public void setMetricCosts(ApiMetricCost[] metricCosts) {
     ImmutableList.Builder<ApiMetricCostConfig> costs = ImmutableList.builder();
     if (metricCosts != null && metricCosts.length > 0) {
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.config.annotationreader;
+
+import com.google.api.server.spi.EndpointMethod;
+import com.google.api.server.spi.GeneratedClasses;
+import com.google.api.server.spi.config.AnnotationBoolean;
+import com.google.api.server.spi.config.Api;
+import com.google.api.server.spi.config.ApiConfigException;
+import com.google.api.server.spi.config.AuthLevel;
+import com.google.api.server.spi.config.Authenticator;
+import com.google.api.server.spi.config.PeerAuthenticator;
+import com.google.api.server.spi.config.Transformer;
+import com.google.api.server.spi.config.model.ApiClassConfig;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.ApiIssuerAudienceConfig;
+import com.google.api.server.spi.config.model.ApiIssuerConfigs;
+import com.google.api.server.spi.config.model.ApiIssuerConfigs.IssuerConfig;
+import com.google.api.server.spi.config.model.ApiLimitMetricConfig;
+import com.google.api.server.spi.config.model.ApiMethodConfig;
+import com.google.api.server.spi.config.model.ApiMetricCostConfig;
+import com.google.api.server.spi.config.model.ApiParameterConfig;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * The configuration annotations of a service class, resolved at compile time by the Endpoints
+ * annotation processor. For a service class {@code com.example.Outer.Greetings}, the generated
+ * subclass is {@code com.example.Outer_Greetings_EndpointsConfig}. It records the {@code @Api} and
+ * {@code @ApiClass} values of the class and of its {@code @ApiReference} or superclass chain, and
+ * the parameter and {@code @ApiMethod} values of every endpoint method, which
+ * {@link ApiConfigAnnotationReader} applies instead of reading the annotations reflectively.
+ *
+ * <p>When no generated class is found, the annotations are read through reflection.
+ */
+public abstract class GeneratedApiConfig {
+  /**
+   * The suffix of generated class names.
+   */
+  public static final String CLASS_NAME_SUFFIX = "_EndpointsConfig";
+
+  private final Class<?> serviceClass;
+  private final boolean validated;
+  private final List<Values[]> classes = new ArrayList<>();
+  private final List<MethodEntry> methods = new ArrayList<>();
+
+  protected GeneratedApiConfig(Class<?> serviceClass, boolean validated) {
+    this.serviceClass = serviceClass;
+    this.validated = validated;
+  }
+
+  /**
+   * Registers the {@code @Api} and {@code @ApiClass} values of a class in the inheritance chain
+   * of the service class, either of which may be {@code null}. Classes are added root first.
+   */
+  protected final void addClass(@Nullable Values api, @Nullable Values apiClass) {
+    classes.add(new Values[] {api, apiClass});
+  }
+
+  /**
+   * Registers an endpoint method, identified by its name and erased parameter types, and returns
+   * the entry to which its parameters and {@code @ApiMethod} values are added.
+   */
+  protected final MethodEntry addMethod(String name, Class<?>... parameterTypes) {
+    MethodEntry method = new MethodEntry(name, parameterTypes);
+    methods.add(method);
+    return method;
+  }
+
+  protected static Values values() {
+    return new Values();
+  }
+
+  public Class<?> getServiceClass() {
+    return serviceClass;
+  }
+
+  /**
+   * Returns whether the annotation processor validated the configuration of the service class as
+   * {@link com.google.api.server.spi.config.validation.ApiConfigValidator} would, which is the
+   * case unless it involves transformers.
+   */
+  public boolean isValidated() {
+    return validated;
+  }
+
+  /**
+   * Applies the class level configuration, as
+   * {@link ApiConfigAnnotationReader#loadEndpointClass} does.
+   */
+  void loadEndpointClass(ApiConfig config) throws ApiConfigException {
+    boolean hasApi = false;
+    for (Values[] entry : classes) {
+      Values api = entry[0];
+      Values apiClass = entry[1];
+      if (api != null) {
+        hasApi = true;
+        readApi(new ApiAnnotationConfig(config), config, api);
+        readApiAuth(new ApiAuthAnnotationConfig(config.getAuthConfig()),
+            api.<Values>get("auth"));
+        readApiFrontendLimits(
+            new ApiFrontendLimitsAnnotationConfig(config.getFrontendLimitsConfig()),
+            api.<Values>get("frontendLimits"));
+        Values cacheControl = api.get("cacheControl");
+        ApiCacheControlAnnotationConfig cacheControlConfig =
+            new ApiCacheControlAnnotationConfig(config.getCacheControlConfig());
+        cacheControlConfig.setTypeIfNotEmpty(cacheControl.<String>get("type"));
+        cacheControlConfig.setMaxAgeIfSpecified(cacheControl.<Integer>get("maxAge"));
+        Values namespace = api.get("namespace");
+        ApiNamespaceAnnotationConfig namespaceConfig =
+            new ApiNamespaceAnnotationConfig(config.getNamespaceConfig());
+        namespaceConfig.setOwnerDomainIfNotEmpty(namespace.<String>get("ownerDomain"));
+        namespaceConfig.setOwnerNameIfNotEmpty(namespace.<String>get("ownerName"));
+        namespaceConfig.setPackagePathIfNotEmpty(namespace.<String>get("packagePath"));
+        for (Class<?> transformer : api.<Class<?>[]>get("transformers")) {
+          config.getSerializationConfig().addSerializationConfig(
+              asTransformer(transformer));
+        }
+      }
+      if (apiClass != null) {
+        readApiClass(new ApiClassAnnotationConfig(config.getApiClassConfig()), apiClass);
+      }
+    }
+    if (!hasApi) {
+      throw new ApiConfigException(serviceClass + " has no @Api annotation.");
+    }
+  }
+
+  private static void readApi(ApiAnnotationConfig annotationConfig, ApiConfig config, Values api) {
+    annotationConfig.setIsAbstractIfSpecified(api.<AnnotationBoolean>get("isAbstract"));
+    annotationConfig.setRootIfNotEmpty(api.<String>get("root"));
+    annotationConfig.setNameIfNotEmpty(api.<String>get("name"));
+    annotationConfig.setCanonicalNameIfNotEmpty(api.<String>get("canonicalName"));
+    annotationConfig.setVersionIfNotEmpty(api.<String>get("version"));
+    annotationConfig.setTitleIfNotEmpty(api.<String>get("title"));
+    annotationConfig.setDescriptionIfNotEmpty(api.<String>get("description"));
+    annotationConfig.setDocumentationLinkIfNotEmpty(api.<String>get("documentationLink"));
+    annotationConfig.setIsDefaultVersionIfSpecified(api.<AnnotationBoolean>get("defaultVersion"));
+    annotationConfig.setIsDiscoverableIfSpecified(api.<AnnotationBoolean>get("discoverable"));
+    annotationConfig.setUseDatastoreIfSpecified(
+        api.<AnnotationBoolean>get("useDatastoreForAdditionalConfig"));
+    annotationConfig.setBackendRootIfNotEmpty(api.<String>get("backendRoot"));
+    annotationConfig.setResourceIfNotEmpty(api.<String>get("resource"));
+    annotationConfig.setAuthLevelIfSpecified(api.<AuthLevel>get("authLevel"));
+    annotationConfig.setScopesIfSpecified(api.<String[]>get("scopes"));
+    annotationConfig.setAudiencesIfSpecified(api.<String[]>get("audiences"));
+    annotationConfig.setIssuersIfSpecified(toIssuerConfigs(api.<Values[]>get("issuers")));
+    annotationConfig.setIssuerAudiencesIfSpecified(
+        toIssuerAudienceConfig(api.<Values[]>get("issuerAudiences")));
+    annotationConfig.setClientIdsIfSpecified(api.<String[]>get("clientIds"));
+    annotationConfig.setAuthenticatorsIfSpecified(
+        api.<Class<? extends Authenticator>[]>get("authenticators"));
+    annotationConfig.setPeerAuthenticatorsIfSpecified(
+        api.<Class<? extends PeerAuthenticator>[]>get("peerAuthenticators"));
+    annotationConfig.setApiKeyRequiredIfSpecified(api.<AnnotationBoolean>get("apiKeyRequired"));
+    ImmutableList.Builder<ApiLimitMetricConfig> metricConfigs = ImmutableList.builder();
+    for (Values metric : api.<Values[]>get("limitDefinitions")) {
+      metricConfigs.add(ApiLimitMetricConfig.builder()
+          .setName(metric.<String>get("name"))
+          .setDisplayName(metric.<String>get("displayName"))
+          .setLimit(metric.<Integer>get("limit"))
+          .build());
+    }
+    config.setApiLimitMetrics(metricConfigs.build());
+  }
+
+  private static void readApiAuth(ApiAuthAnnotationConfig config, Values auth) {
+    config.setAllowCookieAuthIfSpecified(auth.<AnnotationBoolean>get("allowCookieAuth"));
+    config.setBlockedRegionsIfNotEmpty(auth.<String[]>get("blockedRegions"));
+  }
+
+  private static void readApiFrontendLimits(ApiFrontendLimitsAnnotationConfig config,
+      Values frontendLimits) {
+    config.setUnregisteredUserQpsIfSpecified(frontendLimits.<Integer>get("unregisteredUserQps"));
+    config.setUnregisteredQpsIfSpecified(frontendLimits.<Integer>get("unregisteredQps"));
+    config.setUnregisteredDailyIfSpecified(frontendLimits.<Integer>get("unregisteredDaily"));
+    for (Values rule : frontendLimits.<Values[]>get("rules")) {
+      config.getConfig().addRule(rule.<String>get("match"), rule.<Integer>get("qps"),
+          rule.<Integer>get("userQps"), rule.<Integer>get("daily"),
+          rule.<String>get("analyticsId"));
+    }
+  }
+
+  private static void readApiClass(ApiClassAnnotationConfig config, Values apiClass) {
+    config.setResourceIfNotEmpty(apiClass.<String>get("resource"));
+    config.setAuthLevelIfSpecified(apiClass.<AuthLevel>get("authLevel"));
+    config.setScopesIfSpecified(apiClass.<String[]>get("scopes"));
+    config.setAudiencesIfSpecified(apiClass.<String[]>get("audiences"));
+    config.setIssuerAudiencesIfSpecified(
+        toIssuerAudienceConfig(apiClass.<Values[]>get("issuerAudiences")));
+    config.setClientIdsIfSpecified(apiClass.<String[]>get("clientIds"));
+    config.setAuthenticatorsIfSpecified(
+        apiClass.<Class<? extends Authenticator>[]>get("authenticators"));
+    config.setPeerAuthenticatorsIfSpecified(
+        apiClass.<Class<? extends PeerAuthenticator>[]>get("peerAuthenticators"));
+    config.setUseDatastoreIfSpecified(
+        apiClass.<AnnotationBoolean>get("useDatastoreForAdditionalConfig"));
+    config.setApiKeyRequiredIfSpecified(apiClass.<AnnotationBoolean>get("apiKeyRequired"));
+  }
+
+  /**
+   * Applies the method level configuration, as
+   * {@link ApiConfigAnnotationReader#loadEndpointMethods} does. Parameter types are resolved, and
+   * their {@code @ApiTransformer} annotations read, at runtime.
+   */
+  void loadEndpointMethods(ApiClassConfig.MethodConfigMap methodConfigMap,
+      Class<? extends Annotation> apiTransformerType) throws ApiConfigException {
+    TypeToken<?> serviceType = TypeToken.of(serviceClass);
+    for (MethodEntry entry : methods) {
+      Method method;
+      try {
+        method = serviceClass.getMethod(entry.name, entry.parameterTypes);
+      } catch (NoSuchMethodException e) {
+        throw new ApiConfigException(getClass().getName() + " is out of date with "
+            + serviceClass.getName() + ", which has no method " + entry.name);
+      }
+      @SuppressWarnings({"rawtypes", "unchecked"})
+      TypeToken<?> declaringType = serviceType.getSupertype((Class) method.getDeclaringClass());
+      EndpointMethod endpointMethod = EndpointMethod.create(serviceClass, method, declaringType);
+      ApiMethodConfig methodConfig = methodConfigMap.getOrCreate(endpointMethod);
+
+      TypeToken<?>[] parameterTypes = endpointMethod.getParameterTypes();
+      if (parameterTypes.length != entry.parameters.size()) {
+        throw new ApiConfigException(getClass().getName() + " is out of date with "
+            + serviceClass.getName() + ", method " + entry.name);
+      }
+      for (int i = 0; i < parameterTypes.length; i++) {
+        ParameterEntry parameter = entry.parameters.get(i);
+        ApiParameterConfig parameterConfig = methodConfig.addParameter(parameter.name,
+            parameter.description, parameter.nullable, parameter.defaultValue, parameterTypes[i]);
+        Annotation apiSerializer =
+            parameterTypes[i].getRawType().getAnnotation(apiTransformerType);
+        if (apiSerializer != null) {
+          parameterConfig.setSerializer(getTransformer(apiSerializer));
+        }
+        if (parameterConfig.isRepeated()) {
+          apiSerializer = parameterConfig.getRepeatedItemType().getRawType()
+              .getAnnotation(apiTransformerType);
+          if (apiSerializer != null) {
+            parameterConfig.setRepeatedItemSerializer(getTransformer(apiSerializer));
+          }
+        }
+      }
+
+      for (Values apiMethod : entry.apiMethods) {
+        readApiMethod(new ApiMethodAnnotationConfig(methodConfig), apiMethod);
+      }
+    }
+  }
+
+  private static void readApiMethod(ApiMethodAnnotationConfig config, Values apiMethod) {
+    config.setNameIfNotEmpty(apiMethod.<String>get("name"));
+    config.setDescriptionIfNotEmpty(apiMethod.<String>get("description"));
+    config.setPathIfNotEmpty(apiMethod.<String>get("path"));
+    config.setHttpMethodIfNotEmpty(apiMethod.<String>get("httpMethod"));
+    config.setAuthLevelIfSpecified(apiMethod.<AuthLevel>get("authLevel"));
+    config.setScopesIfSpecified(apiMethod.<String[]>get("scopes"));
+    config.setAudiencesIfSpecified(apiMethod.<String[]>get("audiences"));
+    config.setIssuerAudiencesIfSpecified(
+        toIssuerAudienceConfig(apiMethod.<Values[]>get("issuerAudiences")));
+    config.setClientIdsIfSpecified(apiMethod.<String[]>get("clientIds"));
+    config.setAuthenticatorsIfSpecified(
+        apiMethod.<Class<? extends Authenticator>[]>get("authenticators"));
+    config.setPeerAuthenticatorsIfSpecified(
+        apiMethod.<Class<? extends PeerAuthenticator>[]>get("peerAuthenticators"));
+    config.setIgnoredIfSpecified(apiMethod.<AnnotationBoolean>get("ignored"));
+    config.setApiKeyRequiredIfSpecified(apiMethod.<AnnotationBoolean>get("apiKeyRequired"));
+    ImmutableList.Builder<ApiMetricCostConfig> costs = ImmutableList.builder();
+    for (Values cost : apiMethod.<Values[]>get("metricCosts")) {
+      costs.add(ApiMetricCostConfig.builder()
+          .setName(cost.<String>get("name"))
+          .setCost(cost.<Integer>get("cost"))
+          .build());
+    }
+    config.getConfig().setMetricCosts(costs.build());
+    config.setTimeoutMillisIfSpecified(apiMethod.<Long>get("timeoutMillis"));
+    config.setMaxRequestBytesIfSpecified(apiMethod.<Long>get("maxRequestBytes"));
+    config.setIdempotencyKeyEnabledIfSpecified(apiMethod.<AnnotationBoolean>get("idempotencyKey"));
+  }
+
+  private static ApiIssuerConfigs toIssuerConfigs(Values[] issuers) {
+    if (issuers.length == 1
+        && Api.UNSPECIFIED_STRING_FOR_LIST.equals(issuers[0].<String>get("name"))) {
+      return ApiIssuerConfigs.UNSPECIFIED;
+    }
+    ApiIssuerConfigs.Builder builder = ApiIssuerConfigs.builder();
+    for (Values issuer : issuers) {
+      builder.addIssuer(new IssuerConfig(issuer.<String>get("name"),
+          issuer.<String>get("issuer"), issuer.<String>get("jwksUri")));
+    }
+    return builder.build();
+  }
+
+  private static ApiIssuerAudienceConfig toIssuerAudienceConfig(Values[] issuers) {
+    if (issuers.length == 1
+        && Api.UNSPECIFIED_STRING_FOR_LIST.equals(issuers[0].<String>get("name"))) {
+      return ApiIssuerAudienceConfig.UNSPECIFIED;
+    }
+    ApiIssuerAudienceConfig.Builder builder = ApiIssuerAudienceConfig.builder();
+    for (Values issuer : issuers) {
+      builder.addIssuerAudiences(issuer.<String>get("name"), issuer.<String[]>get("audiences"));
+    }
+    return builder.build();
+  }
+
+  private static Class<? extends Transformer<?, ?>> getTransformer(Annotation apiTransformer)
+      throws ApiConfigException {
+    try {
+      return asTransformer((Class<?>) apiTransformer.annotationType().getMethod("value")
+          .invoke(apiTransformer));
+    } catch (ReflectiveOperationException e) {
+      throw new ApiConfigException(e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<? extends Transformer<?, ?>> asTransformer(Class<?> transformer) {
+    return (Class<? extends Transformer<?, ?>>) transformer;
+  }
+
+  /**
+   * Returns the name of the class generated for {@code serviceClass}.
+   */
+  public static String getGeneratedClassName(Class<?> serviceClass) {
+    return GeneratedClasses.getGeneratedClassName(serviceClass, CLASS_NAME_SUFFIX);
+  }
+
+  /**
+   * Loads the configuration generated for {@code serviceClass}, or returns {@code null} if the
+   * class was not compiled with the Endpoints annotation processor.
+   */
+  @Nullable
+  public static GeneratedApiConfig forServiceClass(Class<?> serviceClass) {
+    return GeneratedClasses.load(serviceClass, CLASS_NAME_SUFFIX, GeneratedApiConfig.class,
+        new Function<GeneratedApiConfig, Class<?>>() {
+          @Override
+          public Class<?> apply(GeneratedApiConfig generated) {
+            return generated.getServiceClass();
+          }
+        });
+  }
+
+  /**
+   * The values of an annotation, including defaults, keyed by element name. Nested annotations
+   * are stored as {@code Values}, and arrays of annotations as {@code Values[]}.
+   */
+  public static final class Values {
+    private final Map<String, Object> values = new HashMap<>();
+
+    private Values() {}
+
+    public Values put(String name, Object value) {
+      values.put(name, value);
+      return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T get(String name) {
+      return (T) values.get(name);
+    }
+  }
+
+  /**
+   * The configuration of an endpoint method.
+   */
+  protected static final class MethodEntry {
+    private final String name;
+    private final Class<?>[] parameterTypes;
+    private final List<ParameterEntry> parameters = new ArrayList<>();
+    private final List<Values> apiMethods = new ArrayList<>();
+
+    private MethodEntry(String name, Class<?>[] parameterTypes) {
+      this.name = name;
+      this.parameterTypes = parameterTypes;
+    }
+
+    /**
+     * Adds the next parameter, given the values of its {@code @Named}, {@code @Description} and
+     * {@code @DefaultValue} annotations, or {@code null} where absent, and whether it is
+     * {@code @Nullable}.
+     */
+    public MethodEntry parameter(@Nullable String name, @Nullable String description,
+        boolean nullable, @Nullable String defaultValue) {
+      parameters.add(new ParameterEntry(name, description, nullable, defaultValue));
+      return this;
+    }
+
+    /**
+     * Adds the {@code @ApiMethod} values of an overridden or the final method. Overridden
+     * methods are added first.
+     */
+    public MethodEntry apiMethod(Values apiMethod) {
+      apiMethods.add(apiMethod);
+      return this;
+    }
+  }
+
+  private static final class ParameterEntry {
+    @Nullable private final String name;
+    @Nullable private final String description;
+    private final boolean nullable;
+    @Nullable private final String defaultValue;
+
+    private ParameterEntry(@Nullable String name, @Nullable String description, boolean nullable,
+        @Nullable String defaultValue) {
+      this.name = name;
+      this.description = description;
+      this.nullable = nullable;
+      this.defaultValue = defaultValue;
+    }
+  }
+}
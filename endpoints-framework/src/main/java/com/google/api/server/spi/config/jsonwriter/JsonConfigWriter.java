@@ -44,12 +44,14 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.reflect.TypeToken;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.lang.reflect.TypeVariable;
 import java.util.Collection;
@@ -119,26 +121,26 @@ public class JsonConfigWriter implements ApiConfigWriter {
 
   private String generateForApi(Iterable<? extends ApiConfig> apiConfigs)
       throws ApiConfigException {
-    ObjectNode root = objectMapper.createObjectNode();
-    // First, generate api-wide configuration options, given any ApiConfig.
-    ApiConfig apiConfig = Iterables.get(apiConfigs, 0);
-    convertApi(root, apiConfig);
-    convertApiAuth(root, apiConfig.getAuthConfig());
-    convertApiFrontendLimits(root, apiConfig.getFrontendLimitsConfig());
-    convertApiCacheControl(root, apiConfig.getCacheControlConfig());
-    convertApiNamespace(root, apiConfig.getNamespaceConfig());
-    // Next, generate config-specific configuration options,
-    convertApiMethods(apiConfigs, root);
-    return toString(root);
-  }
-
-  /** Writes an object node as a string. */
-  private String toString(ObjectNode node) throws ApiConfigException {
-    try {
-      return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(node);
+    // The api-wide options are streamed straight to the output. Only the methods and descriptor
+    // sections, which cross-reference each other while they are built, are assembled as trees.
+    StringWriter out = new StringWriter();
+    try (JsonGenerator root = objectMapper.getFactory().createGenerator(out)) {
+      root.useDefaultPrettyPrinter();
+      root.writeStartObject();
+      // First, generate api-wide configuration options, given any ApiConfig.
+      ApiConfig apiConfig = Iterables.get(apiConfigs, 0);
+      convertApi(root, apiConfig);
+      convertApiAuth(root, apiConfig.getAuthConfig());
+      convertApiFrontendLimits(root, apiConfig.getFrontendLimitsConfig());
+      convertApiCacheControl(root, apiConfig.getCacheControlConfig());
+      convertApiNamespace(root, apiConfig.getNamespaceConfig());
+      // Next, generate config-specific configuration options,
+      convertApiMethods(apiConfigs, root);
+      root.writeEndObject();
     } catch (IOException e) {
       throw new ApiConfigException(e);
     }
+    return out.toString();
   }
 
   private void setNodePropertyNoConflict(
@@ -153,34 +155,34 @@ public class JsonConfigWriter implements ApiConfigWriter {
     setNodePropertyNoConflict(node, key, value, "Multiple values for same key '" + key + "'");
   }
 
-  private void convertApi(ObjectNode root, ApiConfig config) {
-    root.put("extends", getParentApiFile());
-    root.put("abstract", config.getIsAbstract());
-    root.put("root", config.getRoot());
-    root.put("name", config.getName());
+  private void convertApi(JsonGenerator root, ApiConfig config) throws IOException {
+    root.writeStringField("extends", getParentApiFile());
+    root.writeBooleanField("abstract", config.getIsAbstract());
+    root.writeStringField("root", config.getRoot());
+    root.writeStringField("name", config.getName());
     if (config.getCanonicalName() != null) {
-      root.put("canonicalName", config.getCanonicalName());
+      root.writeStringField("canonicalName", config.getCanonicalName());
     }
-    root.put("version", config.getVersion());
+    root.writeStringField("version", config.getVersion());
     if (config.getTitle() != null) {
-      root.put("title", config.getTitle());
+      root.writeStringField("title", config.getTitle());
     }
     if (config.getDescription() != null) {
-      root.put("description", config.getDescription());
+      root.writeStringField("description", config.getDescription());
     }
     if (config.getDocumentationLink() != null) {
-      root.put("documentation", config.getDocumentationLink());
+      root.writeStringField("documentation", config.getDocumentationLink());
     }
-    root.put("defaultVersion", config.getIsDefaultVersion());
-    ArrayNode discovery = objectMapper.createArrayNode();
-    discovery.add(config.getIsDiscoverable() ? "PUBLIC" : "OFF");
-    root.set("discovery", discovery);
-
-    ObjectNode adapter = objectMapper.createObjectNode();
-    adapter.put("bns", config.getBackendRoot());
-    adapter.put("deadline", DEFAULT_LILY_DEADLINE);
-    adapter.put("type", "lily");
-    root.set("adapter", adapter);
+    root.writeBooleanField("defaultVersion", config.getIsDefaultVersion());
+    root.writeArrayFieldStart("discovery");
+    root.writeString(config.getIsDiscoverable() ? "PUBLIC" : "OFF");
+    root.writeEndArray();
+
+    root.writeObjectFieldStart("adapter");
+    root.writeStringField("bns", config.getBackendRoot());
+    root.writeNumberField("deadline", DEFAULT_LILY_DEADLINE);
+    root.writeStringField("type", "lily");
+    root.writeEndObject();
   }
 
   /**
@@ -195,72 +197,75 @@ public class JsonConfigWriter implements ApiConfigWriter {
    * Converts the auth config from the auth annotation. Subclasses may override
    * to add additional information to the auth config.
    */
-  private void convertApiAuth(ObjectNode root, ApiAuthConfig config) {
-    ObjectNode authConfig = objectMapper.createObjectNode();
+  private void convertApiAuth(JsonGenerator root, ApiAuthConfig config) throws IOException {
+    root.writeObjectFieldStart("auth");
 
-    authConfig.put("allowCookieAuth", config.getAllowCookieAuth());
+    root.writeBooleanField("allowCookieAuth", config.getAllowCookieAuth());
 
     List<String> blockedRegions = config.getBlockedRegions();
     if (!blockedRegions.isEmpty()) {
-      ArrayNode blockedRegionsNode = objectMapper.createArrayNode();
+      root.writeArrayFieldStart("blockedRegions");
       for (String region : blockedRegions) {
-        blockedRegionsNode.add(region);
+        root.writeString(region);
       }
-      authConfig.set("blockedRegions", blockedRegionsNode);
+      root.writeEndArray();
     }
 
-    root.set("auth", authConfig);
+    root.writeEndObject();
   }
 
-  private void convertApiFrontendLimits(ObjectNode root, ApiFrontendLimitsConfig config) {
-    ObjectNode frontendLimitsConfig = objectMapper.createObjectNode();
+  private void convertApiFrontendLimits(JsonGenerator root, ApiFrontendLimitsConfig config)
+      throws IOException {
+    root.writeObjectFieldStart("frontendLimits");
 
-    frontendLimitsConfig.put("unregisteredUserQps", config.getUnregisteredUserQps());
-    frontendLimitsConfig.put("unregisteredQps", config.getUnregisteredQps());
-    frontendLimitsConfig.put("unregisteredDaily", config.getUnregisteredDaily());
+    root.writeNumberField("unregisteredUserQps", config.getUnregisteredUserQps());
+    root.writeNumberField("unregisteredQps", config.getUnregisteredQps());
+    root.writeNumberField("unregisteredDaily", config.getUnregisteredDaily());
 
-    convertApiFrontendLimitRules(frontendLimitsConfig, config.getRules());
+    convertApiFrontendLimitRules(root, config.getRules());
 
-    root.set("frontendLimits", frontendLimitsConfig);
+    root.writeEndObject();
   }
 
-  private void convertApiCacheControl(ObjectNode root, ApiCacheControlConfig config) {
-    ObjectNode cacheControlConfig = objectMapper.createObjectNode();
-    cacheControlConfig.put("type", config.getType());
-    cacheControlConfig.put("maxAge", config.getMaxAge());
-    root.set("cacheControl", cacheControlConfig);
+  private void convertApiCacheControl(JsonGenerator root, ApiCacheControlConfig config)
+      throws IOException {
+    root.writeObjectFieldStart("cacheControl");
+    root.writeStringField("type", config.getType());
+    root.writeNumberField("maxAge", config.getMaxAge());
+    root.writeEndObject();
   }
 
-  private void convertApiNamespace(ObjectNode root, ApiNamespaceConfig config) {
+  private void convertApiNamespace(JsonGenerator root, ApiNamespaceConfig config)
+      throws IOException {
     if (!config.getOwnerDomain().isEmpty()) {
-      root.put("ownerDomain", config.getOwnerDomain());
+      root.writeStringField("ownerDomain", config.getOwnerDomain());
     }
     if (!config.getOwnerName().isEmpty()) {
-      root.put("ownerName", config.getOwnerName());
+      root.writeStringField("ownerName", config.getOwnerName());
     }
     if (!config.getPackagePath().isEmpty()) {
-      root.put("packagePath", config.getPackagePath());
+      root.writeStringField("packagePath", config.getPackagePath());
     }
   }
 
-  private void convertApiFrontendLimitRules(ObjectNode frontendLimitsConfig,
-      List<ApiFrontendLimitsConfig.FrontendLimitsRule> rules) {
-    ArrayNode rulesConfig = objectMapper.createArrayNode();
+  private void convertApiFrontendLimitRules(JsonGenerator frontendLimitsConfig,
+      List<ApiFrontendLimitsConfig.FrontendLimitsRule> rules) throws IOException {
+    frontendLimitsConfig.writeArrayFieldStart("rules");
     for (ApiFrontendLimitsConfig.FrontendLimitsRule rule : rules) {
       // TODO: Allow overriding individual rules based on same "match" field?
-      ObjectNode ruleConfig = objectMapper.createObjectNode();
-      ruleConfig.put("match", rule.getMatch());
-      ruleConfig.put("qps", rule.getQps());
-      ruleConfig.put("userQps", rule.getUserQps());
-      ruleConfig.put("daily", rule.getDaily());
-      ruleConfig.put("analyticsId", rule.getAnalyticsId());
-      rulesConfig.add(ruleConfig);
+      frontendLimitsConfig.writeStartObject();
+      frontendLimitsConfig.writeStringField("match", rule.getMatch());
+      frontendLimitsConfig.writeNumberField("qps", rule.getQps());
+      frontendLimitsConfig.writeNumberField("userQps", rule.getUserQps());
+      frontendLimitsConfig.writeNumberField("daily", rule.getDaily());
+      frontendLimitsConfig.writeStringField("analyticsId", rule.getAnalyticsId());
+      frontendLimitsConfig.writeEndObject();
     }
-    frontendLimitsConfig.set("rules", rulesConfig);
+    frontendLimitsConfig.writeEndArray();
   }
 
-  private void convertApiMethods(Iterable<? extends ApiConfig> configs, ObjectNode root)
-      throws IllegalArgumentException, SecurityException, ApiConfigException {
+  private void convertApiMethods(Iterable<? extends ApiConfig> configs, JsonGenerator root)
+      throws IllegalArgumentException, SecurityException, ApiConfigException, IOException {
     ObjectNode methodsNode = objectMapper.createObjectNode();
     ObjectNode descriptorNode = objectMapper.createObjectNode();
     ObjectNode descriptorSchemasNode = objectMapper.createObjectNode();
@@ -272,8 +277,10 @@ public class JsonConfigWriter implements ApiConfigWriter {
       convertApiMethods(methodsNode, descriptorSchemasNode, descriptorMethodsNode, config);
     }
 
-    root.set("methods", methodsNode);
-    root.set("descriptor", descriptorNode);
+    root.writeFieldName("methods");
+    root.writeTree(methodsNode);
+    root.writeFieldName("descriptor");
+    root.writeTree(descriptorNode);
   }
 
   private void convertApiMethods(ObjectNode methodsNode, ObjectNode descriptorSchemasNode,
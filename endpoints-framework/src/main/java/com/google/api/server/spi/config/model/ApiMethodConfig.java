@@ -23,11 +23,12 @@ import com.google.api.server.spi.config.Authenticator;
 import com.google.api.server.spi.config.PeerAuthenticator;
 import com.google.api.server.spi.config.model.ApiParameterConfig.Classification;
 import com.google.api.server.spi.config.scope.AuthScopeExpression;
+import com.google.api.server.spi.response.MediaResponse;
+import com.google.api.server.spi.response.StreamingResponse;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.TypeToken;
 import java.lang.reflect.Method;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
@@ -159,6 +160,9 @@ public class ApiMethodConfig {
   private Boolean apiKeyRequired;
   private TypeToken<?> returnType;
   private List<ApiMetricCostConfig> metricCosts;
+  private long timeoutMillis;
+  private long maxRequestBytes;
+  private boolean idempotencyKeyEnabled;
 
   private final TypeLoader typeLoader;
 
@@ -179,6 +183,7 @@ public class ApiMethodConfig {
     this.canonicalPath = original.canonicalPath;
     this.description = original.description;
     this.httpMethod = original.httpMethod;
+    this.authLevel = original.authLevel;
     this.scopeExpression = original.scopeExpression;
     this.audiences = original.audiences == null ? null : new ArrayList<>(original.audiences);
     this.issuerAudiences = original.issuerAudiences;
@@ -192,6 +197,9 @@ public class ApiMethodConfig {
     this.returnType = original.returnType;
     this.typeLoader = original.typeLoader;
     this.metricCosts = original.metricCosts;
+    this.timeoutMillis = original.timeoutMillis;
+    this.maxRequestBytes = original.maxRequestBytes;
+    this.idempotencyKeyEnabled = original.idempotencyKeyEnabled;
 
     // Parameter configs are mutable, so we need to do a deep copy.
     this.parameterConfigs = new ArrayList<>(original.parameterConfigs.size());
@@ -231,6 +239,9 @@ public class ApiMethodConfig {
     apiKeyRequired = null;
     returnType = endpointMethod.getReturnType();
     metricCosts = ImmutableList.of();
+    timeoutMillis = 0;
+    maxRequestBytes = 0;
+    idempotencyKeyEnabled = false;
   }
 
   private RestMethod getRestMethod(Method method) {
@@ -252,6 +263,7 @@ public class ApiMethodConfig {
       return Objects.equals(endpointMethodName, config.endpointMethodName) &&
           parameterConfigs.equals(config.parameterConfigs) && Objects.equals(name, config.name) &&
           Objects.equals(path, config.path) && Objects.equals(httpMethod, config.httpMethod) &&
+          authLevel == config.authLevel &&
           Objects.equals(scopeExpression, config.scopeExpression) &&
           Objects.equals(audiences, config.audiences) &&
           Objects.equals(issuerAudiences, config.issuerAudiences) &&
@@ -262,7 +274,10 @@ public class ApiMethodConfig {
           ignored == config.ignored &&
           apiKeyRequired == config.apiKeyRequired &&
           Objects.equals(returnType, config.returnType) &&
-          Objects.equals(metricCosts, config.metricCosts);
+          Objects.equals(metricCosts, config.metricCosts) &&
+          timeoutMillis == config.timeoutMillis &&
+          maxRequestBytes == config.maxRequestBytes &&
+          idempotencyKeyEnabled == config.idempotencyKeyEnabled;
     } else {
       return false;
     }
@@ -270,9 +285,10 @@ public class ApiMethodConfig {
 
   @Override
   public int hashCode() {
-    return Objects.hash(endpointMethodName, parameterConfigs, name, path, httpMethod,
+    return Objects.hash(endpointMethodName, parameterConfigs, name, path, httpMethod, authLevel,
         scopeExpression, audiences, clientIds, authenticators, peerAuthenticators, typeLoader,
-        ignored, issuerAudiences, apiKeyRequired, returnType, metricCosts);
+        ignored, issuerAudiences, apiKeyRequired, returnType, metricCosts, timeoutMillis,
+        maxRequestBytes, idempotencyKeyEnabled);
   }
 
   public ApiClassConfig getApiClassConfig() {
@@ -511,11 +527,14 @@ public class ApiMethodConfig {
   }
 
   /**
-   * Returns whether or not the method has a resource (is non-void) in the response.
+   * Returns whether or not the method has a resource (is non-void and does not return raw
+   * {@link MediaResponse} content or a {@link StreamingResponse}) in the response.
    */
   public boolean hasResourceInResponse() {
-    Type returnType = getReturnType().getRawType();
-    return returnType != Void.TYPE && returnType != Void.class;
+    Class<?> returnType = getReturnType().getRawType();
+    return returnType != Void.TYPE && returnType != Void.class
+        && !MediaResponse.class.isAssignableFrom(returnType)
+        && !StreamingResponse.class.isAssignableFrom(returnType);
   }
 
   public void setMetricCosts(List<ApiMetricCostConfig> metricCosts) {
@@ -525,4 +544,39 @@ public class ApiMethodConfig {
   public List<ApiMetricCostConfig> getMetricCosts() {
     return metricCosts;
   }
+
+  public void setTimeoutMillis(long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Returns the method's timeout in milliseconds, or zero if the method does not specify one.
+   */
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  public void setMaxRequestBytes(long maxRequestBytes) {
+    this.maxRequestBytes = maxRequestBytes;
+  }
+
+  /**
+   * Returns the method's maximum request body size in bytes, or zero if the method does not
+   * specify one.
+   */
+  public long getMaxRequestBytes() {
+    return maxRequestBytes;
+  }
+
+  public void setIdempotencyKeyEnabled(boolean idempotencyKeyEnabled) {
+    this.idempotencyKeyEnabled = idempotencyKeyEnabled;
+  }
+
+  /**
+   * Returns whether retried requests with the same idempotency key replay the stored response of
+   * the first execution.
+   */
+  public boolean isIdempotencyKeyEnabled() {
+    return idempotencyKeyEnabled;
+  }
 }
@@ -66,7 +66,14 @@ public enum EndpointsFlag {
    * is an explicit dependency, this can cause conflict with apps that use Jackson annotations for
    * reasons outside of using this framework. Defaults to true.
    */
-  JSON_USE_JACKSON_ANNOTATIONS("json.useJacksonAnnotations", true);
+  JSON_USE_JACKSON_ANNOTATIONS("json.useJacksonAnnotations", true),
+
+  /**
+   * When enabled, JSON, Smile and CBOR parsers and generators share a bounded pool of buffers
+   * instead of Jackson's per-thread buffer recycler, which gives no reuse when requests run on
+   * short-lived threads. Defaults to true.
+   */
+  JSON_POOLED_BUFFERS("json.pooledBuffers", true);
 
   private static final String ENV_VARIABLE_PREFIX = "ENDPOINTS_";
   private static final String SYSTEM_PROPERTY_PREFIX = "endpoints.";
@@ -1,6 +1,5 @@
 package com.google.api.server.spi.config.model;
 
-import com.google.api.client.util.Maps;
 import com.google.api.server.spi.TypeLoader;
 import com.google.api.server.spi.config.Description;
 import com.google.api.server.spi.config.ResourcePropertySchema;
@@ -12,25 +11,37 @@ import com.google.api.server.spi.config.model.Schema.Field;
 import com.google.api.server.spi.config.model.Schema.SchemaReference;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.SetMultimap;
 import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A repository which creates and caches the compiled schemas for an API.
+ *
+ * <p>A repository is safe to share between threads, and between the config validator and the
+ * discovery and OpenAPI generators. Each type is computed at most once per serialization config,
+ * by the first thread which asks for it; other threads asking for the same type wait for that
+ * computation, while independent types are computed in parallel. Types referenced while a schema
+ * is being computed are never waited for, since they may be in progress further up the same (or
+ * another thread's) recursion, and are only added to the API once the computation is complete.
  */
 public class SchemaRepository {
-  private static final Schema PLACEHOLDER_SCHEMA = Schema.builder()
-      .setName("_placeholder_")
-      .setType("_placeholder_")
-      .build();
-
   @VisibleForTesting
   static final Schema ANY_SCHEMA = Schema.builder()
       .setName("_any")
@@ -57,33 +68,35 @@ public class SchemaRepository {
   @VisibleForTesting
   static final String MAP_UNUSED_MSG = "unused for map values";
 
-  private final Multimap<ApiKey, Schema> schemaByApiKeys = LinkedHashMultimap.create();
-  private final Map<ApiSerializationConfig, Map<TypeToken<?>, Schema>> types 
-      = Maps.newLinkedHashMap();
-  private final ResourceSchemaProvider resourceSchemaProvider = new JacksonResourceSchemaProvider();
+  private final SetMultimap<ApiKey, Schema> schemaByApiKeys =
+      Multimaps.synchronizedSetMultimap(LinkedHashMultimap.<ApiKey, Schema>create());
+  private final ConcurrentMap<ApiSerializationConfig, TypesForConfig> types =
+      new ConcurrentHashMap<>();
+  private final ResourceSchemaProvider resourceSchemaProvider;
+  private final AtomicLong computedCount = new AtomicLong();
+  private final AtomicLong reusedCount = new AtomicLong();
 
   private final TypeLoader typeLoader;
 
   public SchemaRepository(TypeLoader typeLoader) {
+    this(typeLoader, new JacksonResourceSchemaProvider());
+  }
+
+  @VisibleForTesting
+  SchemaRepository(TypeLoader typeLoader, ResourceSchemaProvider resourceSchemaProvider) {
     this.typeLoader = typeLoader;
+    this.resourceSchemaProvider = resourceSchemaProvider;
   }
 
   /**
-   * Gets a schema for a type and API config.
+   * Gets a schema for a type and API config, waiting for it if another thread is computing it.
    *
    * @return a {@link Schema} if one has been created, or null otherwise.
    */
   public Schema get(TypeToken<?> type, ApiConfig config) {
-    Map<TypeToken<?>, Schema> typesForConfig = getAllTypesForConfig(config);
-    type = ApiAnnotationIntrospector.getSchemaType(type, config);
-    Schema schema = typesForConfig.get(type);
-    if (schema != null) {
-      if (schema == PLACEHOLDER_SCHEMA) {
-        throw new IllegalStateException("schema repository is in a bad state!");
-      }
-      return schema;
-    }
-    return null;
+    Future<Schema> future =
+        getAllTypesForConfig(config).get(ApiAnnotationIntrospector.getSchemaType(type, config));
+    return future == null ? null : getDone(future);
   }
 
   /**
@@ -92,59 +105,100 @@ public class SchemaRepository {
    * @return a {@link Schema} for the requested type and API config.
    */
   public Schema getOrAdd(TypeToken<?> type, ApiConfig config) {
-    Map<TypeToken<?>, Schema> typesForConfig = getAllTypesForConfig(config);
-    Schema schema = getOrCreateTypeForConfig(type, typesForConfig, config);
-    if (schema == PLACEHOLDER_SCHEMA) {
-      throw new IllegalStateException("schema repository is in a bad state!");
+    List<Future<Schema>> reused = new ArrayList<>();
+    Future<Schema> future =
+        getOrCreateTypeForConfig(type, getAllTypesForConfig(config), config, reused);
+    // Nothing is held by this thread anymore, so schemas being computed by other threads can be
+    // waited for.
+    ApiKey key = config.getApiKey().withoutRoot();
+    for (Future<Schema> reusedSchema : reused) {
+      addSchemaToApi(key, getDone(reusedSchema));
     }
-    return schema;
+    return getDone(future);
   }
 
   /**
    * Gets all schema for an API key.
    */
   public ImmutableList<Schema> getAllSchemaForApi(ApiKey apiKey) {
-    return ImmutableList.copyOf(schemaByApiKeys.get(apiKey.withoutRoot()));
+    synchronized (schemaByApiKeys) {
+      return ImmutableList.copyOf(schemaByApiKeys.get(apiKey.withoutRoot()));
+    }
+  }
+
+  /**
+   * Returns the number of schemas which have been computed by this repository.
+   */
+  public long getComputedCount() {
+    return computedCount.get();
+  }
+
+  /**
+   * Returns the number of times an already computed schema was returned instead of being computed
+   * again.
+   */
+  public long getReusedCount() {
+    return reusedCount.get();
   }
 
   /**
    * Gets all schema for an API config.
    *
-   * @return a {@link Map} from {@link TypeToken} to {@link Schema}. If there are no schema for this
-   * config, an empty map is returned.
+   * @return a map from {@link TypeToken} to the (possibly pending) {@link Schema}. If there are no
+   * schema for this config, an empty map is returned.
    */
-  private Map<TypeToken<?>, Schema> getAllTypesForConfig(ApiConfig config) {
-    Map<TypeToken<?>, Schema> typesForConfig = types.get(config.getSerializationConfig());
+  private TypesForConfig getAllTypesForConfig(ApiConfig config) {
+    TypesForConfig typesForConfig = types.get(config.getSerializationConfig());
     if (typesForConfig == null) {
-      typesForConfig = Maps.newLinkedHashMap();
-      types.put(config.getSerializationConfig(), typesForConfig);
+      typesForConfig = new TypesForConfig();
+      TypesForConfig existing = types.putIfAbsent(config.getSerializationConfig(), typesForConfig);
+      if (existing != null) {
+        typesForConfig = existing;
+      }
     }
     return typesForConfig;
   }
 
-  private Schema getOrCreateTypeForConfig(
-      TypeToken type, Map<TypeToken<?>, Schema> typesForConfig, ApiConfig config) {
+  /**
+   * Gets or creates a schema. A schema which already exists, or is being computed, is not waited
+   * for but added to {@code reused}, so that it can be added to the API once the caller holds no
+   * schema in progress.
+   */
+  private Future<Schema> getOrCreateTypeForConfig(TypeToken<?> type,
+      TypesForConfig typesForConfig, ApiConfig config, List<Future<Schema>> reused) {
     type = ApiAnnotationIntrospector.getSchemaType(type, config);
-    Schema schema = typesForConfig.get(type);
-    ApiKey key = config.getApiKey().withoutRoot();
-    if (schema != null) {
-      // If the schema is a placeholder, it's currently being constructed and will be added when
-      // the type construction is complete.
-      if (schema != PLACEHOLDER_SCHEMA) {
-        addSchemaToApi(key, schema);
+    SettableFuture<Schema> future = typesForConfig.get(type);
+    if (future == null) {
+      SettableFuture<Schema> created = SettableFuture.create();
+      future = typesForConfig.putIfAbsent(type, created);
+      if (future == null) {
+        computedCount.incrementAndGet();
+        try {
+          Schema schema = createSchema(type, typesForConfig, config, reused);
+          schemaByApiKeys.put(config.getApiKey().withoutRoot(), schema);
+          created.set(schema);
+        } catch (RuntimeException | Error e) {
+          typesForConfig.remove(type, created);
+          created.setException(e);
+          throw e;
+        }
+        return created;
       }
-      return schema;
     }
-    // We put a placeholder in because this is a recursive process that may result in circular
-    // references. This should never be returned in the public interface.
-    typesForConfig.put(type, PLACEHOLDER_SCHEMA);
+    reusedCount.incrementAndGet();
+    reused.add(future);
+    return future;
+  }
+
+  private Schema createSchema(TypeToken type, TypesForConfig typesForConfig, ApiConfig config,
+      List<Future<Schema>> reused) {
     TypeToken<?> arrayItemType = Types.getArrayItemType(type);
     if (typeLoader.isSchemaType(type)) {
       throw new IllegalArgumentException("Can't add a primitive type as a resource");
     } else if (arrayItemType != null) {
       Field.Builder arrayItemSchema = Field.builder().setName(ARRAY_UNUSED_MSG);
-      fillInFieldInformation(arrayItemSchema, arrayItemType, null, typesForConfig, config);
-      schema = Schema.builder()
+      fillInFieldInformation(arrayItemSchema, arrayItemType, null, typesForConfig, config, reused);
+      return Schema.builder()
           .setName(Types.getSimpleName(type, config.getSerializationConfig()))
           .setType("object")
           .addField("items", Field.builder()
@@ -153,23 +207,16 @@ public class SchemaRepository {
               .setArrayItemSchema(arrayItemSchema.build())
               .build())
           .build();
-      typesForConfig.put(type, schema);
-      schemaByApiKeys.put(key, schema);
-      return schema;
     } else if (Types.isObject(type)) {
-      typesForConfig.put(type, ANY_SCHEMA);
-      schemaByApiKeys.put(key, ANY_SCHEMA);
       return ANY_SCHEMA;
     } else if (Types.isMapType(type)) {
-      schema = MAP_SCHEMA;
+      Schema schema = MAP_SCHEMA;
       final TypeToken<Map<?, ?>> mapSupertype = type.getSupertype(Map.class);
       final boolean hasConcreteKeyValue = Types.isConcreteType(mapSupertype.getType());
       boolean forceJsonMapSchema = EndpointsFlag.MAP_SCHEMA_FORCE_JSON_MAP_SCHEMA.isEnabled();
       if (hasConcreteKeyValue && !forceJsonMapSchema) {
-        schema = createMapSchema(mapSupertype, typesForConfig, config).or(schema);
+        schema = createMapSchema(mapSupertype, typesForConfig, config, reused).or(schema);
       }
-      typesForConfig.put(type, schema);
-      schemaByApiKeys.put(key, schema);
       return schema;
     } else if (Types.isEnumType(type)) {
       Schema.Builder builder = Schema.builder()
@@ -182,15 +229,18 @@ public class SchemaRepository {
           builder.addEnumDescription(description == null ? "" : description.value());
         }
       }
-      schema = builder.build();
-      typesForConfig.put(type, schema);
-      schemaByApiKeys.put(key, schema);
-      return schema;
+      return builder.build();
     } else {
-      schema = createBeanSchema(type, typesForConfig, config);
-      typesForConfig.put(type, schema);
-      schemaByApiKeys.put(key, schema);
-      return schema;
+      return createBeanSchema(type, typesForConfig, config, reused);
+    }
+  }
+
+  private static Schema getDone(Future<Schema> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
     }
   }
 
@@ -213,8 +263,8 @@ public class SchemaRepository {
     }
   }
 
-  private Optional<Schema> createMapSchema(
-      TypeToken<Map<?, ?>> mapType, Map<TypeToken<?>, Schema> typesForConfig, ApiConfig config) {
+  private Optional<Schema> createMapSchema(TypeToken<Map<?, ?>> mapType,
+      TypesForConfig typesForConfig, ApiConfig config, List<Future<Schema>> reused) {
     FieldType keyFieldType = FieldType.fromType(Types.getTypeParameter(mapType, 0));
     boolean supportedKeyType = SUPPORTED_MAP_KEY_TYPES.contains(keyFieldType);
     if (!supportedKeyType) {
@@ -241,12 +291,12 @@ public class SchemaRepository {
         .setName(Types.getSimpleName(mapType, config.getSerializationConfig()))
         .setType("object");
     Field.Builder fieldBuilder = Field.builder().setName(MAP_UNUSED_MSG);
-    fillInFieldInformation(fieldBuilder, valueSchemaType, null, typesForConfig, config);
+    fillInFieldInformation(fieldBuilder, valueSchemaType, null, typesForConfig, config, reused);
     return Optional.of(builder.setMapValueSchema(fieldBuilder.build()).build());
   }
 
-  private Schema createBeanSchema(
-      TypeToken<?> type, Map<TypeToken<?>, Schema> typesForConfig, ApiConfig config) {
+  private Schema createBeanSchema(TypeToken<?> type, TypesForConfig typesForConfig,
+      ApiConfig config, List<Future<Schema>> reused) {
     Schema.Builder builder = Schema.builder()
         .setName(Types.getSimpleName(type, config.getSerializationConfig()))
         .setType("object");
@@ -258,7 +308,7 @@ public class SchemaRepository {
       if (propertyType != null) {
         Field.Builder fieldBuilder = Field.builder().setName(propertyName);
         fillInFieldInformation(fieldBuilder, propertyType, propertySchema.getDescription(),
-            typesForConfig, config);
+            typesForConfig, config, reused);
         builder.addField(propertyName, fieldBuilder.build());
       }
     }
@@ -266,12 +316,13 @@ public class SchemaRepository {
   }
 
   private void fillInFieldInformation(Field.Builder builder, TypeToken<?> fieldType,
-      String description, Map<TypeToken<?>, Schema> typesForConfig, ApiConfig config) {
+      String description, TypesForConfig typesForConfig, ApiConfig config,
+      List<Future<Schema>> reused) {
     FieldType ft = FieldType.fromType(fieldType);
     builder.setType(ft);
     builder.setDescription(description);
     if (ft == FieldType.OBJECT || ft == FieldType.ENUM) {
-      getOrCreateTypeForConfig(fieldType, typesForConfig, config);
+      getOrCreateTypeForConfig(fieldType, typesForConfig, config, reused);
       builder.setSchemaReference(SchemaReference.create(this, config, fieldType));
     } else if (ft == FieldType.ARRAY) {
       Field.Builder arrayItemBuilder = Field.builder().setName(ARRAY_UNUSED_MSG);
@@ -280,8 +331,14 @@ public class SchemaRepository {
           ApiAnnotationIntrospector.getSchemaType(Types.getArrayItemType(fieldType), config),
           null,
           typesForConfig,
-          config);
+          config,
+          reused);
       builder.setArrayItemSchema(arrayItemBuilder.build());
     }
   }
+
+  private static class TypesForConfig
+      extends ConcurrentHashMap<TypeToken<?>, SettableFuture<Schema>> {
+    private static final long serialVersionUID = 1L;
+  }
 }
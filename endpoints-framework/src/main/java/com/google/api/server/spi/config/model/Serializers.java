@@ -27,6 +27,8 @@ import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nullable;
 
@@ -85,10 +87,21 @@ public final class Serializers {
     }
   }
 
+  // Instances per serializer class, keyed by source type. A ClassValue ties the instances to the
+  // serializer's class loader, so they don't outlive a redeployed application.
+  private static final ClassValue<ConcurrentMap<Type, Transformer<?, ?>>> INSTANCES =
+      new ClassValue<ConcurrentMap<Type, Transformer<?, ?>>>() {
+        @Override
+        protected ConcurrentMap<Type, Transformer<?, ?>> computeValue(Class<?> serializerClass) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
   private Serializers() { }
 
   /**
-   * Instantiates a new serializer instance.
+   * Returns the serializer instance for a source type. Each serializer class is instantiated once
+   * per source type; later calls, including from other object mappers, return the same instance.
    *
    * @param serializerClass a serializer class
    * @param sourceType the type being serialized
@@ -99,6 +112,20 @@ public final class Serializers {
   @SuppressWarnings({"unchecked"})
   public static <S extends Transformer<?, ?>> S instantiate(final Class<S> serializerClass,
       TypeToken<?> sourceType) {
+    ConcurrentMap<Type, Transformer<?, ?>> instances = INSTANCES.get(serializerClass);
+    S instance = (S) instances.get(sourceType.getType());
+    if (instance == null) {
+      instance = construct(serializerClass, sourceType);
+      S existing = (S) instances.putIfAbsent(sourceType.getType(), instance);
+      if (existing != null) {
+        instance = existing;
+      }
+    }
+    return instance;
+  }
+
+  private static <S extends Transformer<?, ?>> S construct(Class<S> serializerClass,
+      TypeToken<?> sourceType) {
     if (!getSourceType(serializerClass).isSupertypeOf(sourceType)) {
       throw new IllegalArgumentException(String.format(
           "Can not instantiate %s, the serializer source %s is not assignable from %s",
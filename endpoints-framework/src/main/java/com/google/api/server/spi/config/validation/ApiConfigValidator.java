@@ -85,6 +85,28 @@ public class ApiConfigValidator {
   public void validate(Iterable<? extends ApiConfig> apiConfigs)
       throws ApiConfigInvalidException, ApiClassConfigInvalidException,
       ApiMethodConfigInvalidException, ApiParameterConfigInvalidException {
+    validate(apiConfigs, true);
+  }
+
+  /**
+   * Validates the API-wide configuration of a single API, like {@link #validate(Iterable)}, but
+   * only checks that the REST paths of the methods are unique, as is the case when the
+   * configuration of the methods was validated at compile time by the Endpoints annotation
+   * processor.
+   *
+   * @throws ApiConfigInvalidException on any invalid API-wide configuration.
+   * @throws ApiClassConfigInvalidException on any invalid API class configuration.
+   * @throws ApiMethodConfigInvalidException on any duplicate REST path.
+   */
+  public void validateApiWide(Iterable<? extends ApiConfig> apiConfigs)
+      throws ApiConfigInvalidException, ApiClassConfigInvalidException,
+      ApiMethodConfigInvalidException, ApiParameterConfigInvalidException {
+    validate(apiConfigs, false);
+  }
+
+  private void validate(Iterable<? extends ApiConfig> apiConfigs, boolean validateMethods)
+      throws ApiConfigInvalidException, ApiClassConfigInvalidException,
+      ApiMethodConfigInvalidException, ApiParameterConfigInvalidException {
     if (Iterables.isEmpty(apiConfigs)) {
       return;
     }
@@ -93,7 +115,7 @@ public class ApiConfigValidator {
 
     Iterator<? extends ApiConfig> i = apiConfigs.iterator();
     ApiConfig first = i.next();
-    validate(first, restfulSignatures);
+    validate(first, restfulSignatures, validateMethods);
 
     while (i.hasNext()) {
       ApiConfig config = i.next();
@@ -102,7 +124,7 @@ public class ApiConfigValidator {
       if (!Iterables.isEmpty(inconsistencies)) {
         throw new InconsistentApiConfigurationException(config, first, inconsistencies);
       }
-      validate(config, restfulSignatures);
+      validate(config, restfulSignatures, validateMethods);
     }
   }
 
@@ -117,15 +139,24 @@ public class ApiConfigValidator {
   public void validate(ApiConfig config) throws ApiClassConfigInvalidException,
       ApiMethodConfigInvalidException, ApiParameterConfigInvalidException,
       ApiConfigInvalidException {
-    validate(config, new HashMap<String, ApiMethodConfig>());
+    validate(config, new HashMap<String, ApiMethodConfig>(), true);
   }
 
-  private void validate(ApiConfig config, Map<String, ApiMethodConfig> restfulSignatures)
-      throws ApiClassConfigInvalidException, ApiMethodConfigInvalidException,
-      ApiParameterConfigInvalidException, ApiConfigInvalidException {
+  private void validate(ApiConfig config, Map<String, ApiMethodConfig> restfulSignatures,
+      boolean validateMethods) throws ApiClassConfigInvalidException,
+      ApiMethodConfigInvalidException, ApiParameterConfigInvalidException,
+      ApiConfigInvalidException {
     validateApiConfig(config);
     validateThirdPartyAuth(config.getApiClassConfig());
-    validateMethods(config.getApiClassConfig().getMethods(), restfulSignatures);
+    if (validateMethods) {
+      validateMethods(config.getApiClassConfig().getMethods(), restfulSignatures);
+    } else {
+      for (ApiMethodConfig methodConfig : config.getApiClassConfig().getMethods().values()) {
+        if (!methodConfig.isIgnored()) {
+          validateRestSignatureUnique(methodConfig, restfulSignatures);
+        }
+      }
+    }
   }
 
   private void validateApiConfig(ApiConfig config) throws InvalidNamespaceException,
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.discovery;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.server.spi.Client;
+import com.google.api.server.spi.ObjectMapperUtil;
+import com.google.api.server.spi.config.ApiConfigException;
+import com.google.api.server.spi.config.ApiConfigWriter;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.ApiKey;
+import com.google.api.server.spi.config.model.Schema;
+import com.google.api.server.spi.config.model.Schema.Field;
+import com.google.api.server.spi.config.model.SchemaRepository;
+import com.google.api.services.discovery.model.DirectoryList;
+import com.google.api.services.discovery.model.RestDescription;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * A directory of discovery documents rendered by {@link LocalDiscoveryProvider}, which lets a new
+ * instance serving the same APIs skip generation.
+ *
+ * <p>The documents of a set of APIs are stored in a single file named after a SHA-256 hash of the
+ * APIs' wire-format configuration, so a changed API is simply a cache miss. Files are written
+ * under a temporary name and renamed into place. They are memory mapped when loaded, and each
+ * document is parsed from the mapping when it is first requested.
+ */
+public class DiscoveryDocumentCache {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final int MAGIC = 0x45504444;
+  /** Bumped whenever the file format or the rendering of documents changes. */
+  private static final int FORMAT_VERSION = 1;
+  private static final String FILE_SUFFIX = ".discovery";
+  private static final byte DIRECTORY_ENTRY = 0;
+  private static final byte REST_ENTRY = 1;
+  private static final ObjectMapper objectMapper = ObjectMapperUtil.createStandardObjectMapper();
+  private static final ObjectWriter canonicalWriter =
+      objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+  private final File directory;
+  private final ApiConfigWriter configWriter;
+  private final JsonFactory jsonFactory;
+
+  /**
+   * Creates a cache in {@code directory}, which is created if it does not exist.
+   *
+   * @param configWriter writes the configuration the cache keys are computed from
+   */
+  public DiscoveryDocumentCache(File directory, ApiConfigWriter configWriter) {
+    this(directory, configWriter, Client.getInstance().getJsonFactory());
+  }
+
+  @VisibleForTesting
+  DiscoveryDocumentCache(File directory, ApiConfigWriter configWriter, JsonFactory jsonFactory) {
+    this.directory = Preconditions.checkNotNull(directory, "directory");
+    this.configWriter = Preconditions.checkNotNull(configWriter, "configWriter");
+    this.jsonFactory = jsonFactory;
+  }
+
+  /**
+   * Computes the cache key of a set of APIs. It covers their wire-format configuration and, since
+   * that leaves out schema documentation, the schemas {@code repository} holds for them.
+   */
+  public String computeKey(List<ApiConfig> apiConfigs, SchemaRepository repository)
+      throws ApiConfigException {
+    Hasher hasher = Hashing.sha256().newHasher().putInt(FORMAT_VERSION);
+    // Method order in the wire format follows reflection order, which varies between JVMs, so
+    // each configuration is hashed in a canonical form with sorted keys.
+    SortedMap<String, String> configs = Maps.newTreeMap();
+    for (Map.Entry<ApiKey, String> entry : configWriter.writeConfig(apiConfigs).entrySet()) {
+      configs.put(entry.getKey().toString(), entry.getValue());
+    }
+    try {
+      for (Map.Entry<String, String> entry : configs.entrySet()) {
+        putString(hasher, entry.getKey());
+        hasher.putBytes(canonicalWriter.writeValueAsBytes(
+            objectMapper.readValue(entry.getValue(), Object.class)));
+      }
+    } catch (IOException e) {
+      throw new ApiConfigException(e);
+    }
+    SortedMap<String, Schema> schemas = Maps.newTreeMap();
+    for (ApiConfig config : apiConfigs) {
+      List<Schema> apiSchemas = repository.getAllSchemaForApi(config.getApiKey());
+      if (apiSchemas != null) {
+        for (Schema schema : apiSchemas) {
+          schemas.put(config.getApiKey().withoutRoot() + "/" + schema.name(), schema);
+        }
+      }
+    }
+    for (Map.Entry<String, Schema> entry : schemas.entrySet()) {
+      putString(hasher, entry.getKey());
+      putSchema(hasher, entry.getValue());
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putSchema(Hasher hasher, Schema schema) {
+    putString(hasher, schema.type());
+    putString(hasher, schema.description());
+    putString(hasher, String.valueOf(schema.enumValues()));
+    putString(hasher, String.valueOf(schema.enumDescriptions()));
+    for (Field field : schema.fields().values()) {
+      putField(hasher, field);
+    }
+    if (schema.mapValueSchema() != null) {
+      putField(hasher, schema.mapValueSchema());
+    }
+  }
+
+  private static void putField(Hasher hasher, Field field) {
+    putString(hasher, field.name());
+    putString(hasher, String.valueOf(field.type()));
+    putString(hasher, field.description());
+    if (field.schemaReference() != null) {
+      putString(hasher, field.schemaReference().type().toString());
+    }
+    if (field.arrayItemSchema() != null) {
+      putField(hasher, field.arrayItemSchema());
+    }
+  }
+
+  private static void putString(Hasher hasher, @Nullable String value) {
+    if (value == null) {
+      hasher.putInt(-1);
+    } else {
+      hasher.putInt(value.length()).putString(value, UTF_8);
+    }
+  }
+
+  /**
+   * Loads the documents stored under {@code key}, or returns {@code null} if there are none or
+   * the file cannot be read.
+   */
+  @Nullable
+  public Documents load(String key) {
+    File file = getFile(key);
+    if (!file.isFile()) {
+      return null;
+    }
+    try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+      FileChannel channel = input.getChannel();
+      // The mapping stays valid after the channel is closed.
+      return readDocuments(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+    } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+      logger.atWarning().withCause(e).log("ignoring unreadable discovery cache file %s", file);
+      return null;
+    }
+  }
+
+  private Documents readDocuments(ByteBuffer buffer) throws IOException {
+    if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+      throw new IOException("not a discovery cache file of this version");
+    }
+    int count = buffer.getInt();
+    ImmutableMap.Builder<ApiKey, ByteBuffer> restDocuments = ImmutableMap.builder();
+    ByteBuffer directoryList = null;
+    for (int i = 0; i < count; i++) {
+      byte type = buffer.get();
+      if (type == DIRECTORY_ENTRY) {
+        directoryList = readSlice(buffer);
+      } else if (type == REST_ENTRY) {
+        String name = readString(buffer);
+        String version = readString(buffer);
+        restDocuments.put(new ApiKey(name, version, null /* root */), readSlice(buffer));
+      } else {
+        throw new IOException("unknown entry type " + type);
+      }
+    }
+    return new Documents(restDocuments.build(), directoryList);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static ByteBuffer readSlice(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    ByteBuffer slice = buffer.slice();
+    slice.limit(length);
+    buffer.position(buffer.position() + length);
+    return slice;
+  }
+
+  /**
+   * Stores the documents of a set of APIs under {@code key}, rendered at the placeholder root.
+   */
+  public void store(String key, Map<ApiKey, RestDescription> restDocuments,
+      @Nullable DirectoryList directoryList) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("could not create " + directory);
+    }
+    File file = getFile(key);
+    File temp = File.createTempFile(key, ".tmp", directory);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(restDocuments.size() + (directoryList != null ? 1 : 0));
+        if (directoryList != null) {
+          out.writeByte(DIRECTORY_ENTRY);
+          writeBytes(out, jsonFactory.toByteArray(directoryList));
+        }
+        for (Map.Entry<ApiKey, RestDescription> entry : restDocuments.entrySet()) {
+          out.writeByte(REST_ENTRY);
+          writeBytes(out, entry.getKey().getName().getBytes(UTF_8));
+          writeBytes(out, entry.getKey().getVersion().getBytes(UTF_8));
+          writeBytes(out, jsonFactory.toByteArray(entry.getValue()));
+        }
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      if (temp.exists() && !temp.delete()) {
+        logger.atWarning().log("could not delete %s", temp);
+      }
+    }
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private File getFile(String key) {
+    return new File(directory, key + FILE_SUFFIX);
+  }
+
+  /**
+   * The documents loaded from a cache file. Each is parsed on first use.
+   */
+  public final class Documents {
+    private final ImmutableMap<ApiKey, ByteBuffer> restDocuments;
+    @Nullable private final ByteBuffer directoryList;
+    private final ConcurrentMap<ApiKey, RestDescription> parsedRestDocuments =
+        new ConcurrentHashMap<>();
+    private volatile DirectoryList parsedDirectoryList;
+
+    private Documents(
+        ImmutableMap<ApiKey, ByteBuffer> restDocuments, @Nullable ByteBuffer directoryList) {
+      this.restDocuments = restDocuments;
+      this.directoryList = directoryList;
+    }
+
+    /**
+     * Returns the document of an API, keyed without a root, or {@code null} if there is none.
+     */
+    @Nullable
+    public RestDescription getRestDocument(ApiKey key) throws IOException {
+      RestDescription doc = parsedRestDocuments.get(key);
+      if (doc == null) {
+        ByteBuffer bytes = restDocuments.get(key);
+        if (bytes == null) {
+          return null;
+        }
+        doc = parse(bytes, RestDescription.class);
+        parsedRestDocuments.putIfAbsent(key, doc);
+      }
+      return doc;
+    }
+
+    @Nullable
+    public DirectoryList getDirectoryList() throws IOException {
+      DirectoryList result = parsedDirectoryList;
+      if (result == null && directoryList != null) {
+        parsedDirectoryList = result = parse(directoryList, DirectoryList.class);
+      }
+      return result;
+    }
+
+    private <T> T parse(ByteBuffer buffer, Class<T> type) throws IOException {
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.duplicate().get(bytes);
+      return jsonFactory.fromInputStream(new ByteArrayInputStream(bytes), UTF_8, type);
+    }
+  }
+}
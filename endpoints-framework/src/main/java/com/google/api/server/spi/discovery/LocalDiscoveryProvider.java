@@ -1,6 +1,7 @@
 package com.google.api.server.spi.discovery;
 
 import com.google.api.server.spi.Strings;
+import com.google.api.server.spi.config.ApiConfigException;
 import com.google.api.server.spi.config.model.ApiConfig;
 import com.google.api.server.spi.config.model.ApiKey;
 import com.google.api.server.spi.config.model.SchemaRepository;
@@ -10,37 +11,89 @@ import com.google.api.services.discovery.model.DirectoryList;
 import com.google.api.services.discovery.model.DirectoryList.Items;
 import com.google.api.services.discovery.model.RestDescription;
 import com.google.api.services.discovery.model.RpcDescription;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.io.IOException;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 /**
  * A {@link DiscoveryProvider} which generates discovery documents locally.
+ *
+ * <p>Documents are generated once, on first use, and the variants for each requested root are
+ * memoized. Roots come from the request, so only a bounded number of them is retained.
+ *
+ * <p>With a {@link DiscoveryDocumentCache}, documents previously rendered for the same APIs are
+ * loaded from disk on construction instead, and newly generated documents are stored there.
  */
 public class LocalDiscoveryProvider extends AbstractDiscoveryProvider {
   private static final String PLACEHOLDER_ROOT = "https://placeholder.appspot.com/_ah/api";
+  private static final int MAX_CACHED_ROOTS = 16;
+
   private final DiscoveryGenerator generator;
   private final SchemaRepository repository;
-  private Map<ApiKey, RestDescription> discoveryDocs;
-  private DirectoryList directoryList;
+  private final Cache<ApiKey, RestDescription> restDocumentsByRoot;
+  private final Cache<String, DirectoryList> directoryByRoot;
+  @Nullable private final DiscoveryDocumentCache documentCache;
+  @Nullable private final String documentCacheKey;
+  @Nullable private volatile DiscoveryDocumentCache.Documents cachedDocuments;
+  private volatile GeneratedDocuments generated;
 
   public LocalDiscoveryProvider(ImmutableList<ApiConfig> apiConfigs, DiscoveryGenerator generator,
       SchemaRepository repository) {
+    this(apiConfigs, generator, repository, null);
+  }
+
+  /**
+   * Creates a provider which loads documents from, and stores them in, {@code documentCache}.
+   */
+  public LocalDiscoveryProvider(ImmutableList<ApiConfig> apiConfigs, DiscoveryGenerator generator,
+      SchemaRepository repository, @Nullable DiscoveryDocumentCache documentCache) {
     super(apiConfigs);
     this.generator = generator;
     this.repository = repository;
+    this.restDocumentsByRoot = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_ROOTS * Math.max(apiConfigs.size(), 1))
+        .build();
+    this.directoryByRoot = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_ROOTS)
+        .build();
+    this.documentCacheKey = documentCache != null ? computeCacheKey(documentCache) : null;
+    this.documentCache = documentCacheKey != null ? documentCache : null;
+    if (documentCache != null) {
+      this.cachedDocuments = documentCache.load(documentCacheKey);
+    }
+  }
+
+  @Nullable
+  private String computeCacheKey(DiscoveryDocumentCache documentCache) {
+    try {
+      return documentCache.computeKey(getAllApiConfigs(), repository);
+    } catch (ApiConfigException | RuntimeException e) {
+      logger.atWarning().withCause(e).log("not caching discovery documents");
+      return null;
+    }
   }
 
   @Override
   public RestDescription getRestDocument(String root, String name, String version)
       throws NotFoundException {
-    ensureDiscoveryResult();
-    RestDescription doc = discoveryDocs.get(new ApiKey(name, version, null /* root */));
+    ApiKey rootedKey = new ApiKey(name, version, root);
+    RestDescription doc = restDocumentsByRoot.getIfPresent(rootedKey);
     if (doc == null) {
-      throw new NotFoundException("Not Found");
+      // Missing documents are not cached, so that unknown names cannot evict known documents.
+      doc = replaceRoot(getPlaceholderRestDocument(new ApiKey(name, version, null /* root */)),
+          root);
+      if (doc == null) {
+        throw new NotFoundException("Not Found");
+      }
+      restDocumentsByRoot.put(rootedKey, doc);
     }
-    return replaceRoot(doc, root);
+    return doc;
   }
 
   @Override
@@ -51,27 +104,82 @@ public class LocalDiscoveryProvider extends AbstractDiscoveryProvider {
 
   @Override
   public DirectoryList getDirectory(String root) {
-    ensureDiscoveryResult();
-    return replaceRoot(directoryList, root);
+    DirectoryList directory = directoryByRoot.getIfPresent(root);
+    if (directory == null) {
+      directory = replaceRoot(getPlaceholderDirectory(), root);
+      if (directory != null) {
+        directoryByRoot.put(root, directory);
+      }
+    }
+    return directory;
+  }
+
+  @Nullable
+  private RestDescription getPlaceholderRestDocument(ApiKey key) {
+    DiscoveryDocumentCache.Documents cached = cachedDocuments;
+    if (cached != null) {
+      try {
+        return cached.getRestDocument(key);
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("regenerating unreadable cached discovery documents");
+        cachedDocuments = null;
+      }
+    }
+    return getGeneratedDocuments().discoveryDocs.get(key);
+  }
+
+  @Nullable
+  private DirectoryList getPlaceholderDirectory() {
+    DiscoveryDocumentCache.Documents cached = cachedDocuments;
+    if (cached != null) {
+      try {
+        return cached.getDirectoryList();
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("regenerating unreadable cached discovery documents");
+        cachedDocuments = null;
+      }
+    }
+    return getGeneratedDocuments().directoryList;
+  }
+
+  private GeneratedDocuments getGeneratedDocuments() {
+    GeneratedDocuments result = generated;
+    if (result == null) {
+      synchronized (this) {
+        result = generated;
+        if (result == null) {
+          generated = result = generateDocuments();
+          storeDocuments(result);
+        }
+      }
+    }
+    return result;
   }
 
-  private synchronized void ensureDiscoveryResult() {
-    if (discoveryDocs == null) {
-      DiscoveryGenerator.Result result = generator.writeDiscovery(
-          getAllApiConfigs(),
-          new DiscoveryContext()
-              .setApiRoot(PLACEHOLDER_ROOT)
-              .setGenerateAll(false),
-          repository);
-      directoryList = result.directory();
-      ImmutableMap.Builder<ApiKey, RestDescription> builder = ImmutableMap.builder();
-      for (Map.Entry<ApiKey, RestDescription> entry : result.discoveryDocs().entrySet()) {
-        ApiKey rootedKey = entry.getKey();
-        builder.put(
-            new ApiKey(rootedKey.getName(), rootedKey.getVersion(), null /* root */),
-            entry.getValue());
+  private GeneratedDocuments generateDocuments() {
+    DiscoveryGenerator.Result result = generator.writeDiscovery(
+        getAllApiConfigs(),
+        new DiscoveryContext()
+            .setApiRoot(PLACEHOLDER_ROOT)
+            .setGenerateAll(false),
+        repository);
+    ImmutableMap.Builder<ApiKey, RestDescription> builder = ImmutableMap.builder();
+    for (Map.Entry<ApiKey, RestDescription> entry : result.discoveryDocs().entrySet()) {
+      ApiKey rootedKey = entry.getKey();
+      builder.put(
+          new ApiKey(rootedKey.getName(), rootedKey.getVersion(), null /* root */),
+          entry.getValue());
+    }
+    return new GeneratedDocuments(builder.build(), result.directory());
+  }
+
+  private void storeDocuments(GeneratedDocuments documents) {
+    if (documentCache != null) {
+      try {
+        documentCache.store(documentCacheKey, documents.discoveryDocs, documents.directoryList);
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("could not store discovery documents");
       }
-      discoveryDocs = builder.build();
     }
   }
 
@@ -81,8 +189,8 @@ public class LocalDiscoveryProvider extends AbstractDiscoveryProvider {
     }
     newRoot = Strings.stripTrailingSlash(newRoot);
     return doc.clone()
-        .setBaseUrl(doc.getBaseUrl().replaceFirst(PLACEHOLDER_ROOT, newRoot))
-        .setRootUrl(doc.getRootUrl().replaceFirst(PLACEHOLDER_ROOT, newRoot));
+        .setBaseUrl(replaceRoot(doc.getBaseUrl(), newRoot))
+        .setRootUrl(replaceRoot(doc.getRootUrl(), newRoot));
   }
 
   private static DirectoryList replaceRoot(DirectoryList directory, String newRoot) {
@@ -92,8 +200,27 @@ public class LocalDiscoveryProvider extends AbstractDiscoveryProvider {
     newRoot = Strings.stripTrailingSlash(newRoot);
     directory = directory.clone();
     for (Items item : directory.getItems()) {
-      item.setDiscoveryRestUrl(item.getDiscoveryRestUrl().replaceFirst(PLACEHOLDER_ROOT, newRoot));
+      item.setDiscoveryRestUrl(replaceRoot(item.getDiscoveryRestUrl(), newRoot));
     }
     return directory;
   }
+
+  private static String replaceRoot(String url, String newRoot) {
+    return url != null && url.startsWith(PLACEHOLDER_ROOT)
+        ? newRoot + url.substring(PLACEHOLDER_ROOT.length()) : url;
+  }
+
+  /**
+   * The generated documents, rooted at {@link #PLACEHOLDER_ROOT}. Immutable once published.
+   */
+  private static final class GeneratedDocuments {
+    private final ImmutableMap<ApiKey, RestDescription> discoveryDocs;
+    private final DirectoryList directoryList;
+
+    GeneratedDocuments(
+        ImmutableMap<ApiKey, RestDescription> discoveryDocs, DirectoryList directoryList) {
+      this.discoveryDocs = discoveryDocs;
+      this.directoryList = directoryList;
+    }
+  }
 }
@@ -27,6 +27,8 @@ import com.google.api.services.discovery.model.ApiConfigs;
 import com.google.api.services.discovery.model.DirectoryList;
 import com.google.api.services.discovery.model.RestDescription;
 import com.google.api.services.discovery.model.RpcDescription;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -36,11 +38,18 @@ import java.util.Map;
 
 /**
  * Provides discovery information by proxying to the v1.0 discovery service.
+ *
+ * <p>The API configurations sent to the discovery service are generated once for each API and
+ * root they are requested under, since the loaded {@link ApiConfig}s never change.
  */
 public class ProxyingDiscoveryProvider extends AbstractDiscoveryProvider {
+  private static final int MAX_CACHED_ROOTS = 16;
 
   private final ApiConfigWriter configWriter;
   private final Discovery discovery;
+  private final Cache<ApiKey, String> configStringsByKey;
+  private final Cache<String, ImmutableList<String>> directoryConfigStringsByRoot =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_ROOTS).build();
 
   public ProxyingDiscoveryProvider(
       ImmutableList<ApiConfig> apiConfigs, ApiConfigWriter configWriter) {
@@ -52,6 +61,9 @@ public class ProxyingDiscoveryProvider extends AbstractDiscoveryProvider {
     super(apiConfigs);
     this.configWriter = configWriter;
     this.discovery = discovery;
+    this.configStringsByKey = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_ROOTS * Math.max(1, apiConfigs.size()))
+        .build();
   }
 
   @Override
@@ -60,7 +72,7 @@ public class ProxyingDiscoveryProvider extends AbstractDiscoveryProvider {
     try {
       return discovery.apis()
           .generateRest(new com.google.api.services.discovery.model.ApiConfig().setConfig(
-              getApiConfigStringWithRoot(getApiConfigs(name, version), root))).execute();
+              getApiConfigStringWithRoot(name, version, root))).execute();
     } catch (IOException | ApiConfigException e) {
       logger.atSevere().withCause(e).log("Could not generate or cache discovery doc");
       throw new InternalServerErrorException("Internal Server Error", e);
@@ -73,7 +85,7 @@ public class ProxyingDiscoveryProvider extends AbstractDiscoveryProvider {
     try {
       return discovery.apis()
           .generateRpc(new com.google.api.services.discovery.model.ApiConfig().setConfig(
-              getApiConfigStringWithRoot(getApiConfigs(name, version), root))).execute();
+              getApiConfigStringWithRoot(name, version, root))).execute();
     } catch (IOException | ApiConfigException e) {
       logger.atSevere().withCause(e).log("Could not generate or cache discovery doc");
       throw new InternalServerErrorException("Internal Server Error", e);
@@ -83,10 +95,8 @@ public class ProxyingDiscoveryProvider extends AbstractDiscoveryProvider {
   @Override
   public DirectoryList getDirectory(String root) throws InternalServerErrorException {
     try {
-      Map<ApiKey, String> configStrings =
-          configWriter.writeConfig(rewriteConfigsWithRoot(getAllApiConfigs(), root));
       ApiConfigs configs = new ApiConfigs();
-      configs.setConfigs(Lists.newArrayList(configStrings.values()));
+      configs.setConfigs(Lists.newArrayList(getAllApiConfigStringsWithRoot(root)));
       return discovery.apis().generateDirectory(configs).execute();
     } catch (IOException | ApiConfigException e) {
       logger.atSevere().withCause(e).log("Could not generate or cache directory");
@@ -94,14 +104,32 @@ public class ProxyingDiscoveryProvider extends AbstractDiscoveryProvider {
     }
   }
 
-  private String getApiConfigStringWithRoot(ImmutableList<ApiConfig> configs, final String root)
-      throws InternalServerErrorException, ApiConfigException {
-    Map<ApiKey, String> configMap = configWriter.writeConfig(rewriteConfigsWithRoot(configs, root));
-    if (configMap.size() != 1) {
-      logger.atSevere().log("config generation yielded more than one API");
-      throw new InternalServerErrorException("Internal Server Error");
+  private String getApiConfigStringWithRoot(String name, String version, String root)
+      throws NotFoundException, InternalServerErrorException, ApiConfigException {
+    ApiKey key = new ApiKey(name, version, root);
+    String configString = configStringsByKey.getIfPresent(key);
+    if (configString == null) {
+      Map<ApiKey, String> configMap =
+          configWriter.writeConfig(rewriteConfigsWithRoot(getApiConfigs(name, version), root));
+      if (configMap.size() != 1) {
+        logger.atSevere().log("config generation yielded more than one API");
+        throw new InternalServerErrorException("Internal Server Error");
+      }
+      configString = Iterables.getFirst(configMap.values(), null);
+      configStringsByKey.put(key, configString);
+    }
+    return configString;
+  }
+
+  private ImmutableList<String> getAllApiConfigStringsWithRoot(String root)
+      throws ApiConfigException {
+    ImmutableList<String> configStrings = directoryConfigStringsByRoot.getIfPresent(root);
+    if (configStrings == null) {
+      configStrings = ImmutableList.copyOf(
+          configWriter.writeConfig(rewriteConfigsWithRoot(getAllApiConfigs(), root)).values());
+      directoryConfigStringsByRoot.put(root, configStrings);
     }
-    return Iterables.getFirst(configMap.values(), null);
+    return configStrings;
   }
 
   private static Discovery createDiscovery() {
@@ -43,8 +43,8 @@ import javax.servlet.http.HttpServletRequest;
 public class ProxyingDiscoveryService {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
-  private DiscoveryProvider discoveryProvider;
-  private boolean initialized = false;
+  private volatile DiscoveryProvider discoveryProvider;
+  private volatile boolean initialized = false;
 
   @ApiMethod(ignored = AnnotationBoolean.TRUE)
   public synchronized void initialize(DiscoveryProvider discoveryProvider) {
@@ -54,6 +54,16 @@ public class ProxyingDiscoveryService {
     }
   }
 
+  /**
+   * Replaces the provider documents are generated with, for example after the API configuration
+   * was reloaded. Unlike {@link #initialize}, this takes effect even if already initialized.
+   */
+  @ApiMethod(ignored = AnnotationBoolean.TRUE)
+  public synchronized void replaceProvider(DiscoveryProvider discoveryProvider) {
+    this.discoveryProvider = discoveryProvider;
+    initialized = true;
+  }
+
   @ApiMethod(
       name = "apis.getRest",
       path = "apis/{api}/{version}/rest"
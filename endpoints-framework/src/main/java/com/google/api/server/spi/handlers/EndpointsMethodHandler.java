@@ -21,20 +21,45 @@ import com.google.api.server.spi.Headers;
 import com.google.api.server.spi.ServiceException;
 import com.google.api.server.spi.ServletInitializationParameters;
 import com.google.api.server.spi.SystemService;
+import com.google.api.server.spi.WireFormat;
 import com.google.api.server.spi.config.model.ApiConfig;
 import com.google.api.server.spi.config.model.ApiMethodConfig;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
 import com.google.api.server.spi.config.model.StandardParameters;
 import com.google.api.server.spi.dispatcher.DispatcherHandler;
+import com.google.api.server.spi.auth.common.User;
 import com.google.api.server.spi.request.Attribute;
+import com.google.api.server.spi.request.Auth;
+import com.google.api.server.spi.request.Deadline;
+import com.google.api.server.spi.request.FingerprintingServletRequest;
 import com.google.api.server.spi.request.ParamReader;
+import com.google.api.server.spi.request.RequestSampler;
+import com.google.api.server.spi.request.RequestSampler.MethodSampler;
+import com.google.api.server.spi.request.RequestTimings;
 import com.google.api.server.spi.request.RestServletRequestParamReader;
+import com.google.api.server.spi.response.BadRequestException;
+import com.google.api.server.spi.response.ConflictException;
+import com.google.api.server.spi.response.DeadlineExceededException;
+import com.google.api.server.spi.response.EventStreams;
+import com.google.api.server.spi.response.IdempotencyStore;
+import com.google.api.server.spi.response.InMemoryIdempotencyStore;
 import com.google.api.server.spi.response.InternalServerErrorException;
+import com.google.api.server.spi.response.RecordingServletResponse;
+import com.google.api.server.spi.response.RequestEntityTooLargeException;
 import com.google.api.server.spi.response.RestResponseResultWriter;
 import com.google.api.server.spi.response.ResultWriter;
+import com.google.api.server.spi.response.ServiceUnavailableException;
+import com.google.api.server.spi.response.ServletResponseResultWriter;
+import com.google.api.server.spi.response.StoredResponse;
+import com.google.api.server.spi.response.StreamingResponse;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.flogger.FluentLogger;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -45,24 +70,90 @@ import javax.servlet.http.HttpServletResponse;
  */
 public class EndpointsMethodHandler {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+  // Responses larger than this are not stored, so retries of such requests execute again.
+  private static final int MAX_STORED_RESPONSE_BYTES = 64 * 1024;
+  // How long a retry waits for the first execution when the request has no deadline.
+  private static final long MAX_IDEMPOTENCY_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(60);
   private final ServletInitializationParameters initParameters;
   private final ServletContext servletContext;
   private final EndpointMethod endpointMethod;
   private final ApiMethodConfig methodConfig;
   private final SystemService systemService;
+  private final EventStreams eventStreams;
+  private final IdempotencyStore idempotencyStore;
+  @Nullable private final MethodSampler requestSampler;
   private final RestHandler restHandler;
   private final String restPath;
+  private final long timeoutMillis;
+  private final long maxRequestBytes;
+  private final AtomicLong deadlineExceededCount = new AtomicLong();
+  private final AtomicLong requestTooLargeCount = new AtomicLong();
+  private final AtomicLong requestBytesAvoided = new AtomicLong();
+  private final AtomicLong idempotentReplayCount = new AtomicLong();
 
+  /**
+   * Creates a handler whose {@link StreamingResponse}s are capped per method and are not sent
+   * heartbeats. Prefer passing the servlet's shared {@link EventStreams}.
+   */
   public EndpointsMethodHandler(ServletInitializationParameters initParameters,
       ServletContext servletContext, EndpointMethod endpointMethod, ApiMethodConfig methodConfig,
       SystemService systemService) {
+    this(initParameters, servletContext, endpointMethod, methodConfig, systemService,
+        new EventStreams(initParameters.getMaxOpenStreams(), 0));
+  }
+
+  public EndpointsMethodHandler(ServletInitializationParameters initParameters,
+      ServletContext servletContext, EndpointMethod endpointMethod, ApiMethodConfig methodConfig,
+      SystemService systemService, EventStreams eventStreams) {
+    this(initParameters, servletContext, endpointMethod, methodConfig, systemService, eventStreams,
+        null);
+  }
+
+  /**
+   * @param idempotencyStore the store shared by the servlet's methods, or {@code null} to give
+   *     this method its own in-memory store if it has idempotency keys enabled
+   */
+  public EndpointsMethodHandler(ServletInitializationParameters initParameters,
+      ServletContext servletContext, EndpointMethod endpointMethod, ApiMethodConfig methodConfig,
+      SystemService systemService, EventStreams eventStreams,
+      @Nullable IdempotencyStore idempotencyStore) {
+    this(initParameters, servletContext, endpointMethod, methodConfig, systemService, eventStreams,
+        idempotencyStore, null);
+  }
+
+  /**
+   * @param idempotencyStore the store shared by the servlet's methods, or {@code null} to give
+   *     this method its own in-memory store if it has idempotency keys enabled
+   * @param requestSampler the sampler shared by the servlet's methods, or {@code null} if requests
+   *     are not sampled
+   */
+  public EndpointsMethodHandler(ServletInitializationParameters initParameters,
+      ServletContext servletContext, EndpointMethod endpointMethod, ApiMethodConfig methodConfig,
+      SystemService systemService, EventStreams eventStreams,
+      @Nullable IdempotencyStore idempotencyStore, @Nullable RequestSampler requestSampler) {
     this.initParameters = initParameters;
     this.servletContext = servletContext;
     this.endpointMethod = endpointMethod;
     this.methodConfig = methodConfig;
     this.systemService = systemService;
+    this.eventStreams = eventStreams;
+    if (!methodConfig.isIdempotencyKeyEnabled()) {
+      this.idempotencyStore = null;
+    } else if (idempotencyStore != null) {
+      this.idempotencyStore = idempotencyStore;
+    } else {
+      this.idempotencyStore = new InMemoryIdempotencyStore(
+          initParameters.getIdempotencyKeyTtlMillis(), initParameters.getIdempotencyKeyMaxEntries());
+    }
+    this.requestSampler = requestSampler != null
+        ? requestSampler.forMethod(methodConfig.getFullMethodName()) : null;
     this.restHandler = new RestHandler();
     this.restPath = createRestPath(methodConfig);
+    this.timeoutMillis = methodConfig.getTimeoutMillis() > 0
+        ? methodConfig.getTimeoutMillis() : initParameters.getDefaultTimeoutMillis();
+    this.maxRequestBytes = methodConfig.getMaxRequestBytes() > 0
+        ? methodConfig.getMaxRequestBytes() : initParameters.getMaxRequestBytes();
   }
 
   public String getRestMethod() {
@@ -77,6 +168,202 @@ public class EndpointsMethodHandler {
     return restHandler;
   }
 
+  /**
+   * Returns the number of requests to this method which were answered with a
+   * {@link DeadlineExceededException}, either because the framework skipped or discarded work after
+   * the request's {@link Deadline} passed, or because the method itself gave up.
+   */
+  public long getDeadlineExceededCount() {
+    return deadlineExceededCount.get();
+  }
+
+  /**
+   * Returns the number of requests to this method which were answered with a
+   * {@link RequestEntityTooLargeException}, either up front because of their declared length, or
+   * once too many bytes of their body were read.
+   */
+  public long getRequestTooLargeCount() {
+    return requestTooLargeCount.get();
+  }
+
+  /**
+   * Returns the total declared length of the requests which were rejected before their body was
+   * read. Bodies rejected while being read are not included, as their full length is not known.
+   */
+  public long getRequestBytesAvoided() {
+    return requestBytesAvoided.get();
+  }
+
+  /**
+   * Returns the number of requests to this method which were answered with the stored response of
+   * an earlier request with the same idempotency key, instead of invoking the method.
+   */
+  public long getIdempotentReplayCount() {
+    return idempotentReplayCount.get();
+  }
+
+  /**
+   * Rejects a request whose declared body length exceeds the limit, and limits the bytes read from
+   * the body otherwise, since the declared length may be absent or, once decompressed, misleading.
+   */
+  private void limitRequestBody(HttpServletRequest request, Attribute attribute)
+      throws RequestEntityTooLargeException {
+    if (maxRequestBytes <= 0) {
+      return;
+    }
+    long contentLength = getContentLength(request);
+    if (contentLength > maxRequestBytes) {
+      requestBytesAvoided.addAndGet(contentLength);
+      logger.atWarning().log("rejected %d byte request to %s", contentLength,
+          methodConfig.getFullMethodName());
+      throw new RequestEntityTooLargeException("request body is too large");
+    }
+    attribute.set(Attribute.MAX_REQUEST_BYTES, maxRequestBytes);
+  }
+
+  private static long getContentLength(HttpServletRequest request) {
+    // getContentLength() is an int, so read the header to support lengths above 2 GB.
+    String contentLength = request.getHeader("Content-Length");
+    if (contentLength != null) {
+      try {
+        return Long.parseLong(contentLength.trim());
+      } catch (NumberFormatException e) {
+        // Fall through; the body is still limited as it is read.
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Derives the deadline of a request from the method's timeout (or the servlet default) and the
+   * client-supplied timeout header, if configured, whichever expires first. Both are counted from
+   * when the request started being dispatched, so time spent routing it counts against them.
+   */
+  @VisibleForTesting
+  Deadline createDeadline(EndpointsContext context) {
+    long startNanos = context.getStartNanos();
+    Deadline deadline = timeoutMillis > 0
+        ? Deadline.afterStart(startNanos, timeoutMillis, TimeUnit.MILLISECONDS) : Deadline.none();
+    String deadlineHeader = initParameters.getDeadlineHeader();
+    String clientTimeout =
+        deadlineHeader != null ? context.getRequest().getHeader(deadlineHeader) : null;
+    if (clientTimeout != null) {
+      try {
+        deadline = deadline.earliest(Deadline.afterStart(
+            startNanos, Long.parseLong(clientTimeout.trim()), TimeUnit.MILLISECONDS));
+      } catch (NumberFormatException e) {
+        logger.atFine().log("ignoring invalid %s header: %s", deadlineHeader, clientTimeout);
+      }
+    }
+    return deadline;
+  }
+
+  @Nullable
+  private String getIdempotencyKey(HttpServletRequest request) throws BadRequestException {
+    if (idempotencyStore == null) {
+      return null;
+    }
+    String idempotencyKey = request.getHeader(initParameters.getIdempotencyKeyHeader());
+    if (idempotencyKey == null || idempotencyKey.trim().isEmpty()) {
+      return null;
+    }
+    if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+      throw new BadRequestException("idempotency key is too long");
+    }
+    return idempotencyKey.trim();
+  }
+
+  /**
+   * Invokes the method unless a request with the same idempotency key already did, in which case
+   * that request's response is replayed. Parameters are read first, as keys are scoped to the
+   * authenticated user, and a response is only replayed for a request with the same method, URI,
+   * parameters and body.
+   */
+  private void invokeIdempotently(Object service, ParamReader reader, ResultWriter writer,
+      FingerprintingServletRequest request, HttpServletResponse response,
+      RecordingServletResponse recorder, String idempotencyKey, Deadline deadline,
+      @Nullable RequestTimings timings) throws IOException {
+    Object[] params;
+    String key;
+    String fingerprint;
+    try {
+      params = reader.read();
+      key = scopeIdempotencyKey(idempotencyKey, params, request);
+      fingerprint = request.getFingerprint();
+      // An expired deadline leaves no time to wait for an execution in progress, which would
+      // otherwise be reported as a conflict.
+      deadline.checkNotExpired();
+    } catch (ServiceException e) {
+      writer.writeError(e);
+      return;
+    }
+    StoredResponse storedResponse;
+    try {
+      storedResponse = idempotencyStore.begin(key, deadline.isSet()
+          ? deadline.timeRemaining(TimeUnit.MILLISECONDS) : MAX_IDEMPOTENCY_WAIT_MILLIS);
+    } catch (TimeoutException e) {
+      writer.writeError(
+          new ConflictException("A request with the same idempotency key is in progress"));
+      return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      writer.writeError(new ServiceUnavailableException("Interrupted"));
+      return;
+    }
+    if (storedResponse != null) {
+      if (!storedResponse.matchesRequest(fingerprint)) {
+        writer.writeError(new ConflictException(
+            "The idempotency key was already used by a request with different content"));
+        return;
+      }
+      idempotentReplayCount.incrementAndGet();
+      if (timings != null) {
+        timings.beginWrite();
+      }
+      storedResponse.writeTo(response);
+      if (timings != null) {
+        timings.endWrite(storedResponse.getStatus(), storedResponse.getBody().length);
+      }
+      return;
+    }
+    boolean completed = false;
+    try {
+      systemService.invokeServiceMethod(service, endpointMethod, new ReadParamReader(params),
+          writer);
+      // Server errors are worth retrying, so they are not replayed.
+      storedResponse = recorder.getStatus() < HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+          ? recorder.toStoredResponse() : null;
+      if (storedResponse != null) {
+        idempotencyStore.complete(key, storedResponse.withRequestFingerprint(fingerprint));
+        completed = true;
+      }
+    } finally {
+      if (!completed) {
+        idempotencyStore.release(key);
+      }
+    }
+  }
+
+  /**
+   * Scopes a client-supplied idempotency key to the method and the caller, so that one user can
+   * never be replayed another user's response. The caller is taken from the method's {@code User}
+   * parameter if it has one, or else authenticated from the request.
+   */
+  private String scopeIdempotencyKey(String idempotencyKey, Object[] params,
+      HttpServletRequest request) throws ServiceException {
+    int userIndex = Arrays.asList(endpointMethod.getParameterClasses()).indexOf(User.class);
+    User user = userIndex >= 0 ? (User) params[userIndex] : Auth.authenticate(request);
+    StringBuilder key = new StringBuilder(methodConfig.getFullMethodName()).append('\n');
+    if (user != null && user.getId() != null) {
+      key.append("id:").append(user.getId());
+    } else if (user != null && user.getEmail() != null) {
+      key.append("email:").append(user.getEmail());
+    } else {
+      key.append("anonymous");
+    }
+    return key.append('\n').append(idempotencyKey).toString();
+  }
+
   @VisibleForTesting
   protected ParamReader createRestParamReader(EndpointsContext context,
       ApiSerializationConfig serializationConfig) {
@@ -95,44 +382,250 @@ public class EndpointsMethodHandler {
     return _createResultWriter(context, serializationConfig);
   }
 
-  private void writeError(EndpointsContext context, ServiceException error) throws IOException {
-      _createResultWriter(context, null).writeError(error);
+  private void writeError(EndpointsContext context, ServiceException error,
+      @Nullable RequestTimings timings) throws IOException {
+    ServletResponseResultWriter writer = _createResultWriter(context, null);
+    if (timings != null) {
+      timings.beginWrite();
+    }
+    writer.writeError(error);
+    if (timings != null) {
+      timings.endWrite(writer.getStatus(), writer.getContentLength());
+    }
   }
 
-  private ResultWriter _createResultWriter(EndpointsContext context,
+  private ServletResponseResultWriter _createResultWriter(EndpointsContext context,
       ApiSerializationConfig serializationConfig) {
     return new RestResponseResultWriter(context.getResponse(), serializationConfig,
         StandardParameters.shouldPrettyPrint(context),
         initParameters.isAddContentLength(),
-        initParameters.isExceptionCompatibilityEnabled());
+        initParameters.isExceptionCompatibilityEnabled(),
+        WireFormat.forResponse(context.getRequest()));
   }
 
   private class RestHandler implements DispatcherHandler<EndpointsContext> {
     @Override
     public void handle(EndpointsContext context) throws IOException {
+      if (requestSampler == null) {
+        handle(context, null);
+        return;
+      }
+      RequestTimings timings = RequestTimings.start(
+          context.getStartNanos(), getContentLength(context.getRequest()));
+      try {
+        handle(context, timings);
+      } finally {
+        timings.finish();
+        requestSampler.record(timings);
+      }
+    }
+
+    private void handle(EndpointsContext context, @Nullable RequestTimings timings)
+        throws IOException {
       try {
         HttpServletRequest request = context.getRequest();
-        Attribute.bindStandardRequestAttributes(request, methodConfig, initParameters);
+        Attribute attribute =
+            Attribute.bindStandardRequestAttributes(request, methodConfig, initParameters);
+        if (timings != null) {
+          attribute.set(Attribute.REQUEST_TIMINGS, timings);
+        }
+        limitRequestBody(request, attribute);
+        Deadline deadline = createDeadline(context);
+        attribute.set(Attribute.DEADLINE, deadline);
+        if (deadline.isExpired()) {
+          deadlineExceededCount.incrementAndGet();
+          logger.atWarning().log("deadline of %s passed before it could be invoked",
+              methodConfig.getFullMethodName());
+          throw new DeadlineExceededException("Deadline exceeded before the request was handled");
+        }
         String serviceName = endpointMethod.getEndpointClass().getName();
         Object service = systemService.findService(serviceName);
         ApiSerializationConfig serializationConfig = systemService.getSerializationConfig(
             serviceName);
-        ParamReader reader = createRestParamReader(context, serializationConfig);
-        ResultWriter writer = createResultWriter(context, serializationConfig);
+        String idempotencyKey = getIdempotencyKey(request);
+        FingerprintingServletRequest fingerprinter = null;
+        RecordingServletResponse recorder = null;
+        EndpointsContext invocationContext = context;
+        if (idempotencyKey != null) {
+          fingerprinter = new FingerprintingServletRequest(request);
+          recorder = new RecordingServletResponse(context.getResponse(), MAX_STORED_RESPONSE_BYTES);
+          invocationContext = context.withRequest(fingerprinter).withResponse(recorder);
+        }
+        ParamReader reader = createRestParamReader(invocationContext, serializationConfig);
+        ResultWriter writer = new StreamingResultWriter(
+            createResultWriter(invocationContext, serializationConfig), invocationContext,
+            serializationConfig, timings);
+        if (deadline.isSet()) {
+          reader = new DeadlineCheckingParamReader(reader, deadline);
+          writer = new DeadlineCheckingResultWriter(writer, deadline);
+        }
+        if (timings != null) {
+          reader = timings.timeReading(reader);
+        }
         if (request.getHeader(Headers.ORIGIN) != null) {
           HttpServletResponse response = context.getResponse();
           CorsHandler.allowOrigin(request, response);
           CorsHandler.setAccessControlAllowCredentials(response);
         }
-        systemService.invokeServiceMethod(service, endpointMethod.getMethod(), reader, writer);
+        if (recorder != null) {
+          invokeIdempotently(service, reader, writer, fingerprinter, context.getResponse(),
+              recorder, idempotencyKey, deadline, timings);
+        } else {
+          systemService.invokeServiceMethod(service, endpointMethod, reader, writer);
+        }
       } catch (ServiceException e) {
-        writeError(context, e);
+        if (e instanceof RequestEntityTooLargeException) {
+          requestTooLargeCount.incrementAndGet();
+        }
+        writeError(context, e, timings);
       } catch (Exception e) {
         // All exceptions here are unexpected, including the ServiceException that may be thrown by
         // the findService call. We return an internal server error and leave the details in the
         // backend log.
         logger.atWarning().withCause(e).log("exception occurred while invoking backend method");
-        writeError(context, new InternalServerErrorException("backend error"));
+        writeError(context, new InternalServerErrorException("backend error"), timings);
+      }
+    }
+  }
+
+  /**
+   * Aborts the request instead of invoking the method if the deadline passes while the request
+   * parameters are being read (e.g. during authentication).
+   */
+  private static class DeadlineCheckingParamReader implements ParamReader {
+    private final ParamReader delegate;
+    private final Deadline deadline;
+
+    DeadlineCheckingParamReader(ParamReader delegate, Deadline deadline) {
+      this.delegate = delegate;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public Object[] read() throws ServiceException {
+      Object[] params = delegate.read();
+      deadline.checkNotExpired();
+      return params;
+    }
+  }
+
+  /**
+   * Hands the invocation parameters which were already read.
+   */
+  private static class ReadParamReader implements ParamReader {
+    private final Object[] params;
+
+    ReadParamReader(Object[] params) {
+      this.params = params;
+    }
+
+    @Override
+    public Object[] read() {
+      return params;
+    }
+  }
+
+  /**
+   * Skips serializing results nobody is waiting for anymore, and counts deadline errors.
+   */
+  private class DeadlineCheckingResultWriter implements ResultWriter {
+    private final ResultWriter delegate;
+    private final Deadline deadline;
+
+    DeadlineCheckingResultWriter(ResultWriter delegate, Deadline deadline) {
+      this.delegate = delegate;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void write(Object result) throws IOException {
+      if (deadline.isExpired()) {
+        logger.atWarning().log("deadline of %s passed during invocation, discarding result",
+            methodConfig.getFullMethodName());
+        writeError(new DeadlineExceededException("Deadline exceeded"));
+      } else {
+        delegate.write(result);
+      }
+    }
+
+    @Override
+    public void writeError(ServiceException e) throws IOException {
+      if (e instanceof DeadlineExceededException) {
+        deadlineExceededCount.incrementAndGet();
+      }
+      delegate.writeError(e);
+    }
+  }
+
+  /**
+   * Serves {@link StreamingResponse} results as event streams, and all other results through the
+   * configured writer. A deadline only applies until the stream starts. Also counts request bodies
+   * which turned out to be too large while they were read, as those errors are written here rather
+   * than thrown.
+   */
+  private class StreamingResultWriter implements ResultWriter {
+    private final ResultWriter delegate;
+    private final EndpointsContext context;
+    private final ApiSerializationConfig serializationConfig;
+    @Nullable private final RequestTimings timings;
+
+    StreamingResultWriter(ResultWriter delegate, EndpointsContext context,
+        ApiSerializationConfig serializationConfig, @Nullable RequestTimings timings) {
+      this.delegate = delegate;
+      this.context = context;
+      this.serializationConfig = serializationConfig;
+      this.timings = timings;
+    }
+
+    @Override
+    public void write(Object result) throws IOException {
+      if (timings != null) {
+        timings.beginWrite();
+      }
+      if (result instanceof StreamingResponse) {
+        try {
+          eventStreams.serve((StreamingResponse<?>) result, context.getRequest(),
+              context.getResponse(), serializationConfig);
+          if (timings != null) {
+            // Only the start of the stream is timed; its length is not known.
+            timings.endWrite(HttpServletResponse.SC_OK, -1);
+          }
+          return;
+        } catch (ServiceException e) {
+          // Nothing was committed; either too many streams are open, or the stream failed early.
+          if (e instanceof ServiceUnavailableException) {
+            logger.atWarning().log("rejected stream of %s: %s", methodConfig.getFullMethodName(),
+                e.getMessage());
+          }
+          delegate.writeError(e);
+        }
+      } else {
+        delegate.write(result);
+      }
+      endWrite();
+    }
+
+    @Override
+    public void writeError(ServiceException e) throws IOException {
+      if (e instanceof RequestEntityTooLargeException) {
+        requestTooLargeCount.incrementAndGet();
+      }
+      if (timings != null) {
+        timings.beginWrite();
+      }
+      delegate.writeError(e);
+      endWrite();
+    }
+
+    private void endWrite() {
+      if (timings == null) {
+        return;
+      }
+      if (delegate instanceof ServletResponseResultWriter) {
+        ServletResponseResultWriter writer = (ServletResponseResultWriter) delegate;
+        timings.endWrite(writer.getStatus(), writer.getContentLength());
+      } else {
+        timings.endWrite(0, -1);
       }
     }
   }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.handlers;
+
+import com.google.api.server.spi.EndpointsContext;
+import com.google.api.server.spi.Headers;
+import com.google.api.server.spi.config.ApiConfigException;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.SchemaRepository;
+import com.google.api.server.spi.dispatcher.DispatcherHandler;
+import com.google.api.server.spi.swagger.SwaggerGenerator;
+import com.google.api.server.spi.swagger.SwaggerGenerator.SwaggerContext;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.hash.Hashing;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.swagger.util.Json;
+
+/**
+ * A handler which serves the OpenAPI document of the registered APIs.
+ *
+ * <p>The document is generated from the loaded {@link ApiConfig}s once, on first request. It is
+ * then rendered to bytes once for each API root it is requested under, and served with an
+ * {@code ETag} so that clients can revalidate with {@code If-None-Match}.
+ */
+public class OpenApiHandler implements DispatcherHandler<EndpointsContext> {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+  private static final Splitter ETAG_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+  private static final int MAX_CACHED_ROOTS = 16;
+
+  private final ImmutableList<ApiConfig> apiConfigs;
+  @Nullable private final SchemaRepository schemaRepository;
+  private final Cache<String, RenderedDocument> documentsByRoot =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_ROOTS).build();
+  private volatile ObjectNode document;
+
+  public OpenApiHandler(ImmutableList<ApiConfig> apiConfigs) {
+    this(apiConfigs, null);
+  }
+
+  /**
+   * Creates a handler which reuses the schemas already computed in {@code schemaRepository}.
+   */
+  public OpenApiHandler(
+      ImmutableList<ApiConfig> apiConfigs, @Nullable SchemaRepository schemaRepository) {
+    this.apiConfigs = Preconditions.checkNotNull(apiConfigs, "apiConfigs");
+    this.schemaRepository = schemaRepository;
+  }
+
+  @Override
+  public void handle(EndpointsContext context) throws IOException {
+    HttpServletRequest request = context.getRequest();
+    HttpServletResponse response = context.getResponse();
+    RenderedDocument rendered;
+    try {
+      rendered = getRenderedDocument(request);
+    } catch (ApiConfigException e) {
+      logger.atSevere().withCause(e).log("could not generate OpenAPI document");
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      return;
+    }
+    response.setHeader(Headers.ETAG, rendered.etag);
+    if (matchesETag(request.getHeader(Headers.IF_NONE_MATCH), rendered.etag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("application/json; charset=UTF-8");
+    response.setContentLength(rendered.bytes.length);
+    response.getOutputStream().write(rendered.bytes);
+  }
+
+  private RenderedDocument getRenderedDocument(HttpServletRequest request)
+      throws ApiConfigException, IOException {
+    String scheme = request.getScheme();
+    String host = getHost(request);
+    String basePath = request.getServletPath();
+    String root = scheme + "://" + host + basePath;
+    RenderedDocument rendered = documentsByRoot.getIfPresent(root);
+    if (rendered == null) {
+      ObjectNode rooted = getDocument().deepCopy();
+      rooted.put("host", host);
+      rooted.put("basePath", basePath.isEmpty() ? "/" : basePath);
+      rooted.set("schemes", JsonNodeFactory.instance.arrayNode().add(scheme));
+      rendered = new RenderedDocument(Json.mapper().writeValueAsBytes(rooted));
+      documentsByRoot.put(root, rendered);
+    }
+    return rendered;
+  }
+
+  private ObjectNode getDocument() throws ApiConfigException {
+    ObjectNode result = document;
+    if (result == null) {
+      synchronized (this) {
+        result = document;
+        if (result == null) {
+          SwaggerGenerator generator = new SwaggerGenerator();
+          document = result = Json.mapper().valueToTree(schemaRepository == null
+              ? generator.writeSwagger(apiConfigs, false, new SwaggerContext())
+              : generator.writeSwagger(apiConfigs, false, new SwaggerContext(), schemaRepository));
+        }
+      }
+    }
+    return result;
+  }
+
+  private static String getHost(HttpServletRequest request) {
+    int port = request.getServerPort();
+    boolean defaultPort = port <= 0
+        || ("http".equals(request.getScheme()) && port == 80)
+        || ("https".equals(request.getScheme()) && port == 443);
+    return defaultPort ? request.getServerName() : request.getServerName() + ":" + port;
+  }
+
+  @VisibleForTesting
+  static boolean matchesETag(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ETAG_SPLITTER.split(ifNoneMatch)) {
+      // Weak comparison, as is required for If-None-Match.
+      if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static final class RenderedDocument {
+    private final byte[] bytes;
+    private final String etag;
+
+    RenderedDocument(byte[] bytes) {
+      this.bytes = bytes;
+      this.etag = '"' + Hashing.sha256().hashBytes(bytes).toString() + '"';
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.handlers;
+
+import com.google.api.server.spi.EndpointsContext;
+import com.google.api.server.spi.ObjectMapperUtil;
+import com.google.api.server.spi.dispatcher.DispatcherHandler;
+import com.google.api.server.spi.request.RequestSample;
+import com.google.api.server.spi.request.RequestSampler;
+import com.google.api.server.spi.request.RequestSampler.MethodSampler;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A handler which serves, for each API method, the slowest and a sample of recent requests kept
+ * by a {@link RequestSampler}, with the time in milliseconds they spent in each phase.
+ */
+public class RequestSamplesHandler implements DispatcherHandler<EndpointsContext> {
+  private static final ObjectMapper objectMapper = ObjectMapperUtil.createStandardObjectMapper();
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final RequestSampler requestSampler;
+
+  public RequestSamplesHandler(RequestSampler requestSampler) {
+    this.requestSampler = Preconditions.checkNotNull(requestSampler, "requestSampler");
+  }
+
+  @Override
+  public void handle(EndpointsContext context) throws IOException {
+    HttpServletResponse response = context.getResponse();
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("application/json; charset=UTF-8");
+    response.setHeader("Cache-Control", "no-store");
+    objectMapper.writerWithDefaultPrettyPrinter().writeValue(response.getOutputStream(), toJson());
+  }
+
+  @VisibleForTesting
+  ObjectNode toJson() {
+    ObjectNode root = objectMapper.createObjectNode();
+    root.put("thresholdMillis", toMillis(requestSampler.getThresholdNanos()));
+    ObjectNode methods = root.putObject("methods");
+    for (Entry<String, MethodSampler> entry : requestSampler.getMethods().entrySet()) {
+      MethodSampler sampler = entry.getValue();
+      ObjectNode method = methods.putObject(entry.getKey());
+      method.put("requestCount", sampler.getRequestCount());
+      addSamples(method.putArray("slowest"), sampler.getSlowest());
+      addSamples(method.putArray("recent"), sampler.getRecent());
+    }
+    return root;
+  }
+
+  private static void addSamples(ArrayNode array, List<RequestSample> samples) {
+    for (RequestSample sample : samples) {
+      ObjectNode node = array.addObject();
+      node.put("startTimeMillis", sample.getStartTimeMillis());
+      node.put("totalMillis", toMillis(sample.getTotalNanos()));
+      node.put("routingMillis", toMillis(sample.getRoutingNanos()));
+      node.put("authenticationMillis", toMillis(sample.getAuthenticationNanos()));
+      node.put("paramReadMillis", toMillis(sample.getParamReadNanos()));
+      node.put("invocationMillis", toMillis(sample.getInvocationNanos()));
+      node.put("writeMillis", toMillis(sample.getWriteNanos()));
+      node.put("status", sample.getStatus());
+      if (sample.getRequestBytes() >= 0) {
+        node.put("requestBytes", sample.getRequestBytes());
+      }
+      if (sample.getResponseBytes() >= 0) {
+        node.put("responseBytes", sample.getResponseBytes());
+      }
+    }
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / NANOS_PER_MILLI;
+  }
+}
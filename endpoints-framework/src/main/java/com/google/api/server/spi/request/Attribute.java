@@ -74,6 +74,24 @@ public class Attribute {
    * have failed anyway because of unauthorized client id or audience.
    */
   public static final String ID_TOKEN = "endpoints:Id-Token";
+  /**
+   * The {@link Deadline} of the current request.
+   */
+  public static final String DEADLINE = "endpoints:Deadline";
+  /**
+   * The unread file part of a multipart/form-data request, bound to a
+   * {@link org.apache.commons.fileupload.FileItemStream} method parameter.
+   */
+  public static final String MULTIPART_UPLOAD = "endpoints:Multipart-Upload";
+  /**
+   * A {@link Long} with the maximum size in bytes of the current request's body, after
+   * decompression. Unset if the size is not limited.
+   */
+  public static final String MAX_REQUEST_BYTES = "endpoints:Max-Request-Bytes";
+  /**
+   * The {@link RequestTimings} of the current request. Unset if requests are not sampled.
+   */
+  public static final String REQUEST_TIMINGS = "endpoints:Request-Timings";
 
   private final HttpServletRequest request;
 
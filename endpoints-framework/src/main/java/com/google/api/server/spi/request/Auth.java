@@ -59,6 +59,17 @@ public class Auth {
     return new Auth(request);
   }
 
+  /**
+   * Authenticates a request with the authenticators of its method, for callers which need the
+   * user even though the method does not take one as a parameter. The request must already be
+   * bound to its method config.
+   *
+   * @return the authenticated user, or {@code null} if the request is anonymous
+   */
+  public static User authenticate(HttpServletRequest request) throws ServiceException {
+    return from(request).authenticate();
+  }
+
   @VisibleForTesting
   Iterable<Authenticator> getAuthenticatorInstances() {
     return INSTANTIATOR.getInstancesOrDefault(config.getAuthenticators());
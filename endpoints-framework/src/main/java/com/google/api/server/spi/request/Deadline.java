@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.request;
+
+import com.google.api.server.spi.response.DeadlineExceededException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time after which the caller of an API method is no longer interested in its
+ * response. A {@code Deadline} can be declared as a parameter of an API method, in the same way as
+ * a {@link com.google.api.server.spi.auth.common.User} or
+ * {@link javax.servlet.http.HttpServletRequest}, and requires no {@code Named} annotation.
+ *
+ * <p>Long running methods should cooperatively check {@link #isExpired()} or call
+ * {@link #checkNotExpired()} between units of work, and can use {@link #timeRemaining(TimeUnit)}
+ * to bound calls to other services.
+ */
+public final class Deadline {
+  private static final Deadline NONE = new Deadline(Ticker.systemTicker(), 0, false);
+
+  private final Ticker ticker;
+  private final long deadlineNanos;
+  private final boolean isSet;
+
+  private Deadline(Ticker ticker, long deadlineNanos, boolean isSet) {
+    this.ticker = ticker;
+    this.deadlineNanos = deadlineNanos;
+    this.isSet = isSet;
+  }
+
+  /**
+   * Returns a deadline which never expires.
+   */
+  public static Deadline none() {
+    return NONE;
+  }
+
+  /**
+   * Returns a deadline which expires once {@code duration} has elapsed from now.
+   */
+  public static Deadline after(long duration, TimeUnit unit) {
+    return after(duration, unit, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  static Deadline after(long duration, TimeUnit unit, Ticker ticker) {
+    Preconditions.checkNotNull(ticker, "ticker");
+    return afterStart(ticker.read(), duration, unit, ticker);
+  }
+
+  /**
+   * Returns a deadline which expires once {@code duration} has elapsed from {@code startNanos}, a
+   * past value of {@link System#nanoTime()} such as the time a request was received.
+   */
+  public static Deadline afterStart(long startNanos, long duration, TimeUnit unit) {
+    return afterStart(startNanos, duration, unit, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  static Deadline afterStart(long startNanos, long duration, TimeUnit unit, Ticker ticker) {
+    Preconditions.checkNotNull(unit, "unit");
+    Preconditions.checkNotNull(ticker, "ticker");
+    return new Deadline(ticker, startNanos + unit.toNanos(duration), true);
+  }
+
+  /**
+   * Returns whether this deadline can expire, i.e. it is not {@link #none()}.
+   */
+  public boolean isSet() {
+    return isSet;
+  }
+
+  /**
+   * Returns whether this deadline has passed.
+   */
+  public boolean isExpired() {
+    return isSet && deadlineNanos - ticker.read() <= 0;
+  }
+
+  /**
+   * Returns the time remaining until this deadline, which is negative if it has already passed,
+   * or {@link Long#MAX_VALUE} if the deadline is not set.
+   */
+  public long timeRemaining(TimeUnit unit) {
+    if (!isSet) {
+      return Long.MAX_VALUE;
+    }
+    return unit.convert(deadlineNanos - ticker.read(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns whichever of this and {@code other} expires first.
+   */
+  public Deadline earliest(Deadline other) {
+    if (!other.isSet) {
+      return this;
+    } else if (!isSet) {
+      return other;
+    }
+    return deadlineNanos - other.deadlineNanos <= 0 ? this : other;
+  }
+
+  /**
+   * Throws a {@link DeadlineExceededException} if this deadline has passed. Throwing the
+   * exception out of an API method aborts the request with a 504 response.
+   *
+   * @throws DeadlineExceededException if the deadline has passed
+   */
+  public void checkNotExpired() throws DeadlineExceededException {
+    if (isExpired()) {
+      throw new DeadlineExceededException("Deadline exceeded");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return isSet
+        ? "Deadline[" + timeRemaining(TimeUnit.MILLISECONDS) + "ms remaining]" : "Deadline[none]";
+  }
+}
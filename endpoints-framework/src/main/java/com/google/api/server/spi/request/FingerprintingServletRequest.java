@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.request;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Passes a request through while hashing the body as it is read, so that a request can be told
+ * apart from another one reusing its idempotency key. Only the part of the body which was read
+ * when {@link #getFingerprint()} is called is covered, which is the whole body once the request
+ * parameters were read, except for a file upload handed to the method unread.
+ */
+public class FingerprintingServletRequest extends HttpServletRequestWrapper {
+  private final Hasher bodyHasher = Hashing.sha256().newHasher();
+  private ServletInputStream inputStream;
+
+  public FingerprintingServletRequest(HttpServletRequest request) {
+    super(request);
+  }
+
+  @Override
+  public ServletInputStream getInputStream() throws IOException {
+    if (inputStream == null) {
+      final ServletInputStream delegate = super.getInputStream();
+      inputStream = new ServletInputStream() {
+        @Override
+        public int read() throws IOException {
+          int b = delegate.read();
+          if (b >= 0) {
+            bodyHasher.putByte((byte) b);
+          }
+          return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          int n = delegate.read(b, off, len);
+          if (n > 0) {
+            bodyHasher.putBytes(b, off, n);
+          }
+          return n;
+        }
+      };
+    }
+    return inputStream;
+  }
+
+  /**
+   * Returns a hash of the HTTP method, the request URI, the request parameters and the body read
+   * so far. Ends the hashing of the body, so it must be called once the body was read.
+   */
+  public String getFingerprint() {
+    Hasher hasher = Hashing.sha256().newHasher()
+        .putBytes(bodyHasher.hash().asBytes());
+    putString(hasher, getMethod());
+    putString(hasher, getRequestURI());
+    @SuppressWarnings("unchecked")
+    Map<String, String[]> parameters = new TreeMap<>(getParameterMap());
+    for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+      putString(hasher, parameter.getKey());
+      hasher.putInt(parameter.getValue().length);
+      for (String value : parameter.getValue()) {
+        putString(hasher, value);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    // Strings are prefixed with their length, so that adjacent strings cannot be confused.
+    String nonNull = String.valueOf(value);
+    hasher.putInt(nonNull.length()).putString(nonNull, Charsets.UTF_8);
+  }
+}
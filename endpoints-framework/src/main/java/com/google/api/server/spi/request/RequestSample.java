@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.request;
+
+/**
+ * A request kept by a {@link RequestSampler}, with the time it spent in each phase.
+ */
+public final class RequestSample {
+  private final long startTimeMillis;
+  private final long totalNanos;
+  private final long routingNanos;
+  private final long authenticationNanos;
+  private final long paramReadNanos;
+  private final long invocationNanos;
+  private final long writeNanos;
+  private final long requestBytes;
+  private final long responseBytes;
+  private final int status;
+
+  RequestSample(long startTimeMillis, long totalNanos, long routingNanos,
+      long authenticationNanos, long paramReadNanos, long invocationNanos, long writeNanos,
+      long requestBytes, long responseBytes, int status) {
+    this.startTimeMillis = startTimeMillis;
+    this.totalNanos = totalNanos;
+    this.routingNanos = routingNanos;
+    this.authenticationNanos = authenticationNanos;
+    this.paramReadNanos = paramReadNanos;
+    this.invocationNanos = invocationNanos;
+    this.writeNanos = writeNanos;
+    this.requestBytes = requestBytes;
+    this.responseBytes = responseBytes;
+    this.status = status;
+  }
+
+  /**
+   * Returns the wall clock time, in milliseconds since the epoch, at which the request started.
+   */
+  public long getStartTimeMillis() {
+    return startTimeMillis;
+  }
+
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  public long getRoutingNanos() {
+    return routingNanos;
+  }
+
+  public long getAuthenticationNanos() {
+    return authenticationNanos;
+  }
+
+  public long getParamReadNanos() {
+    return paramReadNanos;
+  }
+
+  public long getInvocationNanos() {
+    return invocationNanos;
+  }
+
+  public long getWriteNanos() {
+    return writeNanos;
+  }
+
+  /**
+   * Returns the declared length of the request body, or {@code -1} if it was not declared.
+   */
+  public long getRequestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * Returns the length of the response body, or {@code -1} if it is not known, e.g. for streams.
+   */
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  /**
+   * Returns the status of the response, or {@code 0} if it is not known.
+   */
+  public int getStatus() {
+    return status;
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.request;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Ordering;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps, for each API method, the slowest requests which took longer than a threshold and a
+ * sample of recent requests, with the time they spent in each phase, so that latency spikes can be
+ * investigated from examples rather than averages.
+ *
+ * <p>Samples are kept in fixed-size slots which are written without locks. Recording a request
+ * allocates nothing; samples are only copied out when they are read. When two requests race for
+ * the same slot, one of them is dropped.
+ */
+public class RequestSampler {
+  // Every RECENT_SAMPLE_INTERVAL-th request to a method is kept among its recent requests.
+  private static final int RECENT_SAMPLE_INTERVAL = 8;
+
+  private static final Ordering<RequestSample> SLOWEST_FIRST = new Ordering<RequestSample>() {
+    @Override
+    public int compare(RequestSample left, RequestSample right) {
+      return Long.compare(right.getTotalNanos(), left.getTotalNanos());
+    }
+  };
+  private static final Ordering<RequestSample> LATEST_FIRST = new Ordering<RequestSample>() {
+    @Override
+    public int compare(RequestSample left, RequestSample right) {
+      return Long.compare(right.getStartTimeMillis(), left.getStartTimeMillis());
+    }
+  };
+
+  private final long thresholdNanos;
+  private final int samplesPerMethod;
+  private final ConcurrentMap<String, MethodSampler> methods = new ConcurrentHashMap<>();
+
+  /**
+   * @param thresholdMillis how long a request must take to be kept among the slowest
+   * @param samplesPerMethod how many of the slowest, and of the recent, requests are kept per
+   *     method
+   */
+  public RequestSampler(long thresholdMillis, int samplesPerMethod) {
+    Preconditions.checkArgument(thresholdMillis >= 0, "thresholdMillis must not be negative");
+    Preconditions.checkArgument(samplesPerMethod > 0, "samplesPerMethod must be positive");
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    this.samplesPerMethod = samplesPerMethod;
+  }
+
+  /**
+   * Returns the sampler of the requests to a method, which should be kept by its handler.
+   *
+   * @param methodName the full name of the method, e.g. {@code myapi.v1.foo.get}
+   */
+  public MethodSampler forMethod(String methodName) {
+    MethodSampler sampler = methods.get(methodName);
+    if (sampler == null) {
+      sampler = new MethodSampler();
+      MethodSampler existing = methods.putIfAbsent(methodName, sampler);
+      if (existing != null) {
+        sampler = existing;
+      }
+    }
+    return sampler;
+  }
+
+  /**
+   * Returns the samplers of all methods, by method name.
+   */
+  public ImmutableSortedMap<String, MethodSampler> getMethods() {
+    return ImmutableSortedMap.copyOf(methods);
+  }
+
+  /**
+   * Returns how long, in nanoseconds, a request must take to be kept among the slowest.
+   */
+  public long getThresholdNanos() {
+    return thresholdNanos;
+  }
+
+  /**
+   * The samples of the requests to one method.
+   */
+  public final class MethodSampler {
+    private final AtomicLong requestCount = new AtomicLong();
+    private final SampleSlots slowest = new SampleSlots(samplesPerMethod);
+    private final SampleSlots recent = new SampleSlots(samplesPerMethod);
+
+    private MethodSampler() {}
+
+    /**
+     * Records a request which is done.
+     */
+    public void record(RequestTimings timings) {
+      long count = requestCount.getAndIncrement();
+      if (timings.getTotalNanos() >= thresholdNanos) {
+        slowest.offer(timings);
+      }
+      if (count % RECENT_SAMPLE_INTERVAL == 0) {
+        recent.write((int) (count / RECENT_SAMPLE_INTERVAL % samplesPerMethod), timings);
+      }
+    }
+
+    /**
+     * Returns the number of requests recorded.
+     */
+    public long getRequestCount() {
+      return requestCount.get();
+    }
+
+    /**
+     * Returns the slowest requests which took longer than the threshold, slowest first.
+     */
+    public ImmutableList<RequestSample> getSlowest() {
+      return SLOWEST_FIRST.immutableSortedCopy(slowest.read());
+    }
+
+    /**
+     * Returns a sample of recent requests, latest first.
+     */
+    public ImmutableList<RequestSample> getRecent() {
+      return LATEST_FIRST.immutableSortedCopy(recent.read());
+    }
+  }
+
+  /**
+   * Fixed-size slots of samples. Each slot is guarded by a version which is odd while the slot is
+   * being written, so that readers can retry instead of seeing a partly written sample.
+   */
+  private static final class SampleSlots {
+    private static final int START_TIME_MILLIS = 0;
+    private static final int TOTAL_NANOS = 1;
+    private static final int ROUTING_NANOS = 2;
+    private static final int AUTHENTICATION_NANOS = 3;
+    private static final int PARAM_READ_NANOS = 4;
+    private static final int INVOCATION_NANOS = 5;
+    private static final int WRITE_NANOS = 6;
+    private static final int REQUEST_BYTES = 7;
+    private static final int RESPONSE_BYTES = 8;
+    private static final int STATUS = 9;
+    private static final int FIELDS = 10;
+
+    private final int size;
+    private final AtomicLongArray versions;
+    private final AtomicLongArray values;
+
+    SampleSlots(int size) {
+      this.size = size;
+      this.versions = new AtomicLongArray(size);
+      this.values = new AtomicLongArray(size * FIELDS);
+    }
+
+    /**
+     * Replaces the fastest sample with {@code timings}, if it is slower.
+     */
+    void offer(RequestTimings timings) {
+      long totalNanos = timings.getTotalNanos();
+      int fastestSlot = -1;
+      long fastestNanos = totalNanos;
+      for (int slot = 0; slot < size; slot++) {
+        if (versions.get(slot) == 0) {
+          fastestSlot = slot;
+          break;
+        }
+        long slotNanos = values.get(slot * FIELDS + TOTAL_NANOS);
+        if (slotNanos < fastestNanos) {
+          fastestSlot = slot;
+          fastestNanos = slotNanos;
+        }
+      }
+      if (fastestSlot >= 0) {
+        write(fastestSlot, timings);
+      }
+    }
+
+    void write(int slot, RequestTimings timings) {
+      long version = versions.get(slot);
+      if ((version & 1) != 0 || !versions.compareAndSet(slot, version, version + 1)) {
+        // Another request is writing this slot.
+        return;
+      }
+      int base = slot * FIELDS;
+      values.set(base + START_TIME_MILLIS, timings.getStartTimeMillis());
+      values.set(base + TOTAL_NANOS, timings.getTotalNanos());
+      values.set(base + ROUTING_NANOS, timings.getRoutingNanos());
+      values.set(base + AUTHENTICATION_NANOS, timings.getAuthenticationNanos());
+      values.set(base + PARAM_READ_NANOS, timings.getParamReadNanos());
+      values.set(base + INVOCATION_NANOS, timings.getInvocationNanos());
+      values.set(base + WRITE_NANOS, timings.getWriteNanos());
+      values.set(base + REQUEST_BYTES, timings.getRequestBytes());
+      values.set(base + RESPONSE_BYTES, timings.getResponseBytes());
+      values.set(base + STATUS, timings.getStatus());
+      versions.set(slot, version + 2);
+    }
+
+    List<RequestSample> read() {
+      List<RequestSample> samples = new ArrayList<>(size);
+      for (int slot = 0; slot < size; slot++) {
+        RequestSample sample = read(slot);
+        if (sample != null) {
+          samples.add(sample);
+        }
+      }
+      return samples;
+    }
+
+    private RequestSample read(int slot) {
+      int base = slot * FIELDS;
+      while (true) {
+        long version = versions.get(slot);
+        if (version == 0) {
+          return null;
+        }
+        if ((version & 1) != 0) {
+          Thread.yield();
+          continue;
+        }
+        RequestSample sample = new RequestSample(
+            values.get(base + START_TIME_MILLIS),
+            values.get(base + TOTAL_NANOS),
+            values.get(base + ROUTING_NANOS),
+            values.get(base + AUTHENTICATION_NANOS),
+            values.get(base + PARAM_READ_NANOS),
+            values.get(base + INVOCATION_NANOS),
+            values.get(base + WRITE_NANOS),
+            values.get(base + REQUEST_BYTES),
+            values.get(base + RESPONSE_BYTES),
+            (int) values.get(base + STATUS));
+        if (versions.get(slot) == version) {
+          return sample;
+        }
+      }
+    }
+  }
+}
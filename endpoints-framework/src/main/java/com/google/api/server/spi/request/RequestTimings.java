@@ -0,0 +1,199 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.request;
+
+import com.google.api.server.spi.ServiceException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time a request spent in each phase of its handling: routing, authentication, reading its
+ * parameters, invoking the method and writing the response.
+ *
+ * <p>An instance is reused by all requests handled on the same thread, so that timing a request
+ * allocates nothing. It must not be retained past the request it was {@linkplain #start started}
+ * for.
+ */
+public final class RequestTimings {
+  private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<RequestTimings>() {
+    @Override
+    protected RequestTimings initialValue() {
+      return new RequestTimings();
+    }
+  };
+
+  private final TimingParamReader paramReader = new TimingParamReader();
+  private long startTimeMillis;
+  private long startNanos;
+  private long handleNanos;
+  private long authStartNanos;
+  private long authNanos;
+  private long paramsReadNanos;
+  private long writeStartNanos;
+  private long writeEndNanos;
+  private long requestBytes;
+  private long responseBytes;
+  private int status;
+
+  private RequestTimings() {}
+
+  /**
+   * Starts timing a request on the current thread, which is now being handled.
+   *
+   * @param startNanos the {@link System#nanoTime()} at which the request started being routed
+   * @param requestBytes the declared length of the request body, or {@code -1} if unknown
+   */
+  public static RequestTimings start(long startNanos, long requestBytes) {
+    RequestTimings timings = CURRENT.get();
+    timings.handleNanos = System.nanoTime();
+    timings.startNanos = startNanos;
+    timings.startTimeMillis = System.currentTimeMillis()
+        - TimeUnit.NANOSECONDS.toMillis(timings.handleNanos - startNanos);
+    timings.authStartNanos = 0;
+    timings.authNanos = 0;
+    timings.paramsReadNanos = 0;
+    timings.writeStartNanos = 0;
+    timings.writeEndNanos = 0;
+    timings.requestBytes = requestBytes;
+    timings.responseBytes = -1;
+    timings.status = 0;
+    timings.paramReader.delegate = null;
+    return timings;
+  }
+
+  public void beginAuthentication() {
+    authStartNanos = System.nanoTime();
+  }
+
+  public void endAuthentication() {
+    if (authStartNanos != 0) {
+      authNanos += System.nanoTime() - authStartNanos;
+      authStartNanos = 0;
+    }
+  }
+
+  /**
+   * Returns a reader which records when {@code reader} is done reading the parameters. The
+   * returned reader is reused by the next request timed on this thread.
+   */
+  public ParamReader timeReading(ParamReader reader) {
+    paramReader.delegate = reader;
+    return paramReader;
+  }
+
+  /**
+   * Records that the method returned, or failed, and its response is about to be written.
+   */
+  public void beginWrite() {
+    if (writeStartNanos == 0) {
+      writeStartNanos = System.nanoTime();
+    }
+  }
+
+  /**
+   * Records that the response was written.
+   *
+   * @param status the status of the response, or {@code 0} if unknown
+   * @param responseBytes the length of the response body, or {@code -1} if unknown
+   */
+  public void endWrite(int status, long responseBytes) {
+    beginWrite();
+    this.writeEndNanos = System.nanoTime();
+    this.status = status;
+    this.responseBytes = responseBytes;
+  }
+
+  /**
+   * Records that the request is done, if no response was recorded as written.
+   */
+  public void finish() {
+    if (writeEndNanos == 0) {
+      writeEndNanos = System.nanoTime();
+      if (writeStartNanos == 0) {
+        writeStartNanos = writeEndNanos;
+      }
+    }
+  }
+
+  /**
+   * Returns the wall clock time, in milliseconds since the epoch, at which the request started.
+   */
+  public long getStartTimeMillis() {
+    return startTimeMillis;
+  }
+
+  public long getTotalNanos() {
+    return writeEndNanos - startNanos;
+  }
+
+  /**
+   * Returns the time spent finding the method which handles the request.
+   */
+  public long getRoutingNanos() {
+    return handleNanos - startNanos;
+  }
+
+  /**
+   * Returns the time spent authenticating the user.
+   */
+  public long getAuthenticationNanos() {
+    return authNanos;
+  }
+
+  /**
+   * Returns the time spent reading the request parameters, apart from authentication.
+   */
+  public long getParamReadNanos() {
+    long paramsEndNanos = paramsReadNanos != 0 ? paramsReadNanos : writeStartNanos;
+    return Math.max(0, paramsEndNanos - handleNanos - authNanos);
+  }
+
+  /**
+   * Returns the time spent in the method. Zero if the request failed before it was invoked.
+   */
+  public long getInvocationNanos() {
+    return paramsReadNanos != 0 ? writeStartNanos - paramsReadNanos : 0;
+  }
+
+  public long getWriteNanos() {
+    return writeEndNanos - writeStartNanos;
+  }
+
+  public long getRequestBytes() {
+    return requestBytes;
+  }
+
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  private final class TimingParamReader implements ParamReader {
+    private ParamReader delegate;
+
+    @Override
+    public Object[] read() throws ServiceException {
+      Object[] params = delegate.read();
+      if (paramsReadNanos == 0) {
+        paramsReadNanos = System.nanoTime();
+      }
+      return params;
+    }
+  }
+}
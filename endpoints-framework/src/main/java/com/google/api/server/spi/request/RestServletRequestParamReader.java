@@ -20,10 +20,12 @@ import com.google.api.server.spi.EndpointsContext;
 import com.google.api.server.spi.IoUtil;
 import com.google.api.server.spi.ServiceException;
 import com.google.api.server.spi.Strings;
+import com.google.api.server.spi.WireFormat;
 import com.google.api.server.spi.config.model.ApiMethodConfig;
 import com.google.api.server.spi.config.model.ApiParameterConfig;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
 import com.google.api.server.spi.response.BadRequestException;
+import com.google.api.server.spi.response.RequestEntityTooLargeException;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
 
@@ -36,8 +38,10 @@ import org.apache.commons.fileupload.FileItemIterator;
 import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.servlet.ServletRequestContext;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Enumeration;
 import java.util.List;
@@ -87,26 +91,39 @@ public class RestServletRequestParamReader extends ServletRequestParamReader {
         return new Object[0];
       }
       HttpServletRequest servletRequest = endpointsContext.getRequest();
+      WireFormat wireFormat = WireFormat.forRequest(servletRequest);
       JsonNode node;
       // multipart/form-data requests can be used for requests which have no resource body. In
       // this case, each part represents a named parameter instead.
       if (ServletFileUpload.isMultipartContent(servletRequest)) {
         try {
           ServletFileUpload upload = new ServletFileUpload();
-          FileItemIterator iter = upload.getItemIterator(servletRequest);
+          FileItemIterator iter = upload.getItemIterator(new LimitedRequestContext(servletRequest));
           ObjectNode obj = (ObjectNode) objectReader.createObjectNode();
+          boolean acceptsUpload = acceptsUpload(method);
           while (iter.hasNext()) {
             FileItemStream item = iter.next();
             if (item.isFormField()) {
               obj.put(item.getFieldName(), IoUtil.readStream(item.openStream()));
+            } else if (acceptsUpload) {
+              // The file part is handed to the method unread, so it is never buffered. Parts are
+              // only available in order, which means any form fields must precede the file.
+              Attribute.from(servletRequest).set(Attribute.MULTIPART_UPLOAD, item);
+              break;
             } else {
               throw new BadRequestException("unable to parse multipart form field");
             }
           }
           node = obj;
         } catch (FileUploadException e) {
+          if (IoUtil.isRequestBodyTooLarge(e)) {
+            throw new RequestEntityTooLargeException("request body is too large", e);
+          }
           throw new BadRequestException("unable to parse multipart request", e);
         }
+      } else if (wireFormat != WireFormat.JSON) {
+        JsonNode tree = readBinaryTree(wireFormat, IoUtil.getRequestInputStream(servletRequest));
+        node = tree != null ? tree : objectReader.createObjectNode();
       } else {
         String requestBody = IoUtil.readRequestBody(servletRequest);
         logger.atFine().log("requestBody=%s", requestBody);
@@ -161,11 +178,40 @@ public class RestServletRequestParamReader extends ServletRequestParamReader {
       return deserializeParams(body);
     } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException
         | IOException e) {
+      if (IoUtil.isRequestBodyTooLarge(e)) {
+        throw new RequestEntityTooLargeException("request body is too large", e);
+      }
       logger.atInfo().withCause(e).log("Unable to read request parameter(s)");
       throw new BadRequestException(e);
     }
   }
 
+  /**
+   * Hands multipart parsing the body stream limited to the method's maximum request size.
+   */
+  private static class LimitedRequestContext extends ServletRequestContext {
+    private final HttpServletRequest request;
+
+    LimitedRequestContext(HttpServletRequest request) {
+      super(request);
+      this.request = request;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return IoUtil.getLimitedInputStream(request);
+    }
+  }
+
+  private static boolean acceptsUpload(EndpointMethod method) {
+    for (Class<?> parameterClass : method.getParameterClasses()) {
+      if (parameterClass == FileItemStream.class) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private static ImmutableMap<String, Class<?>> getParameterMap(EndpointMethod method)
       throws IllegalAccessException, NoSuchMethodException, InvocationTargetException {
     ImmutableMap.Builder<String, Class<?>> builder = ImmutableMap.builder();
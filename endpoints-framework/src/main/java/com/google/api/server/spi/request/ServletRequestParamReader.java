@@ -20,6 +20,8 @@ import com.google.api.server.spi.EndpointMethod;
 import com.google.api.server.spi.EndpointsContext;
 import com.google.api.server.spi.IoUtil;
 import com.google.api.server.spi.ServiceException;
+import com.google.api.server.spi.ValueCodecs;
+import com.google.api.server.spi.WireFormat;
 import com.google.api.server.spi.auth.common.User;
 import com.google.api.server.spi.config.AuthLevel;
 import com.google.api.server.spi.config.Named;
@@ -29,6 +31,7 @@ import com.google.api.server.spi.config.model.ApiMethodConfig;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
 import com.google.api.server.spi.config.model.StandardParameters;
 import com.google.api.server.spi.response.BadRequestException;
+import com.google.api.server.spi.response.RequestEntityTooLargeException;
 import com.google.api.server.spi.response.UnauthorizedException;
 import com.google.api.server.spi.types.DateAndTime;
 import com.google.api.server.spi.types.SimpleDate;
@@ -46,7 +49,10 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
+import org.apache.commons.fileupload.FileItemStream;
+
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
@@ -62,8 +68,6 @@ import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
@@ -166,6 +170,14 @@ public class ServletRequestParamReader extends AbstractParamReader {
         // HttpServletRequest type parameter requires no Named annotation (ignored if present)
         params[i] = endpointsContext.getRequest();
         logger.atFine().log("deserialize: HttpServletRequest injected into param[%d]", i);
+      } else if (clazz == Deadline.class) {
+        // Deadline type parameter requires no Named annotation (ignored if present)
+        params[i] = getDeadline();
+        logger.atFine().log("deserialize: %s injected into param[%d]", params[i], i);
+      } else if (clazz == FileItemStream.class) {
+        // FileItemStream type parameter requires no Named annotation (ignored if present)
+        params[i] = Attribute.from(endpointsContext.getRequest()).get(Attribute.MULTIPART_UPLOAD);
+        logger.atFine().log("deserialize: multipart upload injected into param[%d]", i);
       } else if (clazz == ServletContext.class) {
         // ServletContext type parameter requires no Named annotation (ignored if present)
         params[i] = servletContext;
@@ -211,12 +223,39 @@ public class ServletRequestParamReader extends AbstractParamReader {
 
   @VisibleForTesting
   User getUser() throws ServiceException {
-    return Auth.from(endpointsContext.getRequest()).authenticate();
+    RequestTimings timings = getRequestTimings();
+    if (timings == null) {
+      return Auth.from(endpointsContext.getRequest()).authenticate();
+    }
+    timings.beginAuthentication();
+    try {
+      return Auth.from(endpointsContext.getRequest()).authenticate();
+    } finally {
+      timings.endAuthentication();
+    }
   }
 
   @VisibleForTesting
   com.google.appengine.api.users.User getAppEngineUser() throws ServiceException {
-    return Auth.from(endpointsContext.getRequest()).authenticateAppEngineUser();
+    RequestTimings timings = getRequestTimings();
+    if (timings == null) {
+      return Auth.from(endpointsContext.getRequest()).authenticateAppEngineUser();
+    }
+    timings.beginAuthentication();
+    try {
+      return Auth.from(endpointsContext.getRequest()).authenticateAppEngineUser();
+    } finally {
+      timings.endAuthentication();
+    }
+  }
+
+  private RequestTimings getRequestTimings() {
+    return Attribute.from(endpointsContext.getRequest()).get(Attribute.REQUEST_TIMINGS);
+  }
+
+  private Deadline getDeadline() {
+    Deadline deadline = Attribute.from(endpointsContext.getRequest()).get(Attribute.DEADLINE);
+    return deadline != null ? deadline : Deadline.none();
   }
 
   private Object getStandardParamValue(JsonNode body, String paramName) {
@@ -256,9 +295,7 @@ public class ServletRequestParamReader extends AbstractParamReader {
     @Override
     public Date deserialize(JsonParser jsonParser, DeserializationContext context)
         throws IOException {
-      com.google.api.client.util.DateTime date =
-          new com.google.api.client.util.DateTime(jsonParser.readValueAs(String.class));
-      return new Date(date.getValue());
+      return ValueCodecs.readDate(jsonParser);
     }
   }
 
@@ -266,27 +303,15 @@ public class ServletRequestParamReader extends AbstractParamReader {
     @Override
     public DateAndTime deserialize(JsonParser jsonParser, DeserializationContext context)
         throws IOException {
-      return DateAndTime.parseRfc3339String(jsonParser.readValueAs(String.class));
+      return ValueCodecs.readDateAndTime(jsonParser);
     }
   }
 
   private static class SimpleDateDeserializer extends JsonDeserializer<SimpleDate> {
-    Pattern pattern = Pattern.compile("^(\\d{4})-(\\d{2})-(\\d{2})$");
-
     @Override
     public SimpleDate deserialize(JsonParser jsonParser, DeserializationContext context)
         throws IOException {
-      String value = jsonParser.readValueAs(String.class).trim();
-      Matcher matcher = pattern.matcher(value);
-      if (matcher.find()) {
-        int year = Integer.parseInt(matcher.group(1));
-        int month = Integer.parseInt(matcher.group(2));
-        int day = Integer.parseInt(matcher.group(3));
-        return new SimpleDate(year, month, day);
-      } else {
-        throw new IllegalArgumentException(
-            "String is not an RFC3339 formated date (yyyy-mm-dd): " + value);
-      }
+      return ValueCodecs.readSimpleDate(jsonParser);
     }
   }
 
@@ -302,6 +327,7 @@ public class ServletRequestParamReader extends AbstractParamReader {
   private final ServletContext servletContext;
   protected final ObjectReader objectReader;
   protected final ApiMethodConfig methodConfig;
+  private final ApiSerializationConfig serializationConfig;
 
   public ServletRequestParamReader(
       EndpointMethod method,
@@ -314,15 +340,36 @@ public class ServletRequestParamReader extends AbstractParamReader {
     this.methodConfig = methodConfig;
     this.endpointsContext = endpointsContext;
     this.servletContext = servletContext;
+    this.serializationConfig = serializationConfig;
+
+    this.objectReader = getObjectMapper(serializationConfig, WireFormat.JSON).reader();
+  }
 
-    LinkedHashSet<SimpleModule> modules = new LinkedHashSet<>();
-    modules.addAll(READER_MODULES);
-    this.objectReader = ConfiguredObjectMapper
+  /**
+   * Returns the mapper that request parameters are read with. Every reader with the same
+   * serialization config and wire format shares it, and with it its deserializer cache.
+   */
+  public static ConfiguredObjectMapper getObjectMapper(
+      ApiSerializationConfig serializationConfig, WireFormat wireFormat) {
+    return ConfiguredObjectMapper
         .builder()
         .apiSerializationConfig(serializationConfig)
-        .addRegisteredModules(modules)
-        .build()
-        .reader();
+        .wireFormat(wireFormat)
+        .addRegisteredModules(READER_MODULES)
+        .build();
+  }
+
+  /**
+   * Returns whether parameters of type {@code clazz} are injected by the framework, rather than
+   * read from the request body or path.
+   */
+  public static boolean isInjectedType(Class<?> clazz) {
+    return User.class.isAssignableFrom(clazz)
+        || APPENGINE_USER_CLASS_NAME.equals(clazz.getName())
+        || clazz == HttpServletRequest.class
+        || clazz == Deadline.class
+        || clazz == FileItemStream.class
+        || clazz == ServletContext.class;
   }
 
   @Override
@@ -330,7 +377,13 @@ public class ServletRequestParamReader extends AbstractParamReader {
     // Assumes input stream to be encoded in UTF-8
     // TODO: Take charset from content-type as encoding
     try {
-      String requestBody = IoUtil.readStream(endpointsContext.getRequest().getInputStream());
+      HttpServletRequest request = endpointsContext.getRequest();
+      WireFormat wireFormat = WireFormat.forRequest(request);
+      if (wireFormat != WireFormat.JSON) {
+        JsonNode node = readBinaryTree(wireFormat, IoUtil.getRequestInputStream(request));
+        return node == null ? new Object[0] : deserializeParams(node);
+      }
+      String requestBody = IoUtil.readRequestBody(request);
       logger.atFine().log("requestBody=%s", requestBody);
       if (requestBody == null || requestBody.trim().isEmpty()) {
         return new Object[0];
@@ -339,7 +392,22 @@ public class ServletRequestParamReader extends AbstractParamReader {
       return deserializeParams(node);
     } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException
         | IOException e) {
+      if (IoUtil.isRequestBodyTooLarge(e)) {
+        throw new RequestEntityTooLargeException("request body is too large", e);
+      }
       throw new BadRequestException(e);
     }
   }
+
+  /**
+   * Reads a request body encoded in a binary {@link WireFormat} into a tree, using the same
+   * configuration as {@link #objectReader}. Returns {@code null} if the body is empty.
+   */
+  protected JsonNode readBinaryTree(WireFormat wireFormat, InputStream body) throws IOException {
+    if (body == null) {
+      return null;
+    }
+    JsonNode node = getObjectMapper(serializationConfig, wireFormat).reader().readTree(body);
+    return node == null || node.isMissingNode() ? null : node;
+  }
 }
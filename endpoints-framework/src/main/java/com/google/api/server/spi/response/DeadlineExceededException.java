@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import com.google.api.server.spi.ServiceException;
+
+/**
+ * Deadline exceeded response for the API, mapped to a HTTP 504 response. Thrown when a request's
+ * {@link com.google.api.server.spi.request.Deadline} expires before a response could be produced.
+ */
+public class DeadlineExceededException extends ServiceException {
+
+  private static final int CODE = 504;
+  private static final String REASON = "deadlineExceeded";
+
+  public DeadlineExceededException(String message) {
+    super(CODE, message, REASON);
+  }
+
+  public DeadlineExceededException(String message, Throwable cause) {
+    super(CODE, message, REASON, cause);
+  }
+
+  public DeadlineExceededException(String statusMessage, String reason) {
+    super(CODE, statusMessage, reason);
+  }
+
+  public DeadlineExceededException(String statusMessage, String reason, String domain) {
+    super(CODE, statusMessage, reason, domain);
+  }
+}
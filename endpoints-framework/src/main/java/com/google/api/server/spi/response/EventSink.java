@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import java.io.IOException;
+
+/**
+ * Receives the elements of a {@link StreamingResponse}, each of which is serialized and flushed to
+ * the client as a separate event.
+ */
+public interface EventSink<T> {
+
+  /**
+   * Writes an element to the client. Blocks until the element has been handed to the container,
+   * so a producer never gets further ahead of the client than the container's buffers allow.
+   *
+   * @throws IOException if the client went away, after which {@link #isClosed()} returns true
+   */
+  void send(T value) throws IOException;
+
+  /**
+   * Returns if the stream has ended, either because the client disconnected or because the
+   * response completed. Producers polling an external source should stop once this is true.
+   */
+  boolean isClosed();
+}
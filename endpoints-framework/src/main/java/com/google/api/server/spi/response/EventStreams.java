@@ -0,0 +1,306 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import com.google.api.server.spi.ServiceException;
+import com.google.api.server.spi.WireFormat;
+import com.google.api.server.spi.config.model.ApiSerializationConfig;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves {@link StreamingResponse}s as server-sent events or newline-delimited JSON. One instance
+ * is shared by all methods of a servlet, so that the number of open streams is capped across the
+ * servlet and idle streams share a single heartbeat thread.
+ *
+ * <p>The heartbeat thread skips a stream whose request thread is writing to it, but it writes the
+ * heartbeat of an idle stream itself, and that write blocks while the client does not accept data.
+ * A client which stops reading an idle stream therefore delays the heartbeats of the other streams
+ * until the container times the write out.
+ */
+public class EventStreams {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  public static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream";
+  public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+  private static final byte[] SSE_DATA = "data: ".getBytes(Charsets.UTF_8);
+  private static final byte[] SSE_ERROR = "event: error\ndata: ".getBytes(Charsets.UTF_8);
+  private static final byte[] SSE_END = "\n\n".getBytes(Charsets.UTF_8);
+  private static final byte[] SSE_HEARTBEAT = ":\n\n".getBytes(Charsets.UTF_8);
+  private static final byte[] NDJSON_END = "\n".getBytes(Charsets.UTF_8);
+
+  private final int maxOpenStreams;
+  private final long heartbeatMillis;
+  private final AtomicInteger openStreams = new AtomicInteger();
+  private final AtomicLong rejectedStreams = new AtomicLong();
+  private ScheduledExecutorService heartbeatExecutor;
+
+  /**
+   * @param maxOpenStreams the maximum number of streams open at the same time, or 0 for no limit
+   * @param heartbeatMillis the interval at which idle streams are sent a heartbeat, or 0 for none
+   */
+  public EventStreams(int maxOpenStreams, long heartbeatMillis) {
+    this.maxOpenStreams = maxOpenStreams;
+    this.heartbeatMillis = heartbeatMillis;
+  }
+
+  /**
+   * Returns the number of streams currently open.
+   */
+  public int getOpenStreamCount() {
+    return openStreams.get();
+  }
+
+  /**
+   * Returns the number of streaming requests which were rejected because too many streams were
+   * open.
+   */
+  public long getRejectedStreamCount() {
+    return rejectedStreams.get();
+  }
+
+  /**
+   * Writes a streaming response. Returns once the stream has completed, failed, or the client has
+   * disconnected; failures after the response was committed are reported as an error event.
+   *
+   * @throws ServiceUnavailableException if too many streams are open, before anything is written
+   * @throws ServiceException if the stream failed before the response was committed, so that the
+   *         caller can write the error with its real status instead of an error event
+   */
+  public <T> void serve(StreamingResponse<T> streamingResponse, HttpServletRequest request,
+      HttpServletResponse response, ApiSerializationConfig serializationConfig)
+      throws IOException, ServiceException {
+    if (openStreams.incrementAndGet() > maxOpenStreams && maxOpenStreams > 0) {
+      openStreams.decrementAndGet();
+      rejectedStreams.incrementAndGet();
+      throw new ServiceUnavailableException("Too many open streams");
+    }
+    try {
+      boolean sse = acceptsEventStream(request);
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.setContentType(sse ? EVENT_STREAM_CONTENT_TYPE : NDJSON_CONTENT_TYPE);
+      response.setCharacterEncoding("UTF-8");
+      response.setHeader("Cache-Control", "no-cache");
+      ObjectWriter objectWriter =
+          ServletResponseResultWriter.getObjectMapper(serializationConfig, WireFormat.JSON)
+              .writer()
+              .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      ServletEventSink<T> sink = new ServletEventSink<>(response, objectWriter, sse);
+      ScheduledFuture<?> heartbeat = scheduleHeartbeat(sink);
+      try {
+        streamingResponse.stream(sink);
+      } catch (ServiceException e) {
+        if (sink.closeIfUncommitted()) {
+          throw e;
+        }
+        sink.sendError(e.getStatusCode(), e.getMessage());
+      } catch (IOException e) {
+        if (sink.isClosed()) {
+          logger.atFine().withCause(e).log("client disconnected from stream");
+        } else {
+          logger.atWarning().withCause(e).log("exception occurred while streaming response");
+          sink.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "backend error");
+        }
+      } catch (RuntimeException e) {
+        logger.atWarning().withCause(e).log("exception occurred while streaming response");
+        sink.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "backend error");
+      } finally {
+        if (heartbeat != null) {
+          heartbeat.cancel(false);
+        }
+        sink.close();
+      }
+    } finally {
+      openStreams.decrementAndGet();
+    }
+  }
+
+  /**
+   * Stops the heartbeat thread. Streams which are still open are no longer sent heartbeats.
+   */
+  public synchronized void shutdown() {
+    if (heartbeatExecutor != null) {
+      heartbeatExecutor.shutdownNow();
+      heartbeatExecutor = null;
+    }
+  }
+
+  private static boolean acceptsEventStream(HttpServletRequest request) {
+    String accept = request.getHeader("Accept");
+    return accept != null && accept.contains(EVENT_STREAM_CONTENT_TYPE);
+  }
+
+  private ScheduledFuture<?> scheduleHeartbeat(final ServletEventSink<?> sink) {
+    if (heartbeatMillis <= 0) {
+      return null;
+    }
+    return getHeartbeatExecutor().scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        sink.heartbeatIfIdle(heartbeatMillis);
+      }
+    }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized ScheduledExecutorService getHeartbeatExecutor() {
+    // Created on the first stream, so servlets without streaming methods never start the thread.
+    if (heartbeatExecutor == null) {
+      heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("endpoints-stream-heartbeat-%d")
+              .setDaemon(true).build());
+    }
+    return heartbeatExecutor;
+  }
+
+  /**
+   * Frames each element as a server-sent event or a line of JSON, and flushes it to the client.
+   * Writes hold a lock, as heartbeats are sent from another thread; the heartbeat thread only tries
+   * the lock, so that it never waits for the request thread to finish writing an event.
+   */
+  private static class ServletEventSink<T> implements EventSink<T> {
+    private final HttpServletResponse response;
+    private final ObjectWriter objectWriter;
+    private final boolean sse;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean closed;
+    private long lastWriteNanos = System.nanoTime();
+
+    ServletEventSink(HttpServletResponse response, ObjectWriter objectWriter, boolean sse) {
+      this.response = response;
+      this.objectWriter = objectWriter;
+      this.sse = sse;
+    }
+
+    @Override
+    public void send(T value) throws IOException {
+      writeEvent(SSE_DATA, value);
+    }
+
+    @Override
+    public boolean isClosed() {
+      return closed;
+    }
+
+    void sendError(int code, String message) {
+      try {
+        writeEvent(SSE_ERROR, ImmutableMap.of(
+            "error", ImmutableMap.of("code", code, "message", String.valueOf(message))));
+      } catch (IOException e) {
+        logger.atFine().withCause(e).log("could not write error event");
+      }
+    }
+
+    void heartbeatIfIdle(long idleMillis) {
+      // A sink which is being written to is not idle.
+      if (!lock.tryLock()) {
+        return;
+      }
+      try {
+        if (closed
+            || System.nanoTime() - lastWriteNanos < TimeUnit.MILLISECONDS.toNanos(idleMillis)) {
+          return;
+        }
+        OutputStream out = response.getOutputStream();
+        out.write(sse ? SSE_HEARTBEAT : NDJSON_END);
+        flush();
+      } catch (IOException e) {
+        closed = true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void close() {
+      lock.lock();
+      try {
+        closed = true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Closes the sink if nothing was committed to the client yet, so that no heartbeat can commit
+     * the response afterwards.
+     *
+     * @return whether the sink was closed
+     */
+    boolean closeIfUncommitted() {
+      lock.lock();
+      try {
+        if (response.isCommitted()) {
+          return false;
+        }
+        closed = true;
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void writeEvent(byte[] ssePrefix, Object value) throws IOException {
+      lock.lock();
+      try {
+        writeEventLocked(ssePrefix, value);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void writeEventLocked(byte[] ssePrefix, Object value) throws IOException {
+      if (closed) {
+        throw new IOException("stream is closed");
+      }
+      try {
+        OutputStream out = response.getOutputStream();
+        if (sse) {
+          out.write(ssePrefix);
+        }
+        // Compact JSON never contains a raw line break, so each event is a single data line.
+        objectWriter.writeValue(out, value);
+        out.write(sse ? SSE_END : NDJSON_END);
+        flush();
+      } catch (IOException e) {
+        closed = true;
+        throw e;
+      }
+    }
+
+    private void flush() throws IOException {
+      response.flushBuffer();
+      lastWriteNanos = System.nanoTime();
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tracks the executions of requests carrying an idempotency key, so that a retried request is
+ * answered with the response of its first execution instead of executing again. Keys passed to the
+ * store are already scoped to the method and authenticated user.
+ *
+ * <p>Implementations must be thread-safe. The default, {@link InMemoryIdempotencyStore}, only
+ * deduplicates retries which reach the same instance; a store backed by a shared cache can be
+ * provided by overriding {@code EndpointsServlet#createIdempotencyStore()}.
+ */
+public interface IdempotencyStore {
+
+  /**
+   * Starts executing the request with the given key, or returns the response of an earlier
+   * execution. If an execution with the same key is in progress, waits for it to finish.
+   *
+   * @return {@code null} if the caller should execute the request, in which case it must then call
+   *     either {@link #complete} or {@link #release}; otherwise the stored response
+   * @throws TimeoutException if an execution in progress did not finish in time
+   */
+  @Nullable
+  StoredResponse begin(String key, long timeoutMillis)
+      throws InterruptedException, TimeoutException;
+
+  /**
+   * Stores the response of an execution started with {@link #begin}, and hands it to any
+   * requests waiting for it.
+   */
+  void complete(String key, StoredResponse response);
+
+  /**
+   * Ends an execution started with {@link #begin} without storing a response, e.g. because it
+   * failed in a way which is worth retrying. The next request with the key executes again.
+   */
+  void release(String key);
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+/**
+ * An {@link IdempotencyStore} which keeps responses on the heap, for a limited time and up to a
+ * maximum number of keys, evicting the least recently used keys first.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+  // Executions in progress are kept apart from the bounded cache, so that eviction can never
+  // strand the requests waiting for them.
+  private final ConcurrentMap<String, SettableFuture<StoredResponse>> executions =
+      new ConcurrentHashMap<>();
+  private final Cache<String, StoredResponse> responses;
+
+  /**
+   * @param ttlMillis how long a response is replayed after it was stored
+   * @param maxEntries the maximum number of responses kept
+   */
+  public InMemoryIdempotencyStore(long ttlMillis, int maxEntries) {
+    this.responses = CacheBuilder.newBuilder()
+        .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+        .maximumSize(maxEntries)
+        .build();
+  }
+
+  @Override
+  @Nullable
+  public StoredResponse begin(String key, long timeoutMillis)
+      throws InterruptedException, TimeoutException {
+    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (true) {
+      StoredResponse response = responses.getIfPresent(key);
+      if (response != null) {
+        return response;
+      }
+      SettableFuture<StoredResponse> execution = SettableFuture.create();
+      SettableFuture<StoredResponse> existing = executions.putIfAbsent(key, execution);
+      if (existing == null) {
+        // An execution may have completed between the two lookups.
+        response = responses.getIfPresent(key);
+        if (response != null) {
+          executions.remove(key, execution);
+          execution.set(response);
+        }
+        return response;
+      }
+      try {
+        response = existing.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } catch (ExecutionException e) {
+        // Executions are only ever completed with a value.
+        throw new AssertionError(e);
+      }
+      if (response != null) {
+        return response;
+      }
+      // The execution was released; try to become the next one.
+    }
+  }
+
+  @Override
+  public void complete(String key, StoredResponse response) {
+    responses.put(key, response);
+    SettableFuture<StoredResponse> execution = executions.remove(key);
+    if (execution != null) {
+      execution.set(response);
+    }
+  }
+
+  @Override
+  public void release(String key) {
+    SettableFuture<StoredResponse> execution = executions.remove(key);
+    if (execution != null) {
+      execution.set(null);
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A binary response returned from an API method. Instead of being serialized to JSON, the content
+ * is streamed to the client as-is with the given content type. File content is transferred
+ * through {@link FileChannel#transferTo}, so it is never loaded onto the heap.
+ */
+public abstract class MediaResponse {
+
+  /**
+   * Length returned by {@link #getLength()} when the length of the content is not known up front.
+   */
+  public static final long UNKNOWN_LENGTH = -1;
+
+  private final String contentType;
+
+  private MediaResponse(String contentType) {
+    this.contentType = Preconditions.checkNotNull(contentType, "contentType");
+  }
+
+  /**
+   * Creates a response which streams the content of a file.
+   */
+  public static MediaResponse fromFile(File file, String contentType) {
+    return new FileMediaResponse(file, contentType);
+  }
+
+  /**
+   * Creates a response with in-memory content.
+   */
+  public static MediaResponse fromBytes(byte[] content, String contentType) {
+    return new ByteArrayMediaResponse(content, contentType);
+  }
+
+  /**
+   * Creates a response which copies the content of a stream, which is closed afterwards.
+   */
+  public static MediaResponse fromStream(InputStream content, String contentType) {
+    return fromStream(content, contentType, UNKNOWN_LENGTH);
+  }
+
+  /**
+   * Creates a response which copies the content of a stream of a known length, which is closed
+   * afterwards.
+   */
+  public static MediaResponse fromStream(InputStream content, String contentType, long length) {
+    return new StreamMediaResponse(content, contentType, length);
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  /**
+   * Returns the length of the content in bytes, or {@link #UNKNOWN_LENGTH}.
+   */
+  public abstract long getLength();
+
+  /**
+   * Writes the content to the given stream, which is left open.
+   */
+  public abstract void writeTo(OutputStream out) throws IOException;
+
+  /**
+   * Opens the content for writing. The length of the opened content is fixed once it is opened, so
+   * that it describes exactly what is written even if the underlying content changes meanwhile.
+   */
+  Content open() throws IOException {
+    return new Content(getLength()) {
+      @Override
+      void writeTo(OutputStream out) throws IOException {
+        MediaResponse.this.writeTo(out);
+      }
+    };
+  }
+
+  /**
+   * Content opened by {@link #open()}, which must be closed once written.
+   */
+  abstract static class Content implements Closeable {
+    private final long length;
+
+    Content(long length) {
+      this.length = length;
+    }
+
+    /**
+     * Returns the length of the content in bytes, or {@link #UNKNOWN_LENGTH}.
+     */
+    long getLength() {
+      return length;
+    }
+
+    /**
+     * Writes the content to the given stream, which is left open.
+     */
+    abstract void writeTo(OutputStream out) throws IOException;
+
+    @Override
+    public void close() throws IOException {}
+  }
+
+  private static class FileMediaResponse extends MediaResponse {
+    private final File file;
+
+    FileMediaResponse(File file, String contentType) {
+      super(contentType);
+      this.file = Preconditions.checkNotNull(file, "file");
+    }
+
+    @Override
+    public long getLength() {
+      return file.length();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      try (Content content = open()) {
+        content.writeTo(out);
+      }
+    }
+
+    @Override
+    Content open() throws IOException {
+      final FileChannel channel = new FileInputStream(file).getChannel();
+      final long size;
+      try {
+        size = channel.size();
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+      return new Content(size) {
+        @Override
+        void writeTo(OutputStream out) throws IOException {
+          // The target channel is not closed, as that would close the servlet output stream.
+          WritableByteChannel target = Channels.newChannel(out);
+          long position = 0;
+          while (position < size) {
+            long transferred = channel.transferTo(position, size - position, target);
+            if (transferred <= 0) {
+              // The file was truncated after its size was read, so the promised length cannot
+              // be written anymore.
+              throw new IOException(String.format(
+                  "%s was truncated to %d bytes while writing %d bytes", file, position, size));
+            }
+            position += transferred;
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          channel.close();
+        }
+      };
+    }
+  }
+
+  private static class ByteArrayMediaResponse extends MediaResponse {
+    private final byte[] content;
+
+    ByteArrayMediaResponse(byte[] content, String contentType) {
+      super(contentType);
+      this.content = Preconditions.checkNotNull(content, "content");
+    }
+
+    @Override
+    public long getLength() {
+      return content.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      out.write(content);
+    }
+  }
+
+  private static class StreamMediaResponse extends MediaResponse {
+    private final InputStream content;
+    private final long length;
+
+    StreamMediaResponse(InputStream content, String contentType, long length) {
+      super(contentType);
+      this.content = Preconditions.checkNotNull(content, "content");
+      this.length = length;
+    }
+
+    @Override
+    public long getLength() {
+      return length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      try (InputStream in = content) {
+        ByteStreams.copy(in, out);
+      }
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Collections;
+
+import javax.annotation.Nullable;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Passes a response through to the client while recording it, so it can be kept as a
+ * {@link StoredResponse}. Recording stops once the body exceeds a maximum size; the response
+ * itself is unaffected.
+ */
+public class RecordingServletResponse extends HttpServletResponseWrapper {
+  private final int maxBodyBytes;
+  private final ListMultimap<String, String> headers = LinkedListMultimap.create();
+  private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+  private int status = SC_OK;
+  private boolean overflowed;
+  private ServletOutputStream outputStream;
+  private PrintWriter writer;
+
+  public RecordingServletResponse(HttpServletResponse response, int maxBodyBytes) {
+    super(response);
+    this.maxBodyBytes = maxBodyBytes;
+  }
+
+  /**
+   * Returns the status set on the response, which the servlet API offers no getter for.
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  /**
+   * Returns the recorded response, or {@code null} if its body was too large to record.
+   */
+  @Nullable
+  public StoredResponse toStoredResponse() {
+    if (writer != null) {
+      writer.flush();
+    }
+    return overflowed
+        ? null : new StoredResponse(status, getContentType(), ImmutableListMultimap.copyOf(headers),
+            body.toByteArray());
+  }
+
+  @Override
+  public void setStatus(int sc) {
+    status = sc;
+    super.setStatus(sc);
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public void setStatus(int sc, String sm) {
+    status = sc;
+    super.setStatus(sc, sm);
+  }
+
+  @Override
+  public void sendError(int sc) throws IOException {
+    status = sc;
+    super.sendError(sc);
+  }
+
+  @Override
+  public void sendError(int sc, String msg) throws IOException {
+    status = sc;
+    super.sendError(sc, msg);
+  }
+
+  @Override
+  public void setHeader(String name, String value) {
+    if (isRecorded(name)) {
+      headers.replaceValues(name, Collections.singletonList(value));
+    }
+    super.setHeader(name, value);
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    if (isRecorded(name)) {
+      headers.put(name, value);
+    }
+    super.addHeader(name, value);
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (outputStream == null) {
+      final ServletOutputStream delegate = super.getOutputStream();
+      outputStream = new ServletOutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          delegate.write(b);
+          record(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          delegate.write(b, off, len);
+          record(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+          delegate.flush();
+        }
+      };
+    }
+    return outputStream;
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (writer == null) {
+      writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+    }
+    return writer;
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    }
+    super.flushBuffer();
+  }
+
+  private static boolean isRecorded(String name) {
+    // The content headers are stored separately, and CORS headers depend on the request's origin
+    // and are set again on replay.
+    return !name.equalsIgnoreCase("Content-Type") && !name.equalsIgnoreCase("Content-Length")
+        && !name.regionMatches(true, 0, "Access-Control-", 0, "Access-Control-".length());
+  }
+
+  private void record(byte[] b, int off, int len) {
+    if (overflowed) {
+      return;
+    }
+    if (body.size() + len > maxBodyBytes) {
+      overflowed = true;
+      body.reset();
+    } else {
+      body.write(b, off, len);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import com.google.api.server.spi.ServiceException;
+
+/**
+ * Request entity too large response for the API, mapped to a HTTP 413 response. Thrown when a
+ * request body, after decompression, is larger than the method's maximum request size.
+ */
+public class RequestEntityTooLargeException extends ServiceException {
+
+  private static final int CODE = 413;
+
+  public RequestEntityTooLargeException(String message) {
+    super(CODE, message);
+  }
+
+  public RequestEntityTooLargeException(String message, Throwable cause) {
+    super(CODE, message, cause);
+  }
+
+  public RequestEntityTooLargeException(String statusMessage, String reason) {
+    super(CODE, statusMessage, reason);
+  }
+
+  public RequestEntityTooLargeException(String statusMessage, String reason, String domain) {
+    super(CODE, statusMessage, reason, domain);
+  }
+}
@@ -19,6 +19,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.api.server.spi.ObjectMapperUtil;
 import com.google.api.server.spi.ServiceException;
+import com.google.api.server.spi.WireFormat;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
 import com.google.common.base.Strings;
 
@@ -37,7 +38,15 @@ public class RestResponseResultWriter extends ServletResponseResultWriter {
   public RestResponseResultWriter(
       HttpServletResponse servletResponse, ApiSerializationConfig serializationConfig,
       boolean prettyPrint, boolean addContentLength, boolean enableExceptionCompatibility) {
-    super(servletResponse, serializationConfig, prettyPrint, addContentLength);
+    this(servletResponse, serializationConfig, prettyPrint, addContentLength,
+        enableExceptionCompatibility, WireFormat.JSON);
+  }
+
+  public RestResponseResultWriter(
+      HttpServletResponse servletResponse, ApiSerializationConfig serializationConfig,
+      boolean prettyPrint, boolean addContentLength, boolean enableExceptionCompatibility,
+      WireFormat wireFormat) {
+    super(servletResponse, serializationConfig, prettyPrint, addContentLength, wireFormat);
     this.enableExceptionCompatibility = enableExceptionCompatibility;
     this.objectMapper = ObjectMapperUtil.createStandardObjectMapper(serializationConfig);
   }
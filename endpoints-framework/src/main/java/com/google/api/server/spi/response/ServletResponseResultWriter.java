@@ -18,7 +18,8 @@ package com.google.api.server.spi.response;
 import com.google.api.server.spi.ConfiguredObjectMapper;
 import com.google.api.server.spi.Constant;
 import com.google.api.server.spi.ServiceException;
-import com.google.api.server.spi.SystemService;
+import com.google.api.server.spi.ValueCodecs;
+import com.google.api.server.spi.WireFormat;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
 import com.google.api.server.spi.types.DateAndTime;
 import com.google.api.server.spi.types.SimpleDate;
@@ -70,6 +71,9 @@ public class ServletResponseResultWriter implements ResultWriter {
   private final HttpServletResponse servletResponse;
   private final ObjectWriter objectWriter;
   private final boolean addContentLength;
+  private final WireFormat wireFormat;
+  private int status;
+  private long contentLength = -1;
 
   public ServletResponseResultWriter(
       HttpServletResponse servletResponse, ApiSerializationConfig serializationConfig) {
@@ -79,20 +83,35 @@ public class ServletResponseResultWriter implements ResultWriter {
   public ServletResponseResultWriter(
       HttpServletResponse servletResponse, ApiSerializationConfig serializationConfig,
       boolean prettyPrint, boolean addContentLength) {
+    this(servletResponse, serializationConfig, prettyPrint, addContentLength, WireFormat.JSON);
+  }
+
+  public ServletResponseResultWriter(
+      HttpServletResponse servletResponse, ApiSerializationConfig serializationConfig,
+      boolean prettyPrint, boolean addContentLength, WireFormat wireFormat) {
     this.servletResponse = servletResponse;
-    Set<SimpleModule> modules = new LinkedHashSet<>();
-    modules.addAll(WRITER_MODULES);
-    ObjectWriter objectWriter = ConfiguredObjectMapper.builder()
-        .apiSerializationConfig(serializationConfig)
-        .addRegisteredModules(modules)
-        .build()
-        .writer();
+    ObjectWriter objectWriter = getObjectMapper(serializationConfig, wireFormat).writer();
 
-    if (prettyPrint) {
+    // Binary formats have no whitespace to pretty print.
+    if (prettyPrint && wireFormat == WireFormat.JSON) {
       objectWriter = objectWriter.with(new EndpointsPrettyPrinter());
     }
     this.objectWriter = configureWriter(objectWriter);
     this.addContentLength = addContentLength;
+    this.wireFormat = wireFormat;
+  }
+
+  /**
+   * Returns the mapper that responses are written with. Every writer with the same serialization
+   * config and wire format shares it, and with it its serializer cache.
+   */
+  public static ConfiguredObjectMapper getObjectMapper(
+      ApiSerializationConfig serializationConfig, WireFormat wireFormat) {
+    return ConfiguredObjectMapper.builder()
+        .apiSerializationConfig(serializationConfig)
+        .wireFormat(wireFormat)
+        .addRegisteredModules(WRITER_MODULES)
+        .build();
   }
 
   /**
@@ -105,10 +124,27 @@ public class ServletResponseResultWriter implements ResultWriter {
     return objectWriter;
   }
 
+  /**
+   * Returns the status of the response written, or {@code 0} if none was written yet.
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  /**
+   * Returns the length in bytes of the body written, or {@code -1} if none was written yet or its
+   * length is not known.
+   */
+  public long getContentLength() {
+    return contentLength;
+  }
+
   @Override
   public void write(Object response) throws IOException {
     if (response == null) {
       write(HttpServletResponse.SC_NO_CONTENT, null, null);
+    } else if (response instanceof MediaResponse) {
+      writeMedia((MediaResponse) response);
     } else {
       write(HttpServletResponse.SC_OK, null, ResponseUtil.wrapCollection(response));
     }
@@ -124,6 +160,7 @@ public class ServletResponseResultWriter implements ResultWriter {
   protected void write(int status, Map<String, String> headers, Object content) throws IOException {
     // write response status code
     servletResponse.setStatus(status);
+    this.status = status;
 
     // write response headers
     if (headers != null) {
@@ -134,13 +171,35 @@ public class ServletResponseResultWriter implements ResultWriter {
 
     // write response body
     if (content != null) {
-      servletResponse.setContentType(SystemService.MIME_JSON);
+      servletResponse.setContentType(wireFormat.getContentType());
       if (addContentLength) {
         CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
         objectWriter.writeValue(counter, content);
         servletResponse.setContentLength((int) counter.getCount());
       }
-      objectWriter.writeValue(servletResponse.getOutputStream(), content);
+      CountingOutputStream out = new CountingOutputStream(servletResponse.getOutputStream());
+      objectWriter.writeValue(out, content);
+      contentLength = out.getCount();
+    } else {
+      contentLength = 0;
+    }
+  }
+
+  private void writeMedia(MediaResponse media) throws IOException {
+    // The content is opened before any header is set, so that a missing file sets no header, and
+    // its length is the one of the opened content, so that it matches what is written.
+    try (MediaResponse.Content content = media.open()) {
+      servletResponse.setStatus(HttpServletResponse.SC_OK);
+      servletResponse.setContentType(media.getContentType());
+      long length = content.getLength();
+      status = HttpServletResponse.SC_OK;
+      contentLength = length;
+      if (length > Integer.MAX_VALUE) {
+        servletResponse.setHeader("Content-Length", Long.toString(length));
+      } else if (length >= 0) {
+        servletResponse.setContentLength((int) length);
+      }
+      content.writeTo(servletResponse.getOutputStream());
     }
   }
 
@@ -149,7 +208,7 @@ public class ServletResponseResultWriter implements ResultWriter {
       @Override
       public void serialize(Long value, JsonGenerator jgen, SerializerProvider provider)
           throws IOException {
-        jgen.writeString(value.toString());
+        ValueCodecs.writeLongString(value, jgen);
       }
     };
     SimpleModule writeLongAsStringModule = new SimpleModule("writeLongAsStringModule",
@@ -178,8 +237,7 @@ public class ServletResponseResultWriter implements ResultWriter {
       @Override
       public void serialize(SimpleDate value, JsonGenerator jgen, SerializerProvider provider)
           throws IOException {
-        jgen.writeString(
-            String.format("%04d-%02d-%02d", value.getYear(), value.getMonth(), value.getDay()));
+        ValueCodecs.writeSimpleDate(value, jgen);
       }
     };
     SimpleModule writeSimpleDateAsModule = new SimpleModule("writeSimpleDateAsModule",
@@ -194,7 +252,7 @@ public class ServletResponseResultWriter implements ResultWriter {
       @Override
       public void serialize(Date value, JsonGenerator jgen, SerializerProvider provider)
           throws IOException {
-        jgen.writeString(new com.google.api.client.util.DateTime(value).toStringRfc3339());
+        ValueCodecs.writeDate(value, jgen);
       }
     };
     SimpleModule writeDateAsStringModule = new SimpleModule("writeDateAsStringModule",
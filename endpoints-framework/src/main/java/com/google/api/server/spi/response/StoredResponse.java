@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableListMultimap;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A serialized response kept by an {@link IdempotencyStore}, to be replayed for retried requests.
+ * Serializable, so that stores backed by a shared cache can hold it.
+ */
+public final class StoredResponse implements Serializable {
+  /**
+   * Header set on replayed responses, so clients can tell them apart from new executions.
+   */
+  public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+  private static final long serialVersionUID = 1L;
+
+  private final int status;
+  @Nullable private final String contentType;
+  private final ImmutableListMultimap<String, String> headers;
+  private final byte[] body;
+  @Nullable private final String requestFingerprint;
+
+  public StoredResponse(int status, @Nullable String contentType,
+      ImmutableListMultimap<String, String> headers, byte[] body) {
+    this(status, contentType, headers, body, null);
+  }
+
+  private StoredResponse(int status, @Nullable String contentType,
+      ImmutableListMultimap<String, String> headers, byte[] body,
+      @Nullable String requestFingerprint) {
+    this.status = status;
+    this.contentType = contentType;
+    this.headers = Preconditions.checkNotNull(headers, "headers");
+    this.body = Preconditions.checkNotNull(body, "body");
+    this.requestFingerprint = requestFingerprint;
+  }
+
+  /**
+   * Returns a copy of this response which records the fingerprint of the request it answered, so
+   * that it is not replayed for a different request reusing the idempotency key.
+   */
+  public StoredResponse withRequestFingerprint(String requestFingerprint) {
+    return new StoredResponse(status, contentType, headers, body,
+        Preconditions.checkNotNull(requestFingerprint, "requestFingerprint"));
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  @Nullable
+  public String getContentType() {
+    return contentType;
+  }
+
+  public ImmutableListMultimap<String, String> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Returns the serialized body. The array is shared and must not be modified.
+   */
+  public byte[] getBody() {
+    return body;
+  }
+
+  /**
+   * Returns the fingerprint of the request this response answered, or {@code null} if it was not
+   * recorded.
+   */
+  @Nullable
+  public String getRequestFingerprint() {
+    return requestFingerprint;
+  }
+
+  /**
+   * Returns whether this response may be replayed for a request with the given fingerprint, which
+   * is the case unless it answered a request with another fingerprint.
+   */
+  public boolean matchesRequest(String requestFingerprint) {
+    return this.requestFingerprint == null || this.requestFingerprint.equals(requestFingerprint);
+  }
+
+  /**
+   * Writes the stored status, headers and body to {@code response}.
+   */
+  public void writeTo(HttpServletResponse response) throws IOException {
+    response.setStatus(status);
+    for (Map.Entry<String, String> header : headers.entries()) {
+      response.addHeader(header.getKey(), header.getValue());
+    }
+    response.setHeader(REPLAYED_HEADER, "true");
+    if (contentType != null) {
+      response.setContentType(contentType);
+    }
+    if (body.length > 0) {
+      response.setContentLength(body.length);
+      response.getOutputStream().write(body);
+    }
+  }
+}
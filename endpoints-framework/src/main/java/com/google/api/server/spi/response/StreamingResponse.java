@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import com.google.api.server.spi.ServiceException;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * A response returned from an API method whose elements are sent to the client as they are
+ * produced, instead of as a single JSON document. Clients accepting {@code text/event-stream}
+ * receive server-sent events; all others receive newline-delimited JSON
+ * ({@code application/x-ndjson}). Each element is serialized with the API's serialization
+ * configuration.
+ *
+ * <p>The stream is produced on the request thread, which is held for the lifetime of the stream.
+ * The number of streams open at the same time is therefore capped by the {@code maxOpenStreams}
+ * servlet initialization parameter.
+ *
+ * <p>A stream which is idle for {@code streamHeartbeatMillis} is sent a heartbeat, which is a
+ * comment line for server-sent events and a blank line for newline-delimited JSON; clients of the
+ * latter should skip blank lines. An error once the response is committed, by an element or a
+ * heartbeat, is sent as an {@code error} event for server-sent events, and as an ordinary line
+ * {@code {"error":{"code":...,"message":...}}} for newline-delimited JSON, after which the stream
+ * ends.
+ *
+ * @param <T> the type of the streamed elements
+ */
+public abstract class StreamingResponse<T> {
+
+  /**
+   * Creates a response which streams the elements of an iterator, stopping early if the client
+   * disconnects.
+   */
+  public static <T> StreamingResponse<T> fromIterator(final Iterator<? extends T> elements) {
+    Preconditions.checkNotNull(elements, "elements");
+    return new StreamingResponse<T>() {
+      @Override
+      public void stream(EventSink<T> sink) throws IOException {
+        while (elements.hasNext() && !sink.isClosed()) {
+          sink.send(elements.next());
+        }
+      }
+    };
+  }
+
+  /**
+   * Produces the elements of the stream. The response ends when this method returns. A
+   * {@link ServiceException} thrown after elements have been sent is reported to the client as a
+   * final error event, since the response status has already been committed.
+   */
+  public abstract void stream(EventSink<T> sink) throws IOException, ServiceException;
+}
@@ -177,11 +177,24 @@ public class SwaggerGenerator {
       SwaggerContext context) throws ApiConfigException {
     try {
       TypeLoader typeLoader = new TypeLoader(SwaggerGenerator.class.getClassLoader());
-      SchemaRepository repo = new SchemaRepository(typeLoader);
+      return writeSwagger(configs, writeInternal, context, new SchemaRepository(typeLoader));
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Writes an OpenAPI document, reusing the schemas already computed in {@code schemaRepository},
+   * e.g. by config validation or discovery generation.
+   */
+  public Swagger writeSwagger(Iterable<ApiConfig> configs, boolean writeInternal,
+      SwaggerContext context, SchemaRepository schemaRepository) throws ApiConfigException {
+    try {
+      TypeLoader typeLoader = new TypeLoader(SwaggerGenerator.class.getClassLoader());
       GenerationContext genCtx = new GenerationContext();
-      genCtx.validator = new ApiConfigValidator(typeLoader, repo);
+      genCtx.validator = new ApiConfigValidator(typeLoader, schemaRepository);
       genCtx.writeInternal = writeInternal;
-      genCtx.schemata = new SchemaRepository(typeLoader);
+      genCtx.schemata = schemaRepository;
       return writeSwagger(configs, context, genCtx);
     } catch (ClassNotFoundException e) {
       throw new IllegalStateException(e);
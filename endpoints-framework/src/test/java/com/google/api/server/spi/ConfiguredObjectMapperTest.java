@@ -25,6 +25,8 @@ import static org.mockito.Mockito.when;
 
 import com.google.api.server.spi.config.Transformer;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
+import com.google.api.server.spi.testing.ChildBean;
+import com.google.api.server.spi.testing.ParentBean;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
@@ -104,6 +106,16 @@ public class ConfiguredObjectMapperTest {
     assertSame(result1, result2);
   }
 
+  @Test
+  public void testBuildWithWireFormat() {
+    ConfiguredObjectMapper json = builder.build();
+    ConfiguredObjectMapper smile = builder.wireFormat(WireFormat.SMILE).build();
+    assertEquals(2, cache.size());
+    assertNotSame(json, smile);
+    assertSame(smile, builder.wireFormat(WireFormat.SMILE).build());
+    assertThat(smile.delegate.getFactory().getFormatName()).isEqualTo("Smile");
+  }
+
   @Test
   public void testBuildWithModules_nullModules() {
     try {
@@ -291,4 +303,18 @@ public class ConfiguredObjectMapperTest {
         5, ImmutableSet.of(firstResultA.delegate, firstResultAB.delegate, firstResultB.delegate,
                            firstResultAC.delegate, otherResultA.delegate).size());
   }
+
+  @Test
+  public void testPrepareSerializers() {
+    ConfiguredObjectMapper mapper = builder.build();
+    // The parent and child beans reference each other; each is prepared once.
+    assertThat(mapper.prepareSerializers(ParentBean.class))
+        .containsExactly(ParentBean.class, ChildBean.class, String.class, Integer.class);
+  }
+
+  @Test
+  public void testPrepareDeserializer() {
+    ConfiguredObjectMapper mapper = builder.build();
+    assertThat(mapper.prepareDeserializer(ChildBean[].class)).isTrue();
+  }
 }
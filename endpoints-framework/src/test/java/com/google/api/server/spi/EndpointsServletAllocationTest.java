@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import static com.google.api.server.spi.testing.ServletAllocationProfiler.scenario;
+
+import com.google.api.server.spi.config.Api;
+import com.google.api.server.spi.config.ApiMethod;
+import com.google.api.server.spi.config.ApiMethod.HttpMethod;
+import com.google.api.server.spi.config.Named;
+import com.google.api.server.spi.response.NotFoundException;
+import com.google.api.server.spi.testing.AllocationMeter;
+import com.google.api.server.spi.testing.ServletAllocationProfiler;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.mock.web.MockServletConfig;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletException;
+
+/**
+ * Allocation budgets for requests served by {@link EndpointsServlet}. Each test fails when the
+ * bytes allocated per request exceed the budget; the budgets leave about 50% headroom over the
+ * measured values so that only real regressions fail.
+ */
+@RunWith(JUnit4.class)
+public class EndpointsServletAllocationTest {
+  private ServletAllocationProfiler profiler;
+
+  @Before
+  public void setUp() throws ServletException {
+    Assume.assumeTrue(AllocationMeter.isSupported());
+    EndpointsServlet servlet = new EndpointsServlet();
+    MockServletConfig config = new MockServletConfig();
+    config.addInitParameter("services", BudgetApi.class.getName());
+    servlet.init(config);
+    profiler = new ServletAllocationProfiler(servlet);
+  }
+
+  @Test
+  public void noArgGet() throws Exception {
+    profiler.assertWithinBudget(scenario("no-arg GET", "GET", "budget/v1/items"), 16 * 1024);
+  }
+
+  @Test
+  public void pathParamGet() throws Exception {
+    profiler.assertWithinBudget(scenario("path-param GET", "GET", "budget/v1/items/42"), 24 * 1024);
+  }
+
+  @Test
+  public void bodyPost() throws Exception {
+    profiler.assertWithinBudget(
+        scenario("body POST", "POST", "budget/v1/items")
+            .withJsonBody("{\"id\": 7, \"name\": \"seven\", \"tags\": [\"a\", \"b\"]}"),
+        24 * 1024);
+  }
+
+  @Test
+  public void errorResponse() throws Exception {
+    // Backend exceptions are logged with their stack trace; keep that out of the test output and
+    // the budget, which covers building and writing the error response.
+    Logger logger = Logger.getLogger(SystemService.class.getName());
+    Level level = logger.getLevel();
+    logger.setLevel(Level.WARNING);
+    try {
+      profiler.assertWithinBudget(
+          scenario("error response", "GET", "budget/v1/items/-1").expectingStatus(404), 30 * 1024);
+    } finally {
+      logger.setLevel(level);
+    }
+  }
+
+  public static class Item {
+    public long id;
+    public String name;
+    public String[] tags;
+  }
+
+  @Api(name = "budget", version = "v1")
+  public static class BudgetApi {
+    @ApiMethod(httpMethod = HttpMethod.GET, path = "items")
+    public Item first() {
+      return item(1);
+    }
+
+    @ApiMethod(httpMethod = HttpMethod.GET, path = "items/{id}")
+    public Item get(@Named("id") long id) throws NotFoundException {
+      if (id < 0) {
+        throw new NotFoundException("no item " + id);
+      }
+      return item(id);
+    }
+
+    @ApiMethod(httpMethod = HttpMethod.POST, path = "items")
+    public Item insert(Item item) {
+      return item;
+    }
+
+    private static Item item(long id) {
+      Item item = new Item();
+      item.id = id;
+      item.name = "item" + id;
+      item.tags = new String[] {"a", "b"};
+      return item;
+    }
+  }
+}
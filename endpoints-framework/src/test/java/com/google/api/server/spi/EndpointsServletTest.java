@@ -16,12 +16,23 @@
 package com.google.api.server.spi;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
 
+import com.google.api.server.spi.SystemService.EndpointNode;
+import com.google.api.server.spi.config.AnnotationBoolean;
 import com.google.api.server.spi.config.Api;
+import com.google.api.server.spi.config.ApiConfigSource;
 import com.google.api.server.spi.config.ApiMethod;
 import com.google.api.server.spi.config.ApiMethod.HttpMethod;
+import com.google.api.server.spi.config.Named;
+import com.google.api.server.spi.config.model.ApiClassConfig.MethodConfigMap;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.ApiMethodConfig;
+import com.google.api.server.spi.handlers.EndpointsMethodHandler;
+import com.google.api.server.spi.response.StreamingResponse;
 import com.google.common.base.Splitter;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -34,6 +45,11 @@ import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockServletConfig;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletResponse;
@@ -140,6 +156,299 @@ public class EndpointsServletTest {
     assertThat(resp.getHeader("Content-Length")).isNotNull();
   }
 
+  @Test
+  public void lazyServices() throws IOException, ServletException {
+    MockServletConfig config = new MockServletConfig();
+    config.addInitParameter("services", TestApi.class.getName());
+    config.addInitParameter("lazyServices", "true");
+    config.addInitParameter("startupThreads", "2");
+    servlet.init(config);
+
+    req.setRequestURI("/_ah/api/test/v2/echo");
+    req.setMethod("POST");
+    req.setParameter("x", "1");
+
+    servlet.service(req, resp);
+
+    assertThat(resp.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper();
+    ObjectNode actual = mapper.readValue(resp.getContentAsString(), ObjectNode.class);
+    assertThat(actual.get("x").asInt()).isEqualTo(1);
+  }
+
+  @Test
+  public void warmSerializers() throws IOException, ServletException {
+    MockServletConfig config = new MockServletConfig();
+    config.addInitParameter("services", TestApi.class.getName());
+    config.addInitParameter("warmSerializers", "true");
+    config.addInitParameter("warmSerializersSynthetic", "true");
+    servlet.init(config);
+
+    req.setRequestURI("/_ah/api/test/v2/echo");
+    req.setMethod("POST");
+    req.setParameter("x", "1");
+
+    servlet.service(req, resp);
+
+    assertThat(resp.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper();
+    ObjectNode actual = mapper.readValue(resp.getContentAsString(), ObjectNode.class);
+    assertThat(actual.get("x").asInt()).isEqualTo(1);
+  }
+
+  @Test
+  public void stream_newlineDelimitedJson() throws IOException {
+    req.setRequestURI("/_ah/api/test/v2/count");
+    req.setMethod("GET");
+    req.setParameter("n", "3");
+
+    servlet.service(req, resp);
+
+    assertThat(resp.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    assertThat(resp.getContentType()).startsWith("application/x-ndjson");
+    assertThat(resp.getContentAsString()).isEqualTo("{\"x\":0}\n{\"x\":1}\n{\"x\":2}\n");
+  }
+
+  @Test
+  public void stream_serverSentEvents() throws IOException {
+    req.setRequestURI("/_ah/api/test/v2/count");
+    req.setMethod("GET");
+    req.setParameter("n", "2");
+    req.addHeader("Accept", "text/event-stream");
+
+    servlet.service(req, resp);
+
+    assertThat(resp.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    assertThat(resp.getContentType()).startsWith("text/event-stream");
+    assertThat(resp.getHeader("Cache-Control")).isEqualTo("no-cache");
+    assertThat(resp.getContentAsString())
+        .isEqualTo("data: {\"x\":0}\n\ndata: {\"x\":1}\n\n");
+    assertThat(servlet.getEventStreams().getOpenStreamCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void idempotencyKey_replaysResponse() throws IOException {
+    TestApi.createCount.set(0);
+    MockHttpServletResponse first = createWithIdempotencyKey("key-1", 5);
+    MockHttpServletResponse retry = createWithIdempotencyKey("key-1", 5);
+    MockHttpServletResponse changed = createWithIdempotencyKey("key-1", 6);
+    MockHttpServletResponse other = createWithIdempotencyKey("key-2", 7);
+
+    assertThat(TestApi.createCount.get()).isEqualTo(2);
+    assertThat(first.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    assertThat(first.getHeader("Idempotent-Replayed")).isNull();
+    assertThat(retry.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    assertThat(retry.getHeader("Idempotent-Replayed")).isEqualTo("true");
+    assertThat(retry.getContentType()).isEqualTo(first.getContentType());
+    assertThat(retry.getContentAsString()).isEqualTo(first.getContentAsString());
+    assertThat(changed.getStatus()).isEqualTo(HttpServletResponse.SC_CONFLICT);
+    assertThat(other.getContentAsString()).contains("7");
+  }
+
+  @Test
+  public void idempotencyKey_absent() throws IOException {
+    TestApi.createCount.set(0);
+    createWithIdempotencyKey(null, 5);
+    createWithIdempotencyKey(null, 5);
+
+    assertThat(TestApi.createCount.get()).isEqualTo(2);
+  }
+
+  private MockHttpServletResponse createWithIdempotencyKey(String key, int x)
+      throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setServletPath("/_ah/api");
+    request.setRequestURI("/_ah/api/test/v2/create");
+    request.setMethod("POST");
+    request.setContent(("{\"x\": " + x + "}").getBytes(StandardCharsets.UTF_8));
+    if (key != null) {
+      request.addHeader("Idempotency-Key", key);
+    }
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    servlet.service(request, response);
+    return response;
+  }
+
+  @Test
+  public void openApi() throws IOException, ServletException {
+    MockServletConfig config = new MockServletConfig();
+    config.addInitParameter("services", TestApi.class.getName());
+    config.addInitParameter("openApiPath", "/openapi.json");
+    servlet.init(config);
+
+    req.setRequestURI("/_ah/api/openapi.json");
+    req.setMethod("GET");
+
+    servlet.service(req, resp);
+
+    assertThat(resp.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    assertThat(resp.getHeader("ETag")).isNotNull();
+    ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper();
+    ObjectNode actual = mapper.readValue(resp.getContentAsString(), ObjectNode.class);
+    assertThat(actual.get("paths").has("/test/v2/echo")).isTrue();
+  }
+
+  @Test
+  public void openApi_disabledByDefault() throws IOException {
+    req.setRequestURI("/_ah/api/openapi.json");
+    req.setMethod("GET");
+
+    servlet.service(req, resp);
+
+    assertThat(resp.getStatus()).isEqualTo(HttpServletResponse.SC_NOT_FOUND);
+  }
+
+  @Test
+  public void requestSamples() throws IOException, ServletException {
+    MockServletConfig config = new MockServletConfig();
+    config.addInitParameter("services", TestApi.class.getName());
+    config.addInitParameter("requestSamplesPath", "/admin/samples");
+    config.addInitParameter("slowRequestThresholdMillis", "0");
+    servlet.init(config);
+    req.setRequestURI("/_ah/api/test/v2/increment");
+    req.setMethod("PATCH");
+    req.setParameter("x", "1");
+    servlet.service(req, resp);
+
+    MockHttpServletRequest samplesRequest = new MockHttpServletRequest();
+    samplesRequest.setServletPath("/_ah/api");
+    samplesRequest.setRequestURI("/_ah/api/admin/samples");
+    samplesRequest.setMethod("GET");
+    MockHttpServletResponse samplesResponse = new MockHttpServletResponse();
+    servlet.service(samplesRequest, samplesResponse);
+
+    assertThat(samplesResponse.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper();
+    ObjectNode actual = mapper.readValue(samplesResponse.getContentAsString(), ObjectNode.class);
+    JsonNode increment = actual.get("methods").get("test.testApi.increment");
+    assertThat(increment.get("requestCount").asLong()).isEqualTo(1);
+    assertThat(increment.get("slowest")).hasSize(1);
+    assertThat(increment.get("slowest").get(0).get("status").asInt()).isEqualTo(200);
+    assertThat(increment.get("recent")).hasSize(1);
+  }
+
+  @Test
+  public void requestSamples_disabledByDefault() throws IOException {
+    req.setRequestURI("/_ah/api/admin/samples");
+    req.setMethod("GET");
+
+    servlet.service(req, resp);
+
+    assertThat(resp.getStatus()).isEqualTo(HttpServletResponse.SC_NOT_FOUND);
+  }
+
+  @Test
+  public void reloadConfiguration() throws Exception {
+    final PathConfigSource configSource = new PathConfigSource();
+    servlet = new EndpointsServlet() {
+      @Override
+      protected ApiConfigSource[] createApiConfigSources() {
+        return new ApiConfigSource[] {configSource};
+      }
+    };
+    MockServletConfig config = new MockServletConfig();
+    config.addInitParameter("services", TestApi.class.getName());
+    servlet.init(config);
+    assertThat(servlet.reloadConfiguration()).isFalse();
+    assertThat(patchIncrement("increment").getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+
+    configSource.incrementPath = "bump";
+    assertThat(servlet.reloadConfiguration()).isTrue();
+
+    assertThat(patchIncrement("increment").getStatus())
+        .isEqualTo(HttpServletResponse.SC_NOT_FOUND);
+    MockHttpServletResponse response = patchIncrement("bump");
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper();
+    ObjectNode actual = mapper.readValue(response.getContentAsString(), ObjectNode.class);
+    assertThat(actual.get("x").asInt()).isEqualTo(2);
+  }
+
+  @Test
+  public void reloadConfiguration_dispatcherFailureKeepsPrevious() throws Exception {
+    final PathConfigSource configSource = new PathConfigSource();
+    final AtomicBoolean failHandlers = new AtomicBoolean();
+    servlet = new EndpointsServlet() {
+      @Override
+      protected ApiConfigSource[] createApiConfigSources() {
+        return new ApiConfigSource[] {configSource};
+      }
+
+      @Override
+      protected EndpointsMethodHandler createEndpointsMethodHandler(EndpointMethod method,
+          ApiMethodConfig methodConfig) {
+        if (failHandlers.getAndSet(false)) {
+          throw new IllegalStateException("handler failure");
+        }
+        return super.createEndpointsMethodHandler(method, methodConfig);
+      }
+    };
+    MockServletConfig config = new MockServletConfig();
+    config.addInitParameter("services", TestApi.class.getName());
+    servlet.init(config);
+    List<EndpointNode> endpoints = servlet.getSystemService().getEndpoints();
+
+    configSource.incrementPath = "bump";
+    failHandlers.set(true);
+    try {
+      servlet.reloadConfiguration();
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+
+    assertThat(servlet.getSystemService().getEndpoints())
+        .containsExactlyElementsIn(endpoints).inOrder();
+    assertThat(patchIncrement("increment").getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    assertThat(servlet.reloadConfiguration()).isTrue();
+    assertThat(patchIncrement("bump").getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+  }
+
+  @Test
+  public void reloadConfiguration_refreshesDiscovery() throws Exception {
+    final PathConfigSource configSource = new PathConfigSource();
+    servlet = new EndpointsServlet() {
+      @Override
+      protected ApiConfigSource[] createApiConfigSources() {
+        return new ApiConfigSource[] {configSource};
+      }
+    };
+    MockServletConfig config = new MockServletConfig();
+    config.addInitParameter("services", TestApi.class.getName());
+    servlet.init(config);
+    assertThat(getIncrementDiscoveryPath()).isEqualTo("increment");
+
+    configSource.incrementPath = "bump";
+    assertThat(servlet.reloadConfiguration()).isTrue();
+
+    assertThat(getIncrementDiscoveryPath()).isEqualTo("bump");
+  }
+
+  private String getIncrementDiscoveryPath() throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setServletPath("/_ah/api");
+    request.setRequestURI("/_ah/api/discovery/v1/apis/test/v2/rest");
+    request.setMethod("GET");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    servlet.service(request, response);
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper();
+    ObjectNode document = mapper.readValue(response.getContentAsString(), ObjectNode.class);
+    return document.path("resources").path("testApi").path("methods").path("increment")
+        .path("path").asText();
+  }
+
+  private MockHttpServletResponse patchIncrement(String path) throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setServletPath("/_ah/api");
+    request.setRequestURI("/_ah/api/test/v2/" + path);
+    request.setMethod("PATCH");
+    request.setParameter("x", "1");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    servlet.service(request, response);
+    return response;
+  }
+
   @Test
   public void methodOverride() throws IOException {
     req.setRequestURI("/_ah/api/test/v2/increment");
@@ -186,12 +495,40 @@ public class EndpointsServletTest {
         .containsExactly("HEAD", "DELETE", "GET", "PATCH", "POST", "PUT");
   }
 
+  /**
+   * A dynamic config source which overrides the path of {@link TestApi#increment}.
+   */
+  private static class PathConfigSource implements ApiConfigSource {
+    private volatile String incrementPath = "increment";
+
+    @Override
+    public void loadEndpointClass(ServiceContext serviceContext, Class<?> endpointClass,
+        ApiConfig config) {}
+
+    @Override
+    public void loadEndpointMethods(ServiceContext serviceContext, Class<?> endpointClass,
+        MethodConfigMap methodConfigMap) {
+      for (ApiMethodConfig methodConfig : methodConfigMap.values()) {
+        if (methodConfig.getEndpointMethodName().equals("increment")) {
+          methodConfig.setPath(incrementPath);
+        }
+      }
+    }
+
+    @Override
+    public boolean isStaticConfig(ApiConfig config) {
+      return false;
+    }
+  }
+
   public static class TestResource {
     public int x;
   }
 
   @Api(name = "test", version = "v2")
   public static class TestApi {
+    static final AtomicInteger createCount = new AtomicInteger();
+
     @ApiMethod(httpMethod = HttpMethod.GET)
     public void empty() {}
 
@@ -200,6 +537,24 @@ public class EndpointsServletTest {
       return r;
     }
 
+    @ApiMethod(httpMethod = HttpMethod.GET, path = "count")
+    public StreamingResponse<TestResource> count(@Named("n") int n) {
+      List<TestResource> resources = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+        TestResource resource = new TestResource();
+        resource.x = i;
+        resources.add(resource);
+      }
+      return StreamingResponse.fromIterator(resources.iterator());
+    }
+
+    @ApiMethod(httpMethod = HttpMethod.POST, path = "create",
+        idempotencyKey = AnnotationBoolean.TRUE)
+    public TestResource create(TestResource r) {
+      createCount.incrementAndGet();
+      return r;
+    }
+
     @ApiMethod(httpMethod = "PATCH")
     public TestResource increment(TestResource r) {
       r.x = r.x + 1;
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.api.server.spi.testing.TestEndpoint;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link GeneratedInvokers}.
+ */
+@RunWith(JUnit4.class)
+public class GeneratedInvokersTest {
+  @Test
+  public void getGeneratedClassName() {
+    assertThat(GeneratedInvokers.getGeneratedClassName(TestEndpoint.class))
+        .isEqualTo("com.google.api.server.spi.testing.TestEndpoint_EndpointsInvokers");
+    assertThat(GeneratedInvokers.getGeneratedClassName(Inner.class))
+        .isEqualTo("com.google.api.server.spi.GeneratedInvokersTest_Inner_EndpointsInvokers");
+  }
+
+  @Test
+  public void forServiceClass_notGenerated() {
+    assertThat(GeneratedInvokers.forServiceClass(TestEndpoint.class)).isNull();
+  }
+
+  @Test
+  public void signature() {
+    assertThat(GeneratedInvokers.signature("get", new Class<?>[0])).isEqualTo("get()");
+    assertThat(GeneratedInvokers.signature("get",
+        new Class<?>[] {String.class, int.class, Inner[].class}))
+        .isEqualTo("get(java.lang.String,int,com.google.api.server.spi.GeneratedInvokersTest"
+            + ".Inner[])");
+  }
+
+  @Test
+  public void checkParameterCount() {
+    GeneratedInvokers.checkParameterCount(new Object[] {1, 2}, 2);
+    GeneratedInvokers.checkParameterCount(null, 0);
+    try {
+      GeneratedInvokers.checkParameterCount(new Object[] {1}, 2);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("wrong number of arguments: expected 2, got 1");
+    }
+  }
+
+  private static class Inner {}
+}
@@ -17,6 +17,9 @@ package com.google.api.server.spi;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.api.server.spi.request.Attribute;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -82,6 +85,42 @@ public class IoUtilTest {
     assertThat(IoUtil.readStream(stream)).isEqualTo("test");
   }
 
+  @Test
+  public void testGetRequestInputStream_limited() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContent("test".getBytes(StandardCharsets.UTF_8));
+    request.setAttribute(Attribute.MAX_REQUEST_BYTES, 4L);
+    assertThat(IoUtil.readRequestBody(request)).isEqualTo("test");
+
+    request.setAttribute(Attribute.MAX_REQUEST_BYTES, 3L);
+    try {
+      IoUtil.readRequestBody(request);
+      fail("Expected RequestBodyTooLargeException");
+    } catch (IoUtil.RequestBodyTooLargeException expected) {
+      assertThat(IoUtil.isRequestBodyTooLarge(new IOException(expected))).isTrue();
+    }
+  }
+
+  @Test
+  public void testGetRequestInputStream_limitsDecompressedBytes() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    byte[] compressed = compress(new byte[100000]);
+    request.setContent(compressed);
+    request.addHeader("Content-Encoding", "gzip");
+    request.setAttribute(Attribute.MAX_REQUEST_BYTES, (long) compressed.length * 2);
+    try {
+      IoUtil.readRequestBody(request);
+      fail("Expected RequestBodyTooLargeException");
+    } catch (IoUtil.RequestBodyTooLargeException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testIsRequestBodyTooLarge() {
+    assertThat(IoUtil.isRequestBodyTooLarge(new IOException())).isFalse();
+  }
+
   @Test
   public void testReadRequestBody() throws Exception {
     MockHttpServletRequest request = new MockHttpServletRequest();
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.fasterxml.jackson.core.util.BufferRecycler;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for {@link PooledBufferRecycler}.
+ */
+@RunWith(JUnit4.class)
+public class PooledBufferRecyclerTest {
+  @Test
+  public void releasedBufferIsReused() {
+    PooledBufferRecycler recycler = new PooledBufferRecycler(2);
+    byte[] bytes = recycler.allocByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER);
+    char[] chars = recycler.allocCharBuffer(BufferRecycler.CHAR_TOKEN_BUFFER);
+    recycler.releaseByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER, bytes);
+    recycler.releaseCharBuffer(BufferRecycler.CHAR_TOKEN_BUFFER, chars);
+
+    assertThat(recycler.allocByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER)).isSameAs(bytes);
+    assertThat(recycler.allocCharBuffer(BufferRecycler.CHAR_TOKEN_BUFFER)).isSameAs(chars);
+    // Each kind of buffer has its own slots.
+    assertThat(recycler.allocByteBuffer(BufferRecycler.BYTE_WRITE_ENCODING_BUFFER))
+        .isNotSameAs(bytes);
+  }
+
+  @Test
+  public void tooSmallBufferIsNotReused() {
+    PooledBufferRecycler recycler = new PooledBufferRecycler(2);
+    byte[] bytes = recycler.allocByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER);
+    recycler.releaseByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER, bytes);
+
+    byte[] larger = recycler.allocByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER, bytes.length + 1);
+    assertThat(larger).isNotSameAs(bytes);
+    assertThat(larger.length).isAtLeast(bytes.length + 1);
+    assertThat(recycler.getPooledBufferCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void poolIsBounded() {
+    PooledBufferRecycler recycler = new PooledBufferRecycler(2);
+    for (int i = 0; i < 5; i++) {
+      recycler.releaseByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER, new byte[8000]);
+    }
+    assertThat(recycler.getPooledBufferCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void buffersAreSharedAcrossThreads() throws Exception {
+    final PooledBufferRecycler recycler = new PooledBufferRecycler(2);
+    final AtomicReference<byte[]> released = new AtomicReference<>();
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        byte[] bytes = recycler.allocByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER);
+        released.set(bytes);
+        recycler.releaseByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER, bytes);
+      }
+    };
+    thread.start();
+    thread.join();
+
+    assertThat(recycler.allocByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER))
+        .isSameAs(released.get());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nonPositiveSlots() {
+    new PooledBufferRecycler(0);
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.server.spi.testing.ParentChildEndpoint;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link SerializerWarmer}.
+ */
+@RunWith(JUnit4.class)
+public class SerializerWarmerTest {
+  private SystemService systemService;
+
+  @Before
+  public void setUp() throws Exception {
+    systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .addService(ParentChildEndpoint.class, new ParentChildEndpoint())
+        .build();
+  }
+
+  @Test
+  public void warm() {
+    SerializerWarmer warmer = new SerializerWarmer(true /* synthetic */);
+    warmer.warm(systemService);
+    assertThat(warmer.getMethodCount()).isEqualTo(2);
+    assertThat(warmer.getTypeCount()).isGreaterThan(0);
+  }
+
+  @Test
+  public void warm_typesCountedOnce() {
+    SerializerWarmer warmer = new SerializerWarmer(false /* synthetic */);
+    warmer.warm(systemService);
+    int typeCount = warmer.getTypeCount();
+    warmer.warm(systemService);
+    assertThat(warmer.getMethodCount()).isEqualTo(4);
+    assertThat(warmer.getTypeCount()).isEqualTo(typeCount);
+  }
+}
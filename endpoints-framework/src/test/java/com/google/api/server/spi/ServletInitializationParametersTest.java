@@ -49,9 +49,96 @@ public class ServletInitializationParametersTest {
     assertThat(initParameters.isExceptionCompatibilityEnabled()).isTrue();
     assertThat(initParameters.isPrettyPrintEnabled()).isTrue();
     assertThat(initParameters.isAddContentLength()).isFalse();
+    assertThat(initParameters.getDeadlineHeader()).isNull();
+    assertThat(initParameters.getDefaultTimeoutMillis()).isEqualTo(0);
+    assertThat(initParameters.getStartupThreads()).isEqualTo(1);
+    assertThat(initParameters.isLazyServicesEnabled()).isFalse();
+    assertThat(initParameters.isWarmLazyServicesEnabled()).isFalse();
+    assertThat(initParameters.isWarmSerializersEnabled()).isFalse();
+    assertThat(initParameters.isWarmSerializersSyntheticEnabled()).isFalse();
+    assertThat(initParameters.getOpenApiPath()).isNull();
+    assertThat(initParameters.getDiscoveryCacheDirectory()).isNull();
+    assertThat(initParameters.getMaxOpenStreams()).isEqualTo(100);
+    assertThat(initParameters.getStreamHeartbeatMillis()).isEqualTo(15000);
+    assertThat(initParameters.getMaxRequestBytes()).isEqualTo(0);
+    assertThat(initParameters.getIdempotencyKeyHeader()).isEqualTo("Idempotency-Key");
+    assertThat(initParameters.getIdempotencyKeyTtlMillis()).isEqualTo(3600000);
+    assertThat(initParameters.getIdempotencyKeyMaxEntries()).isEqualTo(1000);
+    assertThat(initParameters.getRequestSamplesPath()).isNull();
+    assertThat(initParameters.getSlowRequestThresholdMillis()).isEqualTo(1000);
+    assertThat(initParameters.getRequestSamplesPerMethod()).isEqualTo(10);
+    assertThat(initParameters.getConfigReloadIntervalMillis()).isEqualTo(0);
     verifyAsMap(initParameters, "", "true", "true", "false", "true", "true", "false");
   }
 
+  @Test
+  public void testBuilder_deadlines() {
+    ServletInitializationParameters initParameters = ServletInitializationParameters.builder()
+        .setDeadlineHeader("X-Timeout")
+        .setDefaultTimeoutMillis(5000)
+        .build();
+    assertThat(initParameters.getDeadlineHeader()).isEqualTo("X-Timeout");
+    assertThat(initParameters.getDefaultTimeoutMillis()).isEqualTo(5000);
+    Map<String, String> map = initParameters.asMap();
+    assertThat(map.get("deadlineHeader")).isEqualTo("X-Timeout");
+    assertThat(map.get("defaultTimeoutMillis")).isEqualTo("5000");
+  }
+
+  @Test
+  public void testBuilder_streams() {
+    ServletInitializationParameters initParameters = ServletInitializationParameters.builder()
+        .setMaxOpenStreams(0)
+        .setStreamHeartbeatMillis(500)
+        .build();
+    assertThat(initParameters.getMaxOpenStreams()).isEqualTo(0);
+    assertThat(initParameters.getStreamHeartbeatMillis()).isEqualTo(500);
+    Map<String, String> map = initParameters.asMap();
+    assertThat(map.get("maxOpenStreams")).isEqualTo("0");
+    assertThat(map.get("streamHeartbeatMillis")).isEqualTo("500");
+  }
+
+  @Test
+  public void testBuilder_maxRequestBytes() {
+    ServletInitializationParameters initParameters = ServletInitializationParameters.builder()
+        .setMaxRequestBytes(1 << 20)
+        .build();
+    assertThat(initParameters.getMaxRequestBytes()).isEqualTo(1 << 20);
+    assertThat(initParameters.asMap().get("maxRequestBytes")).isEqualTo("1048576");
+  }
+
+  @Test
+  public void testBuilder_idempotencyKeys() {
+    ServletInitializationParameters initParameters = ServletInitializationParameters.builder()
+        .setIdempotencyKeyHeader("X-Request-Id")
+        .setIdempotencyKeyTtlMillis(60000)
+        .setIdempotencyKeyMaxEntries(50)
+        .build();
+    Map<String, String> map = initParameters.asMap();
+    assertThat(map.get("idempotencyKeyHeader")).isEqualTo("X-Request-Id");
+    assertThat(map.get("idempotencyKeyTtlMillis")).isEqualTo("60000");
+    assertThat(map.get("idempotencyKeyMaxEntries")).isEqualTo("50");
+  }
+
+  @Test
+  public void testBuilder_startup() {
+    ServletInitializationParameters initParameters = ServletInitializationParameters.builder()
+        .setStartupThreads(4)
+        .setLazyServicesEnabled(true)
+        .setWarmLazyServicesEnabled(true)
+        .setWarmSerializersEnabled(true)
+        .setWarmSerializersSyntheticEnabled(true)
+        .build();
+    assertThat(initParameters.getStartupThreads()).isEqualTo(4);
+    assertThat(initParameters.isLazyServicesEnabled()).isTrue();
+    assertThat(initParameters.isWarmLazyServicesEnabled()).isTrue();
+    Map<String, String> map = initParameters.asMap();
+    assertThat(map.get("startupThreads")).isEqualTo("4");
+    assertThat(map.get("lazyServices")).isEqualTo("true");
+    assertThat(map.get("warmLazyServices")).isEqualTo("true");
+    assertThat(map.get("warmSerializers")).isEqualTo("true");
+    assertThat(map.get("warmSerializersSynthetic")).isEqualTo("true");
+  }
+
   @Test
   public void testBuilder_emptySetsAndTrue() {
     ServletInitializationParameters initParameters = ServletInitializationParameters.builder()
@@ -159,6 +246,174 @@ public class ServletInitializationParametersTest {
     assertThat(initParameters.getServiceClasses()).containsExactly(String.class, Integer.class);
   }
 
+  @Test
+  public void testFromServletConfig_deadlines() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("deadlineHeader", " X-Timeout ");
+    servletConfig.initParameters.put("defaultTimeoutMillis", "2500");
+    ServletInitializationParameters initParameters =
+        ServletInitializationParameters.fromServletConfig(
+            servletConfig, getClass().getClassLoader());
+    assertThat(initParameters.getDeadlineHeader()).isEqualTo("X-Timeout");
+    assertThat(initParameters.getDefaultTimeoutMillis()).isEqualTo(2500);
+  }
+
+  @Test
+  public void testFromServletConfig_invalidTimeoutThrows() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("defaultTimeoutMillis", "-1");
+    try {
+      ServletInitializationParameters.fromServletConfig(
+          servletConfig, getClass().getClassLoader());
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFromServletConfig_startup() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("startupThreads", " 8 ");
+    servletConfig.initParameters.put("lazyServices", "true");
+    servletConfig.initParameters.put("warmLazyServices", "true");
+    servletConfig.initParameters.put("warmSerializers", "true");
+    servletConfig.initParameters.put("warmSerializersSynthetic", "TRUE");
+    ServletInitializationParameters initParameters =
+        ServletInitializationParameters.fromServletConfig(
+            servletConfig, getClass().getClassLoader());
+    assertThat(initParameters.getStartupThreads()).isEqualTo(8);
+    assertThat(initParameters.isLazyServicesEnabled()).isTrue();
+    assertThat(initParameters.isWarmLazyServicesEnabled()).isTrue();
+    assertThat(initParameters.isWarmSerializersEnabled()).isTrue();
+    assertThat(initParameters.isWarmSerializersSyntheticEnabled()).isTrue();
+  }
+
+  @Test
+  public void testFromServletConfig_openApiPath() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("openApiPath", " openapi.json ");
+    ServletInitializationParameters initParameters =
+        ServletInitializationParameters.fromServletConfig(
+            servletConfig, getClass().getClassLoader());
+    assertThat(initParameters.getOpenApiPath()).isEqualTo("openapi.json");
+    assertThat(initParameters.asMap().get("openApiPath")).isEqualTo("openapi.json");
+  }
+
+  @Test
+  public void testFromServletConfig_discoveryCacheDirectory() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("discoveryCacheDirectory", " /tmp/discovery ");
+    ServletInitializationParameters initParameters =
+        ServletInitializationParameters.fromServletConfig(
+            servletConfig, getClass().getClassLoader());
+    assertThat(initParameters.getDiscoveryCacheDirectory()).isEqualTo("/tmp/discovery");
+    assertThat(initParameters.asMap().get("discoveryCacheDirectory")).isEqualTo("/tmp/discovery");
+  }
+
+  @Test
+  public void testFromServletConfig_requestSamples() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("requestSamplesPath", " admin/samples ");
+    servletConfig.initParameters.put("slowRequestThresholdMillis", "250");
+    servletConfig.initParameters.put("requestSamplesPerMethod", "5");
+    ServletInitializationParameters initParameters =
+        ServletInitializationParameters.fromServletConfig(
+            servletConfig, getClass().getClassLoader());
+    assertThat(initParameters.getRequestSamplesPath()).isEqualTo("admin/samples");
+    assertThat(initParameters.getSlowRequestThresholdMillis()).isEqualTo(250);
+    assertThat(initParameters.getRequestSamplesPerMethod()).isEqualTo(5);
+    Map<String, String> map = initParameters.asMap();
+    assertThat(map.get("requestSamplesPath")).isEqualTo("admin/samples");
+    assertThat(map.get("slowRequestThresholdMillis")).isEqualTo("250");
+    assertThat(map.get("requestSamplesPerMethod")).isEqualTo("5");
+  }
+
+  @Test
+  public void testFromServletConfig_configReloadIntervalMillis() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("configReloadIntervalMillis", " 30000 ");
+    ServletInitializationParameters initParameters =
+        ServletInitializationParameters.fromServletConfig(
+            servletConfig, getClass().getClassLoader());
+    assertThat(initParameters.getConfigReloadIntervalMillis()).isEqualTo(30000);
+    assertThat(initParameters.asMap().get("configReloadIntervalMillis")).isEqualTo("30000");
+  }
+
+  @Test
+  public void testFromServletConfig_streams() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("maxOpenStreams", " 10 ");
+    servletConfig.initParameters.put("streamHeartbeatMillis", "0");
+    ServletInitializationParameters initParameters =
+        ServletInitializationParameters.fromServletConfig(
+            servletConfig, getClass().getClassLoader());
+    assertThat(initParameters.getMaxOpenStreams()).isEqualTo(10);
+    assertThat(initParameters.getStreamHeartbeatMillis()).isEqualTo(0);
+  }
+
+  @Test
+  public void testFromServletConfig_maxRequestBytes() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("maxRequestBytes", "10485760");
+    ServletInitializationParameters initParameters =
+        ServletInitializationParameters.fromServletConfig(
+            servletConfig, getClass().getClassLoader());
+    assertThat(initParameters.getMaxRequestBytes()).isEqualTo(10485760);
+  }
+
+  @Test
+  public void testFromServletConfig_idempotencyKeys() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("idempotencyKeyHeader", " X-Request-Id ");
+    servletConfig.initParameters.put("idempotencyKeyTtlMillis", "60000");
+    servletConfig.initParameters.put("idempotencyKeyMaxEntries", "50");
+    ServletInitializationParameters initParameters =
+        ServletInitializationParameters.fromServletConfig(
+            servletConfig, getClass().getClassLoader());
+    assertThat(initParameters.getIdempotencyKeyHeader()).isEqualTo("X-Request-Id");
+    assertThat(initParameters.getIdempotencyKeyTtlMillis()).isEqualTo(60000);
+    assertThat(initParameters.getIdempotencyKeyMaxEntries()).isEqualTo(50);
+  }
+
+  @Test
+  public void testFromServletConfig_invalidMaxOpenStreamsThrows() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("maxOpenStreams", "-1");
+    try {
+      ServletInitializationParameters.fromServletConfig(
+          servletConfig, getClass().getClassLoader());
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFromServletConfig_invalidStartupThreadsThrows() throws ServletException {
+    StubServletConfig servletConfig =
+        new StubServletConfig(null, null, null, null, null, null, null);
+    servletConfig.initParameters.put("startupThreads", "0");
+    try {
+      ServletInitializationParameters.fromServletConfig(
+          servletConfig, getClass().getClassLoader());
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
   @Test
   public void testFromServletConfig_invalidRestrictedThrows() throws ServletException {
     try {
@@ -175,7 +430,7 @@ public class ServletInitializationParametersTest {
       String isIllegalArgumentBackendError, String isExceptionCompatibilityEnabled,
       String isPrettyPrintEnabled, String isAddContentLength) {
     Map<String, String> map = initParameters.asMap();
-    assertThat(map).hasSize(7);
+    assertThat(map).hasSize(22);
     assertThat(map.get("services")).isEqualTo(serviceClasses);
     assertThat(map.get("restricted")).isEqualTo(isServletRestricted);
     assertThat(map.get("clientIdWhitelistEnabled")).isEqualTo(isClientIdWhitelistEnabled);
@@ -183,6 +438,21 @@ public class ServletInitializationParametersTest {
     assertThat(map.get("enableExceptionCompatibility")).isEqualTo(isExceptionCompatibilityEnabled);
     assertThat(map.get("prettyPrint")).isEqualTo(isPrettyPrintEnabled);
     assertThat(map.get("addContentLength")).isEqualTo(isAddContentLength);
+    assertThat(map.get("defaultTimeoutMillis")).isEqualTo("0");
+    assertThat(map.get("startupThreads")).isEqualTo("1");
+    assertThat(map.get("lazyServices")).isEqualTo("false");
+    assertThat(map.get("warmLazyServices")).isEqualTo("false");
+    assertThat(map.get("warmSerializers")).isEqualTo("false");
+    assertThat(map.get("warmSerializersSynthetic")).isEqualTo("false");
+    assertThat(map.get("maxOpenStreams")).isEqualTo("100");
+    assertThat(map.get("streamHeartbeatMillis")).isEqualTo("15000");
+    assertThat(map.get("maxRequestBytes")).isEqualTo("0");
+    assertThat(map.get("idempotencyKeyHeader")).isEqualTo("Idempotency-Key");
+    assertThat(map.get("idempotencyKeyTtlMillis")).isEqualTo("3600000");
+    assertThat(map.get("idempotencyKeyMaxEntries")).isEqualTo("1000");
+    assertThat(map.get("slowRequestThresholdMillis")).isEqualTo("1000");
+    assertThat(map.get("requestSamplesPerMethod")).isEqualTo("10");
+    assertThat(map.get("configReloadIntervalMillis")).isEqualTo("0");
   }
 
   private ServletInitializationParameters fromServletConfig(
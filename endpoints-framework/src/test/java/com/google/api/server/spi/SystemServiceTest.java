@@ -15,12 +15,40 @@
  */
 package com.google.api.server.spi;
 
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.api.server.spi.SystemService.ConfigReload;
+import com.google.api.server.spi.SystemService.EndpointNode;
+import com.google.api.server.spi.config.Api;
+import com.google.api.server.spi.config.ApiConfigException;
+import com.google.api.server.spi.config.ApiConfigSource;
+import com.google.api.server.spi.config.ApiMethod;
+import com.google.api.server.spi.config.model.ApiClassConfig.MethodConfigMap;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.ApiKey;
+import com.google.api.server.spi.config.model.ApiMethodConfig;
+import com.google.api.server.spi.config.validation.InconsistentApiConfigurationException;
 import com.google.api.server.spi.testing.Endpoint0;
+import com.google.api.server.spi.testing.EnumEndpoint;
+import com.google.api.server.spi.testing.Foo;
+import com.google.api.server.spi.testing.FooEndpoint;
+import com.google.api.server.spi.testing.LimitMetricsEndpoint;
+import com.google.api.server.spi.testing.MultipleParameterEndpoint;
+import com.google.api.server.spi.testing.NamespaceEndpoint;
 import com.google.api.server.spi.testing.TestEndpoint;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Tests for {@link SystemService}.
  */
@@ -35,4 +63,291 @@ public class SystemServiceTest extends BaseSystemServiceTest {
   protected Endpoint0 getTestService2() {
     return new Endpoint0();
   }
+
+  @Test
+  public void testLazyService_instantiatedOnFirstFind() throws Exception {
+    CountingFactory factory = new CountingFactory();
+    SystemService systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .addLazyService(TestEndpoint.class, factory)
+        .build();
+    assertThat(factory.count.get()).isEqualTo(0);
+    assertThat(systemService.resolveService(TestEndpoint.class.getName(), "succeed")).isNotNull();
+    assertThat(factory.count.get()).isEqualTo(0);
+
+    Object service = systemService.findService(TestEndpoint.class.getName());
+    assertThat(service).isInstanceOf(TestEndpoint.class);
+    assertThat(systemService.findService(TestEndpoint.class.getSimpleName())).isSameAs(service);
+    assertThat(systemService.findServiceMethod(service, "succeed").getName()).isEqualTo("succeed");
+    assertThat(factory.count.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testInstantiateLazyServices() throws Exception {
+    CountingFactory factory = new CountingFactory();
+    SystemService systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .addLazyService(TestEndpoint.class, factory)
+        .addService(FooEndpoint.class, new FooEndpoint())
+        .build();
+    assertThat(systemService.instantiateLazyServices()).isEqualTo(1);
+    assertThat(systemService.instantiateLazyServices()).isEqualTo(0);
+    assertThat(factory.count.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testBuild_parallelMatchesSerial() throws Exception {
+    List<Object> services = ImmutableList.<Object>of(new TestEndpoint(), new FooEndpoint(),
+        new MultipleParameterEndpoint(), new EnumEndpoint(), new NamespaceEndpoint(),
+        new LimitMetricsEndpoint());
+    SystemService serial = buildSystemService(services, 1);
+    SystemService parallel = buildSystemService(services, 4);
+    assertThat(getRestMethods(parallel)).containsExactlyElementsIn(getRestMethods(serial));
+  }
+
+  @Test
+  public void testGetApiConfigs_memoized() throws Exception {
+    SystemService systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .addService(FooEndpoint.class, new FooEndpoint())
+        .build();
+    Map<ApiKey, String> configs = systemService.getApiConfigs();
+    assertThat(systemService.getApiConfigs()).isSameAs(configs);
+  }
+
+  @Test
+  public void testGetApiConfigs_regeneratedAfterUpdate() throws Exception {
+    SystemService systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .addService(FooEndpoint.class, new FooEndpoint())
+        .build();
+    Map<ApiKey, String> configs = systemService.getApiConfigs();
+    EndpointNode node = getExternalEndpoint(systemService);
+    ApiConfig newConfig = new ApiConfig.Factory().copy(node.getConfig());
+    newConfig.setVersion("v2");
+    systemService.updateEndpointConfig(node.getEndpoint(), newConfig, node);
+
+    Map<ApiKey, String> updatedConfigs = systemService.getApiConfigs();
+    assertThat(updatedConfigs).isNotSameAs(configs);
+    assertThat(updatedConfigs).containsKey(newConfig.getApiKey());
+    assertThat(updatedConfigs).doesNotContainKey(node.getConfig().getApiKey());
+  }
+
+  @Test
+  public void testReloadEndpointConfigs() throws Exception {
+    DescriptionConfigSource configSource = new DescriptionConfigSource("first");
+    SystemService systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .setStandardConfigLoader(getClass().getClassLoader(), configSource)
+        .addService(FooEndpoint.class, new FooEndpoint())
+        .build();
+    EndpointNode node = getExternalEndpoint(systemService);
+    assertThat(systemService.reloadEndpointConfigs()).isEmpty();
+
+    configSource.description = "second";
+    List<EndpointNode> updatedNodes = systemService.reloadEndpointConfigs();
+
+    assertThat(updatedNodes).hasSize(1);
+    EndpointNode updatedNode = getExternalEndpoint(systemService);
+    assertThat(updatedNodes.get(0)).isSameAs(updatedNode);
+    assertThat(updatedNode.getConfig().getDescription()).isEqualTo("second");
+    assertThat(updatedNode.getEndpoint()).isSameAs(node.getEndpoint());
+    assertThat(node.getConfig().getDescription()).isEqualTo("first");
+  }
+
+  @Test
+  public void testReloadEndpointConfigs_invalidConfigKeepsPrevious() throws Exception {
+    DescriptionConfigSource configSource = new DescriptionConfigSource("first");
+    SystemService systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .setStandardConfigLoader(getClass().getClassLoader(), configSource)
+        .addService(FooEndpoint.class, new FooEndpoint())
+        .build();
+    EndpointNode node = getExternalEndpoint(systemService);
+
+    configSource.apiName = "Not a valid name";
+    try {
+      systemService.reloadEndpointConfigs();
+      fail("expected ApiConfigException");
+    } catch (ApiConfigException expected) {
+      // expected
+    }
+    assertThat(getExternalEndpoint(systemService)).isSameAs(node);
+  }
+
+  @Test
+  public void testReloadEndpointConfigs_inconsistentApiKeepsPrevious() throws Exception {
+    DescriptionConfigSource configSource = new DescriptionConfigSource("first");
+    SystemService systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .setStandardConfigLoader(getClass().getClassLoader(), configSource)
+        .addService(SharedApiFirst.class, new SharedApiFirst())
+        .addService(SharedApiSecond.class, new SharedApiSecond())
+        .build();
+    List<EndpointNode> nodes = systemService.getEndpoints();
+
+    // Each class is valid on its own, but the API is not once the descriptions differ.
+    configSource.endpointClass = SharedApiSecond.class;
+    configSource.description = "second";
+    try {
+      systemService.reloadEndpointConfigs();
+      fail("expected InconsistentApiConfigurationException");
+    } catch (InconsistentApiConfigurationException expected) {
+      // expected
+    }
+    assertThat(systemService.getEndpoints()).containsExactlyElementsIn(nodes).inOrder();
+
+    configSource.endpointClass = null;
+    assertThat(systemService.reloadEndpointConfigs()).hasSize(2);
+  }
+
+  @Test
+  public void testPrepareConfigReload_appliedOnCommit() throws Exception {
+    DescriptionConfigSource configSource = new DescriptionConfigSource("first");
+    SystemService systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .setStandardConfigLoader(getClass().getClassLoader(), configSource)
+        .addService(FooEndpoint.class, new FooEndpoint())
+        .build();
+    EndpointNode node = getExternalEndpoint(systemService);
+    assertThat(systemService.prepareConfigReload().isEmpty()).isTrue();
+
+    configSource.description = "second";
+    ConfigReload reload = systemService.prepareConfigReload();
+
+    assertThat(reload.isEmpty()).isFalse();
+    assertThat(getExternalEndpoint(systemService)).isSameAs(node);
+    List<EndpointNode> updatedNodes = systemService.commitConfigReload(reload);
+    assertThat(updatedNodes).hasSize(1);
+    assertThat(getExternalEndpoint(systemService)).isSameAs(updatedNodes.get(0));
+    assertThat(reload.getEndpoints()).contains(updatedNodes.get(0));
+    assertThat(updatedNodes.get(0).getConfig().getDescription()).isEqualTo("second");
+  }
+
+  @Test
+  public void testCommitConfigReload_staleReloadRejected() throws Exception {
+    DescriptionConfigSource configSource = new DescriptionConfigSource("first");
+    SystemService systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .setStandardConfigLoader(getClass().getClassLoader(), configSource)
+        .addService(FooEndpoint.class, new FooEndpoint())
+        .build();
+    configSource.description = "second";
+    ConfigReload staleReload = systemService.prepareConfigReload();
+    configSource.description = "third";
+    EndpointNode node = systemService.reloadEndpointConfigs().get(0);
+
+    try {
+      systemService.commitConfigReload(staleReload);
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+    assertThat(getExternalEndpoint(systemService)).isSameAs(node);
+  }
+
+  @Test
+  public void testReloadEndpointConfigs_staticConfigsSkipped() throws Exception {
+    SystemService systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .addService(FooEndpoint.class, new FooEndpoint())
+        .build();
+    EndpointNode node = getExternalEndpoint(systemService);
+
+    assertThat(systemService.reloadEndpointConfigs()).isEmpty();
+    assertThat(getExternalEndpoint(systemService)).isSameAs(node);
+  }
+
+  private static EndpointNode getExternalEndpoint(SystemService systemService) {
+    for (EndpointNode node : systemService.getEndpoints()) {
+      if (node.isExternalEndpoint()) {
+        return node;
+      }
+    }
+    throw new AssertionError("no external endpoint registered");
+  }
+
+  private SystemService buildSystemService(List<Object> services, int startupThreads)
+      throws Exception {
+    SystemService.Builder builder = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .setStartupThreads(startupThreads);
+    for (Object service : services) {
+      builder.addService(service.getClass(), service);
+    }
+    return builder.build();
+  }
+
+  private static List<String> getRestMethods(SystemService systemService) {
+    List<String> methods = new ArrayList<>();
+    for (EndpointNode node : systemService.getEndpoints()) {
+      for (ApiMethodConfig methodConfig
+          : node.getConfig().getApiClassConfig().getMethods().values()) {
+        methods.add(methodConfig.getFullMethodName() + " " + methodConfig.getHttpMethod() + " "
+            + methodConfig.getPath());
+      }
+    }
+    return methods;
+  }
+
+  /**
+   * A dynamic config source which overrides the description, and optionally the name, of APIs,
+   * optionally only for a single endpoint class.
+   */
+  private static class DescriptionConfigSource implements ApiConfigSource {
+    private volatile String description;
+    private volatile String apiName;
+    private volatile Class<?> endpointClass;
+
+    DescriptionConfigSource(String description) {
+      this.description = description;
+    }
+
+    @Override
+    public void loadEndpointClass(ServiceContext serviceContext, Class<?> endpointClass,
+        ApiConfig config) {
+      if (this.endpointClass != null && this.endpointClass != endpointClass) {
+        return;
+      }
+      config.setDescription(description);
+      if (apiName != null) {
+        config.setName(apiName);
+      }
+    }
+
+    @Override
+    public void loadEndpointMethods(ServiceContext serviceContext, Class<?> endpointClass,
+        MethodConfigMap methodConfigMap) {}
+
+    @Override
+    public boolean isStaticConfig(ApiConfig config) {
+      return false;
+    }
+  }
+
+  @Api(name = "shared", version = "v1")
+  public static class SharedApiFirst {
+    @ApiMethod(path = "first")
+    public Foo getFirst() {
+      return new Foo();
+    }
+  }
+
+  @Api(name = "shared", version = "v1")
+  public static class SharedApiSecond {
+    @ApiMethod(path = "second")
+    public Foo getSecond() {
+      return new Foo();
+    }
+  }
+
+  private static class CountingFactory implements Supplier<TestEndpoint> {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public TestEndpoint get() {
+      count.incrementAndGet();
+      return new TestEndpoint();
+    }
+  }
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.server.spi.types.SimpleDate;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Tests for {@link ValueCodecs}, comparing it against the formatting and parsing it replaces.
+ */
+@RunWith(JUnit4.class)
+public class ValueCodecsTest {
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  @Test
+  public void formatLong() {
+    long[] values = {0, 1, -1, 9, 10, -10, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE,
+        Long.MIN_VALUE + 1};
+    char[] buffer = new char[32];
+    for (long value : values) {
+      assertThat(new String(buffer, 0, ValueCodecs.formatLong(value, buffer, 0)))
+          .isEqualTo(Long.toString(value));
+    }
+  }
+
+  @Test
+  public void formatRfc3339_matchesDateTime() {
+    Random random = new Random(42);
+    int[] shifts = {0, 60, -300, 330, -570, 840, -720};
+    char[] buffer = new char[32];
+    long min = new DateTime("1583-01-01T00:00:00Z").getValue();
+    long max = new DateTime("9999-12-31T00:00:00Z").getValue();
+    for (int i = 0; i < 10000; i++) {
+      long millis = min + (long) (random.nextDouble() * (max - min));
+      int shift = shifts[i % shifts.length];
+      int length = ValueCodecs.formatRfc3339(millis, shift, buffer, 0);
+      assertThat(new String(buffer, 0, length))
+          .isEqualTo(new DateTime(millis, shift).toStringRfc3339());
+    }
+  }
+
+  @Test
+  public void formatRfc3339_outsideFastRange() {
+    char[] buffer = new char[32];
+    assertThat(ValueCodecs.formatRfc3339(
+        new DateTime("1582-10-15T00:00:00Z").getValue(), 0, buffer, 0)).isEqualTo(-1);
+    long max = new DateTime("9999-12-31T23:59:59.999Z").getValue();
+    assertThat(ValueCodecs.formatRfc3339(max, 0, buffer, 0)).isEqualTo(24);
+    assertThat(ValueCodecs.formatRfc3339(max + 1, 0, buffer, 0)).isEqualTo(-1);
+    assertThat(ValueCodecs.formatRfc3339(max, 60, buffer, 0)).isEqualTo(-1);
+  }
+
+  @Test
+  public void parseRfc3339_matchesDateTime() {
+    String[] values = {
+        "2019-06-01", "2019-06-01T12:34:56Z", "2019-06-01t12:34:56z", "2019-06-01T12:34:56.789Z",
+        "2019-06-01T12:34:56.007+05:30", "2019-06-01T12:34:56-08:00", "2019-06-01T12:34:56",
+        "2019-02-30T00:00:00Z", "2019-06-00", "1583-01-01T00:00:00+01:00", "2000-02-29T23:59:59Z",
+        "9999-12-31T23:59:59.999-05:00", "1970-01-01T00:00:00Z", "1969-12-31T23:59:59.999Z",
+        "2019-06-01T25:61:61Z",
+    };
+    for (String value : values) {
+      assertThat(parse(value)).named(value).isEqualTo(new DateTime(value).getValue());
+    }
+  }
+
+  @Test
+  public void parseRfc3339_delegated() {
+    String[] values = {
+        "2019-06-01T12:34:56.5Z", "2019-06-01T12:34:56.123456Z", "1500-01-01", "2019-13-01",
+        "2019-06-01Z", "2019-06-01T12:34Z", "2019-06-01T12:34:56+0530", "2019/06/01", "",
+        "2019-06-01T12:34:56.Z", "20190601",
+    };
+    for (String value : values) {
+      assertThat(parse(value)).named(value).isEqualTo(Long.MIN_VALUE);
+    }
+  }
+
+  @Test
+  public void writeDate() throws IOException {
+    TimeZone defaultTimeZone = TimeZone.getDefault();
+    try {
+      for (String zone : new String[] {"UTC", "America/New_York", "Asia/Kolkata"}) {
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        for (Date date : new Date[] {new Date(0), new Date(1560000000123L), new Date(-1L << 45)}) {
+          StringWriter writer = new StringWriter();
+          JsonGenerator generator = FACTORY.createGenerator(writer);
+          ValueCodecs.writeDate(date, generator);
+          generator.close();
+          assertThat(writer.toString())
+              .isEqualTo('"' + new DateTime(date).toStringRfc3339() + '"');
+        }
+      }
+    } finally {
+      TimeZone.setDefault(defaultTimeZone);
+    }
+  }
+
+  @Test
+  public void writeSimpleDate() throws IOException {
+    StringWriter writer = new StringWriter();
+    JsonGenerator generator = FACTORY.createGenerator(writer);
+    ValueCodecs.writeSimpleDate(new SimpleDate(7, 3, 9), generator);
+    generator.close();
+    assertThat(writer.toString()).isEqualTo("\"0007-03-09\"");
+  }
+
+  @Test
+  public void readSimpleDate() throws IOException {
+    assertThat(readSimpleDate("\" 2019-06-01\\n\"")).isEqualTo(new SimpleDate(2019, 6, 1));
+    for (String invalid : new String[] {"\"2019-6-01\"", "\"2019-02-30\"", "20190601"}) {
+      try {
+        readSimpleDate(invalid);
+        fail("expected IllegalArgumentException for " + invalid);
+      } catch (IllegalArgumentException expected) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void readDate() throws IOException {
+    JsonParser parser = FACTORY.createParser("[\"2019-06-01T12:34:56.5Z\", \"2019-06-01\"]");
+    parser.setCodec(ObjectMapperUtil.createStandardObjectMapper());
+    parser.nextToken();
+    parser.nextToken();
+    assertThat(ValueCodecs.readDate(parser).getTime())
+        .isEqualTo(new DateTime("2019-06-01T12:34:56.5Z").getValue());
+    parser.nextToken();
+    assertThat(ValueCodecs.readDate(parser).getTime())
+        .isEqualTo(new DateTime("2019-06-01").getValue());
+  }
+
+  private static long parse(String value) {
+    return ValueCodecs.parseRfc3339(value.toCharArray(), 0, value.length());
+  }
+
+  private static SimpleDate readSimpleDate(String json) throws IOException {
+    JsonParser parser = FACTORY.createParser(json);
+    parser.setCodec(ObjectMapperUtil.createStandardObjectMapper());
+    parser.nextToken();
+    return ValueCodecs.readSimpleDate(parser);
+  }
+}
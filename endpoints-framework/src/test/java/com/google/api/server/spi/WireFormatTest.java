@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link WireFormat}.
+ */
+@RunWith(JUnit4.class)
+public class WireFormatTest {
+  private MockHttpServletRequest request;
+
+  @Before
+  public void setUp() {
+    request = new MockHttpServletRequest();
+  }
+
+  @Test
+  public void createFactory_pooledBuffers() {
+    for (WireFormat format : WireFormat.values()) {
+      ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper(null, format);
+      assertThat(PooledBufferRecycler.isPooled(mapper.getFactory())).isTrue();
+      assertThat(PooledBufferRecycler.isPooled(mapper.copy().getFactory())).isTrue();
+    }
+  }
+
+  @Test
+  public void forRequest_default() {
+    assertThat(WireFormat.forRequest(request)).isEqualTo(WireFormat.JSON);
+    request.setContentType("text/plain");
+    assertThat(WireFormat.forRequest(request)).isEqualTo(WireFormat.JSON);
+  }
+
+  @Test
+  public void forRequest_contentType() {
+    request.setContentType("application/x-jackson-smile");
+    assertThat(WireFormat.forRequest(request)).isEqualTo(WireFormat.SMILE);
+    request.setContentType("Application/CBOR; foo=bar");
+    assertThat(WireFormat.forRequest(request)).isEqualTo(WireFormat.CBOR);
+    request.setContentType(SystemService.MIME_JSON);
+    assertThat(WireFormat.forRequest(request)).isEqualTo(WireFormat.JSON);
+  }
+
+  @Test
+  public void forResponse_default() {
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.JSON);
+    request.addHeader("Accept", "*/*");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.JSON);
+  }
+
+  @Test
+  public void forResponse_accept() {
+    request.addHeader("Accept", "text/html, application/cbor, application/json;q=0.9");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.CBOR);
+  }
+
+  @Test
+  public void forResponse_acceptHighestQuality() {
+    request.addHeader("Accept", "text/html, application/cbor;q=0.9, application/json");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.JSON);
+  }
+
+  @Test
+  public void forResponse_acceptQualityZero() {
+    request.addHeader("Accept", "application/cbor;q=0, application/json");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.JSON);
+  }
+
+  @Test
+  public void forResponse_acceptQualityZeroOnly() {
+    request.addHeader("Accept", "application/x-jackson-smile; Q=0.0");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.JSON);
+  }
+
+  @Test
+  public void forResponse_acceptWildcard() {
+    request.addHeader("Accept", "application/cbor;q=0.5, */*");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.JSON);
+  }
+
+  @Test
+  public void forResponse_acceptWildcardLowerQuality() {
+    request.addHeader("Accept", "*/*;q=0.1, application/cbor;q=0.5");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.CBOR);
+  }
+
+  @Test
+  public void forResponse_acceptJsonFirst() {
+    request.addHeader("Accept", "application/json, application/x-jackson-smile");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.JSON);
+  }
+
+  @Test
+  public void forResponse_altOverridesAccept() {
+    request.addHeader("Accept", "application/cbor");
+    request.setParameter("alt", "smile");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.SMILE);
+    request.setParameter("alt", "json");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.JSON);
+  }
+
+  @Test
+  public void forResponse_unknownAlt() {
+    request.addHeader("Accept", "application/cbor");
+    request.setParameter("alt", "proto");
+    assertThat(WireFormat.forResponse(request)).isEqualTo(WireFormat.CBOR);
+  }
+
+  @Test
+  public void roundTrip() throws Exception {
+    ObjectMapper jsonMapper = ObjectMapperUtil.createStandardObjectMapper();
+    List<Item> items = createItems();
+    String expected = jsonMapper.writeValueAsString(items);
+    for (WireFormat format : WireFormat.values()) {
+      ObjectMapper mapper = ObjectMapperUtil.createStandardObjectMapper(null, format);
+      byte[] bytes = mapper.writeValueAsBytes(items);
+      assertThat(jsonMapper.writeValueAsString(mapper.readValue(bytes, Item[].class)))
+          .isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void binaryPayloadsAreSmaller() throws Exception {
+    List<Item> items = createItems();
+    int jsonSize = ObjectMapperUtil.createStandardObjectMapper(null, WireFormat.JSON)
+        .writeValueAsBytes(items).length;
+    int smileSize = ObjectMapperUtil.createStandardObjectMapper(null, WireFormat.SMILE)
+        .writeValueAsBytes(items).length;
+    int cborSize = ObjectMapperUtil.createStandardObjectMapper(null, WireFormat.CBOR)
+        .writeValueAsBytes(items).length;
+    assertThat(smileSize).isLessThan(jsonSize);
+    assertThat(cborSize).isLessThan(jsonSize);
+  }
+
+  private static List<Item> createItems() {
+    List<Item> items = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Item item = new Item();
+      item.id = 1000000L + i;
+      item.name = "item" + i;
+      item.score = i / 3.0;
+      item.active = i % 2 == 0;
+      items.add(item);
+    }
+    return items;
+  }
+
+  public static class Item {
+    public long id;
+    public String name;
+    public double score;
+    public boolean active;
+  }
+}
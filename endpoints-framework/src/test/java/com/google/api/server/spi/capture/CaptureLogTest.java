@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.capture;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableListMultimap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link CaptureLogWriter} and {@link CaptureLogReader}.
+ */
+@RunWith(JUnit4.class)
+public class CaptureLogTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void roundTrip() throws IOException {
+    File dir = tmpFolder.newFolder();
+    CaptureRecord record = new CaptureRecord(1234L, "POST", "/_ah/api/foo/v1/foos",
+        "alt=json&n=1", ImmutableListMultimap.of("Content-Type", "application/json",
+            "Accept", "a", "Accept", "b"), "{\"x\":1}".getBytes(StandardCharsets.UTF_8));
+    try (CaptureLogWriter writer = new CaptureLogWriter(dir, 1 << 20, 4)) {
+      writer.append(record);
+      writer.append(record("GET", 5678L));
+    }
+
+    List<CaptureRecord> records = readAll(dir);
+    assertThat(records).hasSize(2);
+    CaptureRecord read = records.get(0);
+    assertThat(read.getTimestampMillis()).isEqualTo(1234L);
+    assertThat(read.getMethod()).isEqualTo("POST");
+    assertThat(read.getRequestUri()).isEqualTo("/_ah/api/foo/v1/foos");
+    assertThat(read.getQueryString()).isEqualTo("alt=json&n=1");
+    assertThat(read.getHeaders()).isEqualTo(record.getHeaders());
+    assertThat(new String(read.getBody(), StandardCharsets.UTF_8)).isEqualTo("{\"x\":1}");
+    assertThat(records.get(1).getQueryString()).isNull();
+    assertThat(records.get(1).getBody()).hasLength(0);
+  }
+
+  @Test
+  public void rotation_boundsSegments() throws IOException {
+    File dir = tmpFolder.newFolder();
+    try (CaptureLogWriter writer = new CaptureLogWriter(dir, 200, 3)) {
+      for (int i = 0; i < 50; i++) {
+        writer.append(record("GET", i));
+      }
+    }
+
+    assertThat(CaptureLog.listSegments(dir)).hasSize(3);
+    List<CaptureRecord> records = readAll(dir);
+    assertThat(records).isNotEmpty();
+    assertThat(records.size()).isLessThan(50);
+    // The newest records are kept, in order.
+    assertThat(records.get(records.size() - 1).getTimestampMillis()).isEqualTo(49L);
+    for (int i = 1; i < records.size(); i++) {
+      assertThat(records.get(i).getTimestampMillis())
+          .isEqualTo(records.get(i - 1).getTimestampMillis() + 1);
+    }
+  }
+
+  @Test
+  public void reopen_startsNewSegment() throws IOException {
+    File dir = tmpFolder.newFolder();
+    try (CaptureLogWriter writer = new CaptureLogWriter(dir, 1 << 20, 4)) {
+      writer.append(record("GET", 1));
+    }
+    try (CaptureLogWriter writer = new CaptureLogWriter(dir, 1 << 20, 4)) {
+      writer.append(record("GET", 2));
+    }
+
+    assertThat(CaptureLog.listSegments(dir)).hasSize(2);
+    assertThat(readAll(dir)).hasSize(2);
+  }
+
+  @Test
+  public void truncatedRecord_endsSegment() throws IOException {
+    File dir = tmpFolder.newFolder();
+    try (CaptureLogWriter writer = new CaptureLogWriter(dir, 1 << 20, 4)) {
+      writer.append(record("GET", 1));
+      writer.append(record("GET", 2));
+    }
+    File segment = CaptureLog.listSegments(dir).get(0);
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      file.setLength(file.length() - 3);
+    }
+
+    List<CaptureRecord> records = readAll(segment);
+    assertThat(records).hasSize(1);
+    assertThat(records.get(0).getTimestampMillis()).isEqualTo(1L);
+  }
+
+  @Test
+  public void notACaptureLog() throws IOException {
+    File file = tmpFolder.newFile();
+    try (CaptureLogReader reader = CaptureLogReader.open(file)) {
+      reader.read();
+      fail("expected IOException");
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("not a capture log");
+    }
+  }
+
+  private static CaptureRecord record(String method, long timestampMillis) {
+    return new CaptureRecord(timestampMillis, method, "/_ah/api/foo/v1/foos", null,
+        ImmutableListMultimap.<String, String>of(), new byte[0]);
+  }
+
+  private static List<CaptureRecord> readAll(File path) throws IOException {
+    List<CaptureRecord> records = new ArrayList<>();
+    try (CaptureLogReader reader = CaptureLogReader.open(path)) {
+      CaptureRecord record;
+      while ((record = reader.read()) != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+}
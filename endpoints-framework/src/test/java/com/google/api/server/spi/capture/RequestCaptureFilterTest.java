@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.capture;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * Tests for {@link RequestCaptureFilter}.
+ */
+@RunWith(JUnit4.class)
+public class RequestCaptureFilterTest {
+  private static final String BODY = "{\"x\": 1}";
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private File captureDirectory;
+  private MockFilterConfig config;
+  private RecordingChain chain;
+
+  @Before
+  public void setUp() throws IOException {
+    captureDirectory = tmpFolder.newFolder();
+    config = new MockFilterConfig();
+    config.addInitParameter(RequestCaptureFilter.CAPTURE_DIRECTORY, captureDirectory.getPath());
+    config.addInitParameter(RequestCaptureFilter.SAMPLE_RATE, "1");
+    chain = new RecordingChain();
+  }
+
+  @Test
+  public void capturesRequest() throws Exception {
+    run(createRequest());
+
+    assertThat(chain.body).isEqualTo(BODY);
+    List<CaptureRecord> records = readAll();
+    assertThat(records).hasSize(1);
+    CaptureRecord record = records.get(0);
+    assertThat(record.getMethod()).isEqualTo("POST");
+    assertThat(record.getRequestUri()).isEqualTo("/_ah/api/foo/v1/foos");
+    assertThat(record.getQueryString()).isEqualTo("n=1");
+    assertThat(new String(record.getBody(), StandardCharsets.UTF_8)).isEqualTo(BODY);
+    assertThat(record.getHeaders().get("Content-Type")).containsExactly("application/json");
+    assertThat(record.getHeaders().get("Authorization")).containsExactly(CaptureRecord.REDACTED);
+    assertThat(record.getHeaders().containsKey("Cookie")).isFalse();
+  }
+
+  @Test
+  public void redaction_configurable() throws Exception {
+    config.addInitParameter(RequestCaptureFilter.REDACTED_HEADERS, "");
+
+    run(createRequest());
+
+    assertThat(readAll().get(0).getHeaders().get("Authorization"))
+        .containsExactly("Bearer token");
+  }
+
+  @Test
+  public void redactsQueryParameters() throws Exception {
+    MockHttpServletRequest request = createRequest();
+    request.setQueryString("n=1&key=secret&Access_Token=abc&access%5Ftoken=abc&bearer_token");
+
+    run(request);
+
+    assertThat(readAll().get(0).getQueryString()).isEqualTo("n=1&key=%3Credacted%3E"
+        + "&Access_Token=%3Credacted%3E&access%5Ftoken=%3Credacted%3E&bearer_token=%3Credacted%3E");
+  }
+
+  @Test
+  public void queryParameterRedaction_configurable() throws Exception {
+    config.addInitParameter(RequestCaptureFilter.REDACTED_QUERY_PARAMETERS, "n");
+    MockHttpServletRequest request = createRequest();
+    request.setQueryString("n=1&key=secret");
+
+    run(request);
+
+    assertThat(readAll().get(0).getQueryString()).isEqualTo("n=%3Credacted%3E&key=secret");
+  }
+
+  @Test
+  public void sampleRate_zero() throws Exception {
+    config.addInitParameter(RequestCaptureFilter.SAMPLE_RATE, "0");
+
+    run(createRequest());
+
+    assertThat(chain.body).isEqualTo(BODY);
+    assertThat(readAll()).isEmpty();
+  }
+
+  @Test
+  public void bodyTooLarge_notCaptured() throws Exception {
+    config.addInitParameter(RequestCaptureFilter.MAX_BODY_BYTES, "4");
+
+    run(createRequest());
+
+    assertThat(chain.body).isEqualTo(BODY);
+    assertThat(readAll()).isEmpty();
+  }
+
+  @Test
+  public void formRequest_notCaptured() throws Exception {
+    MockHttpServletRequest request = createRequest();
+    request.setContentType("application/x-www-form-urlencoded");
+
+    run(request);
+
+    assertThat(readAll()).isEmpty();
+  }
+
+  @Test
+  public void missingDirectory() {
+    try {
+      new RequestCaptureFilter().init(new MockFilterConfig());
+      fail("expected ServletException");
+    } catch (ServletException e) {
+      assertThat(e.getMessage()).contains(RequestCaptureFilter.CAPTURE_DIRECTORY);
+    }
+  }
+
+  @Test
+  public void invalidSampleRate() {
+    config.addInitParameter(RequestCaptureFilter.SAMPLE_RATE, "2");
+    try {
+      new RequestCaptureFilter().init(config);
+      fail("expected ServletException");
+    } catch (ServletException e) {
+      assertThat(e.getMessage()).contains(RequestCaptureFilter.SAMPLE_RATE);
+    }
+  }
+
+  private void run(MockHttpServletRequest request) throws IOException, ServletException {
+    RequestCaptureFilter filter = new RequestCaptureFilter();
+    filter.init(config);
+    filter.doFilter(request, new MockHttpServletResponse(), chain);
+    filter.destroy();
+  }
+
+  private static MockHttpServletRequest createRequest() {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/_ah/api/foo/v1/foos");
+    request.setQueryString("n=1");
+    request.setContentType("application/json");
+    request.addHeader("Content-Type", "application/json");
+    request.addHeader("Authorization", "Bearer token");
+    request.addHeader("Cookie", "session=1");
+    request.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+    return request;
+  }
+
+  private List<CaptureRecord> readAll() throws IOException {
+    List<CaptureRecord> records = new ArrayList<>();
+    try (CaptureLogReader reader = CaptureLogReader.open(captureDirectory)) {
+      CaptureRecord record;
+      while ((record = reader.read()) != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  private static class RecordingChain implements FilterChain {
+    private String body;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+      body = new String(ByteStreams.toByteArray(request.getInputStream()), StandardCharsets.UTF_8);
+    }
+  }
+}
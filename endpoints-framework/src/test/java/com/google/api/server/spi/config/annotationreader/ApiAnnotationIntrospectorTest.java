@@ -29,6 +29,7 @@ import com.google.api.server.spi.config.ApiTransformer;
 import com.google.api.server.spi.config.ResourcePropertySchema;
 import com.google.api.server.spi.config.ResourceSchema;
 import com.google.api.server.spi.config.ResourceTransformer;
+import com.google.api.server.spi.config.StreamingTransformer;
 import com.google.api.server.spi.config.Transformer;
 import com.google.api.server.spi.config.model.ApiConfig;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
@@ -36,9 +37,13 @@ import com.google.api.server.spi.testing.DefaultValueSerializer;
 import com.google.api.server.spi.testing.TestEndpoint;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.reflect.TypeToken;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -47,6 +52,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -264,6 +271,22 @@ public class ApiAnnotationIntrospectorTest {
     assertEquals("test2", value.getFoo());
   }
 
+  @Test
+  public void testStreamingSerialization() throws Exception {
+    String json = objectMapper.writeValueAsString(
+        ImmutableList.of(new TestStreamingSerialized(1), new TestStreamingSerialized(2)));
+    assertEquals("[\"id-1\",\"id-2\"]", json);
+  }
+
+  @Test
+  public void testStreamingDeserialization() throws Exception {
+    List<TestStreamingSerialized> value = objectMapper.readValue("[\"id-3\",\"id-4\"]",
+        new TypeReference<List<TestStreamingSerialized>>() {});
+    assertEquals(2, value.size());
+    assertEquals(3, value.get(0).id);
+    assertEquals(4, value.get(1).id);
+  }
+
   @Test
   public void testApiSerializationToComplex() throws Exception {
     String json = objectMapper.writeValueAsString(new TestApiSerializationToComplex());
@@ -494,6 +517,42 @@ public class ApiAnnotationIntrospectorTest {
     }
   }
 
+  @ApiTransformer(TestStreamingSerializedConverter.class)
+  public static class TestStreamingSerialized {
+    private final int id;
+
+    public TestStreamingSerialized(int id) {
+      this.id = id;
+    }
+  }
+
+  /**
+   * Fails if the non-streaming methods are used, to check that the streaming ones are preferred.
+   */
+  public static class TestStreamingSerializedConverter
+      implements StreamingTransformer<TestStreamingSerialized, String> {
+
+    @Override
+    public void write(TestStreamingSerialized value, JsonGenerator generator) throws IOException {
+      generator.writeString("id-" + value.id);
+    }
+
+    @Override
+    public TestStreamingSerialized read(JsonParser parser) throws IOException {
+      return new TestStreamingSerialized(Integer.parseInt(parser.getText().substring(3)));
+    }
+
+    @Override
+    public String transformTo(TestStreamingSerialized in) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TestStreamingSerialized transformFrom(String in) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   public static class Complex {
     private String bar;
 
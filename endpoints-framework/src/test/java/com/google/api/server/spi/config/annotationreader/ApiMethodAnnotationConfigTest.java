@@ -16,12 +16,14 @@
 package com.google.api.server.spi.config.annotationreader;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.google.api.server.spi.EndpointMethod;
 import com.google.api.server.spi.TypeLoader;
 import com.google.api.server.spi.auth.EndpointsAuthenticator;
 import com.google.api.server.spi.auth.EndpointsPeerAuthenticator;
+import com.google.api.server.spi.config.AnnotationBoolean;
 import com.google.api.server.spi.config.Api;
 import com.google.api.server.spi.config.AuthLevel;
 import com.google.api.server.spi.config.Authenticator;
@@ -154,6 +156,35 @@ public class ApiMethodAnnotationConfigTest {
     assertEquals("foo", config.getName());
   }
 
+  @Test
+  public void testSetIdempotencyKeyEnabledIfSpecified() {
+    assertFalse(config.isIdempotencyKeyEnabled());
+    annotationConfig.setIdempotencyKeyEnabledIfSpecified(AnnotationBoolean.TRUE);
+    assertTrue(config.isIdempotencyKeyEnabled());
+    annotationConfig.setIdempotencyKeyEnabledIfSpecified(AnnotationBoolean.UNSPECIFIED);
+    assertTrue(config.isIdempotencyKeyEnabled());
+    annotationConfig.setIdempotencyKeyEnabledIfSpecified(AnnotationBoolean.FALSE);
+    assertFalse(config.isIdempotencyKeyEnabled());
+  }
+
+  @Test
+  public void testSetMaxRequestBytesIfSpecified() {
+    assertEquals(0, config.getMaxRequestBytes());
+    annotationConfig.setMaxRequestBytesIfSpecified(4096);
+    assertEquals(4096, config.getMaxRequestBytes());
+    annotationConfig.setMaxRequestBytesIfSpecified(0);
+    assertEquals(4096, config.getMaxRequestBytes());
+  }
+
+  @Test
+  public void testSetTimeoutMillisIfSpecified() {
+    assertEquals(0, config.getTimeoutMillis());
+    annotationConfig.setTimeoutMillisIfSpecified(1500);
+    assertEquals(1500, config.getTimeoutMillis());
+    annotationConfig.setTimeoutMillisIfSpecified(0);
+    assertEquals(1500, config.getTimeoutMillis());
+  }
+
   @Test
   public void testSetDescriptionIfNotEmpty() {
     annotationConfig.setDescriptionIfNotEmpty("bleh");
@@ -23,6 +23,7 @@ import com.google.api.server.spi.TypeLoader;
 import com.google.api.server.spi.config.AuthLevel;
 import com.google.api.server.spi.config.scope.AuthScopeExpression;
 import com.google.api.server.spi.config.scope.AuthScopeExpressions;
+import com.google.api.server.spi.response.MediaResponse;
 import com.google.api.server.spi.testing.TestEndpoint;
 import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeToken;
@@ -108,6 +109,31 @@ public class ApiMethodConfigTest {
     assertEquals("className.getResultNoParams", methodConfig.getName());
   }
 
+  @Test
+  public void hasResourceInResponse() throws Exception {
+    Mockito.doReturn(TypeToken.of(String.class)).when(method).getReturnType();
+    methodConfig = new ApiMethodConfig(method, new TypeLoader(), apiClassConfig);
+    assertThat(methodConfig.hasResourceInResponse()).isTrue();
+  }
+
+  @Test
+  public void hasResourceInResponse_media() throws Exception {
+    Mockito.doReturn(TypeToken.of(MediaResponse.class)).when(method).getReturnType();
+    methodConfig = new ApiMethodConfig(method, new TypeLoader(), apiClassConfig);
+    assertThat(methodConfig.hasResourceInResponse()).isFalse();
+  }
+
+  @Test
+  public void copy_keepsAuthLevel() {
+    methodConfig.setAuthLevel(AuthLevel.REQUIRED);
+    ApiMethodConfig copy = new ApiMethodConfig(methodConfig, apiClassConfig);
+    assertThat(copy.getAuthLevel()).isEqualTo(AuthLevel.REQUIRED);
+    assertThat(copy).isEqualTo(methodConfig);
+
+    copy.setAuthLevel(AuthLevel.OPTIONAL);
+    assertThat(copy).isNotEqualTo(methodConfig);
+  }
+
   @Test
   public void addInjectedParameter_notInPath() {
     methodConfig.addParameter("alt", null, false, null, TypeToken.of(String.class));
@@ -11,8 +11,11 @@ import com.google.api.server.spi.ServiceContext;
 import com.google.api.server.spi.TypeLoader;
 import com.google.api.server.spi.config.Api;
 import com.google.api.server.spi.config.ApiConfigLoader;
+import com.google.api.server.spi.config.ResourceSchema;
 import com.google.api.server.spi.config.Transformer;
 import com.google.api.server.spi.config.annotationreader.ApiConfigAnnotationReader;
+import com.google.api.server.spi.config.jsonwriter.JacksonResourceSchemaProvider;
+import com.google.api.server.spi.config.jsonwriter.ResourceSchemaProvider;
 import com.google.api.server.spi.config.model.ApiParameterConfig.Classification;
 import com.google.api.server.spi.config.model.Schema.Field;
 import com.google.api.server.spi.config.model.Schema.SchemaReference;
@@ -20,14 +23,23 @@ import com.google.api.server.spi.response.CollectionResponse;
 import com.google.api.server.spi.testing.EnumEndpoint;
 import com.google.api.server.spi.testing.EnumValue;
 import com.google.api.server.spi.testing.TestEnum;
+import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.TypeParameter;
 import com.google.common.reflect.TypeToken;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link SchemaRepository}.
@@ -285,6 +297,94 @@ public class SchemaRepositoryTest {
             .build());
   }
 
+  @Test
+  public void getOrAdd_countsReuse() throws Exception {
+    TypeToken<EnumValue> type = new TypeToken<EnumValue>() {};
+    Schema schema = repo.getOrAdd(type, config);
+    // EnumValue and its TestEnum field.
+    assertThat(repo.getComputedCount()).isEqualTo(2);
+    assertThat(repo.getReusedCount()).isEqualTo(0);
+
+    assertThat(repo.getOrAdd(type, config)).isSameAs(schema);
+    assertThat(repo.getComputedCount()).isEqualTo(2);
+    assertThat(repo.getReusedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void getOrAdd_concurrent() throws Exception {
+    final ApiConfig config2 =
+        configLoader.loadConfiguration(ServiceContext.create(), EnumEndpoint.class);
+    final List<TypeToken<?>> types = new ArrayList<>();
+    types.add(new TypeToken<EnumValue>() {});
+    types.add(new TypeToken<Parameterized<Integer>>() {});
+    types.add(TypeToken.of(SelfReferencingObject.class));
+    types.add(new TypeToken<Map<String, TestEnum>>() {});
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Callable<Schema>> tasks = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        final TypeToken<?> type = types.get(i % types.size());
+        final ApiConfig apiConfig = (i / types.size()) % 2 == 0 ? config : config2;
+        tasks.add(new Callable<Schema>() {
+          @Override
+          public Schema call() {
+            return repo.getOrAdd(type, apiConfig);
+          }
+        });
+      }
+      for (Future<Schema> future : executor.invokeAll(tasks)) {
+        assertThat(future.get()).isNotNull();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    for (TypeToken<?> type : types) {
+      assertThat(repo.get(type, config)).isNotNull();
+      assertThat(repo.get(type, config2)).isNotNull();
+    }
+    assertThat(repo.getComputedCount() + repo.getReusedCount()).isAtLeast(64L);
+    assertThat(repo.getAllSchemaForApi(config2.getApiKey()))
+        .contains(repo.get(types.get(0), config2));
+  }
+
+  @Test
+  public void getOrAdd_computesIndependentTypesConcurrently() throws Exception {
+    final CyclicBarrier barrier = new CyclicBarrier(2);
+    final ResourceSchemaProvider delegate = new JacksonResourceSchemaProvider();
+    // Each type's computation waits until the other one is in progress too.
+    repo = new SchemaRepository(new TypeLoader(getClass().getClassLoader()),
+        new ResourceSchemaProvider() {
+          @Override
+          public ResourceSchema getResourceSchema(TypeToken<?> type, ApiConfig config) {
+            try {
+              barrier.await(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+              throw new AssertionError("types were not computed concurrently: " + e);
+            }
+            return delegate.getResourceSchema(type, config);
+          }
+        });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<Schema>> futures = new ArrayList<>();
+      for (final TypeToken<?> type : ImmutableList.of(
+          new TypeToken<EnumValue>() {}, TypeToken.of(SelfReferencingObject.class))) {
+        futures.add(executor.submit(new Callable<Schema>() {
+          @Override
+          public Schema call() {
+            return repo.getOrAdd(type, config);
+          }
+        }));
+      }
+      for (Future<Schema> future : futures) {
+        assertThat(future.get()).isNotNull();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(repo.getAllSchemaForApi(config.getApiKey())).hasSize(3);
+  }
+
   @Api(transformers = {ParameterizedShortTransformer.class})
   private static class FooEndpoint {
     public Parameterized<Integer> setParameterized(Parameterized<Integer> p) {
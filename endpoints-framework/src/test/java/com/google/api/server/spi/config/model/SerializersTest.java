@@ -16,7 +16,9 @@
 package com.google.api.server.spi.config.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import com.google.api.server.spi.config.Transformer;
@@ -100,6 +102,16 @@ public class SerializersTest {
     assertEquals(42, serializer.transformTo("").intValue());
   }
 
+  @Test
+  public void testInstantiate_sharedPerSourceType() {
+    Transformer<List<?>, Type> serializer =
+        Serializers.instantiate(ListToTypeSerializer.class, TypeToken.of(ImmutableList.class));
+    assertSame(serializer,
+        Serializers.instantiate(ListToTypeSerializer.class, TypeToken.of(ImmutableList.class)));
+    assertNotSame(serializer,
+        Serializers.instantiate(ListToTypeSerializer.class, TypeToken.of(List.class)));
+  }
+
   @Test
   public void testInstantiate_invalid() {
     try {
@@ -162,6 +162,42 @@ public class ApiConfigValidatorTest {
       fail();
     } catch (DuplicateRestPathException expected) {
     }
+    try {
+      validator.validateApiWide(Lists.newArrayList(config1, config2));
+      fail();
+    } catch (DuplicateRestPathException expected) {
+    }
+  }
+
+  @Test
+  public void testValidateApiWide_inconsistentApiWideConfig() throws Exception {
+    @Api(name = "testApi", version = "v1", resource = "foo")
+    final class Test1 {}
+    ApiConfig config1 = configLoader.loadConfiguration(ServiceContext.create(), Test1.class);
+
+    @Api(name = "testApi", version = "v1", resource = "bar")
+    final class Test2 {}
+    ApiConfig config2 = configLoader.loadConfiguration(ServiceContext.create(), Test2.class);
+
+    try {
+      validator.validateApiWide(Lists.newArrayList(config1, config2));
+      fail("Expected InconsistentApiConfigurationException.");
+    } catch (InconsistentApiConfigurationException expected) {
+    }
+  }
+
+  @Test
+  public void testValidateApiWide_skipsMethods() throws Exception {
+    config.getApiClassConfig().getMethods()
+        .get(methodToEndpointMethod(TestEndpoint.class.getMethod("getResultNoParams")))
+        .addParameter(null, null, false, null, TypeToken.of(String.class));
+
+    validator.validateApiWide(ImmutableList.of(config));
+    try {
+      validator.validate(config);
+      fail("Expected MissingParameterNameException.");
+    } catch (MissingParameterNameException expected) {
+    }
   }
 
   @Test
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.discovery;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.server.spi.Client;
+import com.google.api.server.spi.ServiceContext;
+import com.google.api.server.spi.TypeLoader;
+import com.google.api.server.spi.config.ApiConfigLoader;
+import com.google.api.server.spi.config.annotationreader.ApiConfigAnnotationReader;
+import com.google.api.server.spi.config.jsonwriter.JsonConfigWriter;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.ApiKey;
+import com.google.api.server.spi.config.model.SchemaRepository;
+import com.google.api.server.spi.config.validation.ApiConfigValidator;
+import com.google.api.server.spi.discovery.DiscoveryGenerator.DiscoveryContext;
+import com.google.api.server.spi.testing.FooEndpoint;
+import com.google.api.server.spi.testing.SimpleLevelOverridingApi;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Tests for {@link DiscoveryDocumentCache}.
+ */
+@RunWith(JUnit4.class)
+public class DiscoveryDocumentCacheTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private final JsonFactory jsonFactory = Client.getInstance().getJsonFactory();
+  private File directory;
+  private TypeLoader typeLoader;
+  private ApiConfigLoader configLoader;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = new File(tmpFolder.getRoot(), "cache");
+    typeLoader = new TypeLoader(getClass().getClassLoader());
+    configLoader = new ApiConfigLoader(new ApiConfig.Factory(), typeLoader,
+        new ApiConfigAnnotationReader(typeLoader.getAnnotationTypes()));
+  }
+
+  @Test
+  public void computeKey_stableAcrossLoads() throws Exception {
+    assertThat(computeKey(FooEndpoint.class)).isEqualTo(computeKey(FooEndpoint.class));
+  }
+
+  @Test
+  public void computeKey_changesWithApi() throws Exception {
+    assertThat(computeKey(FooEndpoint.class))
+        .isNotEqualTo(computeKey(SimpleLevelOverridingApi.class));
+  }
+
+  @Test
+  public void storeAndLoad() throws Exception {
+    SchemaRepository repository = new SchemaRepository(typeLoader);
+    ImmutableList<ApiConfig> configs = loadConfigs(FooEndpoint.class);
+    DiscoveryDocumentCache cache = createCache(repository);
+    String key = cache.computeKey(configs, repository);
+    DiscoveryGenerator.Result result = new DiscoveryGenerator(typeLoader)
+        .writeDiscovery(configs, new DiscoveryContext(), repository);
+
+    assertThat(cache.load(key)).isNull();
+    cache.store(key, result.discoveryDocs(), result.directory());
+    DiscoveryDocumentCache.Documents documents = cache.load(key);
+
+    assertThat(documents).isNotNull();
+    for (Map.Entry<ApiKey, ?> entry : result.discoveryDocs().entrySet()) {
+      ApiKey apiKey = entry.getKey();
+      assertThat(jsonFactory.toString(documents.getRestDocument(
+          new ApiKey(apiKey.getName(), apiKey.getVersion(), null /* root */))))
+          .isEqualTo(jsonFactory.toString(entry.getValue()));
+    }
+    assertThat(jsonFactory.toString(documents.getDirectoryList()))
+        .isEqualTo(jsonFactory.toString(result.directory()));
+    assertThat(documents.getRestDocument(new ApiKey("unknown", "v1", null /* root */))).isNull();
+    assertThat(directory.list()).asList().containsExactly(key + ".discovery");
+  }
+
+  @Test
+  public void load_corruptFile() throws Exception {
+    directory.mkdirs();
+    Files.write(new byte[] {1, 2, 3}, new File(directory, "key.discovery"));
+
+    assertThat(createCache(new SchemaRepository(typeLoader)).load("key")).isNull();
+  }
+
+  @Test
+  public void load_truncatedFile() throws Exception {
+    SchemaRepository repository = new SchemaRepository(typeLoader);
+    ImmutableList<ApiConfig> configs = loadConfigs(FooEndpoint.class);
+    DiscoveryDocumentCache cache = createCache(repository);
+    DiscoveryGenerator.Result result = new DiscoveryGenerator(typeLoader)
+        .writeDiscovery(configs, new DiscoveryContext(), repository);
+    cache.store("key", result.discoveryDocs(), result.directory());
+    File file = new File(directory, "key.discovery");
+    byte[] bytes = Files.toByteArray(file);
+    Files.write(Arrays.copyOf(bytes, bytes.length / 2), file);
+
+    assertThat(cache.load("key")).isNull();
+  }
+
+  private String computeKey(Class<?> serviceClass) throws Exception {
+    SchemaRepository repository = new SchemaRepository(typeLoader);
+    return createCache(repository).computeKey(loadConfigs(serviceClass), repository);
+  }
+
+  private DiscoveryDocumentCache createCache(SchemaRepository repository) throws Exception {
+    return new DiscoveryDocumentCache(directory,
+        new JsonConfigWriter(typeLoader, new ApiConfigValidator(typeLoader, repository)));
+  }
+
+  private ImmutableList<ApiConfig> loadConfigs(Class<?> serviceClass) throws Exception {
+    return ImmutableList.of(configLoader.loadConfiguration(ServiceContext.create(), serviceClass));
+  }
+}
@@ -5,8 +5,11 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.api.server.spi.config.jsonwriter.JsonConfigWriter;
 import com.google.api.server.spi.config.model.ApiConfig;
 import com.google.api.server.spi.config.model.ApiKey;
 import com.google.api.server.spi.config.model.SchemaRepository;
@@ -21,7 +24,9 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -35,6 +40,7 @@ public class LocalDiscoveryProviderTest {
   private static final String NAME = "foo";
   private static final String VERSION = "v1";
 
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
   @Mock private DiscoveryGenerator generator;
   @Mock private SchemaRepository repository;
   private LocalDiscoveryProvider provider;
@@ -84,6 +90,55 @@ public class LocalDiscoveryProviderTest {
         .isEqualTo("https://root.appspot.com/api/discovery/v1/apis/foo/v1/rest");
   }
 
+  @Test
+  public void getRestDocument_memoizedPerRoot() throws Exception {
+    RestDescription doc = provider.getRestDocument(ROOT, NAME, VERSION);
+    RestDescription otherDoc = provider.getRestDocument("https://other.appspot.com/api", NAME,
+        VERSION);
+    assertThat(provider.getRestDocument(ROOT, NAME, VERSION)).isSameAs(doc);
+    assertThat(otherDoc.getRootUrl()).isEqualTo("https://other.appspot.com/api/");
+    verify(generator, times(1)).writeDiscovery(
+        anyListOf(ApiConfig.class), any(DiscoveryContext.class), eq(repository));
+  }
+
+  @Test
+  public void getRestDocument_rootIsLiteral() throws Exception {
+    RestDescription doc = provider.getRestDocument("https://root.appspot.com/$1", NAME, VERSION);
+    assertThat(doc.getRootUrl()).isEqualTo("https://root.appspot.com/$1/");
+  }
+
+  @Test
+  public void getDirectory_memoizedPerRoot() throws Exception {
+    DirectoryList directory = provider.getDirectory(ROOT);
+    provider.getRestDocument(ROOT, NAME, VERSION);
+    assertThat(provider.getDirectory(ROOT)).isSameAs(directory);
+    assertThat(provider.getDirectory(ROOT + "/").getItems().get(0).getDiscoveryRestUrl())
+        .isEqualTo("https://root.appspot.com/api/discovery/v1/apis/foo/v1/rest");
+    verify(generator, times(1)).writeDiscovery(
+        anyListOf(ApiConfig.class), any(DiscoveryContext.class), eq(repository));
+  }
+
+  @Test
+  public void getRestDocument_loadedFromDocumentCache() throws Exception {
+    DiscoveryDocumentCache cache =
+        new DiscoveryDocumentCache(tmpFolder.getRoot(), new JsonConfigWriter());
+    LocalDiscoveryProvider cachingProvider = new LocalDiscoveryProvider(
+        ImmutableList.<ApiConfig>of(), generator, repository, cache);
+    RestDescription doc = cachingProvider.getRestDocument(ROOT, NAME, VERSION);
+
+    LocalDiscoveryProvider restartedProvider = new LocalDiscoveryProvider(
+        ImmutableList.<ApiConfig>of(), generator, repository, cache);
+    RestDescription cachedDoc = restartedProvider.getRestDocument(ROOT, NAME, VERSION);
+    DirectoryList directory = restartedProvider.getDirectory(ROOT);
+
+    assertThat(cachedDoc.getBaseUrl()).isEqualTo(doc.getBaseUrl());
+    assertThat(cachedDoc.getRootUrl()).isEqualTo(doc.getRootUrl());
+    assertThat(directory.getItems().get(0).getDiscoveryRestUrl())
+        .isEqualTo("https://root.appspot.com/api/discovery/v1/apis/foo/v1/rest");
+    verify(generator, times(1)).writeDiscovery(
+        anyListOf(ApiConfig.class), any(DiscoveryContext.class), eq(repository));
+  }
+
   private static RestDescription getPlaceholderDoc() {
     return new RestDescription()
         .setBaseUrl("https://placeholder.appspot.com/_ah/api/root/v1/")
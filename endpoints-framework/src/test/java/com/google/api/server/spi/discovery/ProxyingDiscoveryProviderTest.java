@@ -19,6 +19,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -85,6 +86,9 @@ public class ProxyingDiscoveryProviderTest {
   @Mock private GenerateDirectory directoryRequest;
   @Mock private ApiConfigWriter configWriter;
 
+  private ApiConfig rewrittenApiConfig1;
+  private ApiConfig rewrittenApiConfig2;
+  private ApiConfig rewrittenApiConfig3;
   private ProxyingDiscoveryProvider provider;
 
   @Before
@@ -95,9 +99,9 @@ public class ProxyingDiscoveryProviderTest {
     ApiConfig apiConfig2 = loader.loadConfiguration(context, TestApi2.class);
     ApiConfig apiConfig3 = loader.loadConfiguration(context, TestApiV2.class);
     ApiConfig.Factory factory = new ApiConfig.Factory();
-    ApiConfig rewrittenApiConfig1 = factory.copy(apiConfig1);
-    ApiConfig rewrittenApiConfig2 = factory.copy(apiConfig2);
-    ApiConfig rewrittenApiConfig3 = factory.copy(apiConfig3);
+    rewrittenApiConfig1 = factory.copy(apiConfig1);
+    rewrittenApiConfig2 = factory.copy(apiConfig2);
+    rewrittenApiConfig3 = factory.copy(apiConfig3);
     rewrittenApiConfig1.setRoot(REWRITTEN_ROOT);
     rewrittenApiConfig2.setRoot(REWRITTEN_ROOT);
     rewrittenApiConfig3.setRoot(REWRITTEN_ROOT);
@@ -134,6 +138,21 @@ public class ProxyingDiscoveryProviderTest {
         new com.google.api.services.discovery.model.ApiConfig().setConfig(V1_JSON_API_CONFIG));
   }
 
+  @Test
+  public void getRestDocument_configGeneratedOncePerRoot() throws Exception {
+    when(restRequest.execute()).thenReturn(REST_DOC);
+    when(rpcRequest.execute()).thenReturn(RPC_DOC);
+
+    provider.getRestDocument(REWRITTEN_ROOT, NAME, V1);
+    provider.getRestDocument(REWRITTEN_ROOT, NAME, V1);
+    provider.getRpcDocument(REWRITTEN_ROOT, NAME, V1);
+
+    verify(configWriter, times(1))
+        .writeConfig(withConfigs(rewrittenApiConfig1, rewrittenApiConfig2));
+    verify(apis, times(2)).generateRest(
+        new com.google.api.services.discovery.model.ApiConfig().setConfig(V1_JSON_API_CONFIG));
+  }
+
   @Test
   public void getRestDocument_notFound() throws Exception {
     try {
@@ -199,6 +218,18 @@ public class ProxyingDiscoveryProviderTest {
     verify(apis).generateDirectory(withConfigs(V1_JSON_API_CONFIG, V2_JSON_API_CONFIG));
   }
 
+  @Test
+  public void getDirectory_configsGeneratedOncePerRoot() throws Exception {
+    when(directoryRequest.execute()).thenReturn(DIRECTORY);
+
+    provider.getDirectory(REWRITTEN_ROOT);
+    provider.getDirectory(REWRITTEN_ROOT);
+
+    verify(configWriter, times(1)).writeConfig(
+        withConfigs(rewrittenApiConfig1, rewrittenApiConfig2, rewrittenApiConfig3));
+    verify(apis, times(2)).generateDirectory(withConfigs(V1_JSON_API_CONFIG, V2_JSON_API_CONFIG));
+  }
+
   @Test
   public void getDirectory_internalServerError() throws Exception {
     when(directoryRequest.execute()).thenThrow(new IOException());
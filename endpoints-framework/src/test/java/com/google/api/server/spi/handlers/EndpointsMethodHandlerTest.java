@@ -19,23 +19,40 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.google.api.server.spi.EndpointMethod;
 import com.google.api.server.spi.EndpointsContext;
+import com.google.api.server.spi.IoUtil;
 import com.google.api.server.spi.ServiceContext;
+import com.google.api.server.spi.ServiceException;
 import com.google.api.server.spi.ServletInitializationParameters;
 import com.google.api.server.spi.SystemService;
 import com.google.api.server.spi.TypeLoader;
+import com.google.api.server.spi.auth.common.User;
 import com.google.api.server.spi.config.Api;
 import com.google.api.server.spi.config.ApiMethod;
+import com.google.api.server.spi.config.Authenticator;
 import com.google.api.server.spi.config.model.ApiConfig;
 import com.google.api.server.spi.config.model.ApiMethodConfig;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
+import com.google.api.server.spi.request.Attribute;
+import com.google.api.server.spi.request.Deadline;
 import com.google.api.server.spi.request.FakeParamReader;
 import com.google.api.server.spi.request.ParamReader;
+import com.google.api.server.spi.request.RequestSample;
+import com.google.api.server.spi.request.RequestSampler;
+import com.google.api.server.spi.request.RequestSampler.MethodSampler;
+import com.google.api.server.spi.response.BadRequestException;
 import com.google.api.server.spi.response.ErrorResultWriter;
+import com.google.api.server.spi.response.EventStreams;
+import com.google.api.server.spi.response.IdempotencyStore;
+import com.google.api.server.spi.response.InMemoryIdempotencyStore;
 import com.google.api.server.spi.response.NotFoundException;
 import com.google.api.server.spi.response.ResultWriter;
 import com.google.api.server.spi.response.SuccessResultWriter;
 import com.google.api.server.spi.testing.ArrayEndpoint;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -44,6 +61,12 @@ import org.junit.runners.JUnit4;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 /**
@@ -112,6 +135,33 @@ public class EndpointsMethodHandlerTest {
     handler.getRestHandler().handle(context);
   }
 
+  @Test
+  public void requestSampler_recordsError() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "simple");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    systemService = SystemService.builder()
+        .withDefaults(classLoader)
+        .addService(ArrayEndpoint.class, new ArrayEndpoint())
+        .build();
+    RequestSampler requestSampler = new RequestSampler(0, 5);
+    EndpointsMethodHandler handler = new EndpointsMethodHandler(
+        ServletInitializationParameters.builder().build(), null /* servletContext */, method,
+        methodConfig, systemService, new EventStreams(0, 0), null, requestSampler);
+    request.addHeader("Content-Length", "7");
+
+    handler.getRestHandler().handle(context);
+
+    MethodSampler sampler = requestSampler.forMethod(methodConfig.getFullMethodName());
+    assertThat(sampler.getRequestCount()).isEqualTo(1);
+    RequestSample sample = sampler.getSlowest().get(0);
+    assertThat(sample.getStatus()).isEqualTo(response.getStatus());
+    assertThat(sample.getRequestBytes()).isEqualTo(7);
+    assertThat(sample.getResponseBytes()).isEqualTo(response.getContentAsByteArray().length);
+    assertThat(sample.getInvocationNanos()).isEqualTo(0);
+    assertThat(request.getAttribute(Attribute.REQUEST_TIMINGS)).isNotNull();
+  }
+
   @Test
   public void rootMethodHandler() throws Exception {
     EndpointMethod method = systemService.resolveService("TestEndpoint", "root");
@@ -124,6 +174,265 @@ public class EndpointsMethodHandlerTest {
     assertThat(handler.getRestPath()).isEqualTo("root");
   }
 
+  @Test
+  public void deadline_expiredBeforeInvocation() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "simple");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    TestMethodHandler handler = new TestMethodHandler(
+        ServletInitializationParameters.builder().setDeadlineHeader("X-Timeout").build(), method,
+        methodConfig, systemService, RESOURCE, RESOURCE);
+    request.addHeader("X-Timeout", "0");
+    handler.getRestHandler().handle(context);
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    assertThat(response.getContentAsString()).contains("deadlineExceeded");
+    assertThat(handler.getDeadlineExceededCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void deadline_expiredBeforeHandled() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "simple");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    methodConfig.setTimeoutMillis(10);
+    TestMethodHandler handler = new TestMethodHandler(
+        ServletInitializationParameters.builder().build(), method, methodConfig, systemService,
+        RESOURCE, RESOURCE);
+    // The request waits longer than its timeout between being received and being handled.
+    Thread.sleep(20);
+    handler.getRestHandler().handle(context);
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    assertThat(response.getContentAsString()).contains("deadlineExceeded");
+    assertThat(handler.getDeadlineExceededCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void deadline_expiredDuringInvocation() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "slow");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    methodConfig.setTimeoutMillis(1);
+    TestMethodHandler handler = new TestMethodHandler(
+        ServletInitializationParameters.builder().build(), method, methodConfig, systemService,
+        504);
+    handler.getRestHandler().handle(context);
+    assertThat(handler.getDeadlineExceededCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void deadline_notExpired() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "simple");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    TestMethodHandler handler = new TestMethodHandler(
+        ServletInitializationParameters.builder().setDefaultTimeoutMillis(60000).build(), method,
+        methodConfig, systemService, RESOURCE, RESOURCE);
+    handler.getRestHandler().handle(context);
+    assertThat(handler.getDeadlineExceededCount()).isEqualTo(0);
+    assertThat(request.getAttribute(Attribute.DEADLINE)).isInstanceOf(Deadline.class);
+  }
+
+  @Test
+  public void requestTooLarge_declaredLength() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "simple");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    TestMethodHandler handler = new TestMethodHandler(
+        ServletInitializationParameters.builder().setMaxRequestBytes(100).build(), method,
+        methodConfig, systemService, RESOURCE, RESOURCE);
+    request.addHeader("Content-Length", "5000000000");
+    handler.getRestHandler().handle(context);
+    assertThat(response.getStatus()).isEqualTo(413);
+    assertThat(response.getContentAsString()).contains("uploadTooLarge");
+    assertThat(handler.getRequestTooLargeCount()).isEqualTo(1);
+    assertThat(handler.getRequestBytesAvoided()).isEqualTo(5000000000L);
+  }
+
+  @Test
+  public void requestTooLarge_streamedBody() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "simple");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    EndpointsMethodHandler handler = new EndpointsMethodHandler(
+        ServletInitializationParameters.builder().setMaxRequestBytes(100).build(),
+        null /* servletContext */, method, methodConfig, systemService);
+    // No Content-Length header, so the body is only found to be too large while it is read.
+    request.setContent(("{\"x\": 1, \"padding\": \"" + Strings.repeat("a", 1000) + "\"}")
+        .getBytes(Charsets.UTF_8));
+    handler.getRestHandler().handle(context);
+    assertThat(response.getStatus()).isEqualTo(413);
+    assertThat(handler.getRequestTooLargeCount()).isEqualTo(1);
+    assertThat(handler.getRequestBytesAvoided()).isEqualTo(0);
+  }
+
+  @Test
+  public void requestTooLarge_methodOverride() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "simple");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    methodConfig.setMaxRequestBytes(1000);
+    TestMethodHandler handler = new TestMethodHandler(
+        ServletInitializationParameters.builder().setMaxRequestBytes(100).build(), method,
+        methodConfig, systemService, RESOURCE, RESOURCE);
+    request.addHeader("Content-Length", "500");
+    handler.getRestHandler().handle(context);
+    assertThat(handler.getRequestTooLargeCount()).isEqualTo(0);
+    // The body is still limited while it is read, in case the declared length is wrong.
+    assertThat(request.getAttribute(Attribute.MAX_REQUEST_BYTES)).isEqualTo(1000L);
+  }
+
+  @Test
+  public void requestTooLarge_unlimitedByDefault() throws Exception {
+    TestMethodHandler handler = createTestHandler("simple", RESOURCE, RESOURCE);
+    request.addHeader("Content-Length", "5000000000");
+    handler.getRestHandler().handle(context);
+    assertThat(handler.getRequestTooLargeCount()).isEqualTo(0);
+    assertThat(request.getAttribute(Attribute.MAX_REQUEST_BYTES)).isNull();
+  }
+
+  @Test
+  public void idempotencyKey_scopedByUser() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "withUser");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    methodConfig.setIdempotencyKeyEnabled(true);
+    ServletInitializationParameters initParameters = ServletInitializationParameters.builder()
+        .build();
+    User alice = new User("1", "alice@example.com");
+    User bob = new User("2", "bob@example.com");
+    IdempotencyStore store = new InMemoryIdempotencyStore(60000, 10);
+    TestMethodHandler aliceHandler = new TestMethodHandler(
+        initParameters, method, methodConfig, systemService, store, RESOURCE, alice);
+    TestMethodHandler bobHandler = new TestMethodHandler(
+        initParameters, method, methodConfig, systemService, store, RESOURCE, bob);
+    request.addHeader("Idempotency-Key", "key");
+
+    aliceHandler.getRestHandler().handle(context);
+    aliceHandler.getRestHandler().handle(context);
+    bobHandler.getRestHandler().handle(context);
+
+    assertThat(aliceHandler.getIdempotentReplayCount()).isEqualTo(1);
+    assertThat(bobHandler.getIdempotentReplayCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void idempotencyKey_scopedByAuthenticatedUserWithoutUserParameter() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "simple");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    methodConfig.setIdempotencyKeyEnabled(true);
+    methodConfig.setAuthenticators(
+        ImmutableList.<Class<? extends Authenticator>>of(HeaderAuthenticator.class));
+    TestMethodHandler handler = new TestMethodHandler(
+        ServletInitializationParameters.builder().build(), method, methodConfig, systemService,
+        RESOURCE, RESOURCE);
+
+    handler.getRestHandler().handle(createIdempotentContext("alice"));
+    handler.getRestHandler().handle(createIdempotentContext("bob"));
+    handler.getRestHandler().handle(createIdempotentContext(null));
+    assertThat(handler.getIdempotentReplayCount()).isEqualTo(0);
+
+    handler.getRestHandler().handle(createIdempotentContext("alice"));
+    assertThat(handler.getIdempotentReplayCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void idempotencyKey_reusedWithDifferentBody() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "simple");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    methodConfig.setIdempotencyKeyEnabled(true);
+    final List<Integer> errors = new ArrayList<>();
+    TestMethodHandler handler = new TestMethodHandler(
+        ServletInitializationParameters.builder().build(), method, methodConfig, systemService,
+        RESOURCE, RESOURCE) {
+      @Override
+      protected ParamReader createRestParamReader(final EndpointsContext context,
+          ApiSerializationConfig serializationConfig) {
+        final ParamReader params = super.createRestParamReader(context, serializationConfig);
+        return new ParamReader() {
+          @Override
+          public Object[] read() throws ServiceException {
+            try {
+              IoUtil.readRequestBody(context.getRequest());
+            } catch (IOException e) {
+              throw new BadRequestException(e);
+            }
+            return params.read();
+          }
+        };
+      }
+
+      @Override
+      protected ResultWriter createResultWriter(EndpointsContext context,
+          ApiSerializationConfig serializationConfig) {
+        final ResultWriter results = super.createResultWriter(context, serializationConfig);
+        return new ResultWriter() {
+          @Override
+          public void write(Object result) throws IOException {
+            results.write(result);
+          }
+
+          @Override
+          public void writeError(ServiceException e) {
+            errors.add(e.getStatusCode());
+          }
+        };
+      }
+    };
+
+    handler.getRestHandler().handle(createIdempotentContext(null, "{\"x\":1}"));
+    handler.getRestHandler().handle(createIdempotentContext(null, "{\"x\":2}"));
+    assertThat(errors).containsExactly(HttpServletResponse.SC_CONFLICT);
+    assertThat(handler.getIdempotentReplayCount()).isEqualTo(0);
+
+    handler.getRestHandler().handle(createIdempotentContext(null, "{\"x\":1}"));
+    assertThat(handler.getIdempotentReplayCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void idempotencyKey_disabled() throws Exception {
+    TestMethodHandler handler = createTestHandler("simple", RESOURCE, RESOURCE);
+    request.addHeader("Idempotency-Key", "key");
+
+    handler.getRestHandler().handle(context);
+    handler.getRestHandler().handle(context);
+
+    assertThat(handler.getIdempotentReplayCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void createDeadline() throws Exception {
+    EndpointMethod method = systemService.resolveService("TestEndpoint", "simple");
+    ApiMethodConfig methodConfig = new ApiMethodConfig(method, typeLoader,
+        apiConfig.getApiClassConfig());
+    ServletInitializationParameters initParameters = ServletInitializationParameters.builder()
+        .setDeadlineHeader("X-Timeout")
+        .setDefaultTimeoutMillis(60000)
+        .build();
+    TestMethodHandler handler = new TestMethodHandler(
+        initParameters, method, methodConfig, systemService, RESOURCE);
+    assertThat(handler.createDeadline(context).timeRemaining(TimeUnit.SECONDS))
+        .isIn(Range.closed(59L, 60L));
+
+    request.addHeader("X-Timeout", "5000");
+    assertThat(handler.createDeadline(context).timeRemaining(TimeUnit.SECONDS))
+        .isIn(Range.closed(4L, 5L));
+
+    methodConfig.setTimeoutMillis(1000);
+    handler = new TestMethodHandler(
+        initParameters, method, methodConfig, systemService, RESOURCE);
+    assertThat(handler.createDeadline(context).timeRemaining(TimeUnit.MILLISECONDS))
+        .isAtMost(1000L);
+  }
+
+  @Test
+  public void createDeadline_noTimeout() throws Exception {
+    TestMethodHandler handler = createTestHandler("simple", RESOURCE);
+    request.addHeader("X-Timeout", "0");
+    assertThat(handler.createDeadline(context).isSet()).isFalse();
+  }
+
   private TestMethodHandler createTestHandler(String methodName, Object expectedResponse,
       Object... params) throws Exception {
     EndpointMethod method = systemService.resolveService("TestEndpoint", methodName);
@@ -133,6 +442,33 @@ public class EndpointsMethodHandlerTest {
         methodConfig, systemService, expectedResponse, params);
   }
 
+  private static EndpointsContext createIdempotentContext(String user) {
+    return createIdempotentContext(user, "");
+  }
+
+  private static EndpointsContext createIdempotentContext(String user, String body) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContent(body.getBytes(Charsets.UTF_8));
+    request.addHeader("Idempotency-Key", "key");
+    if (user != null) {
+      request.addHeader(HeaderAuthenticator.USER_HEADER, user);
+    }
+    return new EndpointsContext("", "", request, new MockHttpServletResponse(), true);
+  }
+
+  /**
+   * Authenticates the user named by a request header, if any.
+   */
+  public static class HeaderAuthenticator implements Authenticator {
+    static final String USER_HEADER = "X-Test-User";
+
+    @Override
+    public User authenticate(HttpServletRequest request) {
+      String user = request.getHeader(USER_HEADER);
+      return user == null ? null : new User(user, user + "@example.com");
+    }
+  }
+
   private static class TestMethodHandler extends EndpointsMethodHandler {
     private final Object[] params;
     private final Object expectedResult;
@@ -143,8 +479,20 @@ public class EndpointsMethodHandlerTest {
         SystemService systemService,
         Object expectedResult,
         Object... params) {
+      this(initParameters, endpointMethod, methodConfig, systemService, null, expectedResult,
+          params);
+    }
+
+    public TestMethodHandler(
+        ServletInitializationParameters initParameters,
+        EndpointMethod endpointMethod,
+        ApiMethodConfig methodConfig,
+        SystemService systemService,
+        IdempotencyStore idempotencyStore,
+        Object expectedResult,
+        Object... params) {
       super(initParameters, null /* servletContext */, endpointMethod, methodConfig,
-          systemService);
+          systemService, new EventStreams(0, 0), idempotencyStore);
       this.params = params;
       this.expectedResult = expectedResult;
     }
@@ -187,5 +535,14 @@ public class EndpointsMethodHandlerTest {
 
     @ApiMethod(path = "/root")
     public void root() { }
+
+    public TestResource withUser(User user) {
+      return RESOURCE;
+    }
+
+    public TestResource slow() throws InterruptedException {
+      Thread.sleep(20);
+      return RESOURCE;
+    }
   }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.handlers;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.server.spi.EndpointsContext;
+import com.google.api.server.spi.ServiceContext;
+import com.google.api.server.spi.config.ApiConfigLoader;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.testing.FooEndpoint;
+import com.google.common.collect.ImmutableList;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tests for {@link OpenApiHandler}.
+ */
+@RunWith(JUnit4.class)
+public class OpenApiHandlerTest {
+  private OpenApiHandler handler;
+
+  @Before
+  public void setUp() throws Exception {
+    ApiConfig config =
+        new ApiConfigLoader().loadConfiguration(ServiceContext.create(), FooEndpoint.class);
+    handler = new OpenApiHandler(ImmutableList.of(config));
+  }
+
+  @Test
+  public void testHandle() throws Exception {
+    MockHttpServletResponse response = handle(createRequest("https", 443));
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    assertThat(response.getContentType()).startsWith("application/json");
+    assertThat(response.getHeader("ETag")).isNotNull();
+    JsonNode document = new ObjectMapper().readTree(response.getContentAsByteArray());
+    assertThat(document.get("swagger").asText()).isEqualTo("2.0");
+    assertThat(document.get("host").asText()).isEqualTo("localhost");
+    assertThat(document.get("basePath").asText()).isEqualTo("/_ah/api");
+    assertThat(document.get("schemes").get(0).asText()).isEqualTo("https");
+    assertThat(document.get("paths").has("/foo/v1/foos")).isTrue();
+  }
+
+  @Test
+  public void testHandle_perRoot() throws Exception {
+    MockHttpServletResponse first = handle(createRequest("http", 8080));
+    MockHttpServletResponse second = handle(createRequest("http", 8080));
+    MockHttpServletResponse other = handle(createRequest("https", 443));
+
+    assertThat(second.getHeader("ETag")).isEqualTo(first.getHeader("ETag"));
+    assertThat(other.getHeader("ETag")).isNotEqualTo(first.getHeader("ETag"));
+    JsonNode document = new ObjectMapper().readTree(first.getContentAsByteArray());
+    assertThat(document.get("host").asText()).isEqualTo("localhost:8080");
+  }
+
+  @Test
+  public void testHandle_notModified() throws Exception {
+    String etag = handle(createRequest("https", 443)).getHeader("ETag");
+    MockHttpServletRequest request = createRequest("https", 443);
+    request.addHeader("If-None-Match", "\"other\", " + etag);
+
+    MockHttpServletResponse response = handle(request);
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_NOT_MODIFIED);
+    assertThat(response.getHeader("ETag")).isEqualTo(etag);
+    assertThat(response.getContentAsByteArray()).isEmpty();
+  }
+
+  @Test
+  public void testMatchesETag() {
+    assertThat(OpenApiHandler.matchesETag(null, "\"a\"")).isFalse();
+    assertThat(OpenApiHandler.matchesETag("\"b\"", "\"a\"")).isFalse();
+    assertThat(OpenApiHandler.matchesETag("\"b\", \"a\"", "\"a\"")).isTrue();
+    assertThat(OpenApiHandler.matchesETag("W/\"a\"", "\"a\"")).isTrue();
+    assertThat(OpenApiHandler.matchesETag("*", "\"a\"")).isTrue();
+  }
+
+  private MockHttpServletResponse handle(MockHttpServletRequest request) throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    handler.handle(new EndpointsContext("GET", "openapi.json", request, response, true));
+    return response;
+  }
+
+  private static MockHttpServletRequest createRequest(String scheme, int port) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setScheme(scheme);
+    request.setServerName("localhost");
+    request.setServerPort(port);
+    request.setServletPath("/_ah/api");
+    request.setRequestURI("/_ah/api/openapi.json");
+    return request;
+  }
+}
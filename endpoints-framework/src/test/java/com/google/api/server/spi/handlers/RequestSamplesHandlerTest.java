@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.handlers;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.server.spi.EndpointsContext;
+import com.google.api.server.spi.ObjectMapperUtil;
+import com.google.api.server.spi.request.RequestSampler;
+import com.google.api.server.spi.request.RequestTimings;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link RequestSamplesHandler}.
+ */
+@RunWith(JUnit4.class)
+public class RequestSamplesHandlerTest {
+  @Test
+  public void handle() throws Exception {
+    RequestSampler requestSampler = new RequestSampler(10, 5);
+    RequestTimings timings = RequestTimings.start(
+        System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20), 12);
+    timings.endWrite(404, 34);
+    requestSampler.forMethod("myapi.foo.get").record(timings);
+    requestSampler.forMethod("myapi.foo.list");
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    new RequestSamplesHandler(requestSampler)
+        .handle(new EndpointsContext("GET", "samples", request, response, false));
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getHeader("Cache-Control")).isEqualTo("no-store");
+    JsonNode root = ObjectMapperUtil.createStandardObjectMapper()
+        .readTree(response.getContentAsString());
+    assertThat(root.get("thresholdMillis").asDouble()).isWithin(0).of(10.0);
+    JsonNode get = root.get("methods").get("myapi.foo.get");
+    assertThat(get.get("requestCount").asLong()).isEqualTo(1);
+    JsonNode slowest = get.get("slowest").get(0);
+    assertThat(slowest.get("totalMillis").asDouble()).isAtLeast(20.0);
+    assertThat(slowest.get("routingMillis").asDouble()).isAtLeast(20.0);
+    assertThat(slowest.get("status").asInt()).isEqualTo(404);
+    assertThat(slowest.get("requestBytes").asLong()).isEqualTo(12);
+    assertThat(slowest.get("responseBytes").asLong()).isEqualTo(34);
+    assertThat(get.get("recent")).hasSize(1);
+    JsonNode list = root.get("methods").get("myapi.foo.list");
+    assertThat(list.get("requestCount").asLong()).isEqualTo(0);
+    assertThat(list.get("slowest")).isEmpty();
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.request;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.api.server.spi.response.DeadlineExceededException;
+import com.google.common.testing.FakeTicker;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link Deadline}.
+ */
+@RunWith(JUnit4.class)
+public class DeadlineTest {
+  private FakeTicker ticker;
+
+  @Before
+  public void setUp() {
+    ticker = new FakeTicker();
+  }
+
+  @Test
+  public void none() throws Exception {
+    Deadline deadline = Deadline.none();
+    assertThat(deadline.isSet()).isFalse();
+    assertThat(deadline.isExpired()).isFalse();
+    assertThat(deadline.timeRemaining(TimeUnit.MILLISECONDS)).isEqualTo(Long.MAX_VALUE);
+    deadline.checkNotExpired();
+  }
+
+  @Test
+  public void after() throws Exception {
+    Deadline deadline = Deadline.after(100, TimeUnit.MILLISECONDS, ticker);
+    assertThat(deadline.isSet()).isTrue();
+    assertThat(deadline.isExpired()).isFalse();
+    assertThat(deadline.timeRemaining(TimeUnit.MILLISECONDS)).isEqualTo(100);
+    deadline.checkNotExpired();
+
+    ticker.advance(60, TimeUnit.MILLISECONDS);
+    assertThat(deadline.isExpired()).isFalse();
+    assertThat(deadline.timeRemaining(TimeUnit.MILLISECONDS)).isEqualTo(40);
+
+    ticker.advance(40, TimeUnit.MILLISECONDS);
+    assertThat(deadline.isExpired()).isTrue();
+    assertThat(deadline.timeRemaining(TimeUnit.MILLISECONDS)).isEqualTo(0);
+    try {
+      deadline.checkNotExpired();
+      fail("expected DeadlineExceededException");
+    } catch (DeadlineExceededException e) {
+      assertThat(e.getStatusCode()).isEqualTo(504);
+      assertThat(e.getReason()).isEqualTo("deadlineExceeded");
+    }
+  }
+
+  @Test
+  public void afterStart() {
+    long startNanos = ticker.read();
+    ticker.advance(60, TimeUnit.MILLISECONDS);
+    Deadline deadline = Deadline.afterStart(startNanos, 100, TimeUnit.MILLISECONDS, ticker);
+    assertThat(deadline.timeRemaining(TimeUnit.MILLISECONDS)).isEqualTo(40);
+
+    ticker.advance(40, TimeUnit.MILLISECONDS);
+    assertThat(deadline.isExpired()).isTrue();
+  }
+
+  @Test
+  public void after_zero() {
+    assertThat(Deadline.after(0, TimeUnit.MILLISECONDS, ticker).isExpired()).isTrue();
+  }
+
+  @Test
+  public void earliest() {
+    Deadline first = Deadline.after(1, TimeUnit.SECONDS, ticker);
+    Deadline second = Deadline.after(2, TimeUnit.SECONDS, ticker);
+    assertThat(first.earliest(second)).isSameAs(first);
+    assertThat(second.earliest(first)).isSameAs(first);
+    assertThat(first.earliest(Deadline.none())).isSameAs(first);
+    assertThat(Deadline.none().earliest(first)).isSameAs(first);
+    assertThat(Deadline.none().earliest(Deadline.none())).isSameAs(Deadline.none());
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.request;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.server.spi.request.RequestSampler.MethodSampler;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link RequestSampler} and {@link RequestTimings}.
+ */
+@RunWith(JUnit4.class)
+public class RequestSamplerTest {
+  @Test
+  public void timings_phases() throws Exception {
+    long startNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+    RequestTimings timings = RequestTimings.start(startNanos, 100);
+    timings.beginAuthentication();
+    timings.endAuthentication();
+    Object[] params = timings.timeReading(new FakeParamReader("a")).read();
+    timings.beginWrite();
+    timings.endWrite(200, 42);
+
+    assertThat(params).asList().containsExactly("a");
+    assertThat(timings.getRoutingNanos()).isAtLeast(TimeUnit.MILLISECONDS.toNanos(5));
+    assertThat(timings.getAuthenticationNanos()).isAtLeast(0L);
+    assertThat(timings.getParamReadNanos()).isAtLeast(0L);
+    assertThat(timings.getInvocationNanos()).isAtLeast(0L);
+    assertThat(timings.getWriteNanos()).isAtLeast(0L);
+    assertThat(timings.getTotalNanos()).isEqualTo(timings.getRoutingNanos()
+        + timings.getAuthenticationNanos() + timings.getParamReadNanos()
+        + timings.getInvocationNanos() + timings.getWriteNanos());
+    assertThat(timings.getRequestBytes()).isEqualTo(100);
+    assertThat(timings.getResponseBytes()).isEqualTo(42);
+    assertThat(timings.getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  public void timings_failedBeforeInvocation() {
+    RequestTimings timings = RequestTimings.start(System.nanoTime(), -1);
+    timings.finish();
+
+    assertThat(timings.getInvocationNanos()).isEqualTo(0);
+    assertThat(timings.getWriteNanos()).isEqualTo(0);
+    assertThat(timings.getStatus()).isEqualTo(0);
+    assertThat(timings.getResponseBytes()).isEqualTo(-1);
+  }
+
+  @Test
+  public void timings_reusedOnThread() {
+    RequestTimings first = RequestTimings.start(System.nanoTime(), 10);
+    first.endWrite(500, 10);
+    RequestTimings second = RequestTimings.start(System.nanoTime(), 20);
+
+    assertThat(second).isSameAs(first);
+    assertThat(second.getRequestBytes()).isEqualTo(20);
+    assertThat(second.getStatus()).isEqualTo(0);
+  }
+
+  @Test
+  public void record_belowThreshold() {
+    MethodSampler sampler = new RequestSampler(1000, 2).forMethod("myapi.foo");
+    sampler.record(createTimings(1, 200));
+
+    assertThat(sampler.getRequestCount()).isEqualTo(1);
+    assertThat(sampler.getSlowest()).isEmpty();
+    assertThat(sampler.getRecent()).hasSize(1);
+  }
+
+  @Test
+  public void record_keepsSlowest() {
+    MethodSampler sampler = new RequestSampler(10, 2).forMethod("myapi.foo");
+    sampler.record(createTimings(30, 200));
+    sampler.record(createTimings(50, 500));
+    sampler.record(createTimings(5, 200));
+    sampler.record(createTimings(20, 200));
+    sampler.record(createTimings(40, 200));
+
+    ImmutableList<RequestSample> slowest = sampler.getSlowest();
+    assertThat(slowest).hasSize(2);
+    assertThat(slowest.get(0).getTotalNanos()).isAtLeast(TimeUnit.MILLISECONDS.toNanos(50));
+    assertThat(slowest.get(0).getStatus()).isEqualTo(500);
+    assertThat(slowest.get(1).getTotalNanos()).isAtLeast(TimeUnit.MILLISECONDS.toNanos(40));
+    assertThat(slowest.get(1).getTotalNanos()).isLessThan(TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void record_recentIsBounded() {
+    MethodSampler sampler = new RequestSampler(1000, 2).forMethod("myapi.foo");
+    for (int i = 0; i < 40; i++) {
+      sampler.record(createTimings(1, 200));
+    }
+
+    assertThat(sampler.getRequestCount()).isEqualTo(40);
+    assertThat(sampler.getRecent()).hasSize(2);
+  }
+
+  @Test
+  public void record_concurrently() throws Exception {
+    final MethodSampler sampler = new RequestSampler(0, 4).forMethod("myapi.foo");
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            sampler.record(createTimings(0, 200));
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(sampler.getRequestCount()).isEqualTo(4000);
+    assertThat(sampler.getSlowest()).hasSize(4);
+    for (RequestSample sample : sampler.getSlowest()) {
+      assertThat(sample.getStatus()).isEqualTo(200);
+    }
+  }
+
+  @Test
+  public void forMethod() {
+    RequestSampler requestSampler = new RequestSampler(1000, 2);
+    MethodSampler foo = requestSampler.forMethod("myapi.foo");
+    requestSampler.forMethod("myapi.bar");
+
+    assertThat(requestSampler.forMethod("myapi.foo")).isSameAs(foo);
+    assertThat(requestSampler.getMethods().keySet())
+        .containsExactly("myapi.bar", "myapi.foo").inOrder();
+  }
+
+  private static RequestTimings createTimings(long totalMillis, int status) {
+    RequestTimings timings = RequestTimings.start(
+        System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(totalMillis), -1);
+    timings.endWrite(status, 0);
+    return timings;
+  }
+}
@@ -20,8 +20,11 @@ import static org.junit.Assert.fail;
 
 import com.google.api.server.spi.EndpointMethod;
 import com.google.api.server.spi.EndpointsContext;
+import com.google.api.server.spi.IoUtil;
+import com.google.api.server.spi.ObjectMapperUtil;
 import com.google.api.server.spi.ServiceContext;
 import com.google.api.server.spi.TypeLoader;
+import com.google.api.server.spi.WireFormat;
 import com.google.api.server.spi.config.Api;
 import com.google.api.server.spi.config.ApiMethod;
 import com.google.api.server.spi.config.ApiMethod.HttpMethod;
@@ -33,11 +36,13 @@ import com.google.api.server.spi.config.model.ApiConfig;
 import com.google.api.server.spi.config.model.ApiMethodConfig;
 import com.google.api.server.spi.config.model.ApiSerializationConfig;
 import com.google.api.server.spi.response.BadRequestException;
+import com.google.api.server.spi.response.RequestEntityTooLargeException;
 import com.google.api.server.spi.types.SimpleDate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import java.util.ArrayList;
+import org.apache.commons.fileupload.FileItemStream;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -190,6 +195,62 @@ public class RestServletRequestParamReaderTest {
         .inOrder();
   }
 
+  @Test
+  public void requestBodyTooLarge() throws Exception {
+    request.setContent("{\"query\": \"2015-11-02\"}".getBytes(StandardCharsets.UTF_8));
+    request.setAttribute(Attribute.MAX_REQUEST_BYTES, 10L);
+    RestServletRequestParamReader reader = createReader(ImmutableMap.of("path", "1234"));
+
+    try {
+      reader.read();
+      fail("expected request entity too large exception");
+    } catch (RequestEntityTooLargeException e) {
+      assertThat(e.getStatusCode()).isEqualTo(413);
+    }
+  }
+
+  @Test
+  public void gzippedRequestTooLargeOnceDecompressed() throws Exception {
+    // Compresses to far less than the limit, but expands to far more.
+    String padding = new String(new char[10000]).replace('\0', ' ');
+    request.setContent(compress(
+        ("{\"query\": \"2015-11-02\"" + padding + "}").getBytes(StandardCharsets.UTF_8)));
+    request.addHeader("Content-Encoding", "gzip");
+    request.setAttribute(Attribute.MAX_REQUEST_BYTES, 1000L);
+    RestServletRequestParamReader reader = createReader(ImmutableMap.of("path", "1234"));
+
+    try {
+      reader.read();
+      fail("expected request entity too large exception");
+    } catch (RequestEntityTooLargeException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void multipartFormData_tooLarge() throws Exception {
+    endpointMethod = EndpointMethod.create(TestApi.class,
+        TestApi.class.getMethod("testFormData", String.class, Integer.class));
+    methodConfig = apiConfig.getApiClassConfig().getMethods().get(endpointMethod);
+    request.setContentType("multipart/form-data; boundary=----test");
+    request.setMethod("POST");
+    String requestContent =
+        "------test\r\n" +
+        "Content-Disposition: form-data; name=\"foo\"\r\n\r\n" +
+        "test\r\n" +
+        "------test--\r\n";
+    request.setContent(requestContent.getBytes(StandardCharsets.UTF_8));
+    request.setAttribute(Attribute.MAX_REQUEST_BYTES, 20L);
+    RestServletRequestParamReader reader = createReader(ImmutableMap.<String, String>of());
+
+    try {
+      reader.read();
+      fail("expected request entity too large exception");
+    } catch (RequestEntityTooLargeException e) {
+      // expected
+    }
+  }
+
   @Test
   public void arrayPathParam() throws Exception {
     endpointMethod = EndpointMethod.create(TestApi.class,
@@ -229,6 +290,103 @@ public class RestServletRequestParamReaderTest {
         .containsExactly("test", 1234);
   }
 
+  @Test
+  public void smileBody() throws Exception {
+    endpointMethod = EndpointMethod.create(TestApi.class,
+        TestApi.class.getMethod("testFormData", String.class, Integer.class));
+    methodConfig = apiConfig.getApiClassConfig().getMethods().get(endpointMethod);
+    request.setContentType("application/x-jackson-smile");
+    request.setMethod("POST");
+    request.setContent(ObjectMapperUtil.createStandardObjectMapper(null, WireFormat.SMILE)
+        .writeValueAsBytes(ImmutableMap.of("foo", "test", "bar", 1234)));
+    RestServletRequestParamReader reader = createReader(ImmutableMap.<String, String>of());
+
+    Object[] params = reader.read();
+
+    assertThat(params).asList().containsExactly("test", 1234).inOrder();
+  }
+
+  @Test
+  public void cborBody_empty() throws Exception {
+    endpointMethod = EndpointMethod.create(TestApi.class,
+        TestApi.class.getMethod("testFormData", String.class, Integer.class));
+    methodConfig = apiConfig.getApiClassConfig().getMethods().get(endpointMethod);
+    request.setContentType("application/cbor");
+    request.setMethod("POST");
+    request.setParameter("bar", "1234");
+    RestServletRequestParamReader reader = createReader(ImmutableMap.<String, String>of());
+
+    Object[] params = reader.read();
+
+    assertThat(params).asList().containsExactly(null, 1234).inOrder();
+  }
+
+  @Test
+  public void multipartFormData_upload() throws Exception {
+    endpointMethod = EndpointMethod.create(TestApi.class,
+        TestApi.class.getMethod("testUpload", String.class, FileItemStream.class));
+    methodConfig = apiConfig.getApiClassConfig().getMethods().get(endpointMethod);
+    request.setContentType("multipart/form-data; boundary=----test");
+    request.setMethod("POST");
+    String requestContent =
+        "------test\r\n" +
+        "Content-Disposition: form-data; name=\"foo\"\r\n\r\n" +
+        "test\r\n" +
+        "------test\r\n" +
+        "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n" +
+        "Content-Type: application/octet-stream\r\n\r\n" +
+        "file content\r\n" +
+        "------test--\r\n";
+    request.setContent(requestContent.getBytes(StandardCharsets.UTF_8));
+    RestServletRequestParamReader reader = createReader(ImmutableMap.<String, String>of());
+
+    Object[] params = reader.read();
+
+    assertThat(params).hasLength(endpointMethod.getParameterClasses().length);
+    assertThat(params[0]).isEqualTo("test");
+    FileItemStream upload = (FileItemStream) params[1];
+    assertThat(upload.getName()).isEqualTo("data.bin");
+    assertThat(upload.getContentType()).isEqualTo("application/octet-stream");
+    assertThat(IoUtil.readStream(upload.openStream())).isEqualTo("file content");
+  }
+
+  @Test
+  public void multipartFormData_uploadNotAccepted() throws Exception {
+    endpointMethod = EndpointMethod.create(TestApi.class,
+        TestApi.class.getMethod("testFormData", String.class, Integer.class));
+    methodConfig = apiConfig.getApiClassConfig().getMethods().get(endpointMethod);
+    request.setContentType("multipart/form-data; boundary=----test");
+    request.setMethod("POST");
+    String requestContent =
+        "------test\r\n" +
+        "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n\r\n" +
+        "file content\r\n" +
+        "------test--\r\n";
+    request.setContent(requestContent.getBytes(StandardCharsets.UTF_8));
+    RestServletRequestParamReader reader = createReader(ImmutableMap.<String, String>of());
+
+    try {
+      reader.read();
+      fail("expected bad request exception");
+    } catch (BadRequestException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void upload_notMultipart() throws Exception {
+    endpointMethod = EndpointMethod.create(TestApi.class,
+        TestApi.class.getMethod("testUpload", String.class, FileItemStream.class));
+    methodConfig = apiConfig.getApiClassConfig().getMethods().get(endpointMethod);
+    request.setMethod("POST");
+    request.setContent("{\"foo\":\"test\"}".getBytes(StandardCharsets.UTF_8));
+    RestServletRequestParamReader reader = createReader(ImmutableMap.<String, String>of());
+
+    Object[] params = reader.read();
+
+    assertThat(params).asList().containsExactly("test", null).inOrder();
+  }
+
   private RestServletRequestParamReader createReader(Map<String, String> rawPathParameters) {
     EndpointsContext endpointsContext =
         new EndpointsContext("GET", "/", request, new MockHttpServletResponse(), true);
@@ -277,6 +435,13 @@ public class RestServletRequestParamReaderTest {
         @Nullable @Named("foo") String foo,
         @Nullable @Named("bar") Integer bar) {
     }
+
+    @ApiMethod(
+        name = "testUpload",
+        httpMethod = HttpMethod.POST,
+        path = "testUpload")
+    public void testUpload(@Nullable @Named("foo") String foo, FileItemStream file) {
+    }
   }
 
   private static byte[] compress(byte[] bytes) {
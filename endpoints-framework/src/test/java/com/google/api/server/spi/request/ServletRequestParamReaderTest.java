@@ -31,6 +31,7 @@ import com.google.api.server.spi.config.Named;
 import com.google.api.server.spi.config.Nullable;
 import com.google.api.server.spi.config.model.ApiMethodConfig;
 import com.google.api.server.spi.response.BadRequestException;
+import com.google.api.server.spi.response.RequestEntityTooLargeException;
 import com.google.api.server.spi.response.UnauthorizedException;
 import com.google.api.server.spi.testing.TestEndpoint;
 import com.google.api.server.spi.testing.TestEndpoint.Request;
@@ -54,6 +55,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -230,6 +232,36 @@ public class ServletRequestParamReaderTest {
     verifySimpleDateSerializationFails("99-10-02");
   }
 
+  @Test
+  public void testReadDeadline() throws Exception {
+    Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+    when(request.getAttribute(Attribute.DEADLINE)).thenReturn(deadline);
+    Method method = DeadlineEndpoint.class.getDeclaredMethod("withDeadline", Deadline.class);
+    Object[] params = readParameters("{}", method);
+    assertThat(Arrays.asList(params)).containsExactly(deadline);
+  }
+
+  @Test
+  public void testReadDeadline_none() throws Exception {
+    Method method = DeadlineEndpoint.class.getDeclaredMethod("withDeadline", Deadline.class);
+    Object[] params = readParameters("{}", method);
+    assertThat(Arrays.asList(params)).containsExactly(Deadline.none());
+  }
+
+  @Test
+  public void testRead_bodyTooLarge() throws Exception {
+    // The body is read as streamed, as a chunked body has no Content-Length to check up front.
+    when(request.getAttribute(Attribute.MAX_REQUEST_BYTES)).thenReturn(10L);
+    Method method = TestEndpoint.class.getDeclaredMethod("getDateAndTime", DateAndTime.class);
+    try {
+      readParameters(
+          "{" + TestEndpoint.NAME_DATE_AND_TIME + ":\"2002-10-02T10:00:00-05:00\"}", method);
+      fail("expected RequestEntityTooLargeException");
+    } catch (RequestEntityTooLargeException e) {
+      assertEquals(413, e.getStatusCode());
+    }
+  }
+
   @Test
   public void testReadNoParameters() throws Exception {
     Method method = TestEndpoint.class.getDeclaredMethod("getResultNoParams");
@@ -910,4 +942,8 @@ public class ServletRequestParamReaderTest {
     c.setTime(date);
     return c;
   }
+
+  public static class DeadlineEndpoint {
+    public void withDeadline(Deadline deadline) {}
+  }
 }
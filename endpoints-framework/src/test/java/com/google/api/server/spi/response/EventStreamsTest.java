@@ -0,0 +1,267 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.api.server.spi.ServiceException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+
+/**
+ * Tests for {@link EventStreams}.
+ */
+@RunWith(JUnit4.class)
+public class EventStreamsTest {
+  private MockHttpServletRequest request;
+  private MockHttpServletResponse response;
+  private EventStreams eventStreams;
+
+  @Before
+  public void setUp() {
+    request = new MockHttpServletRequest();
+    response = new MockHttpServletResponse();
+    eventStreams = new EventStreams(1, 0);
+  }
+
+  @After
+  public void tearDown() {
+    eventStreams.shutdown();
+  }
+
+  @Test
+  public void serve_newlineDelimitedJson() throws Exception {
+    eventStreams.serve(StreamingResponse.fromIterator(
+        ImmutableList.of(ImmutableMap.of("a", 1), ImmutableMap.of("a", 2)).iterator()),
+        request, response, null);
+
+    assertThat(response.getContentType()).startsWith(EventStreams.NDJSON_CONTENT_TYPE);
+    assertThat(response.getContentAsString()).isEqualTo("{\"a\":1}\n{\"a\":2}\n");
+  }
+
+  @Test
+  public void serve_serverSentEvents() throws Exception {
+    request.addHeader("Accept", "text/event-stream, */*");
+
+    eventStreams.serve(StreamingResponse.fromIterator(ImmutableList.of("a\nb", "c").iterator()),
+        request, response, null);
+
+    assertThat(response.getContentType()).startsWith(EventStreams.EVENT_STREAM_CONTENT_TYPE);
+    // Line breaks within an element are escaped, so they cannot end the event early.
+    assertThat(response.getContentAsString()).isEqualTo("data: \"a\\nb\"\n\ndata: \"c\"\n\n");
+  }
+
+  @Test
+  public void serve_serviceExceptionWritesErrorEvent() throws Exception {
+    request.addHeader("Accept", "text/event-stream");
+
+    eventStreams.serve(new StreamingResponse<String>() {
+      @Override
+      public void stream(EventSink<String> sink) throws IOException, ServiceException {
+        sink.send("a");
+        throw new NotFoundException("gone");
+      }
+    }, request, response, null);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString()).isEqualTo(
+        "data: \"a\"\n\nevent: error\ndata: {\"error\":{\"code\":404,\"message\":\"gone\"}}\n\n");
+  }
+
+  @Test
+  public void serve_serviceExceptionBeforeCommitIsThrown() throws Exception {
+    try {
+      eventStreams.serve(new StreamingResponse<String>() {
+        @Override
+        public void stream(EventSink<String> sink) throws ServiceException {
+          throw new NotFoundException("gone");
+        }
+      }, request, response, null);
+      fail("expected NotFoundException");
+    } catch (NotFoundException expected) {
+      // expected
+    }
+
+    assertThat(response.isCommitted()).isFalse();
+    assertThat(response.getContentAsString()).isEmpty();
+    assertThat(eventStreams.getOpenStreamCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void serve_runtimeExceptionWritesErrorEvent() throws Exception {
+    eventStreams.serve(new StreamingResponse<String>() {
+      @Override
+      public void stream(EventSink<String> sink) {
+        throw new IllegalStateException("secret");
+      }
+    }, request, response, null);
+
+    assertThat(response.getContentAsString())
+        .isEqualTo("{\"error\":{\"code\":500,\"message\":\"backend error\"}}\n");
+  }
+
+  @Test
+  public void serve_tooManyOpenStreams() throws Exception {
+    final MockHttpServletResponse nestedResponse = new MockHttpServletResponse();
+    eventStreams.serve(new StreamingResponse<String>() {
+      @Override
+      public void stream(EventSink<String> sink) throws IOException, ServiceException {
+        assertThat(eventStreams.getOpenStreamCount()).isEqualTo(1);
+        try {
+          eventStreams.serve(StreamingResponse.fromIterator(ImmutableList.of("b").iterator()),
+              request, nestedResponse, null);
+          fail("expected ServiceUnavailableException");
+        } catch (ServiceUnavailableException expected) {
+          // expected
+        }
+        sink.send("a");
+      }
+    }, request, response, null);
+
+    assertThat(response.getContentAsString()).isEqualTo("\"a\"\n");
+    assertThat(nestedResponse.getContentAsString()).isEmpty();
+    assertThat(eventStreams.getOpenStreamCount()).isEqualTo(0);
+    assertThat(eventStreams.getRejectedStreamCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void serve_unlimited() throws Exception {
+    eventStreams = new EventStreams(0, 0);
+    final MockHttpServletResponse nestedResponse = new MockHttpServletResponse();
+    eventStreams.serve(new StreamingResponse<String>() {
+      @Override
+      public void stream(EventSink<String> sink) throws IOException, ServiceException {
+        eventStreams.serve(StreamingResponse.fromIterator(ImmutableList.of("b").iterator()),
+            request, nestedResponse, null);
+      }
+    }, request, response, null);
+
+    assertThat(nestedResponse.getContentAsString()).isEqualTo("\"b\"\n");
+    assertThat(eventStreams.getRejectedStreamCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void serve_heartbeatWhileIdle() throws Exception {
+    eventStreams = new EventStreams(1, 10);
+    request.addHeader("Accept", "text/event-stream");
+
+    eventStreams.serve(new StreamingResponse<String>() {
+      @Override
+      public void stream(EventSink<String> sink) throws IOException {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        sink.send("a");
+      }
+    }, request, response, null);
+
+    assertThat(response.getContentAsString()).startsWith(":\n\n");
+    assertThat(response.getContentAsString()).endsWith("data: \"a\"\n\n");
+  }
+
+  @Test
+  public void serve_heartbeatSkipsBusyStream() throws Exception {
+    eventStreams = new EventStreams(2, 10);
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    // A client which does not accept the event, so that the write blocks while holding the sink.
+    final MockHttpServletResponse blockedResponse = new MockHttpServletResponse() {
+      @Override
+      public ServletOutputStream getOutputStream() {
+        return new ServletOutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            writing.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+          }
+        };
+      }
+    };
+    Thread blocked = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          eventStreams.serve(StreamingResponse.fromIterator(ImmutableList.of("a").iterator()),
+              new MockHttpServletRequest(), blockedResponse, null);
+        } catch (Exception e) {
+          throw new AssertionError(e);
+        }
+      }
+    });
+    blocked.start();
+    try {
+      assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+
+      eventStreams.serve(new StreamingResponse<String>() {
+        @Override
+        public void stream(EventSink<String> sink) throws IOException {
+          try {
+            Thread.sleep(200);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          sink.send("b");
+        }
+      }, request, response, null);
+    } finally {
+      release.countDown();
+      blocked.join();
+    }
+
+    assertThat(response.getContentAsString()).startsWith("\n");
+    assertThat(response.getContentAsString()).endsWith("\"b\"\n");
+  }
+
+  @Test
+  public void fromIterator_stopsWhenClosed() throws Exception {
+    final int[] sent = new int[1];
+    StreamingResponse.fromIterator(ImmutableList.of("a", "b", "c").iterator())
+        .stream(new EventSink<String>() {
+          @Override
+          public void send(String value) {
+            sent[0]++;
+          }
+
+          @Override
+          public boolean isClosed() {
+            return sent[0] >= 2;
+          }
+        });
+
+    assertThat(sent[0]).isEqualTo(2);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableListMultimap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests for {@link InMemoryIdempotencyStore}.
+ */
+@RunWith(JUnit4.class)
+public class InMemoryIdempotencyStoreTest {
+  private static final StoredResponse RESPONSE = new StoredResponse(
+      200, "application/json", ImmutableListMultimap.<String, String>of(), new byte[] {'{', '}'});
+
+  private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(60000, 10);
+
+  @Test
+  public void begin_replaysCompletedResponse() throws Exception {
+    assertThat(store.begin("key", 0)).isNull();
+    store.complete("key", RESPONSE);
+
+    assertThat(store.begin("key", 0)).isSameAs(RESPONSE);
+    assertThat(store.begin("other", 0)).isNull();
+  }
+
+  @Test
+  public void begin_afterRelease() throws Exception {
+    assertThat(store.begin("key", 0)).isNull();
+    store.release("key");
+
+    assertThat(store.begin("key", 0)).isNull();
+  }
+
+  @Test
+  public void begin_timesOutWhileInProgress() throws Exception {
+    assertThat(store.begin("key", 0)).isNull();
+    try {
+      store.begin("key", 10);
+      fail("expected TimeoutException");
+    } catch (TimeoutException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void begin_waitsForExecutionInProgress() throws Exception {
+    assertThat(store.begin("key", 0)).isNull();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<StoredResponse> duplicate = executor.submit(new Callable<StoredResponse>() {
+        @Override
+        public StoredResponse call() throws Exception {
+          return store.begin("key", 10000);
+        }
+      });
+      store.complete("key", RESPONSE);
+
+      assertThat(duplicate.get(10, TimeUnit.SECONDS)).isSameAs(RESPONSE);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void begin_waiterTakesOverReleasedExecution() throws Exception {
+    assertThat(store.begin("key", 0)).isNull();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<StoredResponse> duplicate = executor.submit(new Callable<StoredResponse>() {
+        @Override
+        public StoredResponse call() throws Exception {
+          return store.begin("key", 10000);
+        }
+      });
+      store.release("key");
+
+      assertThat(duplicate.get(10, TimeUnit.SECONDS)).isNull();
+      try {
+        store.begin("key", 0);
+        fail("expected the waiter to own the execution");
+      } catch (TimeoutException expected) {
+        // expected
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void complete_boundedNumberOfResponses() throws Exception {
+    InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(60000, 1);
+    store.begin("a", 0);
+    store.complete("a", RESPONSE);
+    store.begin("b", 0);
+    store.complete("b", RESPONSE);
+
+    assertThat(store.begin("a", 0)).isNull();
+  }
+}
@@ -18,12 +18,16 @@ package com.google.api.server.spi.response;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.google.api.server.spi.Constant;
 import com.google.api.server.spi.ObjectMapperUtil;
+import com.google.api.server.spi.WireFormat;
 import com.google.api.server.spi.types.DateAndTime;
 import com.google.api.server.spi.types.SimpleDate;
 import com.google.appengine.api.datastore.Blob;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -34,7 +38,12 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.springframework.mock.web.MockHttpServletResponse;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -42,6 +51,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 /**
@@ -186,6 +196,121 @@ public class ServletResponseResultWriterTest {
     assertThat(body).doesNotContain("\" :");
   }
 
+  @Test
+  public void testWriteMediaFromBytes() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ServletResponseResultWriter writer = new ServletResponseResultWriter(response, null);
+    writer.write(MediaResponse.fromBytes(new byte[] {1, 2, 3}, "application/octet-stream"));
+    assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    assertEquals("application/octet-stream", response.getContentType());
+    assertEquals(3, response.getContentLength());
+    assertThat(response.getContentAsByteArray()).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void testWriteMediaFromFile() throws Exception {
+    File file = File.createTempFile("media", ".txt");
+    file.deleteOnExit();
+    Files.write("file content", file, StandardCharsets.UTF_8);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ServletResponseResultWriter writer = new ServletResponseResultWriter(response, null);
+    writer.write(MediaResponse.fromFile(file, "text/plain"));
+    assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    assertEquals("text/plain", response.getContentType());
+    assertEquals(12, response.getContentLength());
+    assertEquals("file content", response.getContentAsString());
+  }
+
+  @Test
+  public void testWriteMediaFromFile_truncatedWhileWriting() throws Exception {
+    final File file = File.createTempFile("media", ".bin");
+    file.deleteOnExit();
+    Files.write(new byte[64 * 1024], file);
+    MockHttpServletResponse response = new MockHttpServletResponse() {
+      private final ServletOutputStream out = new ServletOutputStream() {
+        private boolean truncated;
+
+        @Override
+        public void write(int b) throws IOException {
+          if (!truncated) {
+            truncated = true;
+            try (RandomAccessFile content = new RandomAccessFile(file, "rw")) {
+              content.setLength(10);
+            }
+          }
+        }
+      };
+
+      @Override
+      public ServletOutputStream getOutputStream() {
+        return out;
+      }
+    };
+    ServletResponseResultWriter writer = new ServletResponseResultWriter(response, null);
+    try {
+      writer.write(MediaResponse.fromFile(file, "application/octet-stream"));
+      fail("expected IOException");
+    } catch (IOException expected) {
+      assertThat(expected.getMessage()).contains("truncated");
+    }
+    assertEquals(64 * 1024, response.getContentLength());
+  }
+
+  @Test
+  public void testWriteMediaFromFile_missingFileSetsNoHeaders() throws Exception {
+    File file = File.createTempFile("media", ".txt");
+    assertTrue(file.delete());
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ServletResponseResultWriter writer = new ServletResponseResultWriter(response, null);
+    try {
+      writer.write(MediaResponse.fromFile(file, "text/plain"));
+      fail("expected FileNotFoundException");
+    } catch (FileNotFoundException expected) {
+      // expected
+    }
+    assertThat(response.getHeaderNames()).isEmpty();
+    assertEquals(null, response.getContentType());
+  }
+
+  @Test
+  public void testWriteMediaFromStream_unknownLength() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ServletResponseResultWriter writer = new ServletResponseResultWriter(response, null);
+    writer.write(MediaResponse.fromStream(
+        new ByteArrayInputStream("streamed".getBytes(StandardCharsets.UTF_8)), "text/plain"));
+    assertEquals("text/plain", response.getContentType());
+    assertEquals(0, response.getContentLength());
+    assertEquals("streamed", response.getContentAsString());
+  }
+
+  @Test
+  public void testWriteSmile() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ServletResponseResultWriter writer = new ServletResponseResultWriter(response, null,
+        true /* prettyPrint */, true /* addContentLength */, WireFormat.SMILE);
+    writer.write(ImmutableMap.of("one", 2L));
+    assertEquals("application/x-jackson-smile", response.getContentType());
+    byte[] body = response.getContentAsByteArray();
+    assertEquals(body.length, response.getContentLength());
+    JsonNode output = ObjectMapperUtil.createStandardObjectMapper(null, WireFormat.SMILE)
+        .readTree(body);
+    // Writer modules still apply, so longs are written as strings.
+    assertEquals("2", output.get("one").textValue());
+  }
+
+  @Test
+  public void testWriteErrorCbor() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ServletResponseResultWriter writer = new ServletResponseResultWriter(response, null,
+        false /* prettyPrint */, false /* addContentLength */, WireFormat.CBOR);
+    writer.writeError(new UnauthorizedException("message"));
+    assertEquals(401, response.getStatus());
+    assertEquals("application/cbor", response.getContentType());
+    JsonNode output = ObjectMapperUtil.createStandardObjectMapper(null, WireFormat.CBOR)
+        .readTree(response.getContentAsByteArray());
+    assertEquals("message", output.get(Constant.ERROR_MESSAGE).textValue());
+  }
+
   @SuppressWarnings("unused")
   public void testBlobAsBase64() throws Exception {
     Object value = new Object() {
@@ -32,6 +32,7 @@ import com.google.api.server.spi.config.ApiIssuerAudience;
 import com.google.api.server.spi.config.ApiMethod;
 import com.google.api.server.spi.config.annotationreader.ApiConfigAnnotationReader;
 import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.SchemaRepository;
 import com.google.api.server.spi.swagger.SwaggerGenerator.SwaggerContext;
 import com.google.api.server.spi.testing.AbsoluteCommonPathEndpoint;
 import com.google.api.server.spi.testing.AbsolutePathEndpoint;
@@ -104,6 +105,19 @@ public class SwaggerGeneratorTest {
     checkSwagger(expected, swagger);
   }
 
+  @Test
+  public void testWriteSwagger_sharedSchemaRepository() throws Exception {
+    ApiConfig config = configLoader.loadConfiguration(ServiceContext.create(), FooEndpoint.class);
+    SchemaRepository repository = new SchemaRepository(new TypeLoader(getClass().getClassLoader()));
+    generator.writeSwagger(ImmutableList.of(config), false, new SwaggerContext(), repository);
+    long computed = repository.getComputedCount();
+    Swagger swagger = generator.writeSwagger(
+        ImmutableList.of(config), false, new SwaggerContext(), repository);
+    assertThat(repository.getComputedCount()).isEqualTo(computed);
+    assertThat(repository.getReusedCount()).isGreaterThan(0L);
+    checkSwagger(readExpectedAsSwagger("foo_endpoint_default_context.swagger"), swagger);
+  }
+
   @Test
   public void testWriteSwagger_FooEndpointLocalhost() throws Exception {
     Swagger swagger = getSwagger(
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.api.server.spi.testing.BenchmarkResource;
+
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Benchmarks a request's worth of JSON parsing and writing with Jackson's per-thread buffer
+ * recycler and with {@link PooledBufferRecycler}, both on a long-lived thread and on a new thread
+ * per request, as when requests run on short-lived threads. Run with {@code -prof gc} and compare
+ * {@code gc.alloc.rate.norm}, the bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferRecyclerBenchmark {
+  @Param({"threadLocal", "pooled"})
+  public String recycler;
+
+  @Param({"10"})
+  public int children;
+
+  private ObjectMapper mapper;
+  private byte[] request;
+  private BenchmarkResource response;
+
+  @Setup
+  public void setUp() throws IOException {
+    mapper = new ObjectMapper(
+        "pooled".equals(recycler) ? WireFormat.JSON.createFactory() : new MappingJsonFactory());
+    if (PooledBufferRecycler.isPooled(mapper.getFactory()) != "pooled".equals(recycler)) {
+      throw new IllegalStateException("unexpected recycler; is JSON_POOLED_BUFFERS disabled?");
+    }
+    response = BenchmarkResource.create(children);
+    request = mapper.writeValueAsBytes(response);
+  }
+
+  @Benchmark
+  public byte[] sameThread() throws IOException {
+    return handle();
+  }
+
+  @Benchmark
+  public byte[] threadPerRequest() throws Exception {
+    final AtomicReference<Object> result = new AtomicReference<>();
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          result.set(handle());
+        } catch (IOException e) {
+          result.set(e);
+        }
+      }
+    };
+    thread.start();
+    thread.join();
+    if (result.get() instanceof IOException) {
+      throw (IOException) result.get();
+    }
+    return (byte[]) result.get();
+  }
+
+  private byte[] handle() throws IOException {
+    mapper.readValue(request, BenchmarkResource.class);
+    return mapper.writeValueAsBytes(response);
+  }
+}
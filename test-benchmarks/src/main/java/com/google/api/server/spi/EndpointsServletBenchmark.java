@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.api.server.spi.testing.BenchmarkEndpoint;
+import com.google.api.server.spi.testing.Payloads;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks full round trips through {@link EndpointsServlet#service}, from dispatch to the
+ * written response, against in-memory requests and responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointsServletBenchmark {
+  private static final String SERVER_NAME = "localhost";
+
+  @Param({"0", "10", "100"})
+  public int children;
+
+  private EndpointsServlet servlet;
+  private byte[] body;
+
+  @Setup
+  public void setUp() throws Exception {
+    servlet = new EndpointsServlet();
+    MockServletConfig config = new MockServletConfig();
+    config.addInitParameter("services", BenchmarkEndpoint.class.getName());
+    servlet.init(config);
+    body = Payloads.json(children);
+  }
+
+  @TearDown
+  public void tearDown() {
+    servlet.destroy();
+  }
+
+  @Benchmark
+  public MockHttpServletResponse get() throws IOException {
+    MockHttpServletRequest request = newRequest("GET", "/_ah/api/benchmark/v1/resources/1234");
+    request.setParameter("children", Integer.toString(children));
+    return service(request);
+  }
+
+  @Benchmark
+  public MockHttpServletResponse update() throws IOException {
+    MockHttpServletRequest request = newRequest("PUT", "/_ah/api/benchmark/v1/resources/1234");
+    request.setContentType("application/json");
+    request.setContent(body);
+    return service(request);
+  }
+
+  private MockHttpServletResponse service(MockHttpServletRequest request) throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    servlet.service(request, response);
+    if (response.getStatus() != 200) {
+      throw new IllegalStateException("unexpected status " + response.getStatus());
+    }
+    return response;
+  }
+
+  private static MockHttpServletRequest newRequest(String method, String uri) {
+    MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+    request.setServletPath("/_ah/api");
+    request.setServerName(SERVER_NAME);
+    request.addHeader("Host", SERVER_NAME);
+    return request;
+  }
+}
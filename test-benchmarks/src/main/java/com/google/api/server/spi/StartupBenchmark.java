@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.common.base.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Benchmarks building the {@link SystemService} for many service classes, as
+ * {@link EndpointsServlet#init} does. The service classes are generated and compiled during setup,
+ * so every fork loads them for the first time, as a freshly started server would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+  private static final String PACKAGE = "com.google.api.server.spi.generated";
+
+  @Param({"50"})
+  public int services;
+
+  @Param({"1", "4"})
+  public int startupThreads;
+
+  @Param({"false", "true"})
+  public boolean lazy;
+
+  private Path directory;
+  private URLClassLoader classLoader;
+  private List<Class<?>> serviceClasses;
+
+  @Setup
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("startup-benchmark");
+    List<String> sourceFiles = new ArrayList<>();
+    for (int i = 0; i < services; i++) {
+      File file = directory.resolve("Service" + i + ".java").toFile();
+      try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+        writer.write(serviceSource(i));
+      }
+      sourceFiles.add(file.getPath());
+    }
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new IllegalStateException("the startup benchmark must run on a JDK");
+    }
+    List<String> args = new ArrayList<>();
+    args.add("-nowarn");
+    args.add("-proc:none");
+    args.add("-classpath");
+    args.add(System.getProperty("java.class.path"));
+    args.add("-d");
+    args.add(directory.toString());
+    args.addAll(sourceFiles);
+    if (compiler.run(null, null, null, args.toArray(new String[args.size()])) != 0) {
+      throw new IllegalStateException("unable to compile generated services");
+    }
+    classLoader = new URLClassLoader(
+        new URL[] {directory.toUri().toURL()}, getClass().getClassLoader());
+    serviceClasses = new ArrayList<>(services);
+    for (int i = 0; i < services; i++) {
+      serviceClasses.add(classLoader.loadClass(PACKAGE + ".Service" + i));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    classLoader.close();
+    delete(directory.toFile());
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  @Benchmark
+  public SystemService build() throws Exception {
+    SystemService.Builder builder = SystemService.builder()
+        .withDefaults(classLoader)
+        .setStartupThreads(startupThreads);
+    for (Class<?> serviceClass : serviceClasses) {
+      if (lazy) {
+        addLazyService(builder, serviceClass);
+      } else {
+        builder.addService(serviceClass, serviceClass.newInstance());
+      }
+    }
+    return builder.build();
+  }
+
+  private static <T> void addLazyService(SystemService.Builder builder, final Class<T> serviceClass) {
+    builder.addLazyService(serviceClass, new Supplier<T>() {
+      @Override
+      public T get() {
+        try {
+          return serviceClass.newInstance();
+        } catch (ReflectiveOperationException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the source of a service with a resource type and the usual CRUD methods.
+   */
+  private static String serviceSource(int index) {
+    String name = "Service" + index;
+    return "package " + PACKAGE + ";\n"
+        + "import com.google.api.server.spi.config.*;\n"
+        + "import java.util.*;\n"
+        + "import javax.inject.Named;\n"
+        + "@Api(name = \"service" + index + "\", version = \"v1\")\n"
+        + "public class " + name + " {\n"
+        + "  public static class Resource" + index + " {\n"
+        + "    public long id;\n"
+        + "    public String name;\n"
+        + "    public Date updated;\n"
+        + "    public List<String> tags;\n"
+        + "    public Map<String, Integer> counts;\n"
+        + "  }\n"
+        + "  @ApiMethod(name = \"resources.list\", path = \"resources\", httpMethod = \"GET\")\n"
+        + "  public List<Resource" + index + "> list(@Named(\"pageSize\") @Nullable Integer"
+        + " pageSize) {\n"
+        + "    return new ArrayList<>();\n"
+        + "  }\n"
+        + "  @ApiMethod(name = \"resources.get\", path = \"resources/{id}\", httpMethod = \"GET\")\n"
+        + "  public Resource" + index + " get(@Named(\"id\") long id) {\n"
+        + "    return new Resource" + index + "();\n"
+        + "  }\n"
+        + "  @ApiMethod(name = \"resources.insert\", path = \"resources\", httpMethod = \"POST\")\n"
+        + "  public Resource" + index + " insert(Resource" + index + " resource) {\n"
+        + "    return resource;\n"
+        + "  }\n"
+        + "  @ApiMethod(name = \"resources.update\", path = \"resources/{id}\","
+        + " httpMethod = \"PUT\")\n"
+        + "  public Resource" + index + " update(@Named(\"id\") long id, Resource" + index
+        + " resource) {\n"
+        + "    return resource;\n"
+        + "  }\n"
+        + "  @ApiMethod(name = \"resources.delete\", path = \"resources/{id}\","
+        + " httpMethod = \"DELETE\")\n"
+        + "  public void delete(@Named(\"id\") long id) {\n"
+        + "  }\n"
+        + "}\n";
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.api.server.spi.request.FakeParamReader;
+import com.google.api.server.spi.response.ResultWriter;
+import com.google.api.server.spi.testing.BenchmarkEndpoint;
+import com.google.api.server.spi.testing.BenchmarkResource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link SystemService#invokeServiceMethod} with parameters that are already read and
+ * a result writer that discards the result, through the method's generated invoker and through
+ * reflection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemServiceBenchmark {
+  @Param({"generated", "reflection"})
+  public String invoker;
+
+  private SystemService systemService;
+  private BenchmarkEndpoint service;
+  private EndpointMethod endpointMethod;
+  private FakeParamReader paramReader;
+  private BlackholeResultWriter resultWriter;
+
+  @Setup
+  public void setUp(Blackhole blackhole) throws Exception {
+    service = new BenchmarkEndpoint();
+    systemService = SystemService.builder()
+        .withDefaults(getClass().getClassLoader())
+        .addService(BenchmarkEndpoint.class, service)
+        .build();
+    endpointMethod = EndpointMethod.create(BenchmarkEndpoint.class,
+        BenchmarkEndpoint.class.getMethod("update", long.class, BenchmarkResource.class));
+    if ("generated".equals(invoker)) {
+      GeneratedInvokers generated = GeneratedInvokers.forServiceClass(BenchmarkEndpoint.class);
+      if (generated == null) {
+        throw new IllegalStateException("BenchmarkEndpoint was compiled without invokers");
+      }
+      endpointMethod.setInvoker(generated.getInvoker(endpointMethod));
+    }
+    paramReader = new FakeParamReader(1234L, BenchmarkResource.create(0));
+    resultWriter = new BlackholeResultWriter(blackhole);
+  }
+
+  @Benchmark
+  public void invokeServiceMethod() throws IOException {
+    systemService.invokeServiceMethod(service, endpointMethod, paramReader, resultWriter);
+  }
+
+  private static class BlackholeResultWriter implements ResultWriter {
+    private final Blackhole blackhole;
+
+    BlackholeResultWriter(Blackhole blackhole) {
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    public void write(Object result) {
+      blackhole.consume(result);
+    }
+
+    @Override
+    public void writeError(ServiceException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
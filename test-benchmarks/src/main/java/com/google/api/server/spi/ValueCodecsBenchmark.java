@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.server.spi.types.DateAndTime;
+import com.google.api.server.spi.types.SimpleDate;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link ValueCodecs} for each type, next to the conversions they replaced. Values
+ * are written to a generator over a discarding writer, and read from a parser positioned on a
+ * string token.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueCodecsBenchmark {
+  private static final long LONG_VALUE = 9007199254740993L;
+  private static final Date DATE = new Date(1514808245123L);
+  private static final SimpleDate SIMPLE_DATE = new SimpleDate(2018, 1, 1);
+  private static final String DATE_STRING = "2018-01-01T12:04:05.123Z";
+  private static final String DATE_AND_TIME_STRING = "2018-01-01T12:04:05.123+01:00";
+  private static final String SIMPLE_DATE_STRING = "2018-01-01";
+
+  private final JsonFactory factory = new JsonFactory();
+  private JsonGenerator generator;
+
+  @Setup
+  public void setUp() throws IOException {
+    generator = factory.createGenerator(new NullWriter());
+    generator.writeStartArray();
+  }
+
+  @Benchmark
+  public void writeLong() throws IOException {
+    ValueCodecs.writeLongString(LONG_VALUE, generator);
+  }
+
+  @Benchmark
+  public void writeLong_baseline() throws IOException {
+    generator.writeString(Long.toString(LONG_VALUE));
+  }
+
+  @Benchmark
+  public void writeDate() throws IOException {
+    ValueCodecs.writeDate(DATE, generator);
+  }
+
+  @Benchmark
+  public void writeDate_baseline() throws IOException {
+    generator.writeString(new DateTime(DATE).toStringRfc3339());
+  }
+
+  @Benchmark
+  public void writeSimpleDate() throws IOException {
+    ValueCodecs.writeSimpleDate(SIMPLE_DATE, generator);
+  }
+
+  @Benchmark
+  public void writeSimpleDate_baseline() throws IOException {
+    generator.writeString(String.format("%04d-%02d-%02d",
+        SIMPLE_DATE.getYear(), SIMPLE_DATE.getMonth(), SIMPLE_DATE.getDay()));
+  }
+
+  @Benchmark
+  public Date readDate() throws IOException {
+    return ValueCodecs.readDate(parser(DATE_STRING));
+  }
+
+  @Benchmark
+  public Date readDate_baseline() throws IOException {
+    return new Date(DateTime.parseRfc3339(parser(DATE_STRING).getText()).getValue());
+  }
+
+  @Benchmark
+  public DateAndTime readDateAndTime() throws IOException {
+    return ValueCodecs.readDateAndTime(parser(DATE_AND_TIME_STRING));
+  }
+
+  @Benchmark
+  public DateAndTime readDateAndTime_baseline() throws IOException {
+    return DateAndTime.parseRfc3339String(parser(DATE_AND_TIME_STRING).getText());
+  }
+
+  @Benchmark
+  public SimpleDate readSimpleDate() throws IOException {
+    return ValueCodecs.readSimpleDate(parser(SIMPLE_DATE_STRING));
+  }
+
+  private JsonParser parser(String value) throws IOException {
+    JsonParser parser = factory.createParser("\"" + value + "\"");
+    parser.nextToken();
+    return parser;
+  }
+
+  private static class NullWriter extends Writer {
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi;
+
+import com.google.api.server.spi.testing.BenchmarkResource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks encoding and decoding a resource in each {@link WireFormat}, with the standard
+ * object mapper. The encoded size is reported as the {@code encodedBytes} secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+  @Param({"JSON", "SMILE", "CBOR"})
+  public WireFormat wireFormat;
+
+  @Param({"0", "10", "100"})
+  public int children;
+
+  private ObjectMapper mapper;
+  private BenchmarkResource resource;
+  private byte[] encoded;
+
+  /**
+   * Reports the size of the encoded resource alongside the timings.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Size {
+    public long encodedBytes;
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    mapper = ObjectMapperUtil.createStandardObjectMapper(null, wireFormat);
+    resource = BenchmarkResource.create(children);
+    encoded = mapper.writeValueAsBytes(resource);
+  }
+
+  @Benchmark
+  public byte[] encode(Size size) throws IOException {
+    byte[] bytes = mapper.writeValueAsBytes(resource);
+    size.encodedBytes = bytes.length;
+    return bytes;
+  }
+
+  @Benchmark
+  public BenchmarkResource decode() throws IOException {
+    return mapper.readValue(encoded, BenchmarkResource.class);
+  }
+}
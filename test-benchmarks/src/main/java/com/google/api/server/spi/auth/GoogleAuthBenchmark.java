@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.auth;
+
+import com.google.common.collect.ImmutableList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-request checks in {@link GoogleAuth}, which run before any token is
+ * verified.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GoogleAuthBenchmark {
+  private static final String JWT = "eyJhbGciOiJSUzI1NiIsImtpZCI6IjEyMyJ9"
+      + ".eyJpc3MiOiJhY2NvdW50cy5nb29nbGUuY29tIiwiYXVkIjoiY2xpZW50In0"
+      + ".c2lnbmF0dXJlc2lnbmF0dXJlc2lnbmF0dXJl";
+  private static final String OAUTH2_TOKEN = "ya29.a0AfH6SMBx3q9ZtLkXbTtYt0o";
+  private static final String CLIENT_ID = "1234567890-abcdef.apps.googleusercontent.com";
+  private static final List<String> ALLOWED_CLIENT_IDS = ImmutableList.of(
+      "1111111111-aaaaaa.apps.googleusercontent.com",
+      "2222222222-bbbbbb.apps.googleusercontent.com",
+      CLIENT_ID);
+
+  @Benchmark
+  public String getAuthToken_header() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader(GoogleAuth.AUTHORIZATION_HEADER, "Bearer " + JWT);
+    return GoogleAuth.getAuthToken(request);
+  }
+
+  @Benchmark
+  public String getAuthToken_queryParameter() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setParameter("access_token", OAUTH2_TOKEN);
+    return GoogleAuth.getAuthToken(request);
+  }
+
+  @Benchmark
+  public boolean isJwt() {
+    return GoogleAuth.isJwt(JWT);
+  }
+
+  @Benchmark
+  public boolean isOAuth2Token() {
+    return GoogleAuth.isOAuth2Token(OAUTH2_TOKEN);
+  }
+
+  @Benchmark
+  public boolean checkClientId() {
+    return GoogleAuth.checkClientId(CLIENT_ID, ALLOWED_CLIENT_IDS, false);
+  }
+
+  @Benchmark
+  public boolean checkAudience() {
+    return GoogleAuth.checkAudience(CLIENT_ID, ALLOWED_CLIENT_IDS, CLIENT_ID);
+  }
+}
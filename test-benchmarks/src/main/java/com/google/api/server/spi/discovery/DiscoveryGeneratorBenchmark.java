@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.discovery;
+
+import com.google.api.server.spi.ServiceContext;
+import com.google.api.server.spi.TypeLoader;
+import com.google.api.server.spi.config.ApiConfigLoader;
+import com.google.api.server.spi.config.annotationreader.ApiConfigAnnotationReader;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.SchemaRepository;
+import com.google.api.server.spi.discovery.DiscoveryGenerator.DiscoveryContext;
+import com.google.common.collect.ImmutableList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link DiscoveryGenerator#writeDiscovery} for endpoints from {@code test-utils}.
+ * Schemas are generated afresh on each invocation, as they are when discovery is first requested.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscoveryGeneratorBenchmark {
+  @Param({"FooEndpoint", "MultiResourceEndpoint", "EnumEndpoint", "ArrayEndpoint",
+      "MapEndpoint", "RecursiveEndpoint"})
+  public String endpoint;
+
+  private final DiscoveryContext context =
+      new DiscoveryContext().setApiRoot("https://benchmark.appspot.com/_ah/api");
+  private TypeLoader typeLoader;
+  private DiscoveryGenerator generator;
+  private ImmutableList<ApiConfig> configs;
+
+  @Setup
+  public void setUp() throws Exception {
+    typeLoader = new TypeLoader(getClass().getClassLoader());
+    ApiConfigLoader configLoader = new ApiConfigLoader(new ApiConfig.Factory(), typeLoader,
+        new ApiConfigAnnotationReader(typeLoader.getAnnotationTypes()));
+    Class<?> serviceClass = Class.forName("com.google.api.server.spi.testing." + endpoint);
+    configs = ImmutableList.of(configLoader.loadConfiguration(ServiceContext.create(), serviceClass));
+    generator = new DiscoveryGenerator(typeLoader);
+  }
+
+  @Benchmark
+  public DiscoveryGenerator.Result writeDiscovery() {
+    return generator.writeDiscovery(configs, context, new SchemaRepository(typeLoader));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.dispatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link PathTrie#resolve} over tries with different numbers of APIs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathTrieBenchmark {
+  @Param({"1", "10", "100"})
+  public int apis;
+
+  private PathTrie<String> trie;
+  private String literalPath;
+  private String parameterizedPath;
+  private String missingPath;
+
+  @Setup
+  public void setUp() {
+    PathTrie.Builder<String> builder = PathTrie.builder();
+    for (int i = 0; i < apis; i++) {
+      String root = "api" + i + "/v1/";
+      builder.add(HttpMethod.GET, root + "resources", "list");
+      builder.add(HttpMethod.POST, root + "resources", "insert");
+      builder.add(HttpMethod.GET, root + "resources/{id}", "get");
+      builder.add(HttpMethod.PUT, root + "resources/{id}", "update");
+      builder.add(HttpMethod.GET, root + "resources/{id}/children/{childId}", "getChild");
+    }
+    trie = builder.build();
+    String root = "api" + (apis - 1) + "/v1/";
+    literalPath = root + "resources";
+    parameterizedPath = root + "resources/1234/children/abc%20def";
+    missingPath = root + "missing/1234";
+  }
+
+  @Benchmark
+  public PathTrie.Result<String> resolveLiteral() {
+    return trie.resolve(HttpMethod.GET, literalPath);
+  }
+
+  @Benchmark
+  public PathTrie.Result<String> resolveParameterized() {
+    return trie.resolve(HttpMethod.GET, parameterizedPath);
+  }
+
+  @Benchmark
+  public PathTrie.Result<String> resolveMissing() {
+    return trie.resolve(HttpMethod.GET, missingPath);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.request;
+
+import com.google.api.server.spi.EndpointMethod;
+import com.google.api.server.spi.EndpointsContext;
+import com.google.api.server.spi.ServiceContext;
+import com.google.api.server.spi.ServiceException;
+import com.google.api.server.spi.TypeLoader;
+import com.google.api.server.spi.config.annotationreader.ApiConfigAnnotationReader;
+import com.google.api.server.spi.config.model.ApiConfig;
+import com.google.api.server.spi.config.model.ApiMethodConfig;
+import com.google.api.server.spi.config.model.ApiSerializationConfig;
+import com.google.api.server.spi.testing.BenchmarkEndpoint;
+import com.google.api.server.spi.testing.BenchmarkResource;
+import com.google.api.server.spi.testing.Payloads;
+import com.google.common.collect.ImmutableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link RestServletRequestParamReader#read} of a path parameter and a resource body
+ * of different sizes. Each invocation includes creating the in-memory request, since a request
+ * body can only be read once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestServletRequestParamReaderBenchmark {
+  @Param({"0", "10", "100"})
+  public int children;
+
+  private EndpointMethod endpointMethod;
+  private ApiMethodConfig methodConfig;
+  private ApiSerializationConfig serializationConfig;
+  private byte[] body;
+
+  @Setup
+  public void setUp() throws Exception {
+    endpointMethod = EndpointMethod.create(BenchmarkEndpoint.class,
+        BenchmarkEndpoint.class.getMethod("update", long.class, BenchmarkResource.class));
+    ServiceContext serviceContext = ServiceContext.create();
+    TypeLoader typeLoader = new TypeLoader();
+    ApiConfig apiConfig =
+        new ApiConfig.Factory().create(serviceContext, typeLoader, BenchmarkEndpoint.class);
+    ApiConfigAnnotationReader annotationReader = new ApiConfigAnnotationReader();
+    annotationReader.loadEndpointClass(serviceContext, BenchmarkEndpoint.class, apiConfig);
+    annotationReader.loadEndpointMethods(serviceContext, BenchmarkEndpoint.class,
+        apiConfig.getApiClassConfig().getMethods());
+    methodConfig = apiConfig.getApiClassConfig().getMethods().get(endpointMethod);
+    serializationConfig = new ApiSerializationConfig();
+    body = Payloads.json(children);
+  }
+
+  @Benchmark
+  public Object[] read() throws ServiceException {
+    MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/");
+    request.setContentType("application/json");
+    request.setContent(body);
+    EndpointsContext context =
+        new EndpointsContext("PUT", "/", request, new MockHttpServletResponse(), true);
+    context.setRawPathParameters(ImmutableMap.of("id", "1234"));
+    return new RestServletRequestParamReader(
+        endpointMethod, context, null, serializationConfig, methodConfig).read();
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.response;
+
+import com.google.api.server.spi.WireFormat;
+import com.google.api.server.spi.config.model.ApiSerializationConfig;
+import com.google.api.server.spi.testing.BenchmarkResource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ServletResponseResultWriter#write} of resources of different sizes, in each
+ * {@link WireFormat}. Each invocation includes creating the writer and the in-memory response,
+ * as the servlet does for every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServletResponseResultWriterBenchmark {
+  @Param({"0", "10", "100"})
+  public int children;
+
+  @Param({"JSON", "SMILE", "CBOR"})
+  public WireFormat wireFormat;
+
+  @Param({"false", "true"})
+  public boolean prettyPrint;
+
+  private ApiSerializationConfig serializationConfig;
+  private BenchmarkResource resource;
+
+  @Setup
+  public void setUp() {
+    serializationConfig = new ApiSerializationConfig();
+    resource = BenchmarkResource.create(children);
+  }
+
+  @Benchmark
+  public MockHttpServletResponse write() throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    new ServletResponseResultWriter(
+        response, serializationConfig, prettyPrint, false /* addContentLength */, wireFormat)
+        .write(resource);
+    return response;
+  }
+}
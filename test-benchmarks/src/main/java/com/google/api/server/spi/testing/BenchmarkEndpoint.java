@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.testing;
+
+import com.google.api.server.spi.config.Api;
+import com.google.api.server.spi.config.ApiMethod;
+import com.google.api.server.spi.config.ApiMethod.HttpMethod;
+import com.google.api.server.spi.config.Nullable;
+
+import javax.inject.Named;
+
+/**
+ * Endpoint class for benchmarks.
+ */
+@Api(name = "benchmark", version = "v1")
+public class BenchmarkEndpoint {
+  @ApiMethod(name = "resources.get", httpMethod = HttpMethod.GET, path = "resources/{id}")
+  public BenchmarkResource get(@Named("id") long id, @Named("children") @Nullable Integer children) {
+    BenchmarkResource resource = BenchmarkResource.create(children == null ? 0 : children);
+    resource.setId(id);
+    return resource;
+  }
+
+  @ApiMethod(name = "resources.update", httpMethod = HttpMethod.PUT, path = "resources/{id}")
+  public BenchmarkResource update(@Named("id") long id, BenchmarkResource resource) {
+    resource.setId(id);
+    return resource;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.testing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A resource shaped like the rows of a typical list response, used as the payload of benchmarks.
+ */
+public class BenchmarkResource {
+  private static final long EPOCH_MILLIS = 1514764800000L; // 2018-01-01T00:00:00Z
+
+  private long id;
+  private String name;
+  private Date updated;
+  private List<String> tags;
+  private List<BenchmarkResource> children;
+
+  public BenchmarkResource() {
+  }
+
+  /**
+   * Creates a resource with {@code children} child resources.
+   */
+  public static BenchmarkResource create(int children) {
+    BenchmarkResource resource = createLeaf(0);
+    List<BenchmarkResource> list = new ArrayList<>(children);
+    for (int i = 1; i <= children; i++) {
+      list.add(createLeaf(i));
+    }
+    resource.setChildren(list);
+    return resource;
+  }
+
+  private static BenchmarkResource createLeaf(int index) {
+    BenchmarkResource resource = new BenchmarkResource();
+    resource.setId(9007199254740993L + index);
+    resource.setName("resource " + index);
+    resource.setUpdated(new Date(EPOCH_MILLIS + index * 1000L));
+    resource.setTags(Arrays.asList("alpha", "beta", "gamma"));
+    return resource;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public Date getUpdated() {
+    return updated;
+  }
+
+  public void setUpdated(Date updated) {
+    this.updated = updated;
+  }
+
+  public List<String> getTags() {
+    return tags;
+  }
+
+  public void setTags(List<String> tags) {
+    this.tags = tags;
+  }
+
+  public List<BenchmarkResource> getChildren() {
+    return children;
+  }
+
+  public void setChildren(List<BenchmarkResource> children) {
+    this.children = children;
+  }
+}
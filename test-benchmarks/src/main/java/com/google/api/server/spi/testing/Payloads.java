@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.testing;
+
+import com.google.api.server.spi.WireFormat;
+import com.google.api.server.spi.config.model.ApiSerializationConfig;
+import com.google.api.server.spi.response.ServletResponseResultWriter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Request and response payloads shared by benchmarks. The {@code children} benchmark parameter
+ * sets the size of a {@link BenchmarkResource}: 0 is a single row, 10 is a small list response,
+ * and 100 a large one.
+ */
+public final class Payloads {
+  private Payloads() { }
+
+  /**
+   * Returns a {@link BenchmarkResource} with {@code children} children, encoded as JSON the way the
+   * framework writes it.
+   */
+  public static byte[] json(int children) throws JsonProcessingException {
+    return ServletResponseResultWriter.getObjectMapper(new ApiSerializationConfig(), WireFormat.JSON)
+        .writer()
+        .writeValueAsBytes(BenchmarkResource.create(children));
+  }
+}
@@ -17,16 +17,17 @@ package com.google.waxapi;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * An in memory data store for Wax.
+ * An in memory data store for Wax. Safe for concurrent use, so it can back load tests.
  */
 public class InMemoryWaxDataStore implements WaxDataStore {
-  private Map<String, Map<String, WaxDataItem>> sessions =
-      new HashMap<String, Map<String, WaxDataItem>>();
+  private final ConcurrentMap<String, ConcurrentMap<String, WaxDataItem>> sessions =
+      new ConcurrentHashMap<String, ConcurrentMap<String, WaxDataItem>>();
 
   @Override
   public List<WaxDataItem> list(String sessionId) throws InvalidSessionException {
@@ -42,11 +43,10 @@ public class InMemoryWaxDataStore implements WaxDataStore {
   @Override
   public WaxDataItem insert(String sessionId, WaxDataItem item)
       throws InvalidSessionException, InvalidWaxDataItemException {
-    Map<String, WaxDataItem> session = getSession(sessionId);
-    if (session.containsKey(item.getId())) {
+    ConcurrentMap<String, WaxDataItem> session = getSession(sessionId);
+    if (session.putIfAbsent(item.getId(), copyItem(item)) != null) {
       throw new InvalidWaxDataItemException(item.getId());
     }
-    session.put(item.getId(), copyItem(item));
     return copyItem(item);
   }
 
@@ -59,14 +59,16 @@ public class InMemoryWaxDataStore implements WaxDataStore {
   @Override
   public WaxDataItem update(String sessionId, String itemId, WaxDataItem newItem)
       throws InvalidSessionException, InvalidWaxDataItemException {
-    Map<String, WaxDataItem> session = getSession(sessionId);
+    ConcurrentMap<String, WaxDataItem> session = getSession(sessionId);
     if (!session.containsKey(itemId)) {
       return null;
     }
     if (!itemId.equals(newItem.getId())) {
       throw new InvalidWaxDataItemException(newItem.getId());
     }
-    session.put(itemId, copyItem(newItem));
+    if (session.replace(itemId, copyItem(newItem)) == null) {
+      return null;
+    }
     return copyItem(newItem);
   }
 
@@ -74,7 +76,7 @@ public class InMemoryWaxDataStore implements WaxDataStore {
   public String createSession(String prefix, Long durationInMillis) {
     WaxSession session = WaxSession.createSession(prefix, durationInMillis);
     String sessionId = session.getSessionId();
-    Map<String, WaxDataItem> items = new HashMap<String, WaxDataItem>();
+    ConcurrentMap<String, WaxDataItem> items = new ConcurrentHashMap<String, WaxDataItem>();
 
     for (WaxDataItem item : session.getItems()) {
       items.put(item.getId(), item);
@@ -90,8 +92,9 @@ public class InMemoryWaxDataStore implements WaxDataStore {
     }
   }
 
-  private Map<String, WaxDataItem> getSession(String sessionId) throws InvalidSessionException {
-    Map<String, WaxDataItem> session = sessions.get(sessionId);
+  private ConcurrentMap<String, WaxDataItem> getSession(String sessionId)
+      throws InvalidSessionException {
+    ConcurrentMap<String, WaxDataItem> session = sessions.get(sessionId);
     if (session != null) {
       return session;
     }
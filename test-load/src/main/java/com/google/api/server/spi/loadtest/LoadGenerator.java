@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.loadtest;
+
+import com.google.api.server.spi.loadtest.LoadTestConfig.Mode;
+import com.google.common.base.Strings;
+import com.google.waxapi.WaxDataItem;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of Wax API calls against a server, in either closed or open loop, and records
+ * their latencies.
+ *
+ * <p>Reads and updates address a fixed set of items in one session; inserts go to a separate
+ * session, so that the cost of list calls does not grow over the course of a run.
+ */
+public class LoadGenerator {
+  static final int SIGNIFICANT_DIGITS = 3;
+
+  private final LoadTestConfig config;
+  private final WaxClient client;
+  private final AtomicLong insertSequence = new AtomicLong();
+  private final AtomicLong schedule = new AtomicLong();
+  private final String payload;
+  private String sessionId;
+  private String insertSessionId;
+
+  public LoadGenerator(LoadTestConfig config, String apiUrl) {
+    this.config = config;
+    this.client = new WaxClient(apiUrl);
+    this.payload = Strings.repeat("x", config.getPayloadBytes());
+  }
+
+  /**
+   * Creates the sessions and items used by the run, then runs the warmup and measured phases.
+   */
+  public LoadTestResult run() throws IOException, InterruptedException {
+    sessionId = client.createSession("load");
+    insertSessionId = client.createSession("load-insert");
+    for (int i = 0; i < config.getItemCount(); i++) {
+      client.insertItem(sessionId, newItem(itemId(i)));
+    }
+
+    long startNanos = System.nanoTime();
+    long measureStartNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(config.getWarmupMillis());
+    long endNanos = measureStartNanos + TimeUnit.MILLISECONDS.toNanos(config.getDurationMillis());
+    List<Worker> workers = new ArrayList<>(config.getConcurrency());
+    for (int i = 0; i < config.getConcurrency(); i++) {
+      Worker worker = new Worker(i, startNanos, measureStartNanos, endNanos);
+      workers.add(worker);
+      worker.start();
+    }
+    Map<Operation, Histogram> responseTimes = new EnumMap<>(Operation.class);
+    Map<Operation, Histogram> serviceTimes = new EnumMap<>(Operation.class);
+    Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+    for (Operation operation : config.getMix().getWeights().keySet()) {
+      responseTimes.put(operation, new Histogram(SIGNIFICANT_DIGITS));
+      serviceTimes.put(operation, new Histogram(SIGNIFICANT_DIGITS));
+      errors.put(operation, 0L);
+    }
+    for (Worker worker : workers) {
+      worker.join();
+      for (Operation operation : responseTimes.keySet()) {
+        responseTimes.get(operation).add(worker.responseTimes.get(operation));
+        serviceTimes.get(operation).add(worker.serviceTimes.get(operation));
+        errors.put(operation, errors.get(operation) + worker.errors.get(operation));
+      }
+    }
+    long measuredNanos = Math.max(System.nanoTime(), endNanos) - measureStartNanos;
+    if (config.getMode() == Mode.CLOSED) {
+      correctClosedLoop(responseTimes);
+    }
+    return new LoadTestResult(config, measuredNanos, responseTimes, serviceTimes, errors);
+  }
+
+  /**
+   * A closed loop never issues a request while the previous one is outstanding, so a stalled
+   * request hides the requests that would have been sent in the meantime. Those are
+   * back-filled, assuming requests would otherwise have been issued at the median interval.
+   */
+  private static void correctClosedLoop(Map<Operation, Histogram> responseTimes) {
+    Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    for (Histogram histogram : responseTimes.values()) {
+      total.add(histogram);
+    }
+    long expectedInterval = total.getValueAtPercentile(50);
+    if (expectedInterval <= 0) {
+      return;
+    }
+    for (Map.Entry<Operation, Histogram> entry : responseTimes.entrySet()) {
+      entry.setValue(entry.getValue().copyCorrectedForCoordinatedOmission(expectedInterval));
+    }
+  }
+
+  private WaxDataItem newItem(String id) {
+    return new WaxDataItem(id, "Item " + id, payload);
+  }
+
+  private static String itemId(int index) {
+    return "item-" + index;
+  }
+
+  private class Worker extends Thread {
+    private final Random random;
+    private final long startNanos;
+    private final long measureStartNanos;
+    private final long endNanos;
+    private final Map<Operation, Histogram> responseTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> serviceTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+
+    Worker(int index, long startNanos, long measureStartNanos, long endNanos) {
+      super("load-worker-" + index);
+      setDaemon(true);
+      this.random = new Random(index);
+      this.startNanos = startNanos;
+      this.measureStartNanos = measureStartNanos;
+      this.endNanos = endNanos;
+      for (Operation operation : Operation.values()) {
+        responseTimes.put(operation, new Histogram(SIGNIFICANT_DIGITS));
+        serviceTimes.put(operation, new Histogram(SIGNIFICANT_DIGITS));
+        errors.put(operation, 0L);
+      }
+    }
+
+    @Override
+    public void run() {
+      long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / config.getTargetRate());
+      while (true) {
+        long intendedStart;
+        if (config.getMode() == Mode.OPEN) {
+          intendedStart = startNanos + schedule.getAndIncrement() * intervalNanos;
+          if (intendedStart >= endNanos) {
+            return;
+          }
+          long delay;
+          while ((delay = intendedStart - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(delay);
+          }
+        } else {
+          intendedStart = System.nanoTime();
+          if (intendedStart >= endNanos) {
+            return;
+          }
+        }
+        Operation operation = config.getMix().next(random);
+        long sentNanos = System.nanoTime();
+        boolean success = execute(operation);
+        long completedNanos = System.nanoTime();
+        if (intendedStart >= measureStartNanos) {
+          responseTimes.get(operation).recordValue(completedNanos - intendedStart);
+          serviceTimes.get(operation).recordValue(completedNanos - sentNanos);
+          if (!success) {
+            errors.put(operation, errors.get(operation) + 1);
+          }
+        }
+      }
+    }
+
+    private boolean execute(Operation operation) {
+      String targetSession = sessionId;
+      WaxDataItem item;
+      if (operation == Operation.INSERT) {
+        targetSession = insertSessionId;
+        item = newItem("insert-" + insertSequence.getAndIncrement());
+      } else {
+        item = newItem(itemId(random.nextInt(config.getItemCount())));
+      }
+      try {
+        int status = client.execute(operation, targetSession, item);
+        return status / 100 == 2;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+  }
+}
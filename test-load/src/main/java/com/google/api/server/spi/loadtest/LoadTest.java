@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.loadtest;
+
+import com.google.api.server.spi.loadtest.LoadTestConfig.Mode;
+import com.google.api.server.spi.loadtest.WaxServer.ServletKind;
+
+import java.util.Locale;
+
+/**
+ * Command line entry point, which boots a {@link WaxServer} and runs a {@link LoadGenerator}
+ * against it. Flags are given as {@code --name=value}:
+ *
+ * <ul>
+ *   <li>{@code servlet}: {@code endpoints} (default) or {@code guice}</li>
+ *   <li>{@code mode}: {@code closed} (default) or {@code open}</li>
+ *   <li>{@code concurrency}: client threads, 8 by default</li>
+ *   <li>{@code rate}: target requests per second in open mode, 1000 by default</li>
+ *   <li>{@code warmup}: warmup seconds, 5 by default</li>
+ *   <li>{@code duration}: measured seconds, 30 by default</li>
+ *   <li>{@code mix}: operation weights, {@code list=1,get=4,insert=1,update=2} by default</li>
+ *   <li>{@code items}: items read and updated, 100 by default</li>
+ *   <li>{@code payload}: bytes of data per item, 256 by default</li>
+ *   <li>{@code serverThreads}: container threads, 200 by default</li>
+ * </ul>
+ */
+public class LoadTest {
+  public static void main(String[] args) throws Exception {
+    LoadTestConfig.Builder builder = LoadTestConfig.builder();
+    int serverThreads = 200;
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        usage("malformed flag: " + arg);
+      }
+      String name = arg.substring(2, separator);
+      String value = arg.substring(separator + 1);
+      switch (name) {
+        case "servlet":
+          builder.setServletKind(ServletKind.valueOf(value.toUpperCase(Locale.ENGLISH)));
+          break;
+        case "mode":
+          builder.setMode(Mode.valueOf(value.toUpperCase(Locale.ENGLISH)));
+          break;
+        case "concurrency":
+          builder.setConcurrency(Integer.parseInt(value));
+          break;
+        case "rate":
+          builder.setTargetRate(Double.parseDouble(value));
+          break;
+        case "warmup":
+          builder.setWarmupMillis((long) (Double.parseDouble(value) * 1000));
+          break;
+        case "duration":
+          builder.setDurationMillis((long) (Double.parseDouble(value) * 1000));
+          break;
+        case "mix":
+          builder.setMix(OperationMix.parse(value));
+          break;
+        case "items":
+          builder.setItemCount(Integer.parseInt(value));
+          break;
+        case "payload":
+          builder.setPayloadBytes(Integer.parseInt(value));
+          break;
+        case "serverThreads":
+          serverThreads = Integer.parseInt(value);
+          break;
+        default:
+          usage("unknown flag: " + name);
+      }
+    }
+    LoadTestConfig config = builder.build();
+
+    WaxServer server = WaxServer.start(config.getServletKind(), serverThreads);
+    try {
+      new LoadGenerator(config, server.getApiUrl()).run().print(System.out);
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static void usage(String message) {
+    System.err.println(message);
+    System.err.println("usage: LoadTest [--servlet=endpoints|guice] [--mode=closed|open]"
+        + " [--concurrency=N] [--rate=N] [--warmup=SECONDS] [--duration=SECONDS]"
+        + " [--mix=list=1,get=4,insert=1,update=2] [--items=N] [--payload=BYTES]"
+        + " [--serverThreads=N]");
+    System.exit(2);
+  }
+}
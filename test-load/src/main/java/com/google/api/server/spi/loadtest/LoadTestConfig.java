@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.loadtest;
+
+import com.google.api.server.spi.loadtest.WaxServer.ServletKind;
+import com.google.common.base.Preconditions;
+
+/**
+ * Settings of a load test run.
+ */
+public class LoadTestConfig {
+  /**
+   * How requests are paced.
+   */
+  public enum Mode {
+    /**
+     * Each worker issues its next request as soon as the previous one completes, so the offered
+     * load adapts to the server's speed.
+     */
+    CLOSED,
+    /**
+     * Requests are issued on a fixed schedule at the target rate, independently of how quickly
+     * earlier requests complete. Latency is measured from each request's scheduled start.
+     */
+    OPEN
+  }
+
+  private final ServletKind servletKind;
+  private final Mode mode;
+  private final int concurrency;
+  private final double targetRate;
+  private final long warmupMillis;
+  private final long durationMillis;
+  private final OperationMix mix;
+  private final int itemCount;
+  private final int payloadBytes;
+
+  private LoadTestConfig(Builder builder) {
+    this.servletKind = builder.servletKind;
+    this.mode = builder.mode;
+    this.concurrency = builder.concurrency;
+    this.targetRate = builder.targetRate;
+    this.warmupMillis = builder.warmupMillis;
+    this.durationMillis = builder.durationMillis;
+    this.mix = builder.mix;
+    this.itemCount = builder.itemCount;
+    this.payloadBytes = builder.payloadBytes;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public ServletKind getServletKind() {
+    return servletKind;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Returns the number of client threads issuing requests.
+   */
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * Returns the target requests per second of an {@link Mode#OPEN} run.
+   */
+  public double getTargetRate() {
+    return targetRate;
+  }
+
+  public long getWarmupMillis() {
+    return warmupMillis;
+  }
+
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  public OperationMix getMix() {
+    return mix;
+  }
+
+  /**
+   * Returns the number of items read and updated by the run.
+   */
+  public int getItemCount() {
+    return itemCount;
+  }
+
+  /**
+   * Returns the size of the data carried by each item.
+   */
+  public int getPayloadBytes() {
+    return payloadBytes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder()
+        .append("servlet=").append(servletKind)
+        .append(" mode=").append(mode)
+        .append(" concurrency=").append(concurrency);
+    if (mode == Mode.OPEN) {
+      builder.append(" rate=").append(targetRate).append("/s");
+    }
+    return builder
+        .append(" warmup=").append(warmupMillis).append("ms")
+        .append(" duration=").append(durationMillis).append("ms")
+        .append(" mix=").append(mix)
+        .append(" items=").append(itemCount)
+        .append(" payload=").append(payloadBytes).append("B")
+        .toString();
+  }
+
+  /**
+   * Builder for {@link LoadTestConfig}.
+   */
+  public static class Builder {
+    private ServletKind servletKind = ServletKind.ENDPOINTS;
+    private Mode mode = Mode.CLOSED;
+    private int concurrency = 8;
+    private double targetRate = 1000;
+    private long warmupMillis = 5000;
+    private long durationMillis = 30000;
+    private OperationMix mix = OperationMix.parse("list=1,get=4,insert=1,update=2");
+    private int itemCount = 100;
+    private int payloadBytes = 256;
+
+    private Builder() {
+    }
+
+    public Builder setServletKind(ServletKind servletKind) {
+      this.servletKind = Preconditions.checkNotNull(servletKind);
+      return this;
+    }
+
+    public Builder setMode(Mode mode) {
+      this.mode = Preconditions.checkNotNull(mode);
+      return this;
+    }
+
+    public Builder setConcurrency(int concurrency) {
+      Preconditions.checkArgument(concurrency > 0, "concurrency must be positive");
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    public Builder setTargetRate(double targetRate) {
+      Preconditions.checkArgument(targetRate > 0, "rate must be positive");
+      this.targetRate = targetRate;
+      return this;
+    }
+
+    public Builder setWarmupMillis(long warmupMillis) {
+      Preconditions.checkArgument(warmupMillis >= 0, "warmup must not be negative");
+      this.warmupMillis = warmupMillis;
+      return this;
+    }
+
+    public Builder setDurationMillis(long durationMillis) {
+      Preconditions.checkArgument(durationMillis > 0, "duration must be positive");
+      this.durationMillis = durationMillis;
+      return this;
+    }
+
+    public Builder setMix(OperationMix mix) {
+      this.mix = Preconditions.checkNotNull(mix);
+      return this;
+    }
+
+    public Builder setItemCount(int itemCount) {
+      Preconditions.checkArgument(itemCount > 0, "item count must be positive");
+      this.itemCount = itemCount;
+      return this;
+    }
+
+    public Builder setPayloadBytes(int payloadBytes) {
+      Preconditions.checkArgument(payloadBytes >= 0, "payload size must not be negative");
+      this.payloadBytes = payloadBytes;
+      return this;
+    }
+
+    public LoadTestConfig build() {
+      return new LoadTestConfig(this);
+    }
+  }
+}
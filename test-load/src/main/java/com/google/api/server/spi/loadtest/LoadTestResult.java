@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies and counts measured by a load test run. Two latencies are kept for every request:
+ * the <em>service time</em>, from the moment the request was sent until its response was read,
+ * and the <em>response time</em>, which also includes any time the request spent waiting to be
+ * sent because earlier requests were slow. Only the response time is free of coordinated
+ * omission, and it is what run-over-run comparisons should use.
+ */
+public class LoadTestResult {
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+  private final LoadTestConfig config;
+  private final long measuredNanos;
+  private final Map<Operation, Histogram> responseTimes;
+  private final Map<Operation, Histogram> serviceTimes;
+  private final Map<Operation, Long> errors;
+
+  LoadTestResult(LoadTestConfig config, long measuredNanos,
+      Map<Operation, Histogram> responseTimes, Map<Operation, Histogram> serviceTimes,
+      Map<Operation, Long> errors) {
+    this.config = config;
+    this.measuredNanos = measuredNanos;
+    this.responseTimes = Collections.unmodifiableMap(new EnumMap<>(responseTimes));
+    this.serviceTimes = Collections.unmodifiableMap(new EnumMap<>(serviceTimes));
+    this.errors = Collections.unmodifiableMap(new EnumMap<>(errors));
+  }
+
+  public LoadTestConfig getConfig() {
+    return config;
+  }
+
+  /**
+   * Returns the number of requests completed during the measured part of the run.
+   */
+  public long getRequestCount() {
+    return getTotal(responseTimes).getTotalCount();
+  }
+
+  /**
+   * Returns the number of requests which failed, or were answered with an error status.
+   */
+  public long getErrorCount() {
+    long count = 0;
+    for (long value : errors.values()) {
+      count += value;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the completed requests per second during the measured part of the run.
+   */
+  public double getThroughput() {
+    return getRequestCount() * (double) TimeUnit.SECONDS.toNanos(1) / measuredNanos;
+  }
+
+  /**
+   * Returns response times, in nanoseconds, for each operation.
+   */
+  public Map<Operation, Histogram> getResponseTimes() {
+    return responseTimes;
+  }
+
+  /**
+   * Returns service times, in nanoseconds, for each operation.
+   */
+  public Map<Operation, Histogram> getServiceTimes() {
+    return serviceTimes;
+  }
+
+  /**
+   * Returns response times, in nanoseconds, across all operations.
+   */
+  public Histogram getTotalResponseTime() {
+    return getTotal(responseTimes);
+  }
+
+  public void print(PrintStream out) {
+    out.println(config);
+    out.printf(Locale.ENGLISH, "%d requests, %d errors, %.1f requests/s%n",
+        getRequestCount(), getErrorCount(), getThroughput());
+    out.println();
+    out.println("Response time (ms), corrected for coordinated omission:");
+    printTable(out, responseTimes);
+    out.println();
+    out.println("Service time (ms):");
+    printTable(out, serviceTimes);
+  }
+
+  private void printTable(PrintStream out, Map<Operation, Histogram> histograms) {
+    out.printf(Locale.ENGLISH, "%-8s %10s %8s %9s %9s %9s %9s %9s%n",
+        "", "count", "errors", "p50", "p90", "p99", "p99.9", "max");
+    for (Map.Entry<Operation, Histogram> entry : histograms.entrySet()) {
+      Long errorCount = errors.get(entry.getKey());
+      printRow(out, entry.getKey().name().toLowerCase(Locale.ENGLISH), entry.getValue(),
+          errorCount == null ? 0 : errorCount);
+    }
+    printRow(out, "total", getTotal(histograms), getErrorCount());
+  }
+
+  private static void printRow(PrintStream out, String name, Histogram histogram, long errors) {
+    out.printf(Locale.ENGLISH, "%-8s %10d %8d", name, histogram.getTotalCount(), errors);
+    for (double percentile : PERCENTILES) {
+      out.printf(Locale.ENGLISH, " %9.3f", toMillis(histogram.getValueAtPercentile(percentile)));
+    }
+    out.printf(Locale.ENGLISH, " %9.3f%n", toMillis(histogram.getMaxValue()));
+  }
+
+  private static Histogram getTotal(Map<Operation, Histogram> histograms) {
+    Histogram total = new Histogram(LoadGenerator.SIGNIFICANT_DIGITS);
+    for (Histogram histogram : histograms.values()) {
+      total.add(histogram);
+    }
+    return total;
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.loadtest;
+
+/**
+ * The Wax API calls issued by the load generator.
+ */
+public enum Operation {
+  LIST("GET", false, false),
+  GET("GET", true, false),
+  INSERT("POST", false, true),
+  UPDATE("PUT", true, true);
+
+  private final String httpMethod;
+  private final boolean itemPath;
+  private final boolean hasBody;
+
+  Operation(String httpMethod, boolean itemPath, boolean hasBody) {
+    this.httpMethod = httpMethod;
+    this.itemPath = itemPath;
+    this.hasBody = hasBody;
+  }
+
+  public String getHttpMethod() {
+    return httpMethod;
+  }
+
+  /**
+   * Returns whether the operation addresses a single item, rather than the session's collection.
+   */
+  public boolean hasItemPath() {
+    return itemPath;
+  }
+
+  /**
+   * Returns whether the operation sends an item as the request body.
+   */
+  public boolean hasBody() {
+    return hasBody;
+  }
+}
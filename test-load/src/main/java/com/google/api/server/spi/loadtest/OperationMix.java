@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.loadtest;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Relative weights of the {@link Operation}s issued by the load generator.
+ */
+public class OperationMix {
+  private final ImmutableMap<Operation, Integer> weights;
+  private final Operation[] operations;
+  private final int[] cumulativeWeights;
+
+  public OperationMix(Map<Operation, Integer> weights) {
+    int total = 0;
+    operations = new Operation[weights.size()];
+    cumulativeWeights = new int[weights.size()];
+    int i = 0;
+    for (Map.Entry<Operation, Integer> entry : new EnumMap<>(weights).entrySet()) {
+      if (entry.getValue() < 0) {
+        throw new IllegalArgumentException("negative weight for " + entry.getKey());
+      }
+      total += entry.getValue();
+      operations[i] = entry.getKey();
+      cumulativeWeights[i] = total;
+      i++;
+    }
+    if (total == 0) {
+      throw new IllegalArgumentException("at least one operation must have a positive weight");
+    }
+    this.weights = ImmutableMap.copyOf(weights);
+  }
+
+  /**
+   * Parses a mix such as {@code list=1,get=4,insert=1,update=1}. Operations which are not listed
+   * are never issued.
+   */
+  public static OperationMix parse(String spec) {
+    Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+    for (Map.Entry<String, String> entry
+        : Splitter.on(',').trimResults().omitEmptyStrings().withKeyValueSeparator('=').split(spec)
+            .entrySet()) {
+      weights.put(Operation.valueOf(entry.getKey().toUpperCase(Locale.ENGLISH)),
+          Integer.parseInt(entry.getValue()));
+    }
+    return new OperationMix(weights);
+  }
+
+  /**
+   * Returns an operation chosen at random, in proportion to its weight.
+   */
+  public Operation next(Random random) {
+    int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (value < cumulativeWeights[i]) {
+        return operations[i];
+      }
+    }
+    throw new AssertionError();
+  }
+
+  public Map<Operation, Integer> getWeights() {
+    return weights;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+      if (builder.length() > 0) {
+        builder.append(',');
+      }
+      builder.append(entry.getKey().name().toLowerCase(Locale.ENGLISH))
+          .append('=').append(entry.getValue());
+    }
+    return builder.toString();
+  }
+}
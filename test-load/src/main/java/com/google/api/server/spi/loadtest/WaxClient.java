@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.loadtest;
+
+import com.google.common.io.ByteStreams;
+import com.google.waxapi.WaxDataItem;
+import com.google.waxapi.WaxNewSessionRequest;
+import com.google.waxapi.WaxNewSessionResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * A minimal HTTP client for the Wax API. Connections are kept alive and reused by
+ * {@link HttpURLConnection}, as long as every response body is read to the end.
+ */
+public class WaxClient {
+  private static final int TIMEOUT_MILLIS = 30000;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final String apiUrl;
+
+  /**
+   * @param apiUrl the root URL of the Wax API, ending with a slash
+   */
+  public WaxClient(String apiUrl) {
+    this.apiUrl = apiUrl;
+  }
+
+  /**
+   * Creates a session and returns its id.
+   */
+  public String createSession(String name) throws IOException {
+    byte[] body = send("POST", apiUrl + "newsession",
+        objectMapper.writeValueAsBytes(new WaxNewSessionRequest(name, null)), true);
+    return objectMapper.readValue(body, WaxNewSessionResponse.class).getNewSessionId();
+  }
+
+  /**
+   * Inserts an item, failing if the server does not accept it.
+   */
+  public void insertItem(String sessionId, WaxDataItem item) throws IOException {
+    send("POST", itemsUrl(sessionId), objectMapper.writeValueAsBytes(item), true);
+  }
+
+  /**
+   * Issues {@code operation}, and returns the status code of the response.
+   *
+   * @param item the item to address, and for operations with a body, the item to send
+   */
+  public int execute(Operation operation, String sessionId, WaxDataItem item) throws IOException {
+    String url = itemsUrl(sessionId);
+    if (operation.hasItemPath()) {
+      url += "/" + URLEncoder.encode(item.getId(), "UTF-8");
+    }
+    byte[] body = operation.hasBody() ? objectMapper.writeValueAsBytes(item) : null;
+    HttpURLConnection connection = open(operation.getHttpMethod(), url, body);
+    int status = connection.getResponseCode();
+    drain(connection, status);
+    return status;
+  }
+
+  private String itemsUrl(String sessionId) throws IOException {
+    return apiUrl + "sessions/" + URLEncoder.encode(sessionId, "UTF-8") + "/items";
+  }
+
+  private byte[] send(String method, String url, byte[] body, boolean expectSuccess)
+      throws IOException {
+    HttpURLConnection connection = open(method, url, body);
+    int status = connection.getResponseCode();
+    byte[] response = drain(connection, status);
+    if (expectSuccess && status / 100 != 2) {
+      throw new IOException(method + " " + url + " failed with " + status + ": "
+          + new String(response, "UTF-8"));
+    }
+    return response;
+  }
+
+  private HttpURLConnection open(String method, String url, byte[] body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setConnectTimeout(TIMEOUT_MILLIS);
+    connection.setReadTimeout(TIMEOUT_MILLIS);
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(body.length);
+      connection.setRequestProperty("Content-Type", "application/json");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+    }
+    return connection;
+  }
+
+  private static byte[] drain(HttpURLConnection connection, int status) throws IOException {
+    InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+    if (in == null) {
+      return new byte[0];
+    }
+    try {
+      return ByteStreams.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+}
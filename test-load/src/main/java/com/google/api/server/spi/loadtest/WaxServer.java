@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.loadtest;
+
+import com.google.api.server.spi.EndpointsServlet;
+import com.google.api.server.spi.guice.EndpointsModule;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.servlet.GuiceFilter;
+import com.google.inject.servlet.GuiceServletContextListener;
+import com.google.waxapi.InMemoryWaxDataStore;
+import com.google.waxapi.WaxEndpoint;
+
+import org.eclipse.jetty.server.DispatcherType;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.util.EnumSet;
+
+/**
+ * Runs the Wax API, backed by an {@link InMemoryWaxDataStore}, in an embedded servlet container
+ * listening on localhost.
+ */
+public class WaxServer {
+  /**
+   * The servlet serving the API.
+   */
+  public enum ServletKind {
+    /** {@link EndpointsServlet}, configured through init parameters. */
+    ENDPOINTS,
+    /** {@code GuiceEndpointsServlet}, configured through an {@link EndpointsModule}. */
+    GUICE
+  }
+
+  private static final String API_PATH = "/_ah/api/*";
+
+  private final Server server;
+  private final SelectChannelConnector connector;
+
+  private WaxServer(Server server, SelectChannelConnector connector) {
+    this.server = server;
+    this.connector = connector;
+  }
+
+  /**
+   * Starts a server on an ephemeral localhost port.
+   *
+   * @param kind the servlet to serve the API with
+   * @param threads the maximum number of container threads
+   */
+  public static WaxServer start(ServletKind kind, int threads) throws Exception {
+    Server server = new Server();
+    SelectChannelConnector connector = new SelectChannelConnector();
+    connector.setHost("localhost");
+    connector.setPort(0);
+    connector.setAcceptQueueSize(threads);
+    server.addConnector(connector);
+    server.setThreadPool(new QueuedThreadPool(threads));
+
+    ServletContextHandler context = new ServletContextHandler();
+    context.setContextPath("/");
+    final WaxEndpoint endpoint = new WaxEndpoint(new InMemoryWaxDataStore());
+    switch (kind) {
+      case ENDPOINTS:
+        ServletHolder holder = new ServletHolder(new EndpointsServlet() {
+          @SuppressWarnings("unchecked")
+          @Override
+          protected <T> T createService(Class<T> serviceClass) {
+            return serviceClass == WaxEndpoint.class
+                ? (T) endpoint : super.createService(serviceClass);
+          }
+        });
+        holder.setInitParameter("services", WaxEndpoint.class.getName());
+        holder.setInitOrder(0);
+        context.addServlet(holder, API_PATH);
+        break;
+      case GUICE:
+        context.addEventListener(new GuiceServletContextListener() {
+          @Override
+          protected Injector getInjector() {
+            return Guice.createInjector(new EndpointsModule() {
+              @Override
+              protected void configureServlets() {
+                bind(WaxEndpoint.class).toInstance(endpoint);
+                configureEndpoints(API_PATH, ImmutableList.of(WaxEndpoint.class));
+              }
+            });
+          }
+        });
+        context.addFilter(GuiceFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST));
+        context.addServlet(DefaultServlet.class, "/");
+        break;
+      default:
+        throw new AssertionError(kind);
+    }
+    server.setHandler(context);
+    server.start();
+    return new WaxServer(server, connector);
+  }
+
+  /**
+   * Returns the root URL of the Wax API, ending with a slash.
+   */
+  public String getApiUrl() {
+    return "http://localhost:" + connector.getLocalPort() + "/_ah/api/wax/v1/";
+  }
+
+  public void stop() throws Exception {
+    server.stop();
+    server.join();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.loadtest;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.server.spi.loadtest.LoadTestConfig.Mode;
+import com.google.api.server.spi.loadtest.WaxServer.ServletKind;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs short load tests against each servlet, to check the harness works end to end.
+ */
+@RunWith(JUnit4.class)
+public class LoadGeneratorTest {
+  @Test
+  public void closedLoop_endpointsServlet() throws Exception {
+    assertRuns(LoadTestConfig.builder()
+        .setServletKind(ServletKind.ENDPOINTS)
+        .setMode(Mode.CLOSED)
+        .setConcurrency(2));
+  }
+
+  @Test
+  public void openLoop_guiceServlet() throws Exception {
+    assertRuns(LoadTestConfig.builder()
+        .setServletKind(ServletKind.GUICE)
+        .setMode(Mode.OPEN)
+        .setConcurrency(4)
+        .setTargetRate(200));
+  }
+
+  @Test
+  public void parseMix() {
+    OperationMix mix = OperationMix.parse("get=3, update=1");
+    assertThat(mix.getWeights()).containsExactly(Operation.GET, 3, Operation.UPDATE, 1);
+    assertThat(mix.toString()).isEqualTo("get=3,update=1");
+  }
+
+  private static void assertRuns(LoadTestConfig.Builder builder) throws Exception {
+    LoadTestConfig config = builder
+        .setWarmupMillis(200)
+        .setDurationMillis(500)
+        .setItemCount(10)
+        .setMix(OperationMix.parse("list=1,get=1,insert=1,update=1"))
+        .build();
+    WaxServer server = WaxServer.start(config.getServletKind(), 16);
+    try {
+      LoadTestResult result = new LoadGenerator(config, server.getApiUrl()).run();
+      assertThat(result.getRequestCount()).isGreaterThan(0L);
+      assertThat(result.getErrorCount()).isEqualTo(0L);
+      for (Operation operation : Operation.values()) {
+        assertThat(result.getResponseTimes().get(operation).getTotalCount()).isGreaterThan(0L);
+      }
+    } finally {
+      server.stop();
+    }
+  }
+}
@@ -41,6 +41,7 @@ import org.junit.Test;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.Set;
@@ -181,6 +182,33 @@ public abstract class BaseSystemServiceTest {
         new ErrorResultWriter(500));
   }
 
+  @Test
+  public void testInvokeServiceMethod_generatedInvoker() throws Exception {
+    EndpointMethod endpointMethod = EndpointMethod.create(service.getClass(), succeed);
+    endpointMethod.setInvoker(new MethodInvoker() {
+      @Override
+      public Object invoke(Object service, Object[] params) {
+        return TestEndpoint.RESULT;
+      }
+    });
+    systemService.invokeServiceMethod(service, endpointMethod, new FakeParamReader(),
+        new SuccessResultWriter(TestEndpoint.RESULT));
+  }
+
+  @Test
+  public void testInvokeServiceMethod_generatedInvokerException() throws Exception {
+    EndpointMethod endpointMethod = EndpointMethod.create(service.getClass(), fail);
+    endpointMethod.setInvoker(new MethodInvoker() {
+      @Override
+      public Object invoke(Object service, Object[] params) throws InvocationTargetException {
+        throw new InvocationTargetException(
+            new ServiceException(400, TestEndpoint.ERROR_MESSAGE));
+      }
+    });
+    systemService.invokeServiceMethod(service, endpointMethod, new FakeParamReader(),
+        new ErrorResultWriter(400, TestEndpoint.ERROR_MESSAGE));
+  }
+
   protected SystemService getSystemService(Object[] services, boolean isIllegalArgumentBackendError)
       throws Exception {
     return getSystemService(
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.testing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the bytes allocated by a task on the current thread, using the JVM's per-thread
+ * allocation counters. These are available on HotSpot based JVMs; tests should check
+ * {@link #isSupported()} and skip otherwise.
+ */
+public final class AllocationMeter {
+  private static final int ROUNDS = 5;
+
+  /**
+   * A task to measure.
+   */
+  public interface Task {
+    void run() throws Exception;
+  }
+
+  private AllocationMeter() { }
+
+  /**
+   * Returns whether per-thread allocation counters are available on this JVM.
+   */
+  public static boolean isSupported() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return false;
+    }
+    com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+    if (!sunBean.isThreadAllocatedMemorySupported()) {
+      return false;
+    }
+    if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+      sunBean.setThreadAllocatedMemoryEnabled(true);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the total bytes allocated so far by the current thread.
+   *
+   * @throws UnsupportedOperationException if allocation counters are not {@link #isSupported()
+   *     supported}
+   */
+  public static long currentThreadAllocatedBytes() {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("thread allocation counters are not available");
+    }
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Runs {@code task} {@code warmupRuns} times, then returns the bytes it allocates per run. The
+   * measured runs are repeated over several rounds and the lowest average is returned, so that
+   * one-off allocations, such as lazily initialized caches or JIT compiler activity on the
+   * measuring thread, are not attributed to the task.
+   */
+  public static long bytesPerRun(Task task, int warmupRuns, int measuredRuns) throws Exception {
+    if (measuredRuns <= 0) {
+      throw new IllegalArgumentException("measuredRuns must be positive");
+    }
+    for (int i = 0; i < warmupRuns; i++) {
+      task.run();
+    }
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long before = currentThreadAllocatedBytes();
+      for (int i = 0; i < measuredRuns; i++) {
+        task.run();
+      }
+      long after = currentThreadAllocatedBytes();
+      best = Math.min(best, (after - before) / measuredRuns);
+    }
+    return best;
+  }
+}
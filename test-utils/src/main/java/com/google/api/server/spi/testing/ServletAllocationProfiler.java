@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.api.server.spi.testing;
+
+import com.google.common.base.Preconditions;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import javax.servlet.http.HttpServlet;
+
+/**
+ * Measures the bytes a servlet allocates to serve a request, after warming it up with the same
+ * request. The in-memory request and response are created for every run; the bytes they take
+ * are measured separately and subtracted, so only the servlet's own allocations are reported.
+ *
+ * <p>Tests use {@link #assertWithinBudget} to fail when a change adds allocations to the request
+ * path.
+ */
+public class ServletAllocationProfiler {
+  private static final String SERVLET_PATH = "/_ah/api";
+  private static final String SERVER_NAME = "localhost";
+
+  private final HttpServlet servlet;
+  private int warmupRequests = 2000;
+  private int measuredRequests = 200;
+
+  /**
+   * @param servlet an initialized servlet, mapped to {@code /_ah/api/*}
+   */
+  public ServletAllocationProfiler(HttpServlet servlet) {
+    this.servlet = servlet;
+  }
+
+  /**
+   * Sets the number of requests served before measuring, so that lazily initialized state is in
+   * place and hot methods are compiled. Defaults to 2000.
+   */
+  public ServletAllocationProfiler setWarmupRequests(int warmupRequests) {
+    this.warmupRequests = warmupRequests;
+    return this;
+  }
+
+  /**
+   * Sets the number of requests averaged over in each measurement round. Defaults to 200.
+   */
+  public ServletAllocationProfiler setMeasuredRequests(int measuredRequests) {
+    this.measuredRequests = measuredRequests;
+    return this;
+  }
+
+  /**
+   * Returns the bytes allocated by the servlet per request of {@code scenario}.
+   */
+  public long bytesPerRequest(final Scenario scenario) throws Exception {
+    long total = AllocationMeter.bytesPerRun(new AllocationMeter.Task() {
+      @Override
+      public void run() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.service(scenario.newRequest(), response);
+        if (response.getStatus() != scenario.expectedStatus) {
+          throw new AssertionError(String.format(Locale.ENGLISH,
+              "%s: expected status %d but was %d: %s", scenario.name, scenario.expectedStatus,
+              response.getStatus(), response.getContentAsString()));
+        }
+      }
+    }, warmupRequests, measuredRequests);
+    long fixtures = AllocationMeter.bytesPerRun(new AllocationMeter.Task() {
+      @Override
+      public void run() throws Exception {
+        scenario.newRequest();
+        new MockHttpServletResponse().getOutputStream();
+      }
+    }, warmupRequests, measuredRequests);
+    return Math.max(0, total - fixtures);
+  }
+
+  /**
+   * Fails if the servlet allocates more than {@code budgetBytes} per request of {@code scenario},
+   * with a message giving the measured allocation and the difference from the budget.
+   */
+  public void assertWithinBudget(Scenario scenario, long budgetBytes) throws Exception {
+    long measured = bytesPerRequest(scenario);
+    if (measured > budgetBytes) {
+      long delta = measured - budgetBytes;
+      throw new AssertionError(String.format(Locale.ENGLISH,
+          "%s allocates %,d bytes per request, over its budget of %,d bytes by %,d bytes (+%.1f%%)."
+              + " If the increase is intended, raise the budget.",
+          scenario.name, measured, budgetBytes, delta, 100.0 * delta / budgetBytes));
+    }
+  }
+
+  /**
+   * Creates a scenario for requests of {@code httpMethod} to {@code path}, relative to the API
+   * root, such as {@code "test/v1/items/1"}.
+   */
+  public static Scenario scenario(String name, String httpMethod, String path) {
+    return new Scenario(name, httpMethod, path);
+  }
+
+  /**
+   * A request to measure.
+   */
+  public static class Scenario {
+    private final String name;
+    private final String httpMethod;
+    private final String path;
+    private byte[] body;
+    private int expectedStatus = 200;
+
+    private Scenario(String name, String httpMethod, String path) {
+      this.name = Preconditions.checkNotNull(name);
+      this.httpMethod = Preconditions.checkNotNull(httpMethod);
+      this.path = Preconditions.checkNotNull(path);
+    }
+
+    /**
+     * Sends {@code json} as the body of each request.
+     */
+    public Scenario withJsonBody(String json) {
+      this.body = json.getBytes(StandardCharsets.UTF_8);
+      return this;
+    }
+
+    /**
+     * Sets the status each response must have, 200 by default.
+     */
+    public Scenario expectingStatus(int expectedStatus) {
+      this.expectedStatus = expectedStatus;
+      return this;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    MockHttpServletRequest newRequest() {
+      MockHttpServletRequest request =
+          new MockHttpServletRequest(httpMethod, SERVLET_PATH + "/" + path);
+      request.setServletPath(SERVLET_PATH);
+      request.setServerName(SERVER_NAME);
+      request.addHeader("Host", SERVER_NAME);
+      if (body != null) {
+        request.setContentType("application/json");
+        request.setContent(body);
+      }
+      return request;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}